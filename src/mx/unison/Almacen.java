@@ -1,56 +1,89 @@
 package mx.unison;
 
-import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
 
 /**
  * Clase modelo para representar un Almacn en la interfaz de usuario.
- * Utiliza JavaFX Properties para permitir la actualizacin automtica en la TableView.
+ * Igual que Producto: campos tipados y propiedades de JavaFX creadas solo cuando la TableView las pide.
  */
 public class Almacen {
-    
-    // Propiedades
-    private final StringProperty id;
-    private final StringProperty nombre;
-    private final StringProperty fechaCreacion;
-    private final StringProperty fechaModificacion;
-    private final StringProperty ultimoUsuario;
-    
-    // Constructor con los 5 campos de la tabla 'almacenes' (ID, Nombre y Auditora)
-    public Almacen(String id, String nombre, String fechaCreacion, String fechaModificacion, String ultimoUsuario) {
-        this.id = new SimpleStringProperty(id);
-        this.nombre = new SimpleStringProperty(nombre);
-        this.fechaCreacion = new SimpleStringProperty(fechaCreacion);
-        this.fechaModificacion = new SimpleStringProperty(fechaModificacion);
-        this.ultimoUsuario = new SimpleStringProperty(ultimoUsuario);
-    }
-    
+
+    private final int id;
+    private String nombre;
+    private final long fechaCreacion;
+    private final long fechaModificacion;
+    private final String ultimoUsuario;
+
+    // Propiedades observables, creadas la primera vez que se piden
+    private ReadOnlyIntegerWrapper idPropiedad;
+    private ReadOnlyStringWrapper nombrePropiedad;
+    private ReadOnlyStringWrapper fechaCreacionPropiedad;
+    private ReadOnlyStringWrapper fechaModificacionPropiedad;
+    private ReadOnlyStringWrapper ultimoUsuarioPropiedad;
+
+    // Constructor con los 5 campos de la tabla 'almacenes' (ID, Nombre y Auditora; fechas en segundos desde la poca)
+    public Almacen(int id, String nombre, long fechaCreacion, long fechaModificacion, String ultimoUsuario) {
+        this.id = id;
+        this.nombre = nombre;
+        this.fechaCreacion = fechaCreacion;
+        this.fechaModificacion = fechaModificacion;
+        this.ultimoUsuario = ultimoUsuario;
+    }
+
     // Getters
-    public String getId() { return id.get(); } // Devuelve String
-    public String getNombre() { return nombre.get(); }
-    public String getFechaCreacion() { return fechaCreacion.get(); }
-    public String getFechaModificacion() { return fechaModificacion.get(); }
-    public String getUltimoUsuario() { return ultimoUsuario.get(); }
-    
+    public String getId() { return Integer.toString(id); } // Devuelve String (como se usa en las consultas)
+    public String getNombre() { return nombre; }
+    public String getFechaCreacion() { return RelojAuditoria.formatear(fechaCreacion); }
+    public String getFechaModificacion() { return RelojAuditoria.formatear(fechaModificacion); }
+    public String getUltimoUsuario() { return ultimoUsuario; }
+
     // Setters
-    public void setNombre(String nombre) { this.nombre.set(nombre); }
-    
+    public void setNombre(String nombre) {
+        this.nombre = nombre;
+        if (nombrePropiedad != null) {
+            nombrePropiedad.set(nombre);
+        }
+    }
+
     // Property Getters (Necesarios para la TableView)
-    public StringProperty idProperty() { return id; }
-    public StringProperty nombreProperty() { return nombre; }
-    public StringProperty fechaCreacionProperty() { return fechaCreacion; }
-    public StringProperty fechaModificacionProperty() { return fechaModificacion; }
-    public StringProperty ultimoUsuarioProperty() { return ultimoUsuario; }
-    
+    public ReadOnlyIntegerProperty idProperty() {
+        if (idPropiedad == null) {
+            idPropiedad = new ReadOnlyIntegerWrapper(this, "id", id);
+        }
+        return idPropiedad.getReadOnlyProperty();
+    }
+    public ReadOnlyStringProperty nombreProperty() {
+        if (nombrePropiedad == null) {
+            nombrePropiedad = new ReadOnlyStringWrapper(this, "nombre", nombre);
+        }
+        return nombrePropiedad.getReadOnlyProperty();
+    }
+    public ReadOnlyStringProperty fechaCreacionProperty() {
+        if (fechaCreacionPropiedad == null) {
+            fechaCreacionPropiedad = new ReadOnlyStringWrapper(this, "fechaCreacion", getFechaCreacion());
+        }
+        return fechaCreacionPropiedad.getReadOnlyProperty();
+    }
+    public ReadOnlyStringProperty fechaModificacionProperty() {
+        if (fechaModificacionPropiedad == null) {
+            fechaModificacionPropiedad = new ReadOnlyStringWrapper(this, "fechaModificacion", getFechaModificacion());
+        }
+        return fechaModificacionPropiedad.getReadOnlyProperty();
+    }
+    public ReadOnlyStringProperty ultimoUsuarioProperty() {
+        if (ultimoUsuarioPropiedad == null) {
+            ultimoUsuarioPropiedad = new ReadOnlyStringWrapper(this, "ultimoUsuario", ultimoUsuario);
+        }
+        return ultimoUsuarioPropiedad.getReadOnlyProperty();
+    }
+
     /**
-     * Devuelve el ID como Integer, til para el controlador de formulario. (Mtodo de utilidad)
+     * Devuelve el ID como int, til para el controlador de formulario. (Mtodo de utilidad)
      */
     public int getIdAsInt() {
-        try {
-            // Convierte el ID (String) a Integer
-            return Integer.parseInt(id.get());
-        } catch (NumberFormatException e) {
-            return -1; 
-        }
+        return id;
     }
-}
\ No newline at end of file
+}
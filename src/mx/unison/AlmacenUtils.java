@@ -2,93 +2,305 @@ package mx.unison;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 
 /**
  * Clase de utilidad para manejar la lista de Almacenes en cach.
- * Los datos se cargan desde la base de datos para asegurar que las nuevas ubicaciones
- * sean visibles inmediatamente en los formularios y filtros.
+ *
+ * La cach es una instantnea inmutable (mapas y lista de nombres que nadie modifica) que se
+ * reemplaza completa al recargar, as que los lectores de cualquier hilo solo leen una referencia,
+ * sin candados, y nunca ven una cach a medio llenar. Cada escritura de almacenes en DatabaseManager
+ * llama a invalidar() despus del commit: sube la versin y la siguiente lectura carga una instantnea
+ * nueva. No se carga nada al cargar la clase, sino la primera vez que se consulta.
+ *
+ * Los ComboBox de almacenes usan las listas observables compartidas (getNombresObservables y
+ * getNombresParaFiltro): abrir una pantalla o un formulario no consulta la base de datos y, cuando
+ * la cach se invalida, una sola recarga en segundo plano actualiza todas las pantallas abiertas.
  */
 public class AlmacenUtils {
 
-    // Mapa que contiene la traduccin de ID numrico (String) al nombre (String)
-    // Ya no es FINAL, ya que debe actualizarse dinmicamente.
-    private static Map<String, String> almacenIdToNombreCache = new HashMap<>();
-    
-    // Mapa inverso para encontrar el ID a partir del nombre (til para el filtro)
-    private static Map<String, String> almacenNombreToIdCache = new HashMap<>();
-    
-    // Lista simple de nombres para llenar ComboBoxes (til para el mtodo getNombresAlmacenes)
-    private static List<String> nombresAlmacenesCache = new ArrayList<>();
-
-    // Bloque esttico: Inicia la carga de datos al arrancar la aplicacin.
-    static {
-        try {
-            recargarCacheAlmacenes();
-        } catch (SQLException e) {
-            System.err.println("Error FATAL al cargar la cach inicial de almacenes: " + e.getMessage());
-            // En una aplicacin real, esto requerira cerrar o deshabilitar la funcionalidad de inventario.
+    // Versin de los datos de almacenes; invalidar() la incrementa
+    private static final AtomicLong VERSION = new AtomicLong();
+
+    // Instantnea vigente (null hasta la primera consulta)
+    private static final AtomicReference<Instantanea> ACTUAL = new AtomicReference<>();
+
+    // Solo los hilos que recargan toman este candado (uno consulta la base, los dems reutilizan su resultado)
+    private static final Object CARGA = new Object();
+
+    /** Primera opcin de los filtros por almacn (sin filtro). */
+    public static final String OPCION_TODOS = "TODOS";
+
+    // Listas compartidas por los ComboBox; solo se tocan en el hilo de JavaFX y se crean al pedirlas
+    private static ObservableList<String> nombresObservables;
+    private static ObservableList<String> nombresParaFiltro; // OPCION_TODOS y los nombres
+    // Alguna pantalla ya pidi las listas: invalidar() (desde cualquier hilo) debe actualizarlas
+    private static volatile boolean hayListasObservables = false;
+
+    // --- Contadores ---
+    // Los aciertos se cuentan en cada lectura desde varios hilos: LongAdder no compite por una sola celda
+    private static final LongAdder ACIERTOS = new LongAdder();
+    private static final AtomicLong RECARGAS = new AtomicLong();
+    private static final AtomicLong INVALIDACIONES = new AtomicLong();
+    private static final AtomicLong ERRORES = new AtomicLong();
+
+    // Constructor privado para evitar instanciacin
+    private AlmacenUtils() {}
+
+    /**
+     * Datos de los almacenes en un momento dado. No cambia despus de construirse.
+     */
+    private static final class Instantanea {
+        static final Instantanea VACIA = new Instantanea(-1, Collections.emptyList());
+
+        final long version;
+        // ID numrico (String) -> nombre, y su inverso (til para el filtro)
+        final Map<String, String> idANombre;
+        final Map<String, String> nombreAId;
+        // Mismo mapa con el nombre en minsculas (para resolver nombres escritos a mano, p. ej. en un CSV)
+        final Map<String, String> nombreMinusculasAId;
+        // Nombres en orden alfabtico, para llenar ComboBoxes
+        final List<String> nombres;
+
+        Instantanea(long version, List<Almacen> almacenes) {
+            Map<String, String> idANombre = new HashMap<>();
+            Map<String, String> nombreAId = new HashMap<>();
+            Map<String, String> nombreMinusculasAId = new HashMap<>();
+            List<String> nombres = new ArrayList<>(almacenes.size());
+            for (Almacen almacen : almacenes) {
+                String id = almacen.getId();
+                String nombre = almacen.getNombre();
+
+                idANombre.put(id, nombre);
+                nombreAId.put(nombre, id);
+                nombreMinusculasAId.put(nombre.trim().toLowerCase(), id);
+                nombres.add(nombre);
+            }
+            Collections.sort(nombres); // Mismo orden que ORDER BY nombre ASC
+
+            this.version = version;
+            this.idANombre = Collections.unmodifiableMap(idANombre);
+            this.nombreAId = Collections.unmodifiableMap(nombreAId);
+            this.nombreMinusculasAId = Collections.unmodifiableMap(nombreMinusculasAId);
+            this.nombres = Collections.unmodifiableList(nombres);
         }
     }
 
-    // Constructor privado para evitar instanciacin
-    private AlmacenUtils() {} 
+    // ------------------------------------------------------------------
+    //                       CARGA E INVALIDACIN
+    // ------------------------------------------------------------------
+
+    /**
+     * Marca la cach como vencida. La llama DatabaseManager despus de insertar, actualizar o eliminar
+     * almacenes (ya confirmada la transaccin); la siguiente consulta recarga desde la base de datos.
+     */
+    static void invalidar() {
+        VERSION.incrementAndGet();
+        INVALIDACIONES.incrementAndGet();
+        if (hayListasObservables) {
+            actualizarListasObservables();
+        }
+    }
 
     /**
-     * MTODO CRUCIAL: Fuerza la recarga de todos los almacenes desde la base de datos.
-     * DEBE llamarse despus de AGREGAR, MODIFICAR o ELIMINAR un almacn.
+     * Fuerza la recarga de todos los almacenes desde la base de datos, sin esperar a la siguiente consulta.
+     * Ya no es necesario llamarla despus de un cambio: DatabaseManager invalida la cach por su cuenta.
      */
     public static void recargarCacheAlmacenes() throws SQLException {
-        // Asumimos que tienes un mtodo en DatabaseManager que devuelve List<Almacen>
-        // Este mtodo debe obtener todos los campos, incluido el ID.
-        List<Almacen> almacenes = DatabaseManager.obtenerTodosLosAlmacenes(); 
-        
-        // Limpiamos los mapas antes de recargar
-        almacenIdToNombreCache.clear();
-        almacenNombreToIdCache.clear();
-        
-        // 1. Reconstruir el cach de ID -> Nombre y Nombre -> ID
-        for (Almacen almacen : almacenes) {
-            String id = almacen.getId();
-            String nombre = almacen.getNombre();
-            
-            almacenIdToNombreCache.put(id, nombre);
-            almacenNombreToIdCache.put(nombre, id);
+        invalidar();
+        synchronized (CARGA) {
+            cargar(VERSION.get());
         }
-            
-        // 2. Reconstruir la lista simple de nombres (para ComboBoxes)
-        nombresAlmacenesCache = new ArrayList<>(almacenIdToNombreCache.values());
-            
-        System.out.println("DEBUG: Cach de Almacenes recargada correctamente. Total: " + almacenIdToNombreCache.size() + " elementos.");
     }
-    
+
+    // Instantnea al da; el camino normal es una lectura de la referencia y de la versin
+    private static Instantanea instantanea() {
+        Instantanea actual = ACTUAL.get();
+        if (actual != null && actual.version == VERSION.get()) {
+            ACIERTOS.increment();
+            return actual;
+        }
+        synchronized (CARGA) {
+            // Otro hilo pudo recargar mientras se esperaba el candado
+            long version = VERSION.get();
+            actual = ACTUAL.get();
+            if (actual != null && actual.version == version) {
+                return actual;
+            }
+            try {
+                return cargar(version);
+            } catch (SQLException e) {
+                ERRORES.incrementAndGet();
+                System.err.println("Error al cargar la cach de almacenes: " + e.getMessage());
+                // Mejor datos anteriores que ninguno; la siguiente consulta lo vuelve a intentar
+                return actual != null ? actual : Instantanea.VACIA;
+            }
+        }
+    }
+
+    // Se llama con el candado CARGA. La versin se lee antes de consultar: si alguien invalida
+    // durante la consulta, la instantnea nace vencida y la siguiente lectura vuelve a cargar.
+    private static Instantanea cargar(long version) throws SQLException {
+        Instantanea nueva = new Instantanea(version, DatabaseManager.obtenerTodosLosAlmacenes());
+        ACTUAL.set(nueva);
+        RECARGAS.incrementAndGet();
+        System.out.println("DEBUG: Cach de Almacenes recargada (versin " + version + "). Total: "
+                + nueva.idANombre.size() + " elementos.");
+        return nueva;
+    }
+
+    /** Consultas resueltas con la instantnea vigente, recargas, invalidaciones y errores de carga. */
+    public static String getEstadisticas() {
+        Instantanea actual = ACTUAL.get();
+        return String.format("Cach de almacenes: almacenes=%d versin=%d aciertos=%d recargas=%d invalidaciones=%d errores=%d",
+                actual == null ? 0 : actual.idANombre.size(), VERSION.get(), ACIERTOS.sum(), RECARGAS.get(),
+                INVALIDACIONES.get(), ERRORES.get());
+    }
+
+    // ------------------------------------------------------------------
+    //                       CONSULTAS
+    // ------------------------------------------------------------------
+
     /**
      * Convierte el ID numrico del almacn al nombre legible.
-     * Utiliza la cach dinmica.
      */
     public static String getNombreAlmacen(String idAlmacen) {
         if (idAlmacen == null || idAlmacen.trim().isEmpty()) {
             return "Desconocido";
         }
-        return almacenIdToNombreCache.getOrDefault(idAlmacen.trim(), "Desconocido");
+        return instantanea().idANombre.getOrDefault(idAlmacen.trim(), "Desconocido");
     }
-    
+
     /**
-     * Devuelve una lista de los nombres de los almacenes para llenar un ComboBox.
-     * Utiliza la cach dinmica.
+     * Devuelve los nombres de los almacenes en orden alfabtico para llenar un ComboBox.
+     * La lista no se puede modificar: para agregar opciones (p. ej. "TODOS") hay que copiarla.
      */
     public static List<String> getNombresAlmacenes() {
-        return nombresAlmacenesCache;
+        return instantanea().nombres;
     }
-    
+
+    /**
+     * Recorre los almacenes en orden alfabtico, todos de la misma instantnea (ID y nombre coinciden
+     * aunque otro hilo invalide la cach mientras tanto).
+     */
+    public static void recorrerAlmacenes(BiConsumer<String, String> idYNombre) {
+        Instantanea datos = instantanea();
+        for (String nombre : datos.nombres) {
+            idYNombre.accept(datos.nombreAId.get(nombre), nombre);
+        }
+    }
+
     /**
      * Convierte el nombre legible al ID numrico del almacn.
-     * Utiliza la cach dinmica.
      */
     public static String getIdAlmacen(String nombreAlmacen) {
-        return almacenNombreToIdCache.getOrDefault(nombreAlmacen, null);
+        if (nombreAlmacen == null) {
+            return null;
+        }
+        return instantanea().nombreAId.get(nombreAlmacen);
+    }
+
+    // ------------------------------------------------------------------
+    //                       LISTAS PARA COMBOBOX
+    // ------------------------------------------------------------------
+
+    /**
+     * Nombres de los almacenes en orden alfabtico como lista observable de solo lectura, compartida
+     * por todos los ComboBox (formulario de producto). Se actualiza sola al cambiar los almacenes.
+     * Debe llamarse en el hilo de JavaFX.
+     */
+    public static ObservableList<String> getNombresObservables() {
+        crearListasObservables();
+        return FXCollections.unmodifiableObservableList(nombresObservables);
+    }
+
+    /**
+     * Igual que getNombresObservables(), con OPCION_TODOS al inicio (filtros de Productos y Almacenes).
+     * Debe llamarse en el hilo de JavaFX.
+     */
+    public static ObservableList<String> getNombresParaFiltro() {
+        crearListasObservables();
+        return FXCollections.unmodifiableObservableList(nombresParaFiltro);
+    }
+
+    private static void crearListasObservables() {
+        if (nombresObservables != null) {
+            return;
+        }
+        nombresObservables = FXCollections.observableArrayList();
+        nombresParaFiltro = FXCollections.observableArrayList(OPCION_TODOS);
+        hayListasObservables = true;
+
+        Instantanea actual = ACTUAL.get();
+        if (actual != null && actual.version == VERSION.get()) {
+            // Ya cargada: se llenan aqu mismo, sin ir a la base de datos
+            publicarNombres(actual.nombres);
+        } else {
+            actualizarListasObservables();
+        }
+    }
+
+    // La recarga (si hace falta) se hace en segundo plano y los nombres se publican en el hilo de JavaFX
+    private static void actualizarListasObservables() {
+        TareasBD.ejecutar(AlmacenUtils::getNombresAlmacenes, AlmacenUtils::publicarNombres, error -> {
+            System.err.println("Error al actualizar las listas de almacenes: " + error.getMessage());
+        });
+    }
+
+    private static void publicarNombres(List<String> nombres) {
+        sincronizar(nombresObservables, 0, nombres);
+        sincronizar(nombresParaFiltro, 1, nombres);
+    }
+
+    // Deja destino[desde..] igual a 'nombres' quitando los que ya no estn e insertando los nuevos en
+    // su lugar (ambos estn en orden alfabtico). No se reemplaza la lista completa: los ComboBox
+    // conservan la seleccin si el almacn elegido sigue existiendo.
+    private static void sincronizar(ObservableList<String> destino, int desde, List<String> nombres) {
+        destino.subList(desde, destino.size()).retainAll(nombres);
+        int posicion = desde;
+        for (String nombre : nombres) {
+            // Copias de ms de un nombre repetido que quedaron antes de este
+            while (posicion < destino.size() && destino.get(posicion).compareTo(nombre) < 0) {
+                destino.remove(posicion);
+            }
+            if (posicion >= destino.size() || !destino.get(posicion).equals(nombre)) {
+                destino.add(posicion, nombre);
+            }
+            posicion++;
+        }
+        if (destino.size() > posicion) {
+            destino.remove(posicion, destino.size());
+        }
+    }
+
+    /**
+     * Resuelve el almacn escrito en un archivo de importacin: acepta el nombre (sin importar
+     * maysculas ni espacios alrededor) o directamente el ID.
+     * @return El ID del almacn, o null si no corresponde a ninguno.
+     */
+    public static String resolverIdAlmacen(String nombreOId) {
+        if (nombreOId == null || nombreOId.trim().isEmpty()) {
+            return null;
+        }
+        // Una sola instantnea para las tres bsquedas
+        Instantanea datos = instantanea();
+        String valor = nombreOId.trim();
+        String id = datos.nombreAId.get(valor);
+        if (id == null) {
+            id = datos.nombreMinusculasAId.get(valor.toLowerCase());
+        }
+        if (id == null && datos.idANombre.containsKey(valor)) {
+            id = valor;
+        }
+        return id;
     }
-}
\ No newline at end of file
+}
@@ -6,8 +6,11 @@ import javafx.scene.control.*;
 import javafx.scene.layout.HBox;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javafx.event.ActionEvent;
 import java.util.Optional;
 import mx.unison.SessionContext;
@@ -16,12 +19,11 @@ import mx.unison.SessionContext;
  * Controlador para la vista de Almacenes. Gestiona la tabla, filtros
  * y la seguridad de los botones CRUD segn el rol del usuario.
  */
-public class AlmacenesController {
+public class AlmacenesController implements RegistroVistas.Reutilizable {
 
     // --- 1. INYECCIN DE LA TABLA Y LAS 5 COLUMNAS ---
     @FXML private TableView<Almacen> tblAlmacenes;
-    // CORRECCIN: El ID se maneja como StringProperty en el modelo, por lo que debe ser String.
-    @FXML private TableColumn<Almacen, String> colID;	
+    @FXML private TableColumn<Almacen, Number> colID;
     @FXML private TableColumn<Almacen, String> colNombre;
     @FXML private TableColumn<Almacen, String> colFechaCreacion;
     @FXML private TableColumn<Almacen, String> colFechaModificacion;
@@ -31,6 +33,7 @@ public class AlmacenesController {
     @FXML private ComboBox<String> cmbAlmacenFiltro; // Filtro por nombre de Almacn
     @FXML private TextField txtID; // Filtro por ID
     @FXML private Button btnAplicarFiltros;
+    @FXML private ProgressIndicator indicadorCarga;
 
     // --- 3. INYECCIN DE BOTONES DE ACCIN Y BARRA INFERIOR ---
     @FXML private HBox bottomBar;
@@ -39,27 +42,52 @@ public class AlmacenesController {
     @FXML private Button btnEliminar;	
     @FXML private Button btnVolver;
 
+    // Consulta de filtros en curso; se cancela si el usuario aplica otros filtros antes de que termine
+    private ConsultaCancelable consultaEnCurso;
+
+    // --- 4. ORDEN ---
+    // El orden lo resuelve la consulta (ORDER BY columna, id): columna de la tabla -> columna de 'almacenes'
+    private final Map<TableColumn<Almacen, ?>, String> columnasOrden = new HashMap<>();
+    private String columnaOrden = "id";
+    private boolean ordenAscendente = true;
+    private List<String> filtrosMostrados;
+
+    // --- 5. REUTILIZACIN (RegistroVistas) ---
+    private boolean vistaPreparada = false;
+
     // ------------------------------------------------------------------
     //             MTODOS DE INICIALIZACIN Y CONFIGURACIN
     // ------------------------------------------------------------------
 
+    /**
+     * Solo configura los controles de esta vista: puede ejecutarse en el hilo de precarga de
+     * RegistroVistas. Los datos, los permisos y las listas compartidas van en prepararVista().
+     */
     @FXML
     public void initialize() {
-        // 1. Configurar ComboBox de Almacenes con todos los nombres disponibles
-        try {
-            // Se asume que AlmacenUtils.recargarCacheAlmacenes() ya se llam en el bloque esttico de AlmacenUtils.
-            List<String> nombresAlmacenes = AlmacenUtils.getNombresAlmacenes(); 
-            nombresAlmacenes.add(0, "TODOS");
-            cmbAlmacenFiltro.setItems(javafx.collections.FXCollections.observableArrayList(nombresAlmacenes));
-            cmbAlmacenFiltro.getSelectionModel().selectFirst();
-        // CATCH CORREGIDO: Maneja la SQLException que lanza el mtodo de la DB
-        } catch (Exception e) { // Usamos Exception por si hay otros errores de inicializacin
-            mostrarAlertaError("Error de Carga", "No se pudieron cargar los nombres de almacenes para el filtro.");
-            e.printStackTrace();
+        // 1. Conexin de las Columnas a las Propiedades del Modelo Almacen
+        configurarColumnas();
+        
+        // 2. Conexin del botn de filtros
+        btnAplicarFiltros.setOnAction(e -> handleAplicarFiltros());
+    }
+
+    /**
+     * Deja la pantalla como recin abierta (se llama en el hilo de JavaFX cada vez que se muestra):
+     * permisos del rol actual, filtros vacos, orden por ID y datos frescos.
+     */
+    @Override
+    public void prepararVista() {
+        if (!vistaPreparada) {
+            // "TODOS" y los nombres (lista compartida de la cach: se actualiza al agregar, modificar o eliminar)
+            cmbAlmacenFiltro.setItems(AlmacenUtils.getNombresParaFiltro());
+            // Indicador de carga visible mientras haya trabajo de base de datos en curso
+            indicadorCarga.visibleProperty().bind(TareasBD.ocupadoProperty());
+            vistaPreparada = true;
         }
 
         // ----------------------------------------------------
-        // LGICA DE SEGURIDAD BASADA EN ROL (CLAVE)
+        // LGICA DE SEGURIDAD BASADA EN ROL (CLAVE; puede ser otra sesin que la ltima vez)
         // ----------------------------------------------------
         
         String rolActual = SessionContext.getCurrentUserRole();
@@ -74,15 +102,17 @@ public class AlmacenesController {
         bottomBar.setVisible(tienePermisoCRUD);
         
         // ----------------------------------------------------
+
+        // Filtros, orden y seleccin del uso anterior
+        cmbAlmacenFiltro.getSelectionModel().selectFirst();
+        txtID.clear();
+        columnaOrden = "id"; // Antes de limpiar el orden, para que no consulte
+        ordenAscendente = true;
+        tblAlmacenes.getSortOrder().clear();
+        tblAlmacenes.getSelectionModel().clearSelection();
         
-        // 2. Conexin de las Columnas a las Propiedades del Modelo Almacen
-        configurarColumnas();
-        
-        // 3. Cargar datos iniciales sin filtros
+        // Cargar datos iniciales sin filtros
         cargarDatosAlmacenes(null);
-        
-        // 4. Conexin del botn de filtros
-        btnAplicarFiltros.setOnAction(e -> handleAplicarFiltros());
     }
     
     /**
@@ -95,16 +125,30 @@ public class AlmacenesController {
         colFechaCreacion.setCellValueFactory(cellData -> cellData.getValue().fechaCreacionProperty());
         colFechaModificacion.setCellValueFactory(cellData -> cellData.getValue().fechaModificacionProperty());
         colUltimoUsuario.setCellValueFactory(cellData -> cellData.getValue().ultimoUsuarioProperty());
-        
-        // CORRECCIN: El comparador recibe Strings (s1, s2) porque la columna es String.
-        // Se mantiene la lgica de intentar parsear a Integer para un ordenamiento numrico.
-        colID.setComparator((s1, s2) -> {
-            try {
-                // SOLUCIONADO: Ahora compara Strings. El error de compareTo desaparece.
-                return Integer.compare(Integer.parseInt(s1), Integer.parseInt(s2));	
-            } catch (NumberFormatException e) {
-                return s1.compareTo(s2);
+
+        columnasOrden.put(colID, "id");
+        columnasOrden.put(colNombre, "nombre");
+        columnasOrden.put(colFechaCreacion, "fecha_hora_creacion");
+        columnasOrden.put(colFechaModificacion, "fecha_hora_ultima_modificacion");
+        columnasOrden.put(colUltimoUsuario, "ultimo_usuario_en_modificar");
+
+        // Un clic en el encabezado vuelve a consultar con el nuevo ORDER BY en lugar de ordenar la lista
+        tblAlmacenes.setSortPolicy(tabla -> {
+            String columna = "id";
+            boolean ascendente = true;
+            for (TableColumn<Almacen, ?> columnaTabla : tabla.getSortOrder()) {
+                if (columnasOrden.containsKey(columnaTabla)) {
+                    columna = columnasOrden.get(columnaTabla);
+                    ascendente = columnaTabla.getSortType() != TableColumn.SortType.DESCENDING;
+                    break;
+                }
+            }
+            if (!columna.equals(columnaOrden) || ascendente != ordenAscendente) {
+                columnaOrden = columna;
+                ordenAscendente = ascendente;
+                cargarDatosAlmacenes(filtrosMostrados);
             }
+            return true;
         });
     }
 
@@ -134,7 +178,7 @@ public class AlmacenesController {
         String nombre = cmbAlmacenFiltro.getSelectionModel().getSelectedItem();
         
         // Si se selecciona "TODOS", el nombre es nulo para la consulta de DB.
-        String filtroNombre = "TODOS".equalsIgnoreCase(nombre) ? null : nombre;	
+        String filtroNombre = AlmacenUtils.OPCION_TODOS.equalsIgnoreCase(nombre) ? null : nombre;	
 
         // Los filtros son [nombre, id]
         List<String> filtros = Arrays.asList(filtroNombre, id);
@@ -144,18 +188,39 @@ public class AlmacenesController {
     
     /**
      * Carga los datos de la DB a la TableView usando el DatabaseManager.
+     * La consulta corre en segundo plano; si haba otra en curso, se cancela y su resultado se ignora.
      */
     public void cargarDatosAlmacenes(List<String> filtros) {
-        try {
-            // ERROR SOLUCIONADO: Ahora DatabaseManager tiene obtenerAlmacenesFiltrados()
-            ObservableList<Almacen> almacenes = DatabaseManager.obtenerAlmacenesFiltrados(filtros);
-            tblAlmacenes.setItems(almacenes);
-        // CATCH CORREGIDO: Maneja la SQLException que lanza el mtodo de la DB
-        } catch (SQLException e) {	
-            System.err.println("Error al cargar almacenes desde la base de datos.");
-            e.printStackTrace();
-            mostrarAlertaError("Error de Conexin", "No se pudieron cargar los datos de almacenes. " + e.getMessage());
+        if (consultaEnCurso != null) {
+            consultaEnCurso.cancelar();
         }
+        ConsultaCancelable consulta = new ConsultaCancelable();
+        consultaEnCurso = consulta;
+        filtrosMostrados = filtros;
+        String columna = columnaOrden;
+        boolean ascendente = ordenAscendente;
+
+        TareasBD.ejecutar(() -> DatabaseManager.obtenerAlmacenesFiltrados(filtros, columna, ascendente, consulta), almacenes -> {
+            if (!consulta.isCancelada()) {
+                tblAlmacenes.setItems(almacenes);
+            }
+        }, error -> {
+            if (consulta.isCancelada()) {
+                return; // Interrumpida a propsito (SQLITE_INTERRUPT)
+            }
+            System.err.println("Error al cargar almacenes desde la base de datos.");
+            error.printStackTrace();
+            mostrarAlertaError("Error de Conexin", "No se pudieron cargar los datos de almacenes. " + error.getMessage());
+        });
+    }
+
+    /**
+     * Refresca la tabla despus de agregar o modificar. La cach de almacenes no se toca aqu:
+     * DatabaseManager la invalida al guardar y se recarga en la siguiente consulta.
+     */
+    private void refrescarDespuesDeCambio(String operacion) {
+        System.out.println("DEBUG: Refrescando almacenes despus de " + operacion + ".");
+        cargarDatosAlmacenes(null);
     }
 
     // ------------------------------------------------------------------
@@ -169,14 +234,12 @@ public class AlmacenesController {
             // Abre el formulario modal (InventarioApp.mostrarFormularioAlmacen debe usar showAndWait())
             mx.unison.InventarioApp.mostrarFormularioAlmacen(null);	
             
-            // LLAMADA CRUCIAL: Recargar cach despus de que el formulario se cierra (y presumiblemente guarda)
-            AlmacenUtils.recargarCacheAlmacenes(); 
-            
-            // Refresca la tabla local
-            cargarDatosAlmacenes(null);	
+            // Al cerrarse el formulario se refresca la tabla local
+            // (la cach de almacenes ya la invalid DatabaseManager al guardar)
+            refrescarDespuesDeCambio("agregar");
         // CATCH CORREGIDO: Maneja la IOException
-        } catch (IOException | SQLException e) { // Aadimos SQLException por si falla la recarga
-            System.err.println("Error al cargar la vista de formulario de Agregar Almacn o al refrescar la cach.");
+        } catch (IOException e) {
+            System.err.println("Error al cargar la vista de formulario de Agregar Almacn.");
             e.printStackTrace();
             mostrarAlertaError("Error de Operacin", "No se pudo completar la operacin de agregar almacn: " + e.getMessage());
         }
@@ -192,14 +255,12 @@ public class AlmacenesController {
                 // Abre el formulario modal (InventarioApp.mostrarFormularioAlmacen debe usar showAndWait())
                 mx.unison.InventarioApp.mostrarFormularioAlmacen(almacenSeleccionado);
                 
-                // LLAMADA CRUCIAL: Recargar cach despus de que el formulario se cierra (y presumiblemente guarda)
-                AlmacenUtils.recargarCacheAlmacenes(); 
-                
-                // Refresca la tabla local
-                cargarDatosAlmacenes(null);
-            // CATCH CORREGIDO: Maneja la IOException y SQLException
-            } catch (IOException | SQLException e) {	
-                System.err.println("Error al cargar la vista de formulario de Modificar Almacn o al refrescar la cach.");
+                // Al cerrarse el formulario se refresca la tabla local
+                // (la cach de almacenes ya la invalid DatabaseManager al guardar)
+                refrescarDespuesDeCambio("modificar");
+            // CATCH CORREGIDO: Maneja la IOException
+            } catch (IOException e) {	
+                System.err.println("Error al cargar la vista de formulario de Modificar Almacn.");
                 e.printStackTrace();
                 mostrarAlertaError("Error de Operacin", "No se pudo completar la operacin de modificar almacn: " + e.getMessage());
             }
@@ -208,43 +269,98 @@ public class AlmacenesController {
         }
     }
     
-    /** Elimina el almacn seleccionado de la tabla. */
+    /**
+     * Elimina el almacn seleccionado de la tabla. Si tiene productos, el usuario elige
+     * entre pasarlos a otro almacn o eliminarlos junto con el almacn (todo en una transaccin).
+     */
     @FXML
     private void handleEliminarAlmacen() {
         Almacen almacenSeleccionado = tblAlmacenes.getSelectionModel().getSelectedItem();
-        if (almacenSeleccionado != null) {
-            
-            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
-            confirm.setTitle("Confirmar Eliminacin Masiva");
-            confirm.setHeaderText("Eliminar Almacn: " + almacenSeleccionado.getNombre());
-            
-            // TEXTO DE ADVERTENCIA ACTUALIZADO
-            confirm.setContentText(
-                "ADVERTENCIA: Todos los productos relacionados con este almacn sern ELIMINADOS permanentemente." +
-                "\n\nDesea proceder con la eliminacin del almacn con ID: " + almacenSeleccionado.getId() + "?"
-            );
-
-            confirm.showAndWait().ifPresent(response -> {
-                if (response == ButtonType.OK) {
-                    try {
-                        // DB Operation
-                        DatabaseManager.eliminarAlmacen(almacenSeleccionado.getId());
-                        
-                        // LLAMADA CRUCIAL: Recargar cach inmediatamente despus de la eliminacin
-                        AlmacenUtils.recargarCacheAlmacenes(); 
-                        
-                        mostrarAlertaInfo("xito", "El almacn fue eliminado y la cach refrescada correctamente.");
-                        cargarDatosAlmacenes(null);	
-                    // CATCH CORREGIDO: Maneja la SQLException
-                    } catch (SQLException e) {	
-                        mostrarAlertaError("Error de DB", "No se pudo eliminar el almacn: " + e.getMessage());
-                        e.printStackTrace();
-                    }
-                }
-            });
-        } else {
+        if (almacenSeleccionado == null) {
             mostrarAlertaAdvertencia("Sin Seleccin", "Por favor, selecciona un almacn de la tabla para eliminarlo.");
+            return;
         }
+        btnEliminar.setDisable(true);
+        // Primero se cuentan sus productos para saber qu preguntar
+        TareasBD.ejecutar(() -> DatabaseManager.contarProductosDeAlmacen(almacenSeleccionado.getId()),
+            productos -> {
+                btnEliminar.setDisable(false);
+                confirmarEliminacion(almacenSeleccionado, productos);
+            }, error -> {
+                btnEliminar.setDisable(false);
+                mostrarAlertaError("Error de DB", "No se pudieron contar los productos del almacn: " + error.getMessage());
+                error.printStackTrace();
+            });
+    }
+
+    private void confirmarEliminacion(Almacen almacen, int productos) {
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setTitle("Confirmar Eliminacin");
+        confirm.setHeaderText("Eliminar Almacn: " + almacen.getNombre());
+
+        if (productos == 0) {
+            confirm.setContentText("El almacn no tiene productos.\n\nDesea proceder con la eliminacin del almacn con ID: "
+                    + almacen.getId() + "?");
+            confirm.showAndWait().filter(r -> r == ButtonType.OK)
+                    .ifPresent(r -> ejecutarEliminacion(almacen, null));
+            return;
+        }
+
+        ButtonType reasignar = new ButtonType("Reasignar productos", ButtonBar.ButtonData.YES);
+        ButtonType eliminar = new ButtonType("Eliminar productos", ButtonBar.ButtonData.NO);
+        confirm.getButtonTypes().setAll(reasignar, eliminar, ButtonType.CANCEL);
+        confirm.setContentText("El almacn tiene " + productos + " producto(s).\n\n"
+                + "Puede pasarlos a otro almacn o ELIMINARLOS permanentemente junto con el almacn.");
+
+        Optional<ButtonType> respuesta = confirm.showAndWait();
+        if (!respuesta.isPresent() || respuesta.get() == ButtonType.CANCEL) {
+            return;
+        }
+        if (respuesta.get() == eliminar) {
+            ejecutarEliminacion(almacen, null);
+            return;
+        }
+
+        // Reasignar: elegir el almacn destino entre los dems
+        List<String> destinos = new ArrayList<>(AlmacenUtils.getNombresAlmacenes());
+        destinos.remove(almacen.getNombre());
+        if (destinos.isEmpty()) {
+            mostrarAlertaAdvertencia("Sin Destino", "No hay otro almacn al cual pasar los productos.");
+            return;
+        }
+        ChoiceDialog<String> dialogo = new ChoiceDialog<>(destinos.get(0), destinos);
+        dialogo.setTitle("Reasignar Productos");
+        dialogo.setHeaderText("Pasar " + productos + " producto(s) de " + almacen.getNombre() + " a:");
+        dialogo.setContentText("Almacn destino:");
+        dialogo.showAndWait().ifPresent(nombreDestino -> {
+            String idDestino = AlmacenUtils.getIdAlmacen(nombreDestino);
+            if (idDestino == null) {
+                mostrarAlertaError("Error", "No se encontr el almacn destino: " + nombreDestino);
+                return;
+            }
+            ejecutarEliminacion(almacen, idDestino);
+        });
+    }
+
+    // idDestino null: los productos se eliminan con el almacn
+    private void ejecutarEliminacion(Almacen almacen, String idDestino) {
+        btnEliminar.setDisable(true);
+        TareasBD.ejecutar(() -> {
+            int afectados = idDestino == null
+                    ? DatabaseManager.eliminarAlmacen(almacen.getId())
+                    : DatabaseManager.eliminarAlmacenReasignando(almacen.getId(), idDestino);
+            return afectados;
+        }, afectados -> {
+            btnEliminar.setDisable(false);
+            mostrarAlertaInfo("xito", "El almacn fue eliminado. Productos "
+                    + (idDestino == null ? "eliminados: " : "reasignados a " + AlmacenUtils.getNombreAlmacen(idDestino) + ": ")
+                    + afectados + ".");
+            cargarDatosAlmacenes(null);
+        }, error -> {
+            btnEliminar.setDisable(false);
+            mostrarAlertaError("Error de DB", "No se pudo eliminar el almacn (no se hizo ningn cambio): " + error.getMessage());
+            error.printStackTrace();
+        });
     }
     
     // ------------------------------------------------------------------
@@ -6,10 +6,9 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
-import java.sql.SQLException;
 
 // IMPORTANTE: Este controlador fue adaptado para coincidir con los campos ID y NOMBRE de su FXML
-public class AlmacenesFormController {
+public class AlmacenesFormController implements RegistroVistas.Reutilizable {
 
     // --- Inyecciones FXML ---
     @FXML private Label lblTitulo;
@@ -31,6 +30,17 @@ public class AlmacenesFormController {
         // El ID no debe ser modificable en la mayora de los casos
     }
 
+    /**
+     * El formulario se reutiliza (RegistroVistas): antes de cada apertura se limpia lo que dej la anterior.
+     */
+    @Override
+    public void prepararVista() {
+        almacenEnEdicion = null;
+        txtNombre.clear();
+        btnGuardar.setDisable(false);
+        txtNombre.requestFocus();
+    }
+
     /**
      * Mtodo llamado por InventarioApp para preparar el formulario para edicin o agregar.
      * @param almacen El Almacen a cargar, o null si es modo "Agregar".
@@ -43,6 +53,7 @@ public class AlmacenesFormController {
             esModificacion = true;
             lblTitulo.setText("Modificar Almacn ID: " + almacen.getId());
             btnGuardar.setText("Actualizar");
+            txtNombre.setText(almacen.getNombre()); // Se parte del nombre actual
             
         } else {
             // Modo AGREGAR
@@ -93,36 +104,44 @@ public class AlmacenesFormController {
         
         String usuarioActual = SessionContext.getCurrentUserName(); // Asumiendo que SessionContext existe
 
-        try {
-            // 2. LLAMADA A LA BASE DE DATOS
+        final int id = idAlmacen;
+
+        // 2. LLAMADA A LA BASE DE DATOS (en segundo plano; se evita un doble clic mientras tanto)
+        btnGuardar.setDisable(true);
+        TareasBD.ejecutar(() -> {
             if (esModificacion) {
                 // Modo Modificar: Pasamos el ID del almacn existente
                 DatabaseManager.actualizarAlmacen(
-                    idAlmacen, 
+                    id, 
                     nombre, 
                     usuarioActual
                 );
-                mostrarAlertaInfo("xito", "El almacn ID " + idAlmacen + " ha sido **modificado** exitosamente.");
             } else {
                 // Modo Agregar: El ID es asignado por la DB
                 DatabaseManager.insertarAlmacen(
                     nombre, 
                     usuarioActual
                 );
+            }
+            return null;
+        }, sinResultado -> {
+            if (esModificacion) {
+                mostrarAlertaInfo("xito", "El almacn ID " + id + " ha sido **modificado** exitosamente.");
+            } else {
                 mostrarAlertaInfo("xito", "El nuevo almacn '" + nombre + "' ha sido **guardado** con xito.");
             }
-            
             // 3. Si todo fue bien, cerrar el formulario
             Stage stage = (Stage) btnGuardar.getScene().getWindow();
             stage.close();
-            
-        } catch (SQLException e) {
-            mostrarAlertaError("Error de Base de Datos", "Ocurri un error al guardar/actualizar el almacn: " + e.getMessage());
-            e.printStackTrace();
-        } catch (Exception e) {
-             mostrarAlertaError("Error Inesperado", "Ocurri un error al procesar los datos: " + e.getMessage());
-             e.printStackTrace();
-        }
+        }, error -> {
+            btnGuardar.setDisable(false);
+            if (error instanceof java.sql.SQLException) {
+                mostrarAlertaError("Error de Base de Datos", "Ocurri un error al guardar/actualizar el almacn: " + error.getMessage());
+            } else {
+                mostrarAlertaError("Error Inesperado", "Ocurri un error al procesar los datos: " + error.getMessage());
+            }
+            error.printStackTrace();
+        });
     }
 
     // ------------------------------------------------------------------
@@ -0,0 +1,98 @@
+package mx.unison;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Arranque por etapas. La pantalla de Login se muestra sin esperar a la base de datos; mientras el
+ * usuario escribe, en segundo plano y en paralelo:
+ *   - esquema: driver, tablas, migraciones, almacenes iniciales y secuencias (DatabaseManager.inicializarEsquema)
+ *   - vistas: se interpreta Inicio.fxml (no usa la base de datos)
+ *   - cachs: al terminar el esquema, se carga la cach de almacenes que usan las pantallas
+ * Solo lo que va despus del login espera: LoginController llama a esperarBaseDeDatos() antes de
+ * consultar el usuario, y las pantallas posteriores solo se abren con una sesin iniciada.
+ */
+public final class Arranque {
+
+    @FunctionalInterface
+    private interface Etapa {
+        void ejecutar() throws Exception;
+    }
+
+    private static final AtomicInteger CONTADOR_HILOS = new AtomicInteger();
+    private static final ExecutorService EJECUTOR = Executors.newFixedThreadPool(2, r -> {
+        Thread hilo = new Thread(r, "arranque-" + CONTADOR_HILOS.incrementAndGet());
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    // null mientras no se llame a iniciar() (herramientas de lnea de comandos usan DatabaseManager.initialize())
+    private static volatile CompletableFuture<Void> esquema;
+    private static volatile CompletableFuture<Void> completo;
+
+    // Constructor privado para evitar instanciacin
+    private Arranque() {}
+
+    /**
+     * Lanza las etapas en segundo plano y regresa de inmediato. Se llama una vez desde InventarioApp.start().
+     */
+    public static synchronized void iniciar() {
+        if (esquema != null) {
+            return;
+        }
+        esquema = CompletableFuture.runAsync(etapa("esquema", DatabaseManager::inicializarEsquema), EJECUTOR);
+        CompletableFuture<Void> caches = esquema.thenRunAsync(etapa("cachs", AlmacenUtils::getNombresAlmacenes), EJECUTOR);
+        RegistroVistas.precargar("Inicio.fxml"); // En su propio hilo, en paralelo con el esquema
+
+        completo = CompletableFuture.allOf(esquema, caches);
+        completo.whenComplete((sinResultado, error) -> MedicionArranque.marcar(
+                error == null ? "base de datos y cachs listas" : "arranque en segundo plano con errores"));
+    }
+
+    /**
+     * Espera a que el esquema est listo (no debe llamarse en el hilo de JavaFX). Si la etapa fall
+     * (p. ej. la base de datos estaba bloqueada), se reintenta aqu mismo una vez por llamada.
+     */
+    public static void esperarBaseDeDatos() throws SQLException {
+        CompletableFuture<Void> actual = esquema;
+        if (actual == null) {
+            return;
+        }
+        try {
+            actual.join();
+        } catch (CompletionException e) {
+            synchronized (Arranque.class) {
+                if (esquema == actual) {
+                    System.err.println("ADVERTENCIA: Se reintenta preparar la base de datos: " + e.getCause().getMessage());
+                    DatabaseManager.inicializarEsquema();
+                    esquema = CompletableFuture.completedFuture(null);
+                }
+            }
+        }
+    }
+
+    /**
+     * Se completa cuando terminan todas las etapas en segundo plano (con o sin error).
+     */
+    static CompletableFuture<Void> alTerminar() {
+        CompletableFuture<Void> actual = completo;
+        return actual != null ? actual.handle((sinResultado, error) -> null) : CompletableFuture.completedFuture(null);
+    }
+
+    private static Runnable etapa(String nombre, Etapa etapa) {
+        return () -> {
+            long inicio = System.nanoTime();
+            try {
+                etapa.ejecutar();
+            } catch (Exception e) {
+                System.err.println("Error en la etapa de arranque '" + nombre + "': " + e.getMessage());
+                throw new CompletionException(e);
+            }
+            System.out.printf("DEBUG: Arranque: etapa '%s' terminada en %d ms.%n", nombre, (System.nanoTime() - inicio) / 1_000_000);
+        };
+    }
+}
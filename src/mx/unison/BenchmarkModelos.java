@@ -0,0 +1,126 @@
+package mx.unison;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+
+/**
+ * Compara el modelo Producto tipado (campos primitivos, propiedades creadas al pedirlas) con el
+ * modelo anterior (nueve StringProperty por fila y comparadores que convierten texto):
+ * memoria por fila y tiempo de ordenar por precio, cantidad e id.
+ * No usa la base de datos ni la interfaz grfica:
+ *   java mx.unison.BenchmarkModelos [filas]   (por defecto 200000)
+ */
+public class BenchmarkModelos {
+
+    private static final String[] DEPARTAMENTOS = ValidadorProducto.DEPARTAMENTOS.toArray(new String[0]);
+    private static final String[] ALMACENES = {"Hermosillo", "Caborca", "Guaymas", "Sonoyta", "Nogales"};
+    private static final int REPETICIONES = 3;
+
+    public static void main(String[] args) {
+        int filas = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        System.out.println("Filas: " + filas);
+
+        long antes = memoriaUsada();
+        List<ProductoAnterior> anteriores = crear(filas, BenchmarkModelos::productoAnterior);
+        long bytesAnterior = memoriaUsada() - antes;
+
+        antes = memoriaUsada();
+        List<Producto> tipados = crear(filas, BenchmarkModelos::productoTipado);
+        long bytesTipado = memoriaUsada() - antes;
+
+        System.out.printf("Memoria por fila: anterior %d bytes, tipado %d bytes (%.1fx menos)%n",
+                bytesAnterior / filas, bytesTipado / filas, (double) bytesAnterior / bytesTipado);
+
+        // Los comparadores que usaba ProductosController (convierten el texto en cada comparacin)
+        ordenar("precio  ", anteriores, (a, b) -> Double.compare(Double.parseDouble(a.precio.get()), Double.parseDouble(b.precio.get())),
+                tipados, Comparator.comparingDouble(Producto::getPrecio));
+        ordenar("cantidad", anteriores, (a, b) -> Integer.compare(Integer.parseInt(a.cantidad.get()), Integer.parseInt(b.cantidad.get())),
+                tipados, Comparator.comparingInt(Producto::getCantidad));
+        ordenar("id      ", anteriores, (a, b) -> Integer.compare(Integer.parseInt(a.id.get()), Integer.parseInt(b.id.get())),
+                tipados, Comparator.comparingLong(Producto::getIdNumero));
+
+        // Solo las filas visibles crean propiedades
+        antes = memoriaUsada();
+        for (int i = 0; i < 40; i++) {
+            tipados.get(i).nombreProperty();
+        }
+        System.out.printf("Propiedades de 40 filas visibles: %d KB%n", (memoriaUsada() - antes) / 1024);
+
+        // Mantiene vivas las listas hasta el final de las mediciones
+        System.out.println("(" + anteriores.size() + " / " + tipados.size() + ")");
+    }
+
+    private static <T> List<T> crear(int filas, IntFunction<T> fabrica) {
+        List<T> lista = new ArrayList<>(filas);
+        for (int i = 0; i < filas; i++) {
+            lista.add(fabrica.apply(i));
+        }
+        return lista;
+    }
+
+    // Mismos datos para los dos modelos (la semilla depende de la fila)
+    private static Producto productoTipado(int i) {
+        Random r = new Random(i);
+        long fecha = 1_735_700_000L + r.nextInt(30_000_000);
+        return new Producto(i + 1, "Producto " + i, r.nextInt(100_000) / 100.0, r.nextInt(500),
+                DEPARTAMENTOS[r.nextInt(DEPARTAMENTOS.length)], ALMACENES[r.nextInt(ALMACENES.length)],
+                fecha, fecha, "admin");
+    }
+
+    private static ProductoAnterior productoAnterior(int i) {
+        Random r = new Random(i);
+        long fecha = 1_735_700_000L + r.nextInt(30_000_000);
+        return new ProductoAnterior(String.valueOf(i + 1), "Producto " + i, String.valueOf(r.nextInt(100_000) / 100.0),
+                String.valueOf(r.nextInt(500)), DEPARTAMENTOS[r.nextInt(DEPARTAMENTOS.length)],
+                ALMACENES[r.nextInt(ALMACENES.length)], RelojAuditoria.formatear(fecha), RelojAuditoria.formatear(fecha), "admin");
+    }
+
+    private static void ordenar(String columna, List<ProductoAnterior> anteriores, Comparator<ProductoAnterior> porTexto,
+                                List<Producto> tipados, Comparator<Producto> tipado) {
+        long msAnterior = Long.MAX_VALUE, msTipado = Long.MAX_VALUE;
+        for (int i = 0; i < REPETICIONES; i++) {
+            List<ProductoAnterior> copiaAnterior = new ArrayList<>(anteriores);
+            long inicio = System.nanoTime();
+            copiaAnterior.sort(porTexto);
+            msAnterior = Math.min(msAnterior, (System.nanoTime() - inicio) / 1_000_000);
+
+            List<Producto> copiaTipada = new ArrayList<>(tipados);
+            inicio = System.nanoTime();
+            copiaTipada.sort(tipado);
+            msTipado = Math.min(msTipado, (System.nanoTime() - inicio) / 1_000_000);
+        }
+        System.out.printf("Ordenar por %s: anterior %d ms, tipado %d ms (%.1fx)%n",
+                columna, msAnterior, msTipado, (double) msAnterior / Math.max(1, msTipado));
+    }
+
+    private static long memoriaUsada() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** Copia del modelo anterior: nueve StringProperty creadas para cada fila. */
+    private static final class ProductoAnterior {
+        final StringProperty id, nombre, precio, cantidad, departamento, almacen, fechaCreacion, fechaModificacion, ultimoUsuario;
+
+        ProductoAnterior(String id, String nombre, String precio, String cantidad, String departamento, String almacen,
+                         String fechaCreacion, String fechaModificacion, String ultimoUsuario) {
+            this.id = new SimpleStringProperty(id);
+            this.nombre = new SimpleStringProperty(nombre);
+            this.precio = new SimpleStringProperty(precio);
+            this.cantidad = new SimpleStringProperty(cantidad);
+            this.departamento = new SimpleStringProperty(departamento);
+            this.almacen = new SimpleStringProperty(almacen);
+            this.fechaCreacion = new SimpleStringProperty(fechaCreacion);
+            this.fechaModificacion = new SimpleStringProperty(fechaModificacion);
+            this.ultimoUsuario = new SimpleStringProperty(ultimoUsuario);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package mx.unison;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bitcora de cambios: historial completo de altas, modificaciones y bajas de productos y almacenes.
+ * Las columnas ultimo_usuario_en_modificar / fecha_hora_ultima_modificacion solo guardan el ltimo cambio
+ * (cada UPDATE las sobreescribe) y una eliminacin no dejaba rastro; aqu cada operacin agrega una fila
+ * con la fila antes y despus del cambio (JSON) y nunca se modifica ni se borra (la tabla lo impide con triggers).
+ *
+ * Las escrituras de DatabaseManager acumulan sus registros en un Lote en memoria y lo escriben con una sola
+ * sentencia preparada en lotes, dentro de la misma transaccin que el cambio (ver DatabaseManager.enTransaccion):
+ * si el cambio se deshace, su registro tambin. Los valores "despus" salen del mismo UPDATE/INSERT
+ * con RETURNING y los "antes" de un DELETE tambin, as que solo las modificaciones releen la fila.
+ */
+public class BitacoraCambios {
+
+    /** Lo que se modific: cada entidad sabe de qu tabla se lee y qu columnas se guardan. */
+    public enum Entidad {
+        PRODUCTO("productos", "json_object('nombre', nombre, 'precio', precio, 'cantidad', cantidad, "
+                + "'departamento', departamento, 'almacen', almacen, 'fecha_hora_creacion', fecha_hora_creacion, "
+                + "'fecha_hora_ultima_modificacion', fecha_hora_ultima_modificacion, "
+                + "'ultimo_usuario_en_modificar', ultimo_usuario_en_modificar)"),
+        ALMACEN("almacenes", "json_object('nombre', nombre, 'fecha_hora_creacion', fecha_hora_creacion, "
+                + "'fecha_hora_ultima_modificacion', fecha_hora_ultima_modificacion, "
+                + "'ultimo_usuario_en_modificar', ultimo_usuario_en_modificar)");
+
+        final String tabla;
+        final String json; // Expresin SQL con la fila completa (menos el id) como objeto JSON
+
+        Entidad(String tabla, String json) {
+            this.tabla = tabla;
+            this.json = json;
+        }
+
+        /** Clusula RETURNING para un INSERT/UPDATE/DELETE sobre la tabla: (id, fila en JSON). */
+        String sqlRetorno() {
+            return " RETURNING id, " + json;
+        }
+    }
+
+    public enum Operacion {
+        INSERCION, ACTUALIZACION, ELIMINACION
+    }
+
+    // Registros que se acumulan antes de escribirlos (una operacin grande escribe en varios lotes)
+    static final int TAMANO_LOTE = 500;
+
+    private static final String SQL_INSERTAR = "INSERT INTO bitacora_cambios "
+            + "(fecha, usuario, entidad, entidad_id, operacion, antes, despues) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    // Constructor privado para evitar instanciacin
+    private BitacoraCambios() {}
+
+    // ------------------------------------------------------------------
+    //                       TABLA E NDICES
+    // ------------------------------------------------------------------
+
+    /**
+     * Crea la tabla de la bitcora, sus ndices (por entidad, por usuario y por fecha) y los triggers que la
+     * hacen de solo agregar. Se llama desde createTables() de DatabaseManager.
+     */
+    static void crear(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE IF NOT EXISTS bitacora_cambios ("
+                + "id INTEGER PRIMARY KEY," // rowid: crece con cada registro
+                + "fecha INTEGER NOT NULL," // Segundos desde la poca (RelojAuditoria)
+                + "usuario TEXT,"
+                + "entidad TEXT NOT NULL," // PRODUCTO o ALMACEN
+                + "entidad_id TEXT," // Como en la tabla de origen
+                + "operacion TEXT NOT NULL," // INSERCION, ACTUALIZACION o ELIMINACION
+                + "antes TEXT," // Fila antes del cambio (JSON); NULL en una insercin
+                + "despues TEXT" // Fila despus del cambio (JSON); NULL en una eliminacin
+                + ")");
+        // El historial de una entidad, de un usuario o de un rango de fechas es un recorrido por rango;
+        // el rowid al final de cada ndice da el orden (fecha, id) sin ordenar
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_bitacora_entidad ON bitacora_cambios(entidad, entidad_id, fecha)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_bitacora_usuario ON bitacora_cambios(usuario, fecha)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_bitacora_fecha ON bitacora_cambios(fecha)");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS bitacora_cambios_bu BEFORE UPDATE ON bitacora_cambios BEGIN "
+                + "SELECT RAISE(ABORT, 'La bitcora de cambios no se puede modificar.'); END");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS bitacora_cambios_bd BEFORE DELETE ON bitacora_cambios BEGIN "
+                + "SELECT RAISE(ABORT, 'La bitcora de cambios no se puede modificar.'); END");
+        System.out.println("DEBUG: Bitcora de cambios verificada/creada.");
+    }
+
+    // ------------------------------------------------------------------
+    //                       ESCRITURA EN LOTES
+    // ------------------------------------------------------------------
+
+    /**
+     * Registros pendientes de una transaccin. Todos comparten la fecha y el usuario de la operacin.
+     * Se escriben al llenarse (TAMANO_LOTE) y al final con escribir(), antes del commit.
+     */
+    static final class Lote implements AutoCloseable {
+        private final Connection conn;
+        private final long fecha;
+        private final String usuario;
+        private final List<String[]> pendientes = new ArrayList<>();
+        private PreparedStatement pstmt;
+        private int escritos;
+
+        Lote(Connection conn, long fecha, String usuario) {
+            this.conn = conn;
+            this.fecha = fecha;
+            this.usuario = usuario;
+        }
+
+        void registrar(Entidad entidad, String id, Operacion operacion, String antes, String despues) throws SQLException {
+            pendientes.add(new String[] {entidad.name(), id, operacion.name(), antes, despues});
+            if (pendientes.size() >= TAMANO_LOTE) {
+                escribir();
+            }
+        }
+
+        /**
+         * Registra una fila por cada resultado de un RETURNING (id, fila en JSON) y devuelve sus ids.
+         * En una insercin o actualizacin el JSON es el valor nuevo; en una eliminacin, el anterior.
+         * @param antes Valores previos por id (actualizaciones), o null.
+         */
+        List<String> registrarRetorno(Entidad entidad, Operacion operacion, Map<String, String> antes, ResultSet rs) throws SQLException {
+            List<String> ids = new ArrayList<>(1);
+            while (rs.next()) {
+                String id = rs.getString(1);
+                String json = rs.getString(2);
+                if (operacion == Operacion.ELIMINACION) {
+                    registrar(entidad, id, operacion, json, null);
+                } else {
+                    registrar(entidad, id, operacion, antes == null ? null : antes.get(id), json);
+                }
+                ids.add(id);
+            }
+            return ids;
+        }
+
+        int getEscritos() {
+            return escritos;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (pstmt != null) {
+                pstmt.close();
+                pstmt = null;
+            }
+        }
+
+        /** Escribe lo pendiente. Lo llama enTransaccion justo antes del commit. */
+        void escribir() throws SQLException {
+            if (pendientes.isEmpty()) {
+                return;
+            }
+            if (pstmt == null) {
+                pstmt = conn.prepareStatement(SQL_INSERTAR);
+            }
+            for (String[] registro : pendientes) {
+                pstmt.setLong(1, fecha);
+                pstmt.setString(2, usuario);
+                for (int i = 0; i < registro.length; i++) {
+                    pstmt.setString(i + 3, registro[i]);
+                }
+                if (pendientes.size() > 1) {
+                    pstmt.addBatch();
+                }
+            }
+            // Un solo registro (lo ms comn: el formulario) se escribe directo; el lote del driver cuesta ms
+            if (pendientes.size() > 1) {
+                pstmt.executeBatch();
+            } else {
+                pstmt.executeUpdate();
+            }
+            escritos += pendientes.size();
+            pendientes.clear();
+        }
+    }
+
+    /**
+     * Fila actual (JSON) de cada id indicado, en bloques "id IN (...)". Los ids que no existen no aparecen.
+     */
+    static Map<String, String> leer(Connection conn, Entidad entidad, List<String> ids) throws SQLException {
+        if (ids.size() == 1) {
+            return leer(conn, entidad, "id = ?", ids);
+        }
+        Map<String, String> filas = new HashMap<>(ids.size() * 2);
+        for (int desde = 0; desde < ids.size(); desde += DatabaseManager.IDS_POR_CONSULTA) {
+            List<String> bloque = ids.subList(desde, Math.min(ids.size(), desde + DatabaseManager.IDS_POR_CONSULTA));
+            filas.putAll(leer(conn, entidad, "id IN (" + DatabaseManager.marcadores(bloque.size()) + ")", bloque));
+        }
+        return filas;
+    }
+
+    /**
+     * Fila actual (JSON) por id de las filas que cumplen la condicin (p. ej. "almacen = ?").
+     */
+    static Map<String, String> leer(Connection conn, Entidad entidad, String condicion, List<String> parametros) throws SQLException {
+        Map<String, String> filas = new HashMap<>();
+        String sql = "SELECT id, " + entidad.json + " FROM " + entidad.tabla + " WHERE " + condicion;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < parametros.size(); i++) {
+                pstmt.setString(i + 1, parametros.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    filas.put(rs.getString(1), rs.getString(2));
+                }
+            }
+        }
+        return filas;
+    }
+
+    /**
+     * Registra como insertados, con una sola sentencia, los productos con rowid mayor que el indicado
+     * (importacin masiva, ver ImportadorProductosCSV). Va dentro de la transaccin de la importacin.
+     * @return Registros escritos.
+     */
+    static int registrarProductosInsertados(Connection conn, long ultimoRowidAnterior, long fecha, String usuario) throws SQLException {
+        String sql = "INSERT INTO bitacora_cambios (fecha, usuario, entidad, entidad_id, operacion, antes, despues) "
+                + "SELECT ?, ?, '" + Entidad.PRODUCTO.name() + "', id, '" + Operacion.INSERCION.name() + "', NULL, "
+                + Entidad.PRODUCTO.json + " FROM productos WHERE rowid > ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, fecha);
+            pstmt.setString(2, usuario);
+            pstmt.setLong(3, ultimoRowidAnterior);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    //                       CONSULTAS DEL HISTORIAL
+    // ------------------------------------------------------------------
+
+    /**
+     * Un registro de la bitcora.
+     */
+    public static final class Cambio {
+        public final long id;
+        public final long fecha;
+        public final String usuario;
+        public final Entidad entidad;
+        public final String entidadId;
+        public final Operacion operacion;
+        /** Fila antes del cambio en JSON, o null en una insercin. */
+        public final String antes;
+        /** Fila despus del cambio en JSON, o null en una eliminacin. */
+        public final String despues;
+
+        Cambio(long id, long fecha, String usuario, Entidad entidad, String entidadId, Operacion operacion,
+               String antes, String despues) {
+            this.id = id;
+            this.fecha = fecha;
+            this.usuario = usuario;
+            this.entidad = entidad;
+            this.entidadId = entidadId;
+            this.operacion = operacion;
+            this.antes = antes;
+            this.despues = despues;
+        }
+
+        /** Fecha en la hora de Sonora ("yyyy-MM-dd HH:mm:ss"). */
+        public String getFechaTexto() {
+            return RelojAuditoria.formatear(fecha);
+        }
+
+        @Override
+        public String toString() {
+            return getFechaTexto() + " " + usuario + " " + operacion + " " + entidad + " " + entidadId;
+        }
+    }
+
+    /**
+     * Historial de una entidad (entidadId no nulo), de un usuario o de todo, en [desde, hasta)
+     * (segundos desde la poca), del ms reciente al ms antiguo.
+     * Es un recorrido por rango de idx_bitacora_entidad, idx_bitacora_usuario o idx_bitacora_fecha.
+     * @param entidad Entidad de entidadId; si entidadId es null, filtra solo por tipo de entidad (puede ser null).
+     * @param entidadId ID del producto o almacn, o null.
+     * @param usuario Usuario que hizo los cambios, o null.
+     */
+    public static List<Cambio> obtener(Entidad entidad, String entidadId, String usuario, long desde, long hasta, int limite) throws SQLException {
+        if (entidadId != null && entidad == null) {
+            throw new IllegalArgumentException("Falta la entidad del ID " + entidadId);
+        }
+        StringBuilder sql = new StringBuilder("SELECT id, fecha, usuario, entidad, entidad_id, operacion, antes, despues "
+                + "FROM bitacora_cambios WHERE fecha >= ? AND fecha < ?");
+        List<Object> parametros = new ArrayList<>();
+        parametros.add(desde);
+        parametros.add(hasta);
+        if (entidad != null) {
+            sql.append(" AND entidad = ?");
+            parametros.add(entidad.name());
+        }
+        if (entidadId != null) {
+            sql.append(" AND entidad_id = ?");
+            parametros.add(entidadId);
+        }
+        if (usuario != null) {
+            sql.append(" AND usuario = ?");
+            parametros.add(usuario);
+        }
+        sql.append(" ORDER BY fecha DESC, id DESC LIMIT ?");
+        parametros.add(limite);
+
+        List<Cambio> cambios = new ArrayList<>();
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < parametros.size(); i++) {
+                pstmt.setObject(i + 1, parametros.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    cambios.add(new Cambio(rs.getLong(1), rs.getLong(2), rs.getString(3),
+                            Entidad.valueOf(rs.getString(4)), rs.getString(5), Operacion.valueOf(rs.getString(6)),
+                            rs.getString(7), rs.getString(8)));
+                }
+            }
+        }
+        return cambios;
+    }
+
+    /** Historial completo de un producto o almacn, del cambio ms reciente al ms antiguo. */
+    public static List<Cambio> obtenerHistorial(Entidad entidad, String entidadId, int limite) throws SQLException {
+        return obtener(entidad, entidadId, null, Long.MIN_VALUE, Long.MAX_VALUE, limite);
+    }
+}
@@ -0,0 +1,225 @@
+package mx.unison;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cach LRU de PreparedStatements compilados para UNA conexin fsica del pool.
+ * La llave es el texto SQL; como las consultas dinmicas generan un texto distinto
+ * por cada combinacin de filtros activos, cada "forma" de consulta se compila una sola vez.
+ * El llamador recibe un proxy: al cerrarlo, la sentencia se limpia y queda lista para reutilizarse.
+ */
+public class CacheSentencias {
+
+    // --- Contadores globales (todas las conexiones) ---
+    private static final AtomicLong ACIERTOS = new AtomicLong();
+    private static final AtomicLong FALLOS = new AtomicLong();
+    private static final AtomicLong DESALOJOS = new AtomicLong();
+
+    private final Connection conexionFisica;
+    private final Map<String, SentenciaCacheada> sentencias;
+
+    // Se enciende si alguna sentencia fue cancelada (sqlite3_interrupt). SQLite puede dejar la
+    // conexin marcada como interrumpida mientras tenga sentencias activas, as que el pool la descarta.
+    private volatile boolean interrumpida = false;
+
+    public CacheSentencias(Connection conexionFisica, int capacidad) {
+        this.conexionFisica = conexionFisica;
+        // accessOrder = true convierte el LinkedHashMap en una lista LRU
+        this.sentencias = new LinkedHashMap<String, SentenciaCacheada>(capacidad * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SentenciaCacheada> eldest) {
+                if (size() > capacidad) {
+                    DESALOJOS.incrementAndGet();
+                    eldest.getValue().desalojar();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Devuelve una sentencia preparada para el SQL indicado, reutilizando la compilada si existe.
+     * @param conexionLogica El proxy de conexin que el llamador tiene prestado (para getConnection()).
+     */
+    public PreparedStatement preparar(String sql, Connection conexionLogica) throws SQLException {
+        SentenciaCacheada cacheada = sentencias.get(sql);
+
+        if (cacheada != null && !cacheada.enUso) {
+            ACIERTOS.incrementAndGet();
+            return cacheada.prestar(conexionLogica);
+        }
+
+        FALLOS.incrementAndGet();
+        PreparedStatement real = conexionFisica.prepareStatement(sql);
+        if (cacheada != null) {
+            // La misma forma ya est en uso en esta conexin (consultas anidadas): sentencia temporal sin cach
+            return real;
+        }
+        cacheada = new SentenciaCacheada(sql, real);
+        sentencias.put(sql, cacheada);
+        return cacheada.prestar(conexionLogica);
+    }
+
+    /**
+     * Cierra todas las sentencias compiladas. Se llama cuando la conexin fsica se descarta.
+     */
+    public void cerrarTodas() {
+        for (SentenciaCacheada cacheada : sentencias.values()) {
+            cacheada.desalojar();
+        }
+        sentencias.clear();
+    }
+
+    /**
+     * Indica si alguna sentencia de esta conexin fue cancelada con Statement.cancel().
+     */
+    public boolean fueInterrumpida() {
+        return interrumpida;
+    }
+
+    // ------------------------------------------------------------------
+    //                       ESTADSTICAS
+    // ------------------------------------------------------------------
+
+    public static long getAciertos() {
+        return ACIERTOS.get();
+    }
+
+    public static long getFallos() {
+        return FALLOS.get();
+    }
+
+    public static String getEstadisticas() {
+        long aciertos = ACIERTOS.get();
+        long total = aciertos + FALLOS.get();
+        double tasa = total == 0 ? 0.0 : 100.0 * aciertos / total;
+        return String.format("CacheSentencias aciertos=%d fallos=%d desalojos=%d tasaAcierto=%.1f%%",
+                aciertos, FALLOS.get(), DESALOJOS.get(), tasa);
+    }
+
+    // ------------------------------------------------------------------
+    //                       SENTENCIA CACHEADA Y PROXY
+    // ------------------------------------------------------------------
+
+    /**
+     * Sentencia compilada que vive mientras la conexin fsica exista o hasta ser desalojada.
+     */
+    private class SentenciaCacheada {
+        final String sql;
+        final PreparedStatement real;
+        boolean enUso = false;
+        boolean desalojada = false;
+
+        SentenciaCacheada(String sql, PreparedStatement real) {
+            this.sql = sql;
+            this.real = real;
+        }
+
+        PreparedStatement prestar(Connection conexionLogica) {
+            this.enUso = true;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    new PrestamoSentencia(this, conexionLogica));
+        }
+
+        /**
+         * Libera la sentencia: la deja sin parmetros ni resultados abiertos.
+         * Si la ejecucin fall o fue interrumpida, el driver la deja inservible y se saca de la cach.
+         */
+        void liberar() throws SQLException {
+            enUso = false;
+            if (desalojada) {
+                real.close();
+                return;
+            }
+            try {
+                if (real.isClosed()) {
+                    throw new SQLException("La sentencia fue cerrada por el driver.");
+                }
+                ResultSet abierto = real.getResultSet();
+                if (abierto != null) {
+                    abierto.close();
+                }
+                real.clearParameters();
+                real.clearBatch();
+            } catch (SQLException e) {
+                sentencias.remove(sql, this);
+                desalojar();
+            }
+        }
+
+        /** Cierra la sentencia fsica; si alguien la est usando, se cierra al liberarla. */
+        void desalojar() {
+            desalojada = true;
+            if (!enUso) {
+                try {
+                    real.close();
+                } catch (SQLException e) {
+                    System.err.println("Error al cerrar sentencia desalojada: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Manejador del proxy entregado en cada prstamo: intercepta close() para liberar
+     * la sentencia en lugar de cerrarla. Un close() repetido no afecta prstamos posteriores.
+     */
+    private class PrestamoSentencia implements InvocationHandler {
+        private final SentenciaCacheada cacheada;
+        private final Connection conexionLogica;
+        private boolean cerrada = false;
+
+        PrestamoSentencia(SentenciaCacheada cacheada, Connection conexionLogica) {
+            this.cacheada = cacheada;
+            this.conexionLogica = conexionLogica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!cerrada) {
+                        cerrada = true;
+                        cacheada.liberar();
+                    }
+                    return null;
+                case "isClosed":
+                    return cerrada || cacheada.real.isClosed();
+                case "getConnection":
+                    return conexionLogica;
+                case "cancel":
+                    // Puede llamarse desde otro hilo mientras la consulta se ejecuta
+                    interrumpida = true;
+                    cacheada.real.cancel();
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (cerrada) {
+                throw new SQLException("La sentencia ya fue cerrada.");
+            }
+            try {
+                return method.invoke(cacheada.real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
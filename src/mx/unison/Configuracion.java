@@ -0,0 +1,71 @@
+package mx.unison;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Opciones de la aplicacin. Se leen (si existe) del archivo "inventario.properties" en el
+ * directorio de trabajo, junto a InventarioBD.db; una propiedad del sistema con la misma clave
+ * (-Dclave=valor) tiene prioridad sobre el archivo.
+ */
+public class Configuracion {
+
+    private static final String ARCHIVO = "inventario.properties";
+
+    // --- Claves conocidas ---
+    /** Activa el ndice columnar en memoria para filtrar productos (IndiceProductosColumnar). */
+    public static final String INDICE_COLUMNAR = "productos.indiceColumnar";
+    /** Costo (log2 de rondas) de BCrypt para las contraseas nuevas o rehechas (Seguridad). */
+    public static final String COSTO_BCRYPT = "seguridad.bcryptCosto";
+    /** Puerto y direccin en que escucha el modo servidor (ServidorApi). */
+    public static final String SERVIDOR_PUERTO = "servidor.puerto";
+    public static final String SERVIDOR_DIRECCION = "servidor.direccion";
+    /** Token que el modo servidor exige en "Authorization: Bearer ..." (sin l solo escucha en localhost). */
+    public static final String SERVIDOR_TOKEN = "servidor.token";
+    /** Usuario que el modo servidor registra en la auditora de los cambios. */
+    public static final String SERVIDOR_USUARIO = "servidor.usuario";
+    /** Archivo de la base de datos SQLite (por defecto InventarioBD.db; las pruebas usan uno temporal). */
+    public static final String BASE_DATOS = "baseDatos.archivo";
+
+    private static final Properties PROPIEDADES = new Properties();
+
+    static {
+        Path archivo = Paths.get(ARCHIVO);
+        if (Files.isRegularFile(archivo)) {
+            try (InputStream entrada = Files.newInputStream(archivo)) {
+                PROPIEDADES.load(entrada);
+                System.out.println("DEBUG: Configuracin cargada de " + archivo.toAbsolutePath());
+            } catch (IOException e) {
+                System.err.println("ADVERTENCIA: No se pudo leer " + ARCHIVO + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Constructor privado para evitar instanciacin
+    private Configuracion() {}
+
+    public static String getTexto(String clave, String porDefecto) {
+        String valor = System.getProperty(clave);
+        if (valor == null) {
+            valor = PROPIEDADES.getProperty(clave);
+        }
+        return valor == null || valor.trim().isEmpty() ? porDefecto : valor.trim();
+    }
+
+    public static boolean getBooleano(String clave, boolean porDefecto) {
+        return Boolean.parseBoolean(getTexto(clave, String.valueOf(porDefecto)));
+    }
+
+    public static int getEntero(String clave, int porDefecto) {
+        try {
+            return Integer.parseInt(getTexto(clave, String.valueOf(porDefecto)));
+        } catch (NumberFormatException e) {
+            System.err.println("ADVERTENCIA: Valor invlido para " + clave + ", se usa " + porDefecto);
+            return porDefecto;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package mx.unison;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Permite cancelar desde el hilo de JavaFX una consulta que se est ejecutando en segundo plano.
+ * DatabaseManager registra aqu la sentencia mientras la ejecuta; cancelar() la interrumpe
+ * (Statement.cancel -> sqlite3_interrupt) y marca la consulta para que su resultado se ignore.
+ */
+public class ConsultaCancelable {
+
+    private Statement sentenciaActual;
+    private volatile boolean cancelada = false;
+
+    /**
+     * Registra la sentencia que est por ejecutarse. Si la consulta ya fue cancelada, no se ejecuta.
+     */
+    public synchronized void registrar(Statement sentencia) throws SQLException {
+        if (cancelada) {
+            throw new SQLException("La consulta fue cancelada antes de ejecutarse.");
+        }
+        this.sentenciaActual = sentencia;
+    }
+
+    /**
+     * Quita la sentencia registrada. Debe llamarse antes de cerrarla para que un cancelar()
+     * tardo no interrumpa a otra consulta que reutilice la misma conexin del pool.
+     */
+    public synchronized void liberar() {
+        this.sentenciaActual = null;
+    }
+
+    /**
+     * Cancela la consulta: interrumpe la sentencia en ejecucin (si hay una) y evita las siguientes.
+     */
+    public synchronized void cancelar() {
+        cancelada = true;
+        if (sentenciaActual != null) {
+            try {
+                sentenciaActual.cancel();
+            } catch (SQLException e) {
+                System.err.println("No se pudo interrumpir la consulta: " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean isCancelada() {
+        return cancelada;
+    }
+}
@@ -1,23 +1,30 @@
 package mx.unison;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import java.sql.*;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class DatabaseManager {
     // CAMBIO IMPORTANTE: Se eliminaron los caracteres invisibles de "espacio sin ruptura" (\u00a0)
     // de todo el archivo. Esto corrigi el "error de smbolo" de compilacin.
 
-    private static final String URL_CONEXION = "jdbc:sqlite:InventarioBD.db";
+    private static final String URL_CONEXION = "jdbc:sqlite:" + Configuracion.getTexto(Configuracion.BASE_DATOS, "InventarioBD.db");
+
+    // Pool de conexiones reutilizables: evita abrir el archivo y re-leer el esquema en cada consulta.
+    // SQLite solo admite un escritor a la vez, por lo que un pool pequeo es suficiente.
+    static final int MAX_CONEXIONES_POOL = 4;
+    private static final long MS_ESPERA_CONEXION = 10_000;
+    private static final PoolConexiones POOL = new PoolConexiones(URL_CONEXION, MAX_CONEXIONES_POOL, MS_ESPERA_CONEXION);
 
     // Mapeo de IDs de Almacn a Nombres para la poblacin inicial
     private static final Map<String, String> ALMACENES_INICIALES = Map.of(
@@ -28,45 +35,63 @@ public class DatabaseManager {
         "5", "Nogales"
     );
 
+    // ndices que createTables() mantiene. Los de texto usan COLLATE NOCASE para que
+    // las bsquedas sin distincin de maysculas (nombre, departamento) puedan usarlos.
+    private static final String[] INDICES = {
+        "CREATE INDEX IF NOT EXISTS idx_productos_nombre ON productos(nombre COLLATE NOCASE)",
+        "CREATE INDEX IF NOT EXISTS idx_productos_departamento ON productos(departamento COLLATE NOCASE)",
+        "CREATE INDEX IF NOT EXISTS idx_productos_almacen ON productos(almacen)",
+        "CREATE INDEX IF NOT EXISTS idx_productos_precio ON productos(precio)",
+        "CREATE INDEX IF NOT EXISTS idx_productos_cantidad ON productos(cantidad)",
+        "CREATE INDEX IF NOT EXISTS idx_productos_fecha_mod ON productos(fecha_hora_ultima_modificacion)",
+        // Orden de la tabla por fecha de creacin o por usuario (ver OrdenProductos)
+        "CREATE INDEX IF NOT EXISTS idx_productos_fecha_creacion ON productos(fecha_hora_creacion)",
+        "CREATE INDEX IF NOT EXISTS idx_productos_usuario ON productos(ultimo_usuario_en_modificar COLLATE NOCASE)",
+        "CREATE INDEX IF NOT EXISTS idx_productos_usuario_fecha_mod ON productos(ultimo_usuario_en_modificar, fecha_hora_ultima_modificacion)",
+        // Orden por id numrico (el id es TEXT; ver OrdenProductos.ID_NUMERICO)
+        "CREATE INDEX IF NOT EXISTS idx_productos_id_numerico ON productos(CAST(id AS INTEGER))",
+        "CREATE INDEX IF NOT EXISTS idx_almacenes_nombre ON almacenes(nombre COLLATE NOCASE)",
+        "CREATE INDEX IF NOT EXISTS idx_almacenes_fecha_mod ON almacenes(fecha_hora_ultima_modificacion)",
+        "CREATE INDEX IF NOT EXISTS idx_almacenes_usuario_fecha_mod ON almacenes(ultimo_usuario_en_modificar, fecha_hora_ultima_modificacion)"
+    };
+
     // ------------------------------------------------------------------
     //                       MTODOS DE UTILIDAD
     // ------------------------------------------------------------------
 
     /**
-     * Genera la fecha y hora actual formateada en la zona horaria de Sonora/Arizona (MST, GMT-7).
-     * (Fix Issue 3)
+     * Reserva un bloque de 'cantidad' IDs consecutivos de la secuencia indicada (tabla 'secuencias')
+     * y devuelve el primero. Debe llamarse dentro de la transaccin que inserta las filas:
+     * el UPDATE toma el candado de escritura, as que dos inserciones concurrentes nunca reciben
+     * el mismo ID, y si la transaccin se revierte el bloque vuelve a quedar libre.
      */
-    private static String getLocalizedNow() {
-        // Zona Horaria de Hermosillo, Sonora, que es la misma que Phoenix, Arizona (MST, GMT-7) 
-        // y no usa DST.
-        ZoneId sonoranZone = ZoneId.of("America/Phoenix");
-        LocalDateTime now = LocalDateTime.now(sonoranZone);
-        
-        // Formato estndar para SQLite
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        return now.format(formatter);
+    static long reservarIds(Connection conn, String secuencia, int cantidad) throws SQLException {
+        String sql = "UPDATE secuencias SET valor = valor + ? WHERE nombre = ? RETURNING valor";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, cantidad);
+            pstmt.setString(2, secuencia);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("No existe la secuencia: " + secuencia);
+                }
+                return rs.getLong(1) - cantidad + 1;
+            }
+        }
     }
-    
+
     /**
-     * Calcula el siguiente ID consecutivo disponible para la tabla 'almacenes'.
-     * Necesario porque la tabla usa TEXT PRIMARY KEY y no auto-increment.
+     * Devuelve a la secuencia los ltimos 'cantidad' IDs de un bloque reservado que no se usaron.
+     * Solo es correcto en la misma transaccin que los reserv y si nadie reserv despus
+     * (la transaccin ya tiene el candado de escritura, p. ej. la importacin masiva).
      */
-    private static int getNextAlmacenId() throws SQLException {
-        // MAX(CAST(id AS INTEGER)) busca el ID numrico ms alto y lo incrementa en 1.
-        String sql = "SELECT MAX(CAST(id AS INTEGER)) FROM almacenes";
-        int maxId = 0;
-        
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            
-            if (rs.next()) {
-                maxId = rs.getInt(1); 
-            }
+    static void devolverIds(Connection conn, String secuencia, int cantidad) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE secuencias SET valor = valor - ? WHERE nombre = ?")) {
+            pstmt.setInt(1, cantidad);
+            pstmt.setString(2, secuencia);
+            pstmt.executeUpdate();
         }
-        return maxId + 1;
     }
-    
+
     // ------------------------------------------------------------------
     //                       MTODOS DE INICIALIZACIN
     // ------------------------------------------------------------------
@@ -76,29 +101,51 @@ public class DatabaseManager {
      */
     public static void initialize() {
         try {
-            Class.forName("org.sqlite.JDBC"); 
-            createTables();
-            populateAlmacenes(); 
-        } catch (ClassNotFoundException e) {
-            System.err.println("Error: Driver de SQLite no encontrado.");
-            e.printStackTrace();
+            inicializarEsquema();
         } catch (SQLException e) {
             System.err.println("Error al inicializar o crear tablas en la base de datos: " + e.getMessage());
             e.printStackTrace();
         }
     }
+
+    /**
+     * Igual que initialize(), pero el error llega a quien llama. La usa Arranque, que la ejecuta en
+     * segundo plano y detiene el inicio de sesin si falla.
+     */
+    static void inicializarEsquema() throws SQLException {
+        try {
+            Class.forName("org.sqlite.JDBC"); 
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("Driver de SQLite no encontrado.", e);
+        }
+        createTables();
+        populateAlmacenes(); 
+        crearSecuencias();
+        // ndice columnar opcional para filtrar productos en memoria (se carga en segundo plano)
+        IndiceProductosColumnar.iniciar();
+    }
     
     /**
      * Crea las tablas 'almacenes' y 'productos' si no existen.
      * Importante: Se actualiza 'almacenes' para incluir campos de auditora.
      */
     private static void createTables() throws SQLException {
+        try (Connection conn = getConnection()) {
+            crearTablas(conn);
+        }
+    }
+
+    /**
+     * Crea (o migra) las tablas, ndices y triggers en la conexin dada. Separado de createTables()
+     * para que las pruebas lo ejecuten sobre una base temporal sin pasar por el pool.
+     */
+    static void crearTablas(Connection conn) throws SQLException {
         // 1. Crear tabla de almacenes con campos de auditora (NUEVO)
         String sqlAlmacenes = "CREATE TABLE IF NOT EXISTS almacenes ("
                 + "id TEXT PRIMARY KEY,"
                 + "nombre TEXT NOT NULL UNIQUE,"
-                + "fecha_hora_creacion TEXT NOT NULL DEFAULT '1900-01-01 00:00:00',"
-                + "fecha_hora_ultima_modificacion TEXT NOT NULL DEFAULT '1900-01-01 00:00:00',"
+                + "fecha_hora_creacion INTEGER NOT NULL DEFAULT 0," // Segundos desde la poca (RelojAuditoria)
+                + "fecha_hora_ultima_modificacion INTEGER NOT NULL DEFAULT 0,"
                 + "ultimo_usuario_en_modificar TEXT DEFAULT 'system'"
                 + ");";
         
@@ -110,24 +157,204 @@ public class DatabaseManager {
                 + "cantidad INTEGER NOT NULL,"
                 + "departamento TEXT NOT NULL,"
                 + "almacen TEXT," // Almacena el ID del almacn (1, 2, 3, etc.)
-                + "fecha_hora_creacion TEXT NOT NULL,"
-                + "fecha_hora_ultima_modificacion TEXT NOT NULL,"
+                + "fecha_hora_creacion INTEGER NOT NULL DEFAULT 0," // Segundos desde la poca (RelojAuditoria)
+                + "fecha_hora_ultima_modificacion INTEGER NOT NULL DEFAULT 0,"
                 + "ultimo_usuario_en_modificar TEXT"
                 + ");";
         
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
+        try (Statement stmt = conn.createStatement()) {
             stmt.execute(sqlAlmacenes);
             stmt.execute(sqlProductos);
             System.out.println("DEBUG: Tablas 'almacenes' y 'productos' verificadas/creadas.");
+
+            // Bases creadas con versiones anteriores: fechas de texto -> INTEGER (antes de crear ndices y triggers)
+            migrarEsquema(conn);
+
+            // 3. ndices secundarios para los filtros de las pantallas de Productos y Almacenes
+            for (String sqlIndice : INDICES) {
+                stmt.execute(sqlIndice);
+            }
+            // Actualiza las estadsticas del planificador solo si hace falta (barato si ya estn al da)
+            stmt.execute("PRAGMA optimize");
+            System.out.println("DEBUG: ndices verificados/creados (" + INDICES.length + ").");
+
+            // 4. ndice de texto completo (FTS5) para la bsqueda por nombre
+            crearIndiceTextoCompleto(stmt);
+
+            // 5. Totales por almacn y departamento para el tablero de Inicio (mantenidos por triggers)
+            ResumenInventario.crear(stmt);
+
+            // 6. Bitcora de cambios (historial de altas, modificaciones y bajas)
+            BitacoraCambios.crear(stmt);
         }
     }
 
+    // Versin del esquema (PRAGMA user_version). 1: fechas de auditora como INTEGER (segundos desde la poca).
+    private static final int VERSION_ESQUEMA = 1;
+    private static final String[] COLUMNAS_FECHA = {"fecha_hora_creacion", "fecha_hora_ultima_modificacion"};
+
+    /**
+     * Lleva una base de datos de una versin anterior a VERSION_ESQUEMA, en una sola transaccin.
+     * SQLite no permite cambiar el tipo de una columna: cada tabla cuyas fechas todava se declaran TEXT
+     * se reconstruye (misma definicin con las fechas como INTEGER, mismos rowid para no tocar productos_fts)
+     * convirtiendo en SQL el texto "yyyy-MM-dd HH:mm:ss" en hora de Sonora a segundos desde la poca.
+     * Los ndices y triggers de la tabla se borran con ella y createTables los vuelve a crear despus.
+     */
+    private static void migrarEsquema(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            int version;
+            try (ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+                version = rs.next() ? rs.getInt(1) : 0;
+            }
+            if (version >= VERSION_ESQUEMA) {
+                return;
+            }
+            long inicio = System.nanoTime();
+            conn.setAutoCommit(false);
+            try {
+                migrarFechasAEpoch(stmt, "almacenes");
+                migrarFechasAEpoch(stmt, "productos");
+                stmt.execute("PRAGMA user_version = " + VERSION_ESQUEMA);
+                conn.commit();
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            System.out.println("DEBUG: Esquema migrado de la versin " + version + " a la " + VERSION_ESQUEMA
+                    + " en " + (System.nanoTime() - inicio) / 1_000_000 + " ms.");
+        }
+    }
+
+    private static void migrarFechasAEpoch(Statement stmt, String tabla) throws SQLException {
+        String definicion;
+        try (ResultSet rs = stmt.executeQuery("SELECT sql FROM sqlite_master WHERE type = 'table' AND name = '" + tabla + "'")) {
+            definicion = rs.next() ? rs.getString(1) : null;
+        }
+        List<String> columnas = new ArrayList<>();
+        List<String> fechasObligatorias = new ArrayList<>(); // Fechas declaradas NOT NULL en la tabla original
+        boolean fechasDeTexto = false;
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + tabla + ")")) {
+            while (rs.next()) {
+                String columna = rs.getString("name");
+                columnas.add(columna);
+                if (Arrays.asList(COLUMNAS_FECHA).contains(columna) && !"INTEGER".equalsIgnoreCase(rs.getString("type"))) {
+                    fechasDeTexto = true;
+                    if (rs.getInt("notnull") != 0) {
+                        fechasObligatorias.add(columna);
+                    }
+                }
+            }
+        }
+        if (definicion == null || !fechasDeTexto) {
+            return;
+        }
+
+        // Una fecha que no se puede interpretar (NULL, 'N/A', ...) queda NULL, que la aplicacin muestra como
+        // "sin fecha" (RelojAuditoria.SIN_FECHA). Donde la columna ya era NOT NULL no hay dnde ponerla:
+        // se detiene la migracin con un mensaje claro (se revierte y la base queda como estaba).
+        for (String columna : fechasObligatorias) {
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*), MIN(id) FROM " + tabla + " WHERE " + fechaAEpoch(columna) + " IS NULL")) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    throw new SQLException("No se puede migrar '" + tabla + "': " + rs.getInt(1) + " filas tienen en " + columna
+                            + " (NOT NULL) una fecha que no es 'yyyy-MM-dd HH:mm:ss' (por ejemplo, id " + rs.getString(2)
+                            + "). Corrjalas y vuelva a abrir la aplicacin.");
+                }
+            }
+        }
+
+        // Misma definicin con otro nombre y las fechas como INTEGER, con la misma nulabilidad:
+        // las NOT NULL quedan como en createTables() (NOT NULL DEFAULT 0), las anulables sin DEFAULT
+        String nueva = definicion.replaceFirst("(?i)^CREATE TABLE\\s+(\"" + tabla + "\"|" + tabla + ")", "CREATE TABLE " + tabla + "_migracion");
+        for (String fecha : COLUMNAS_FECHA) {
+            nueva = Pattern.compile("(?i)(\"?" + fecha + "\"?\\s+)TEXT(\\s+NOT NULL)?(\\s+DEFAULT\\s+('[^']*'|\\w+))?").matcher(nueva)
+                    .replaceAll(m -> Matcher.quoteReplacement(m.group(1) + (m.group(2) != null ? "INTEGER NOT NULL DEFAULT 0" : "INTEGER")));
+        }
+        stmt.execute(nueva);
+
+        StringBuilder destino = new StringBuilder("rowid");
+        StringBuilder origen = new StringBuilder("rowid");
+        for (String columna : columnas) {
+            destino.append(", \"").append(columna).append('"');
+            origen.append(", ").append(Arrays.asList(COLUMNAS_FECHA).contains(columna) ? fechaAEpoch(columna) : "\"" + columna + "\"");
+        }
+        int filas = stmt.executeUpdate("INSERT INTO " + tabla + "_migracion (" + destino + ") SELECT " + origen + " FROM " + tabla);
+        stmt.execute("DROP TABLE " + tabla);
+        stmt.execute("ALTER TABLE " + tabla + "_migracion RENAME TO " + tabla);
+        System.out.println("DEBUG: Fechas de '" + tabla + "' convertidas a INTEGER (" + filas + " filas).");
+    }
+
+    /**
+     * Expresin SQL que convierte la fecha de texto "yyyy-MM-dd HH:mm:ss" (hora de Sonora) de la columna
+     * a segundos desde la poca; NULL si no se puede interpretar. Sonora no tiene horario de verano:
+     * basta un desfase fijo.
+     */
+    private static String fechaAEpoch(String columna) {
+        return "CASE WHEN typeof(\"" + columna + "\") = 'integer' THEN \"" + columna + "\" ELSE CAST(strftime('%s', \""
+                + columna + "\") AS INTEGER) + " + RelojAuditoria.desfaseSegundos() + " END";
+    }
+
+    // Trigger que indexa cada producto insertado. La importacin masiva lo quita durante su
+    // transaccin e indexa todas las filas nuevas de una vez (ImportadorProductosCSV).
+    static final String SQL_TRIGGER_FTS_INSERCION = "CREATE TRIGGER IF NOT EXISTS productos_fts_ai AFTER INSERT ON productos BEGIN "
+            + "INSERT INTO productos_fts(rowid, nombre, departamento) VALUES (new.rowid, new.nombre, new.departamento); "
+            + "END";
+
+    /**
+     * Crea la tabla FTS5 'productos_fts' (contenido externo: no duplica el texto, lo lee de 'productos')
+     * y los triggers que la mantienen sincronizada. Si la tabla no exista, se construye desde cero.
+     */
+    private static void crearIndiceTextoCompleto(Statement stmt) throws SQLException {
+        boolean existia;
+        try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'productos_fts'")) {
+            existia = rs.next();
+        }
+
+        // remove_diacritics: "computacion" encuentra "Computacin"; prefix: acelera las bsquedas "abc*"
+        stmt.execute("CREATE VIRTUAL TABLE IF NOT EXISTS productos_fts USING fts5("
+                + "nombre, departamento, content='productos', "
+                + "tokenize='unicode61 remove_diacritics 2', prefix='2 3')");
+
+        stmt.execute(SQL_TRIGGER_FTS_INSERCION);
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS productos_fts_ad AFTER DELETE ON productos BEGIN "
+                + "INSERT INTO productos_fts(productos_fts, rowid, nombre, departamento) VALUES ('delete', old.rowid, old.nombre, old.departamento); "
+                + "END");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS productos_fts_au AFTER UPDATE OF nombre, departamento ON productos BEGIN "
+                + "INSERT INTO productos_fts(productos_fts, rowid, nombre, departamento) VALUES ('delete', old.rowid, old.nombre, old.departamento); "
+                + "INSERT INTO productos_fts(rowid, nombre, departamento) VALUES (new.rowid, new.nombre, new.departamento); "
+                + "END");
+
+        if (!existia) {
+            stmt.execute("INSERT INTO productos_fts(productos_fts) VALUES ('rebuild')");
+            System.out.println("DEBUG: ndice de texto completo 'productos_fts' construido.");
+        }
+    }
+
+    /**
+     * Convierte lo que el usuario escribi en una consulta FTS5 sobre la columna nombre.
+     * Cada palabra se busca como prefijo y todas deben aparecer: "fil pla" -> {nombre} : ("fil"* "pla"*).
+     * @return La expresin MATCH, o null si el texto no contiene ninguna palabra buscable.
+     */
+    static String construirConsultaTextoCompleto(String termino) {
+        if (termino == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        // Las comillas encierran cada palabra para que FTS5 no interprete operadores (AND, OR, NEAR, -)
+        for (String palabra : termino.split("[^\\p{L}\\p{N}]+")) {
+            if (!palabra.isEmpty()) {
+                sb.append(sb.length() == 0 ? "" : " ").append('"').append(palabra).append("\"*");
+            }
+        }
+        return sb.length() == 0 ? null : "{nombre} : (" + sb + ")";
+    }
+
     /**
      * Inserta los almacenes iniciales si no existen.
      */
     private static void populateAlmacenes() throws SQLException {
-        String localizedNow = getLocalizedNow();
+        long localizedNow = RelojAuditoria.ahora();
         String sql = "INSERT OR IGNORE INTO almacenes (id, nombre, fecha_hora_creacion, fecha_hora_ultima_modificacion, ultimo_usuario_en_modificar) VALUES (?, ?, ?, ?, ?)";
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -135,23 +362,55 @@ public class DatabaseManager {
             for (Map.Entry<String, String> entry : ALMACENES_INICIALES.entrySet()) {
                 pstmt.setString(1, entry.getKey());
                 pstmt.setString(2, entry.getValue());
-                pstmt.setString(3, localizedNow);
-                pstmt.setString(4, localizedNow);
+                pstmt.setLong(3, localizedNow);
+                pstmt.setLong(4, localizedNow);
                 pstmt.setString(5, "system_init");
                 pstmt.executeUpdate();
             }
             System.out.println("DEBUG: Almacenes iniciales poblados (si no existan).");
         }
     }
+
+    // Tablas cuyo ID se reserva de 'secuencias' (reservarIds) dentro de la transaccin que inserta
+    private static final String[] TABLAS_CON_SECUENCIA = {"almacenes", "productos"};
+
+    /**
+     * Crea la tabla 'secuencias' (un contador por tabla) y la sincroniza con los IDs existentes.
+     * Reemplaza al antiguo SELECT MAX(CAST(id AS INTEGER)), que recorra toda la tabla en cada insercin
+     * y poda dar el mismo ID a dos inserciones simultneas. Los IDs de almacenes eliminados no se reutilizan.
+     */
+    private static void crearSecuencias() throws SQLException {
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS secuencias (nombre TEXT PRIMARY KEY, valor INTEGER NOT NULL)");
+            // Productos guardados sin id por versiones anteriores (la llave TEXT no autoincrementa):
+            // reciben uno nuevo por encima del ms alto; el rowid los mantiene distintos entre s
+            int sinId = stmt.executeUpdate("UPDATE productos SET id = CAST((SELECT IFNULL(MAX(CAST(id AS INTEGER)), 0) FROM productos) + rowid AS TEXT) "
+                    + "WHERE id IS NULL");
+            if (sinId > 0) {
+                System.out.println("DEBUG: " + sinId + " productos sin ID recibieron uno nuevo.");
+            }
+            // Nunca por debajo del ID ms alto (p. ej. almacenes iniciales o filas insertadas a mano)
+            for (String tabla : TABLAS_CON_SECUENCIA) {
+                stmt.execute("INSERT INTO secuencias (nombre, valor) "
+                        + "SELECT '" + tabla + "', IFNULL(MAX(CAST(id AS INTEGER)), 0) FROM " + tabla + " WHERE 1 "
+                        + "ON CONFLICT(nombre) DO UPDATE SET valor = MAX(valor, excluded.valor)");
+            }
+        }
+    }
     
     // ------------------------------------------------------------------
     //                       MTODOS DE CONEXIN
     // ------------------------------------------------------------------
 
+    /**
+     * Presta una conexin del pool. Al cerrarla (try-with-resources) regresa al pool
+     * en lugar de cerrarse fsicamente.
+     */
     public static Connection getConnection() {
         Connection conn = null;
         try {
-            conn = DriverManager.getConnection(URL_CONEXION);
+            conn = POOL.obtenerConexion();
         } catch (SQLException e) {
             System.err.println("Error al conectar a la base de datos en: " + URL_CONEXION);
             e.printStackTrace();
@@ -159,6 +418,45 @@ public class DatabaseManager {
         return conn;
     }
 
+    /**
+     * Devuelve un resumen de las estadsticas del pool (activas, libres, tiempos de espera).
+     */
+    public static String getEstadisticasPool() {
+        return POOL.getEstadisticas();
+    }
+
+    /**
+     * Devuelve los contadores de aciertos/fallos de la cach de sentencias preparadas.
+     */
+    public static String getEstadisticasSentencias() {
+        return CacheSentencias.getEstadisticas();
+    }
+
+    /**
+     * Devuelve el tamao y el ahorro de los diccionarios de cadenas repetidas de los productos.
+     */
+    public static String getEstadisticasDiccionarios() {
+        long total = DICC_DEPARTAMENTOS.getBytesAhorrados() + DICC_ALMACENES.getBytesAhorrados() + DICC_USUARIOS.getBytesAhorrados();
+        return "Diccionarios [" + DICC_DEPARTAMENTOS.getEstadisticas() + "; " + DICC_ALMACENES.getEstadisticas() + "; "
+                + DICC_USUARIOS.getEstadisticas() + "] ahorro total=" + total / 1024 + " KB";
+    }
+
+    /**
+     * Devuelve los aciertos, recargas e invalidaciones de la cach de almacenes (AlmacenUtils).
+     */
+    public static String getEstadisticasAlmacenes() {
+        return AlmacenUtils.getEstadisticas();
+    }
+
+    /**
+     * Cierra las conexiones fsicas del pool. Se llama al terminar la aplicacin.
+     */
+    public static void cerrarPool() {
+        System.out.println("DEBUG: " + getEstadisticasAlmacenes());
+        System.out.println("DEBUG: " + ServicioAutenticacion.getEstadisticas());
+        POOL.cerrar();
+    }
+
     public static void closeConnection(Connection conn) {
         if (conn != null) {
             try {
@@ -175,63 +473,180 @@ public class DatabaseManager {
 
     /**
      * Inserta un nuevo almacn, asignando automticamente el siguiente ID y campos de auditora.
+     * La reserva del ID y la insercin van en la misma transaccin.
+     * @return El ID asignado.
      */
-    public static void insertarAlmacen(String nombre, String usuarioActual) throws SQLException {
-        int nextId = getNextAlmacenId();
-        String localizedNow = getLocalizedNow();
-        String sql = "INSERT INTO almacenes (id, nombre, fecha_hora_creacion, fecha_hora_ultima_modificacion, ultimo_usuario_en_modificar) VALUES (?, ?, ?, ?, ?)";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, String.valueOf(nextId)); // El ID debe ser un String
-            pstmt.setString(2, nombre);
-            pstmt.setString(3, localizedNow); // Creacin
-            pstmt.setString(4, localizedNow); // Modificacin
-            pstmt.setString(5, usuarioActual);
-            pstmt.executeUpdate();
-            System.out.println("DEBUG: Almacn '" + nombre + "' (ID: " + nextId + ") insertado por: " + usuarioActual);
+    public static String insertarAlmacen(String nombre, String usuarioActual) throws SQLException {
+        return insertarAlmacenes(Collections.singletonList(nombre), usuarioActual).get(0);
+    }
+
+    /**
+     * Inserta varios almacenes en una sola transaccin, reservando un bloque de IDs consecutivos.
+     * Si alguno falla no se inserta ninguno. Cada alta queda en la bitcora de cambios.
+     * @return Los IDs asignados, en el mismo orden que los nombres.
+     */
+    public static List<String> insertarAlmacenes(List<String> nombres, String usuarioActual) throws SQLException {
+        if (nombres.isEmpty()) {
+            return Collections.emptyList();
         }
+        long localizedNow = RelojAuditoria.ahora();
+        String sql = "INSERT INTO almacenes (id, nombre, fecha_hora_creacion, fecha_hora_ultima_modificacion, ultimo_usuario_en_modificar) VALUES (?, ?, ?, ?, ?)"
+                + BitacoraCambios.Entidad.ALMACEN.sqlRetorno();
+
+        List<String> ids = enTransaccion(localizedNow, usuarioActual, (conn, bitacora) -> {
+            long primerId = reservarIds(conn, "almacenes", nombres.size());
+            List<String> asignados = new ArrayList<>(nombres.size());
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < nombres.size(); i++) {
+                    String id = String.valueOf(primerId + i);
+                    pstmt.setString(1, id); // El ID debe ser un String
+                    pstmt.setString(2, nombres.get(i));
+                    pstmt.setLong(3, localizedNow); // Creacin
+                    pstmt.setLong(4, localizedNow); // Modificacin
+                    pstmt.setString(5, usuarioActual);
+                    try (ResultSet rs = pstmt.executeQuery()) { // RETURNING: la fila insertada para la bitcora
+                        bitacora.registrarRetorno(BitacoraCambios.Entidad.ALMACEN, BitacoraCambios.Operacion.INSERCION, null, rs);
+                    }
+                    asignados.add(id);
+                }
+            }
+            return asignados;
+        });
+
+        AlmacenUtils.invalidar();
+        for (int i = 0; i < ids.size(); i++) {
+            IndiceProductosColumnar.ponerAlmacen(ids.get(i), nombres.get(i));
+            System.out.println("DEBUG: Almacn '" + nombres.get(i) + "' (ID: " + ids.get(i) + ") insertado por: " + usuarioActual);
+        }
+        return ids;
     }
 
     /**
      * Actualiza el nombre de un almacn y sus campos de auditora.
+     * El nombre anterior y el nuevo quedan en la bitcora de cambios, en la misma transaccin.
      */
     public static void actualizarAlmacen(int id, String nombre, String usuarioActual) throws SQLException {
-        String localizedNow = getLocalizedNow();
-        String sql = "UPDATE almacenes SET nombre = ?, fecha_hora_ultima_modificacion = ?, ultimo_usuario_en_modificar = ? WHERE id = ?";
-        
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, nombre);
-            pstmt.setString(2, localizedNow);
-            pstmt.setString(3, usuarioActual);
-            pstmt.setString(4, String.valueOf(id)); // El ID es Integer en el controller, String en la DB
-            
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new SQLException("La actualizacin del almacn fall, ID no encontrado: " + id);
+        long localizedNow = RelojAuditoria.ahora();
+        String sql = "UPDATE almacenes SET nombre = ?, fecha_hora_ultima_modificacion = ?, ultimo_usuario_en_modificar = ? WHERE id = ?"
+                + BitacoraCambios.Entidad.ALMACEN.sqlRetorno();
+        String idTexto = String.valueOf(id); // El ID es Integer en el controller, String en la DB
+
+        enTransaccion(localizedNow, usuarioActual, (conn, bitacora) -> {
+            Map<String, String> antes = BitacoraCambios.leer(conn, BitacoraCambios.Entidad.ALMACEN, Collections.singletonList(idTexto));
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, nombre);
+                pstmt.setLong(2, localizedNow);
+                pstmt.setString(3, usuarioActual);
+                pstmt.setString(4, idTexto);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (bitacora.registrarRetorno(BitacoraCambios.Entidad.ALMACEN, BitacoraCambios.Operacion.ACTUALIZACION, antes, rs).isEmpty()) {
+                        throw new SQLException("La actualizacin del almacn fall, ID no encontrado: " + id);
+                    }
+                }
             }
-            System.out.println("DEBUG: Almacn ID " + id + " actualizado por: " + usuarioActual);
-        }
+            return null;
+        });
+        AlmacenUtils.invalidar();
+        IndiceProductosColumnar.ponerAlmacen(idTexto, nombre);
+        System.out.println("DEBUG: Almacn ID " + id + " actualizado por: " + usuarioActual);
     }
     
     /**
-     * Elimina un almacn por su ID.
+     * Elimina un almacn por su ID junto con TODOS sus productos, en una sola transaccin.
+     * @return El nmero de productos eliminados.
      */
-    public static void eliminarAlmacen(String id) throws SQLException {
-        String sql = "DELETE FROM almacenes WHERE id = ?";
-        
+    public static int eliminarAlmacen(String id) throws SQLException {
+        return eliminarAlmacen(id, null);
+    }
+
+    /**
+     * Elimina un almacn por su ID pasando antes todos sus productos a otro almacn, en una sola transaccin.
+     * @return El nmero de productos reasignados.
+     */
+    public static int eliminarAlmacenReasignando(String id, String idDestino) throws SQLException {
+        if (idDestino == null || idDestino.equals(id)) {
+            throw new SQLException("Debe elegir un almacn destino distinto del que se elimina.");
+        }
+        return eliminarAlmacen(id, idDestino);
+    }
+
+    /**
+     * El esquema no tiene llave fornea productos.almacen -> almacenes.id, as que la cascada se hace aqu:
+     * una sola sentencia sobre el conjunto de productos del almacn (usa idx_productos_almacen)
+     * y el borrado del almacn, en la misma transaccin. Cada producto eliminado o reasignado y el
+     * almacn quedan en la bitcora de cambios.
+     */
+    private static int eliminarAlmacen(String id, String idDestino) throws SQLException {
+        long ahora = RelojAuditoria.ahora();
+        String usuario = SessionContext.getCurrentUserName();
+
+        int productosAfectados = enTransaccion(ahora, usuario, (conn, bitacora) -> {
+            int afectados;
+            if (idDestino == null) {
+                try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM productos WHERE almacen = ?"
+                        + BitacoraCambios.Entidad.PRODUCTO.sqlRetorno())) {
+                    pstmt.setString(1, id);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        afectados = bitacora.registrarRetorno(BitacoraCambios.Entidad.PRODUCTO, BitacoraCambios.Operacion.ELIMINACION, null, rs).size();
+                    }
+                }
+            } else {
+                try (PreparedStatement existe = conn.prepareStatement("SELECT 1 FROM almacenes WHERE id = ?")) {
+                    existe.setString(1, idDestino);
+                    try (ResultSet rs = existe.executeQuery()) {
+                        if (!rs.next()) {
+                            throw new SQLException("El almacn destino (ID " + idDestino + ") no existe.");
+                        }
+                    }
+                }
+                Map<String, String> antes = BitacoraCambios.leer(conn, BitacoraCambios.Entidad.PRODUCTO,
+                        "almacen = ?", Collections.singletonList(id));
+                try (PreparedStatement pstmt = conn.prepareStatement("UPDATE productos SET almacen = ?, "
+                        + "fecha_hora_ultima_modificacion = ?, ultimo_usuario_en_modificar = ? WHERE almacen = ?"
+                        + BitacoraCambios.Entidad.PRODUCTO.sqlRetorno())) {
+                    pstmt.setString(1, idDestino);
+                    pstmt.setLong(2, ahora);
+                    pstmt.setString(3, usuario);
+                    pstmt.setString(4, id);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        afectados = bitacora.registrarRetorno(BitacoraCambios.Entidad.PRODUCTO, BitacoraCambios.Operacion.ACTUALIZACION, antes, rs).size();
+                    }
+                }
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM almacenes WHERE id = ?"
+                    + BitacoraCambios.Entidad.ALMACEN.sqlRetorno())) {
+                pstmt.setString(1, id);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (bitacora.registrarRetorno(BitacoraCambios.Entidad.ALMACEN, BitacoraCambios.Operacion.ELIMINACION, null, rs).isEmpty()) {
+                        throw new SQLException("La eliminacin fall, almacn no encontrado: " + id);
+                    }
+                }
+            }
+            return afectados;
+        });
+
+        AlmacenUtils.invalidar();
+        IndiceProductosColumnar.moverProductosDeAlmacen(id, idDestino, ahora, usuario);
+        IndiceProductosColumnar.quitarAlmacen(id);
+        System.out.println("DEBUG: Almacn ID " + id + " eliminado; productos "
+                + (idDestino == null ? "eliminados: " : "reasignados al almacn " + idDestino + ": ") + productosAfectados);
+        return productosAfectados;
+    }
+
+    /**
+     * Cuenta los productos asignados a un almacn (para avisar antes de eliminarlo).
+     */
+    public static int contarProductosDeAlmacen(String id) throws SQLException {
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, id); 
-            pstmt.executeUpdate();
-            System.out.println("DEBUG: Almacn ID " + id + " eliminado.");
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM productos WHERE almacen = ?")) {
+            pstmt.setString(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
         }
     }
-    
+
     // ------------------------------------------------------------------
     //                       MTODOS DE CONSULTA DE ALMACENES (NUEVOS)
     // ------------------------------------------------------------------
@@ -244,8 +659,8 @@ public class DatabaseManager {
         String sql = "SELECT nombre FROM almacenes ORDER BY nombre ASC";
         
         try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
             
             while (rs.next()) {
                 nombres.add(rs.getString("nombre"));
@@ -254,6 +669,10 @@ public class DatabaseManager {
         return nombres;
     }
 
+    /** Columnas por las que se puede ordenar la tabla de almacenes. */
+    public static final List<String> COLUMNAS_ORDEN_ALMACENES = Collections.unmodifiableList(Arrays.asList(
+            "id", "nombre", "fecha_hora_creacion", "fecha_hora_ultima_modificacion", "ultimo_usuario_en_modificar"));
+
     /**
      * Obtiene todos los almacenes de la base de datos. (Implementacin solicitada)
      */
@@ -267,6 +686,27 @@ public class DatabaseManager {
      * Obtiene una lista observable de Almacenes aplicando filtros (nombre o ID).
      */
     public static ObservableList<Almacen> obtenerAlmacenesFiltrados(List<String> filtros) throws SQLException {
+        return obtenerAlmacenesFiltrados(filtros, null);
+    }
+
+    /**
+     * Igual que obtenerAlmacenesFiltrados(filtros), pero la consulta puede cancelarse desde otro hilo.
+     */
+    public static ObservableList<Almacen> obtenerAlmacenesFiltrados(List<String> filtros, ConsultaCancelable consulta) throws SQLException {
+        return obtenerAlmacenesFiltrados(filtros, "id", true, consulta);
+    }
+
+    /**
+     * Igual que obtenerAlmacenesFiltrados(filtros, consulta), ordenados por la columna elegida en la tabla
+     * (con el id como desempate).
+     * @param columnaOrden Una de COLUMNAS_ORDEN_ALMACENES.
+     */
+    public static ObservableList<Almacen> obtenerAlmacenesFiltrados(List<String> filtros, String columnaOrden, boolean ascendente,
+                                                                    ConsultaCancelable consulta) throws SQLException {
+        // La columna llega de la interfaz y va dentro del SQL: solo se aceptan las conocidas
+        if (!COLUMNAS_ORDEN_ALMACENES.contains(columnaOrden)) {
+            throw new IllegalArgumentException("No se puede ordenar almacenes por: " + columnaOrden);
+        }
         ObservableList<Almacen> listaAlmacenes = FXCollections.observableArrayList();
         
         String sqlBase = "SELECT id, nombre, fecha_hora_creacion, fecha_hora_ultima_modificacion, ultimo_usuario_en_modificar FROM almacenes";
@@ -279,7 +719,7 @@ public class DatabaseManager {
             String idFiltro = filtros.get(1);
             
             if (nombreFiltro != null && !nombreFiltro.isEmpty()) {
-                whereClause.append(" AND LOWER(nombre) = LOWER(?)"); 
+                whereClause.append(" AND nombre = ? COLLATE NOCASE"); 
                 params.add(nombreFiltro); 
             }
             
@@ -293,7 +733,12 @@ public class DatabaseManager {
         if (whereClause.length() > 0) {
             finalSql += " WHERE 1=1 " + whereClause.toString(); 
         }
-        finalSql += " ORDER BY id ASC"; 
+        String direccion = ascendente ? " ASC" : " DESC";
+        boolean texto = columnaOrden.equals("nombre") || columnaOrden.equals("ultimo_usuario_en_modificar");
+        finalSql += " ORDER BY " + columnaOrden + (texto ? " COLLATE NOCASE" : "") + direccion;
+        if (!columnaOrden.equals("id")) {
+            finalSql += ", id" + direccion;
+        }
         
         System.out.println("SQL Almacenes: " + finalSql);
 
@@ -304,17 +749,20 @@ public class DatabaseManager {
                 pstmt.setString(i + 1, params.get(i)); 
             }
             
+            registrarConsulta(consulta, pstmt);
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
                     Almacen a = new Almacen(
-                        rs.getString("id"),
+                        rs.getInt("id"),
                         rs.getString("nombre"),
-                        rs.getString("fecha_hora_creacion"),
-                        rs.getString("fecha_hora_ultima_modificacion"),
+                        RelojAuditoria.leer(rs, "fecha_hora_creacion"),
+                        RelojAuditoria.leer(rs, "fecha_hora_ultima_modificacion"),
                         rs.getString("ultimo_usuario_en_modificar")
                     );
                     listaAlmacenes.add(a);
                 }
+            } finally {
+                liberarConsulta(consulta);
             }
         }
         
@@ -325,110 +773,380 @@ public class DatabaseManager {
     //                       MTODOS DE CONSULTA DE PRODUCTOS
     // ------------------------------------------------------------------
     
+    // Texto SQL memoizado por "forma" de consulta: un bit por cada uno de los 8 filtros activos.
+    // As cada combinacin de filtros produce siempre el mismo String y la cach de sentencias
+    // del pool (CacheSentencias) reutiliza la sentencia ya compilada en lugar de volver a prepararla.
+    // Se guarda una variante por tipo de consulta (lista completa, conteo, pgina, etc.) y por orden
+    // (OrdenProductos); el arreglo de formas de cada orden se crea la primera vez que se usa.
+    static final int SQL_LISTA = 0;                            // Todas las filas, ordenadas
+    private static final int SQL_CONTEO = 1;                   // COUNT(*) de las filas que cumplen los filtros
+    private static final int SQL_PAGINA = 2;                   // Primera pgina (LIMIT ?)
+    private static final int SQL_PAGINA_DESDE_ANCLA = 3;       // Pgina siguiente a un ancla (valor, id)
+    private static final int SQL_PAGINA_DESDE_ANCLA_NULA = 4;  // Igual, cuando el valor del ancla es NULL
+    private static final int SQL_ANCLA_EN_POSICION = 5;        // (valor, id) de la fila en la posicin ?
+    private static final String[][][] SQL_PRODUCTOS_POR_FORMA = new String[6][OrdenProductos.NUMERO_ORDENES][];
+
+    // Columnas que se leen para construir cada Producto
+    private static final String COLUMNAS_PRODUCTO = "p.id, p.nombre, p.precio, p.cantidad, p.departamento, " + 
+                             "a.nombre AS almacen_nombre, " + // Traemos el nombre en lugar del ID
+                             "p.fecha_hora_creacion, p.fecha_hora_ultima_modificacion, p.ultimo_usuario_en_modificar ";
+
+    // Columnas con pocos valores distintos: cada Producto cargado (lista completa o paginada) comparte
+    // una sola instancia por valor en lugar de la copia que crea el driver en cada fila
+    private static final DiccionarioCadenas DICC_DEPARTAMENTOS = new DiccionarioCadenas("departamento", 256);
+    private static final DiccionarioCadenas DICC_ALMACENES = new DiccionarioCadenas("almacen", 1024);
+    private static final DiccionarioCadenas DICC_USUARIOS = new DiccionarioCadenas("usuario", 1024);
+
+    // Predicado de cada filtro, en el mismo orden que la lista posicional de filtros.
+    // Ninguna columna se envuelve en funciones (LOWER) para que los ndices de createTables() apliquen;
+    // la comparacin sin maysculas se logra con COLLATE NOCASE (LIKE ya es insensible a maysculas).
+    // Los rangos van en unlikely(): sin estadsticas el planificador supone que un rango deja pasar
+    // casi toda la tabla y prefiere recorrer idx_productos_nombre para no ordenar; la pista le indica
+    // que el filtro es selectivo y as busca en idx_productos_precio / idx_productos_cantidad.
+    static final String[] PREDICADOS_PRODUCTOS = {
+        " AND p.rowid IN (SELECT rowid FROM productos_fts WHERE productos_fts MATCH ?)", // 0: Nombre (FTS5, prefijos)
+        " AND p.departamento = ? COLLATE NOCASE",    // 1: Departamento (Filtro exacto)
+        " AND unlikely(p.precio >= ?)",              // 2: precioMin
+        " AND unlikely(p.precio <= ?)",              // 3: precioMax
+        " AND unlikely(p.cantidad >= ?)",            // 4: cantidadMin
+        " AND unlikely(p.cantidad <= ?)",            // 5: cantidadMax
+        " AND p.almacen = ?",                        // 6: ID Almacn
+        " AND p.id = ?"                              // 7: ID Producto (Exacto)
+    };
+
+    /**
+     * Devuelve el SQL de productos del tipo indicado para la forma dada (bit i encendido = filtro i activo),
+     * en el orden por nombre.
+     */
+    static String sqlProductos(int tipo, int forma) {
+        return sqlProductos(tipo, OrdenProductos.POR_NOMBRE, forma);
+    }
+
+    /**
+     * Devuelve el SQL de productos del tipo, orden y forma indicados.
+     */
+    private static String sqlProductos(int tipo, OrdenProductos orden, int forma) {
+        String[] porForma = SQL_PRODUCTOS_POR_FORMA[tipo][orden.codigo()];
+        if (porForma == null) {
+            porForma = new String[1 << 8];
+            SQL_PRODUCTOS_POR_FORMA[tipo][orden.codigo()] = porForma;
+        }
+        String sql = porForma[forma];
+        if (sql == null) {
+            StringBuilder sb = new StringBuilder("SELECT ");
+            switch (tipo) {
+                case SQL_CONTEO: sb.append("COUNT(*) "); break;
+                case SQL_ANCLA_EN_POSICION: sb.append(orden.getColumna().expresion).append(", p.id "); break;
+                default: sb.append(COLUMNAS_PRODUCTO); break;
+            }
+            // Consulta base: Hacemos JOIN para traer el nombre del almacn
+            sb.append("FROM productos p JOIN almacenes a ON p.almacen = a.id WHERE 1=1 ");
+            for (int i = 0; i < PREDICADOS_PRODUCTOS.length; i++) {
+                if ((forma & (1 << i)) != 0) {
+                    sb.append(PREDICADOS_PRODUCTOS[i]);
+                }
+            }
+            if (tipo == SQL_PAGINA_DESDE_ANCLA || tipo == SQL_PAGINA_DESDE_ANCLA_NULA) {
+                // Predicado de bsqueda por llave: contina justo despus de la ltima fila ya mostrada
+                sb.append(orden.sqlDespuesDeAncla(tipo == SQL_PAGINA_DESDE_ANCLA_NULA));
+            }
+            if (tipo != SQL_CONTEO) {
+                sb.append(orden.sqlOrden());
+            }
+            if (tipo == SQL_PAGINA || tipo == SQL_PAGINA_DESDE_ANCLA || tipo == SQL_PAGINA_DESDE_ANCLA_NULA) {
+                sb.append(" LIMIT ?");
+            } else if (tipo == SQL_ANCLA_EN_POSICION) {
+                sb.append(" LIMIT 1 OFFSET ?");
+            }
+            sql = sb.toString();
+            porForma[forma] = sql;
+        }
+        return sql;
+    }
+
+    /**
+     * Calcula la forma de la consulta (filtros activos) y llena la lista de parmetros en orden.
+     */
+    private static int calcularFormaProductos(List<String> filtros, List<String> params) {
+        int forma = 0;
+        if (filtros != null && filtros.size() >= 8) {
+            for (int i = 0; i < PREDICADOS_PRODUCTOS.length; i++) {
+                // El nombre se traduce a una consulta de texto completo (null si no hay palabras)
+                String valor = i == 0 ? construirConsultaTextoCompleto(filtros.get(0)) : filtros.get(i);
+                // ID Producto adems se ignora si viene vaco
+                boolean activo = valor != null && !(i == 7 && valor.isEmpty());
+                if (activo) {
+                    forma |= 1 << i;
+                    params.add(valor);
+                }
+            }
+        }
+        return forma;
+    }
+
+    /**
+     * Construye un Producto a partir de la fila actual del ResultSet (columnas de COLUMNAS_PRODUCTO).
+     */
+    private static Producto mapearProducto(ResultSet rs) throws SQLException {
+        return new Producto(
+            leerIdProducto(rs),
+            rs.getString("nombre"),
+            rs.getDouble("precio"),
+            rs.getInt("cantidad"),
+            DICC_DEPARTAMENTOS.canonizar(rs.getString("departamento")),
+            DICC_ALMACENES.canonizar(rs.getString("almacen_nombre")), // AHORA LEE EL NOMBRE DE LA CIUDAD
+            RelojAuditoria.leer(rs, "fecha_hora_creacion"),
+            RelojAuditoria.leer(rs, "fecha_hora_ultima_modificacion"),
+            DICC_USUARIOS.canonizar(rs.getString("ultimo_usuario_en_modificar"))
+        );
+    }
+
+    /**
+     * Lee el id (TEXT en la tabla) como nmero. getLong convertira en 0 un id NULL o no numrico
+     * y ese producto se confundira con otro; mejor fallar con el id que est mal.
+     */
+    private static long leerIdProducto(ResultSet rs) throws SQLException {
+        String texto = rs.getString("id");
+        try {
+            return Long.parseLong(texto);
+        } catch (NumberFormatException e) {
+            throw new SQLException("Id de producto no numrico en la base de datos: " + texto);
+        }
+    }
+
     /**
      * Obtiene productos aplicando 8 filtros dinmicos.
      * Implementa JOIN para obtener el nombre del almacn.
      */
     public static ObservableList<Producto> obtenerProductosFiltrados(List<String> filtros) throws SQLException {
+        return obtenerProductosFiltrados(filtros, null);
+    }
+
+    /**
+     * Igual que obtenerProductosFiltrados(filtros), pero la consulta puede cancelarse desde otro hilo
+     * (por ejemplo, cuando el usuario aplica otros filtros antes de que termine la anterior).
+     */
+    public static ObservableList<Producto> obtenerProductosFiltrados(List<String> filtros, ConsultaCancelable consulta) throws SQLException {
+        return obtenerProductosFiltrados(filtros, OrdenProductos.POR_NOMBRE, consulta);
+    }
+
+    /**
+     * Igual que obtenerProductosFiltrados(filtros, consulta), con el orden de la columna elegida en la tabla.
+     */
+    public static ObservableList<Producto> obtenerProductosFiltrados(List<String> filtros, OrdenProductos orden, ConsultaCancelable consulta) throws SQLException {
+        if (IndiceProductosColumnar.estaListo()) {
+            return FXCollections.observableArrayList(IndiceProductosColumnar.filtrar(filtros, orden));
+        }
         ObservableList<Producto> listaProductos = FXCollections.observableArrayList();
         
-        // Consulta base: Hacemos JOIN para traer el nombre del almacn
-        String sqlBase = "SELECT p.id, p.nombre, p.precio, p.cantidad, p.departamento, " + 
-                             "a.nombre AS almacen_nombre, " + // Traemos el nombre en lugar del ID
-                             "p.fecha_hora_creacion, p.fecha_hora_ultima_modificacion, p.ultimo_usuario_en_modificar " +
-                             "FROM productos p " +
-                             "JOIN almacenes a ON p.almacen = a.id";
-        
-        StringBuilder whereClause = new StringBuilder();
+        // --- DETERMINACIN DE LA FORMA DE LA CONSULTA (FILTROS ACTIVOS) ---
         List<String> params = new ArrayList<>();
+        int forma = calcularFormaProductos(filtros, params);
         
-        // --- CONSTRUCCIN DINMICA DE LA CLUSULA WHERE ---
+        String finalSql = sqlProductos(SQL_LISTA, orden, forma);
         
-        if (filtros != null && filtros.size() >= 8) {
+        System.out.println("SQL Productos: " + finalSql);
+
+        // --- EJECUCIN DE LA CONSULTA CON PREPARED STATEMENT ---
+        
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(finalSql)) {
             
-            // 0: Nombre (Bsqueda parcial LIKE)
-            if (filtros.get(0) != null && !filtros.get(0).isEmpty()) {
-                whereClause.append(" AND LOWER(p.nombre) LIKE LOWER(?)"); 
-                params.add("%" + filtros.get(0) + "%"); 
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setString(i + 1, params.get(i)); 
             }
             
-            // 1: Departamento (Filtro exacto)
-            if (filtros.get(1) != null) {
-                whereClause.append(" AND LOWER(p.departamento) = LOWER(?)");
-                params.add(filtros.get(1));
+            registrarConsulta(consulta, pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    listaProductos.add(mapearProducto(rs));
+                }
+            } finally {
+                liberarConsulta(consulta);
             }
-            
-            // 2 & 3: Rango de Precio (Numrico)
-            if (filtros.get(2) != null) { // precioMin
-                whereClause.append(" AND p.precio >= ?");
-                params.add(filtros.get(2));
+        }
+        System.out.println("DEBUG: " + listaProductos.size() + " productos cargados. " + getEstadisticasDiccionarios());
+        
+        return listaProductos;
+    }
+
+    /**
+     * Recibe cada fila de un recorrido en flujo (columnas de COLUMNAS_PRODUCTO, en ese orden).
+     */
+    @FunctionalInterface
+    public interface ProcesadorFila {
+        void procesar(ResultSet rs) throws SQLException, IOException;
+    }
+
+    /**
+     * Recorre en flujo los productos que cumplen los 8 filtros, en el mismo orden que
+     * obtenerProductosFiltrados, sin construir objetos Producto ni acumular filas:
+     * la memoria usada no depende del nmero de productos (exportaciones completas).
+     * @param tamanoFetch Filas que el driver lee por cada viaje.
+     * @return El nmero de filas recorridas.
+     */
+    public static long recorrerProductosFiltrados(List<String> filtros, int tamanoFetch, ConsultaCancelable consulta,
+                                                  ProcesadorFila procesador) throws SQLException, IOException {
+        List<String> params = new ArrayList<>();
+        String sql = sqlProductos(SQL_LISTA, calcularFormaProductos(filtros, params));
+        System.out.println("SQL Productos (recorrido): " + sql);
+
+        long filas = 0;
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setString(i + 1, params.get(i));
             }
-            if (filtros.get(3) != null) { // precioMax
-                whereClause.append(" AND p.precio <= ?");
-                params.add(filtros.get(3));
+            pstmt.setFetchSize(tamanoFetch);
+
+            registrarConsulta(consulta, pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    procesador.procesar(rs);
+                    filas++;
+                }
+            } finally {
+                liberarConsulta(consulta);
             }
+        }
+        return filas;
+    }
+
+    /**
+     * Cuenta los productos que cumplen los 8 filtros, sin cargarlos.
+     */
+    public static int contarProductosFiltrados(List<String> filtros) throws SQLException {
+        return contarProductosFiltrados(filtros, null);
+    }
+
+    /**
+     * Cuenta los productos que cumplen los filtros; la consulta puede cancelarse desde otro hilo.
+     */
+    public static int contarProductosFiltrados(List<String> filtros, ConsultaCancelable consulta) throws SQLException {
+        if (IndiceProductosColumnar.estaListo()) {
+            return IndiceProductosColumnar.contar(filtros);
+        }
+        List<String> params = new ArrayList<>();
+        int forma = calcularFormaProductos(filtros, params);
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sqlProductos(SQL_CONTEO, forma))) {
             
-            // 4 & 5: Rango de Cantidad (Numrico)
-            if (filtros.get(4) != null) { // cantidadMin
-                whereClause.append(" AND p.cantidad >= ?");
-                params.add(filtros.get(4));
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setString(i + 1, params.get(i)); 
             }
-            if (filtros.get(5) != null) { // cantidadMax
-                whereClause.append(" AND p.cantidad <= ?");
-                params.add(filtros.get(5));
+            registrarConsulta(consulta, pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            } finally {
+                liberarConsulta(consulta);
             }
+        }
+    }
+
+    /**
+     * Obtiene una pgina de productos usando paginacin por llave (keyset):
+     * en lugar de OFFSET, contina despus del ancla (valor, id) de la ltima fila de la pgina anterior,
+     * por lo que el costo no crece con el nmero de pgina.
+     * @param orden Columna y direccin del orden; el ancla es el valor de esa columna.
+     * @param anclaValor Valor de la columna de orden en la ltima fila de la pgina anterior (puede ser null).
+     * @param anclaId ID de la ltima fila de la pgina anterior, o null para la primera pgina.
+     * @param limite Nmero mximo de filas a devolver.
+     */
+    public static List<Producto> obtenerPaginaProductos(List<String> filtros, OrdenProductos orden, Object anclaValor, String anclaId, int limite) throws SQLException {
+        return obtenerPaginaProductos(filtros, orden, anclaValor, anclaId, limite, null);
+    }
+
+    /**
+     * Igual que obtenerPaginaProductos, pero la consulta puede cancelarse desde otro hilo.
+     */
+    public static List<Producto> obtenerPaginaProductos(List<String> filtros, OrdenProductos orden, Object anclaValor, String anclaId,
+                                                        int limite, ConsultaCancelable consulta) throws SQLException {
+        if (IndiceProductosColumnar.estaListo()) {
+            return IndiceProductosColumnar.pagina(filtros, orden, anclaValor, anclaId, limite);
+        }
+        List<String> params = new ArrayList<>();
+        int forma = calcularFormaProductos(filtros, params);
+        int tipo = anclaId == null ? SQL_PAGINA : anclaValor == null ? SQL_PAGINA_DESDE_ANCLA_NULA : SQL_PAGINA_DESDE_ANCLA;
+        List<Producto> pagina = new ArrayList<>(limite);
+
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sqlProductos(tipo, orden, forma))) {
             
-            // 6: ID Almacn (Filtro exacto, ahora filtra por ID de la tabla productos)
-            if (filtros.get(6) != null) { 
-                whereClause.append(" AND p.almacen = ?"); 
-                params.add(filtros.get(6));
+            int indice = 1;
+            for (String param : params) {
+                pstmt.setString(indice++, param); 
+            }
+            if (tipo == SQL_PAGINA_DESDE_ANCLA) {
+                pstmt.setObject(indice++, anclaValor);
+            }
+            if (tipo != SQL_PAGINA) {
+                pstmt.setLong(indice++, Long.parseLong(anclaId)); // El desempate compara el id como nmero
             }
+            pstmt.setInt(indice, limite);
             
-            // 7: ID Producto (Exacto)
-            if (filtros.get(7) != null && !filtros.get(7).isEmpty()) { 
-                whereClause.append(" AND p.id = ?"); 
-                params.add(filtros.get(7));
+            registrarConsulta(consulta, pstmt);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    pagina.add(mapearProducto(rs));
+                }
+            } finally {
+                liberarConsulta(consulta);
             }
         }
-        
-        String finalSql = sqlBase;
-        if (whereClause.length() > 0) {
-            finalSql += " WHERE 1=1 " + whereClause.toString(); 
+        return pagina;
+    }
+
+    /**
+     * Obtiene el ancla (valor, id) de la fila en la posicin indicada del resultado filtrado y ordenado.
+     * Solo se usa cuando el usuario salta a una zona de la tabla cuya pgina anterior no se ha ledo.
+     * @return Un arreglo {valor de la columna de orden, id (String)}, o null si la posicin est fuera del resultado.
+     */
+    public static Object[] obtenerAnclaProductos(List<String> filtros, OrdenProductos orden, int posicion) throws SQLException {
+        return obtenerAnclaProductos(filtros, orden, posicion, null);
+    }
+
+    /**
+     * Igual que obtenerAnclaProductos, pero la consulta puede cancelarse desde otro hilo.
+     */
+    public static Object[] obtenerAnclaProductos(List<String> filtros, OrdenProductos orden, int posicion, ConsultaCancelable consulta) throws SQLException {
+        if (IndiceProductosColumnar.estaListo()) {
+            return IndiceProductosColumnar.anclaEnPosicion(filtros, orden, posicion);
         }
-        finalSql += " ORDER BY p.nombre ASC"; 
-        
-        System.out.println("SQL Productos: " + finalSql);
+        List<String> params = new ArrayList<>();
+        int forma = calcularFormaProductos(filtros, params);
 
-        // --- EJECUCIN DE LA CONSULTA CON PREPARED STATEMENT ---
-        
         try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(finalSql)) {
+             PreparedStatement pstmt = conn.prepareStatement(sqlProductos(SQL_ANCLA_EN_POSICION, orden, forma))) {
             
-            for (int i = 0; i < params.size(); i++) {
-                pstmt.setString(i + 1, params.get(i)); 
+            int indice = 1;
+            for (String param : params) {
+                pstmt.setString(indice++, param); 
             }
+            pstmt.setInt(indice, posicion);
             
+            registrarConsulta(consulta, pstmt);
             try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    Producto p = new Producto(
-                        rs.getString("id"),
-                        rs.getString("nombre"),
-                        String.valueOf(rs.getDouble("precio")), 
-                        String.valueOf(rs.getInt("cantidad")), 
-                        rs.getString("departamento"),
-                        rs.getString("almacen_nombre"), // AHORA LEE EL NOMBRE DE LA CIUDAD
-                        rs.getString("fecha_hora_creacion"),
-                        rs.getString("fecha_hora_ultima_modificacion"),
-                        rs.getString("ultimo_usuario_en_modificar")
-                    );
-                    listaProductos.add(p);
-                }
+                return rs.next() ? new Object[] { rs.getObject(1), rs.getString(2) } : null;
+            } finally {
+                liberarConsulta(consulta);
             }
         }
-        
-        return listaProductos;
     }
     
+    // Registra la sentencia en la consulta cancelable (si hay una) mientras se ejecuta
+    private static void registrarConsulta(ConsultaCancelable consulta, PreparedStatement pstmt) throws SQLException {
+        if (consulta != null) {
+            consulta.registrar(pstmt);
+        }
+    }
+
+    private static void liberarConsulta(ConsultaCancelable consulta) {
+        if (consulta != null) {
+            consulta.liberar();
+        }
+    }
+
     public static boolean productoIdExiste(String id) throws SQLException {
         if (id == null || id.trim().isEmpty()) {
             return false;
@@ -456,79 +1174,370 @@ public class DatabaseManager {
 
     /**
      * Agrega un nuevo producto. Usa hora localizada.
+     * El ID se reserva de la secuencia 'productos' (el que traiga el producto se ignora).
+     * El alta queda en la bitcora de cambios, en la misma transaccin.
+     * @return El ID asignado al producto.
      */
-    public static void agregarProducto(Producto producto) throws SQLException {
+    public static String agregarProducto(Producto producto) throws SQLException {
         
-        String localizedNow = getLocalizedNow(); // Obtiene la hora localizada
+        long localizedNow = RelojAuditoria.ahora(); // Segundos desde la poca; se muestra en hora de Sonora
+        String usuario = SessionContext.getCurrentUserName();
         
         String sql = "INSERT INTO productos (id, nombre, precio, cantidad, departamento, almacen, fecha_hora_creacion, fecha_hora_ultima_modificacion, ultimo_usuario_en_modificar) " +
-                      "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)"; 
+                      "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)" + BitacoraCambios.Entidad.PRODUCTO.sqlRetorno();
         
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, producto.getId());
-            pstmt.setString(2, producto.getNombre());
-            pstmt.setDouble(3, Double.parseDouble(producto.getPrecio()));
-            pstmt.setInt(4, Integer.parseInt(producto.getCantidad()));
-            pstmt.setString(5, producto.getDepartamento());
-            pstmt.setString(6, producto.getAlmacen()); // Contiene el ID del almacn
-            
-            pstmt.setString(7, localizedNow); // Hora de creacin
-            pstmt.setString(8, localizedNow); // Hora de ltima modificacin
-            pstmt.setString(9, SessionContext.getCurrentUserName()); 
-            
-            pstmt.executeUpdate();
-            System.out.println("DEBUG: Producto agregado por: " + SessionContext.getCurrentUserName());
-        } catch (NumberFormatException e) {
-            throw new SQLException("Error de formato numrico en Precio o Cantidad: " + e.getMessage());
-        }
+        List<String> ids = enTransaccion(localizedNow, usuario, (conn, bitacora) -> {
+            // El id de productos es TEXT (no autoincrementa): se reserva en la misma transaccin, como en almacenes
+            long id = reservarIds(conn, "productos", 1);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, String.valueOf(id));
+                pstmt.setString(2, producto.getNombre());
+                pstmt.setDouble(3, producto.getPrecio());
+                pstmt.setInt(4, producto.getCantidad());
+                pstmt.setString(5, producto.getDepartamento());
+                pstmt.setString(6, producto.getAlmacen()); // Contiene el ID del almacn
+
+                pstmt.setLong(7, localizedNow); // Hora de creacin
+                pstmt.setLong(8, localizedNow); // Hora de ltima modificacin
+                pstmt.setString(9, usuario);
+
+                try (ResultSet rs = pstmt.executeQuery()) { // RETURNING: el ID asignado y la fila para la bitcora
+                    return bitacora.registrarRetorno(BitacoraCambios.Entidad.PRODUCTO, BitacoraCambios.Operacion.INSERCION, null, rs);
+                }
+            }
+        });
+        refrescarIndiceProductos(ids);
+        System.out.println("DEBUG: Producto agregado por: " + usuario);
+        return ids.isEmpty() ? null : ids.get(0);
     }
 
     /**
      * Actualiza un producto existente. Usa hora localizada.
+     * Los valores anteriores y los nuevos quedan en la bitcora de cambios, en la misma transaccin.
      */
     public static void actualizarProducto(Producto producto) throws SQLException {
         
-        String localizedNow = getLocalizedNow(); // Obtiene la hora localizada
+        long localizedNow = RelojAuditoria.ahora(); // Segundos desde la poca; se muestra en hora de Sonora
+        String usuario = SessionContext.getCurrentUserName();
 
         String sql = "UPDATE productos SET nombre = ?, precio = ?, cantidad = ?, departamento = ?, almacen = ?, " +
-                      "fecha_hora_ultima_modificacion = ?, ultimo_usuario_en_modificar = ? WHERE id = ?";
+                      "fecha_hora_ultima_modificacion = ?, ultimo_usuario_en_modificar = ? WHERE id = ?" +
+                      BitacoraCambios.Entidad.PRODUCTO.sqlRetorno();
         
-        try (Connection conn = getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, producto.getNombre());
-            pstmt.setDouble(2, Double.parseDouble(producto.getPrecio()));
-            pstmt.setInt(3, Integer.parseInt(producto.getCantidad()));
-            pstmt.setString(4, producto.getDepartamento());
-            pstmt.setString(5, producto.getAlmacen()); // Contiene el ID del almacn
-            
-            pstmt.setString(6, localizedNow); // Hora de ltima modificacin
-            pstmt.setString(7, SessionContext.getCurrentUserName());
-            pstmt.setString(8, producto.getId());
-            
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new SQLException("La actualizacin fall, ID no encontrado: " + producto.getId());
+        enTransaccion(localizedNow, usuario, (conn, bitacora) -> {
+            Map<String, String> antes = BitacoraCambios.leer(conn, BitacoraCambios.Entidad.PRODUCTO, Collections.singletonList(producto.getId()));
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, producto.getNombre());
+                pstmt.setDouble(2, producto.getPrecio());
+                pstmt.setInt(3, producto.getCantidad());
+                pstmt.setString(4, producto.getDepartamento());
+                pstmt.setString(5, producto.getAlmacen()); // Contiene el ID del almacn
+
+                pstmt.setLong(6, localizedNow); // Hora de ltima modificacin
+                pstmt.setString(7, usuario);
+                pstmt.setString(8, producto.getId());
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (bitacora.registrarRetorno(BitacoraCambios.Entidad.PRODUCTO, BitacoraCambios.Operacion.ACTUALIZACION, antes, rs).isEmpty()) {
+                        throw new SQLException("La actualizacin fall, ID no encontrado: " + producto.getId());
+                    }
+                }
             }
-            System.out.println("DEBUG: Producto actualizado por: " + SessionContext.getCurrentUserName());
-        } catch (NumberFormatException e) {
-            throw new SQLException("Error de formato numrico en Precio o Cantidad: " + e.getMessage());
-        }
+            return null;
+        });
+        refrescarIndiceProductos(Collections.singletonList(producto.getId()));
+        System.out.println("DEBUG: Producto actualizado por: " + usuario);
     }
     
     /**
-     * Elimina un producto por su ID.
+     * Elimina un producto por su ID. La fila eliminada queda en la bitcora de cambios.
      */
     public static void eliminarProducto(String id) throws SQLException {
-        String sql = "DELETE FROM productos WHERE id = ?";
+        String sql = "DELETE FROM productos WHERE id = ?" + BitacoraCambios.Entidad.PRODUCTO.sqlRetorno();
         
+        enTransaccion(RelojAuditoria.ahora(), SessionContext.getCurrentUserName(), (conn, bitacora) -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, id);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return bitacora.registrarRetorno(BitacoraCambios.Entidad.PRODUCTO, BitacoraCambios.Operacion.ELIMINACION, null, rs);
+                }
+            }
+        });
+        IndiceProductosColumnar.eliminarProducto(id);
+    }
+
+    // ------------------------------------------------------------------
+    //                       HISTORIAL DE MODIFICACIONES
+    // ------------------------------------------------------------------
+
+    /**
+     * Productos modificados en [desde, hasta) (segundos desde la poca, ver RelojAuditoria.aEpoch),
+     * opcionalmente solo los del usuario indicado, del ms reciente al ms antiguo.
+     * Es un recorrido por rango de idx_productos_fecha_mod, o de idx_productos_usuario_fecha_mod
+     * si se indica el usuario; nunca lee la tabla completa.
+     */
+    public static List<Producto> obtenerProductosModificados(long desde, long hasta, String usuario, int limite) throws SQLException {
+        String sql = "SELECT " + COLUMNAS_PRODUCTO + "FROM productos p JOIN almacenes a ON p.almacen = a.id "
+                + "WHERE p.fecha_hora_ultima_modificacion >= ? AND p.fecha_hora_ultima_modificacion < ?"
+                + (usuario == null ? "" : " AND p.ultimo_usuario_en_modificar = ?")
+                + " ORDER BY p.fecha_hora_ultima_modificacion DESC, p.id DESC LIMIT ?";
+        List<Producto> productos = new ArrayList<>();
         try (Connection conn = getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, id); 
-            pstmt.executeUpdate();
+            int i = 1;
+            pstmt.setLong(i++, desde);
+            pstmt.setLong(i++, hasta);
+            if (usuario != null) {
+                pstmt.setString(i++, usuario);
+            }
+            pstmt.setInt(i, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    productos.add(mapearProducto(rs));
+                }
+            }
+        }
+        return productos;
+    }
+
+    /**
+     * Igual que obtenerProductosModificados, para almacenes (idx_almacenes_fecha_mod / idx_almacenes_usuario_fecha_mod).
+     */
+    public static List<Almacen> obtenerAlmacenesModificados(long desde, long hasta, String usuario, int limite) throws SQLException {
+        String sql = "SELECT id, nombre, fecha_hora_creacion, fecha_hora_ultima_modificacion, ultimo_usuario_en_modificar FROM almacenes "
+                + "WHERE fecha_hora_ultima_modificacion >= ? AND fecha_hora_ultima_modificacion < ?"
+                + (usuario == null ? "" : " AND ultimo_usuario_en_modificar = ?")
+                + " ORDER BY fecha_hora_ultima_modificacion DESC, id DESC LIMIT ?";
+        List<Almacen> almacenes = new ArrayList<>();
+        try (Connection conn = getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int i = 1;
+            pstmt.setLong(i++, desde);
+            pstmt.setLong(i++, hasta);
+            if (usuario != null) {
+                pstmt.setString(i++, usuario);
+            }
+            pstmt.setInt(i, limite);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    almacenes.add(new Almacen(
+                        rs.getInt("id"),
+                        rs.getString("nombre"),
+                        RelojAuditoria.leer(rs, "fecha_hora_creacion"),
+                        RelojAuditoria.leer(rs, "fecha_hora_ultima_modificacion"),
+                        rs.getString("ultimo_usuario_en_modificar")
+                    ));
+                }
+            }
+        }
+        return almacenes;
+    }
+
+    // ------------------------------------------------------------------
+    //                       OPERACIONES EN LOTE (VARIOS PRODUCTOS)
+    // ------------------------------------------------------------------
+
+    // Ids por consulta "id IN (...)" (SQLite admite muchos ms, pero as el SQL se reutiliza).
+    // Lo comparten todos los que leen o modifican por bloques de ids (BitacoraCambios, IndiceProductosColumnar).
+    static final int IDS_POR_CONSULTA = 500;
+
+    /**
+     * Operacin que se ejecuta dentro de una transaccin (ver enTransaccion).
+     */
+    @FunctionalInterface
+    interface OperacionTransaccion<T> {
+        T ejecutar(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Operacin que adems registra sus cambios en la bitcora (ver enTransaccion con fecha y usuario).
+     */
+    @FunctionalInterface
+    interface OperacionAuditada<T> {
+        T ejecutar(Connection conn, BitacoraCambios.Lote bitacora) throws SQLException;
+    }
+
+    /**
+     * Ejecuta la operacin en UNA transaccin sobre una conexin del pool: se confirma si termina bien
+     * y se deshace completa si lanza una excepcin.
+     */
+    static <T> T enTransaccion(OperacionTransaccion<T> operacion) throws SQLException {
+        try (Connection conn = getConnection()) {
+            boolean autoCommitAnterior = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                T resultado = operacion.ejecutar(conn);
+                conn.commit();
+                return resultado;
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommitAnterior);
+            }
+        }
+    }
+
+    /**
+     * Igual que enTransaccion, con un lote de la bitcora de cambios para la operacin: lo que registre
+     * se escribe en la misma transaccin justo antes del commit (y se deshace con ella).
+     * @param fecha Fecha de los registros (la misma que la operacin pone en fecha_hora_ultima_modificacion).
+     * @param usuario Usuario que hace el cambio.
+     */
+    static <T> T enTransaccion(long fecha, String usuario, OperacionAuditada<T> operacion) throws SQLException {
+        return enTransaccion(conn -> {
+            try (BitacoraCambios.Lote bitacora = new BitacoraCambios.Lote(conn, fecha, usuario)) {
+                T resultado = operacion.ejecutar(conn, bitacora);
+                bitacora.escribir();
+                return resultado;
+            }
+        });
+    }
+
+    /**
+     * Elimina varios productos en una sola transaccin (todos o ninguno).
+     * Cada fila eliminada queda en la bitcora de cambios.
+     * @return El nmero de productos eliminados.
+     */
+    public static int eliminarProductos(List<String> ids) throws SQLException {
+        int eliminados = enTransaccion(RelojAuditoria.ahora(), SessionContext.getCurrentUserName(), (conn, bitacora) -> {
+            int total = 0;
+            // Un DELETE por bloque de ids; RETURNING entrega las filas eliminadas para la bitcora
+            for (int desde = 0; desde < ids.size(); desde += IDS_POR_CONSULTA) {
+                List<String> bloque = ids.subList(desde, Math.min(ids.size(), desde + IDS_POR_CONSULTA));
+                String sql = "DELETE FROM productos WHERE id IN (" + marcadores(bloque.size()) + ")"
+                        + BitacoraCambios.Entidad.PRODUCTO.sqlRetorno();
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < bloque.size(); i++) {
+                        pstmt.setString(i + 1, bloque.get(i));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        total += bitacora.registrarRetorno(BitacoraCambios.Entidad.PRODUCTO, BitacoraCambios.Operacion.ELIMINACION, null, rs).size();
+                    }
+                }
+            }
+            return total;
+        });
+        for (String id : ids) {
+            IndiceProductosColumnar.eliminarProducto(id);
+        }
+        System.out.println("DEBUG: " + eliminados + " productos eliminados en lote por: " + SessionContext.getCurrentUserName());
+        return eliminados;
+    }
+
+    /**
+     * Mueve varios productos a otro almacn en una sola transaccin.
+     * @return Los productos modificados, reledos de la base de datos.
+     */
+    public static List<Producto> moverProductosAAlmacen(List<String> ids, String idAlmacen) throws SQLException {
+        return actualizarProductosEnLote(ids, "almacen = ?", idAlmacen);
+    }
+
+    /**
+     * Asigna el mismo departamento a varios productos en una sola transaccin.
+     * @return Los productos modificados, reledos de la base de datos.
+     */
+    public static List<Producto> cambiarDepartamentoProductos(List<String> ids, String departamento) throws SQLException {
+        String valido = ValidadorProducto.canonizarDepartamento(departamento);
+        if (valido == null) {
+            throw new SQLException("El Departamento '" + departamento + "' no es vlido.");
+        }
+        return actualizarProductosEnLote(ids, "departamento = ?", valido);
+    }
+
+    /**
+     * Suma (o resta, si es negativa) la diferencia a la cantidad de varios productos en una sola transaccin.
+     * Si alguno quedara con cantidad negativa no se modifica ninguno.
+     * @return Los productos modificados, reledos de la base de datos.
+     */
+    public static List<Producto> ajustarCantidadProductos(List<String> ids, int diferencia) throws SQLException {
+        return actualizarProductosEnLote(ids, "cantidad = cantidad + ?", diferencia);
+    }
+
+    /**
+     * Aplica la misma asignacin a varios productos con un UPDATE por bloque de IDS_POR_CONSULTA ids.
+     * Todas las filas quedan con la misma fecha de modificacin y el mismo usuario, y cada una en la
+     * bitcora de cambios (valores anteriores ledos por bloques antes del UPDATE, nuevos por RETURNING).
+     */
+    private static List<Producto> actualizarProductosEnLote(List<String> ids, String asignacion, Object valor) throws SQLException {
+        long ahora = RelojAuditoria.ahora();
+        String usuario = SessionContext.getCurrentUserName();
+
+        List<Producto> actualizados = enTransaccion(ahora, usuario, (conn, bitacora) -> {
+            Map<String, String> antes = BitacoraCambios.leer(conn, BitacoraCambios.Entidad.PRODUCTO, ids);
+            for (int desde = 0; desde < ids.size(); desde += IDS_POR_CONSULTA) {
+                List<String> bloque = ids.subList(desde, Math.min(ids.size(), desde + IDS_POR_CONSULTA));
+                String sql = "UPDATE productos SET " + asignacion + ", fecha_hora_ultima_modificacion = ?, "
+                        + "ultimo_usuario_en_modificar = ? WHERE id IN (" + marcadores(bloque.size()) + ")"
+                        + BitacoraCambios.Entidad.PRODUCTO.sqlRetorno();
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setObject(1, valor);
+                    pstmt.setLong(2, ahora);
+                    pstmt.setString(3, usuario);
+                    for (int i = 0; i < bloque.size(); i++) {
+                        pstmt.setString(i + 4, bloque.get(i));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        bitacora.registrarRetorno(BitacoraCambios.Entidad.PRODUCTO, BitacoraCambios.Operacion.ACTUALIZACION, antes, rs);
+                    }
+                }
+            }
+            List<Producto> releidos = obtenerProductosPorId(conn, ids);
+            for (Producto producto : releidos) {
+                if (producto.getCantidad() < 0) {
+                    // La excepcin deshace toda la transaccin
+                    throw new SQLException("La Cantidad del producto '" + producto.getNombre() + "' (ID " + producto.getId() + ") quedara negativa.");
+                }
+            }
+            return releidos;
+        });
+
+        refrescarIndiceProductos(ids);
+        System.out.println("DEBUG: " + actualizados.size() + " productos actualizados en lote (" + asignacion + ") por: " + usuario);
+        return actualizados;
+    }
+
+    /** Lista de n parmetros para un "IN (...)": "?, ?, ?". */
+    static String marcadores(int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            sb.append(i == 0 ? "?" : ", ?");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Lee varios productos por id (con el nombre del almacn), en bloques de IDS_POR_CONSULTA.
+     */
+    private static List<Producto> obtenerProductosPorId(Connection conn, List<String> ids) throws SQLException {
+        List<Producto> productos = new ArrayList<>(ids.size());
+        for (int desde = 0; desde < ids.size(); desde += IDS_POR_CONSULTA) {
+            List<String> bloque = ids.subList(desde, Math.min(ids.size(), desde + IDS_POR_CONSULTA));
+            String sql = "SELECT " + COLUMNAS_PRODUCTO
+                    + "FROM productos p JOIN almacenes a ON p.almacen = a.id WHERE p.id IN (" + marcadores(bloque.size()) + ")";
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < bloque.size(); i++) {
+                    pstmt.setString(i + 1, bloque.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        productos.add(mapearProducto(rs));
+                    }
+                }
+            }
+        }
+        return productos;
+    }
+
+    /**
+     * Lleva al ndice en memoria (si est activo) los productos ya confirmados.
+     */
+    private static void refrescarIndiceProductos(List<String> ids) throws SQLException {
+        if (!IndiceProductosColumnar.estaActivo()) {
+            return;
+        }
+        try (Connection conn = getConnection()) {
+            IndiceProductosColumnar.refrescarProductos(conn, ids);
         }
     }
-}
\ No newline at end of file
+}
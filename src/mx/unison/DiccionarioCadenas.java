@@ -0,0 +1,80 @@
+package mx.unison;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diccionario que canoniza cadenas repetidas de una columna con pocos valores distintos
+ * (departamento, nombre del almacn, usuario). El driver crea un String nuevo por fila; al pasar
+ * cada valor por aqu, todos los productos cargados comparten una sola instancia por valor y las
+ * copias se descartan de inmediato.
+ * Es seguro entre hilos (la lista completa y la paginada cargan en hilos distintos). Si la columna
+ * resulta tener ms valores de los esperados, al llenarse deja de agregar y devuelve el valor tal cual.
+ */
+public class DiccionarioCadenas {
+
+    private final String nombre;
+    private final int capacidad;
+    private final ConcurrentHashMap<String, String> valores = new ConcurrentHashMap<>();
+
+    // --- Contadores ---
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong bytesAhorrados = new AtomicLong();
+
+    /**
+     * @param nombre Nombre de la columna (para las estadsticas).
+     * @param capacidad Mximo de valores distintos que se guardan.
+     */
+    public DiccionarioCadenas(String nombre, int capacidad) {
+        this.nombre = nombre;
+        this.capacidad = capacidad;
+    }
+
+    /**
+     * Devuelve la instancia compartida del valor (la primera que se vio), o el mismo valor si es null
+     * o el diccionario est lleno.
+     */
+    public String canonizar(String valor) {
+        if (valor == null) {
+            return null;
+        }
+        String compartido = valores.get(valor);
+        if (compartido != null) {
+            aciertos.incrementAndGet();
+            bytesAhorrados.addAndGet(bytesCadena(compartido));
+            return compartido;
+        }
+        if (valores.size() >= capacidad) {
+            return valor;
+        }
+        compartido = valores.putIfAbsent(valor, valor);
+        return compartido == null ? valor : compartido;
+    }
+
+    public int getTamano() {
+        return valores.size();
+    }
+
+    public long getBytesAhorrados() {
+        return bytesAhorrados.get();
+    }
+
+    /** Tamao, valores compartidos y bytes que ocuparan las copias descartadas. */
+    public String getEstadisticas() {
+        return String.format("%s: valores=%d compartidos=%d ahorro=%d KB",
+                nombre, valores.size(), aciertos.get(), bytesAhorrados.get() / 1024);
+    }
+
+    // Aproximado para la JVM de 64 bits con cadenas compactas: objeto String (24 bytes)
+    // ms su arreglo (16 de encabezado + 1 byte por carcter Latin-1 o 2 si no), alineado a 8.
+    private static long bytesCadena(String valor) {
+        int porCaracter = 1;
+        for (int i = 0; i < valor.length(); i++) {
+            if (valor.charAt(i) > 0xFF) {
+                porCaracter = 2;
+                break;
+            }
+        }
+        return 24 + ((16 + (long) valor.length() * porCaracter + 7) & ~7L);
+    }
+}
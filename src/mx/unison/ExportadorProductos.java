@@ -0,0 +1,297 @@
+package mx.unison;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exporta los productos que cumplen los 8 filtros de la pantalla de Productos a CSV o JSON Lines,
+ * opcionalmente comprimidos con gzip.
+ * Las filas pasan directo del ResultSet al archivo (DatabaseManager.recorrerProductosFiltrados):
+ * nunca se arma una lista de productos, as que la memoria usada es la misma para 10 o 10 millones de filas.
+ * Se escribe primero a un archivo temporal que se renombra al terminar; si algo falla no queda un archivo a medias.
+ */
+public class ExportadorProductos {
+
+    public enum Formato { CSV, JSONL }
+
+    // Filas que el driver lee por viaje y tamao de los buffers de escritura
+    private static final int TAMANO_FETCH = 1000;
+    private static final int TAMANO_BUFFER = 1 << 16;
+    // Cada cuntas filas se reporta el avance
+    private static final int FILAS_POR_AVANCE = 10_000;
+
+    // Mismo orden que COLUMNAS_PRODUCTO en DatabaseManager. Los nombres coinciden con los que
+    // espera ImportadorProductosCSV, as que un CSV exportado se puede volver a importar.
+    private static final String[] COLUMNAS = {"id", "nombre", "precio", "cantidad", "departamento", "almacen",
+            "fecha_hora_creacion", "fecha_hora_ultima_modificacion", "ultimo_usuario_en_modificar"};
+    private static final int COLUMNA_PRECIO = 3, COLUMNA_CANTIDAD = 4, COLUMNA_CREACION = 7, COLUMNA_MODIFICACION = 8;
+
+    private final Formato formato;
+    private final boolean comprimir;
+    private final ConsultaCancelable consulta = new ConsultaCancelable();
+    private LongConsumer alAvanzar;
+
+    public ExportadorProductos(Formato formato, boolean comprimir) {
+        this.formato = formato;
+        this.comprimir = comprimir;
+    }
+
+    /**
+     * Deduce formato y compresin de la extensin: .csv, .jsonl, .csv.gz, .jsonl.gz
+     */
+    public static ExportadorProductos paraArchivo(Path destino) {
+        String nombre = destino.getFileName().toString().toLowerCase();
+        boolean comprimir = nombre.endsWith(".gz");
+        if (comprimir) {
+            nombre = nombre.substring(0, nombre.length() - 3);
+        }
+        return new ExportadorProductos(nombre.endsWith(".jsonl") || nombre.endsWith(".json") ? Formato.JSONL : Formato.CSV, comprimir);
+    }
+
+    /** Recibe el nmero de filas escritas cada FILAS_POR_AVANCE filas (desde el hilo que exporta). */
+    public void setAlAvanzar(LongConsumer alAvanzar) {
+        this.alAvanzar = alAvanzar;
+    }
+
+    /** Interrumpe la exportacin en curso; el archivo de destino no se crea. */
+    public void cancelar() {
+        consulta.cancelar();
+    }
+
+    /**
+     * Escribe en 'destino' los productos que cumplen los filtros (lista posicional de 8, o null para todos).
+     * @return El nmero de productos exportados.
+     */
+    public long exportar(List<String> filtros, Path destino) throws SQLException, IOException {
+        long inicio = System.nanoTime();
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        long filas;
+        boolean terminado = false;
+        try {
+            try (Writer escritor = abrir(temporal)) {
+                EscritorFilas filasSalida = formato == Formato.CSV ? new EscritorCSV(escritor) : new EscritorJSONL(escritor);
+                filasSalida.encabezado();
+                long[] escritas = {0};
+                filas = DatabaseManager.recorrerProductosFiltrados(filtros, TAMANO_FETCH, consulta, rs -> {
+                    filasSalida.fila(rs);
+                    if (++escritas[0] % FILAS_POR_AVANCE == 0 && alAvanzar != null) {
+                        alAvanzar.accept(escritas[0]);
+                    }
+                });
+            }
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            terminado = true;
+        } finally {
+            if (!terminado) {
+                Files.deleteIfExists(temporal);
+            }
+        }
+        System.out.println("DEBUG: Exportados " + filas + " productos a " + destino.getFileName() + " ("
+                + formato + (comprimir ? "+gzip" : "") + ") en " + (System.nanoTime() - inicio) / 1_000_000 + " ms.");
+        return filas;
+    }
+
+    // Canal de archivo -> (gzip) -> texto UTF-8, con buffers de tamao fijo
+    private Writer abrir(Path archivo) throws IOException {
+        FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        OutputStream salida = Channels.newOutputStream(canal);
+        if (comprimir) {
+            salida = new GZIPOutputStream(salida, TAMANO_BUFFER);
+        }
+        return new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANO_BUFFER);
+    }
+
+    // ------------------------------------------------------------------
+    //                       FORMATOS DE SALIDA
+    // ------------------------------------------------------------------
+
+    // Las fechas se guardan como segundos desde la poca; se exportan como se muestran en pantalla
+    private static String texto(ResultSet rs, int columna) throws SQLException {
+        return columna == COLUMNA_CREACION || columna == COLUMNA_MODIFICACION
+                ? RelojAuditoria.formatear(rs, columna) : rs.getString(columna);
+    }
+
+    private interface EscritorFilas {
+        void encabezado() throws IOException;
+        void fila(ResultSet rs) throws SQLException, IOException;
+    }
+
+    /** CSV (RFC 4180): los campos con coma, comillas o saltos de lnea van entre comillas. */
+    private static final class EscritorCSV implements EscritorFilas {
+        private final Writer salida;
+
+        EscritorCSV(Writer salida) {
+            this.salida = salida;
+        }
+
+        @Override
+        public void encabezado() throws IOException {
+            salida.write(String.join(",", COLUMNAS));
+            salida.write('\n');
+        }
+
+        @Override
+        public void fila(ResultSet rs) throws SQLException, IOException {
+            for (int i = 1; i <= COLUMNAS.length; i++) {
+                if (i > 1) {
+                    salida.write(',');
+                }
+                String valor = i == COLUMNA_PRECIO ? String.valueOf(rs.getDouble(i)) : texto(rs, i);
+                if (valor != null) {
+                    escribirCampo(valor);
+                }
+            }
+            salida.write('\n');
+        }
+
+        private void escribirCampo(String valor) throws IOException {
+            boolean citar = false;
+            for (int i = 0; i < valor.length() && !citar; i++) {
+                char c = valor.charAt(i);
+                citar = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (citar) {
+                salida.write('"');
+                salida.write(valor.replace("\"", "\"\""));
+                salida.write('"');
+            } else {
+                salida.write(valor);
+            }
+        }
+    }
+
+    /** JSON Lines: un objeto JSON por producto y por lnea. */
+    private static final class EscritorJSONL implements EscritorFilas {
+        private final Writer salida;
+
+        EscritorJSONL(Writer salida) {
+            this.salida = salida;
+        }
+
+        @Override
+        public void encabezado() {
+            // JSON Lines no lleva encabezado
+        }
+
+        @Override
+        public void fila(ResultSet rs) throws SQLException, IOException {
+            escribirObjetoJSON(salida, rs);
+            salida.write('\n');
+        }
+    }
+
+    /**
+     * Escribe la fila actual (columnas de COLUMNAS_PRODUCTO) como un objeto JSON con los mismos nombres
+     * que el CSV. Precio y cantidad van como nmeros (un precio no finito, como null). Tambin lo usa ServidorApi.
+     */
+    static void escribirObjetoJSON(Writer salida, ResultSet rs) throws SQLException, IOException {
+        salida.write('{');
+        for (int i = 1; i <= COLUMNAS.length; i++) {
+            if (i > 1) {
+                salida.write(',');
+            }
+            salida.write('"');
+            salida.write(COLUMNAS[i - 1]);
+            salida.write("\":");
+            if (i == COLUMNA_PRECIO) {
+                // JSON no tiene NaN ni Infinity: un precio as (guardado antes de validarlo) sale como null
+                double precio = rs.getDouble(i);
+                salida.write(Double.isFinite(precio) ? String.valueOf(precio) : "null");
+            } else if (i == COLUMNA_CANTIDAD) {
+                salida.write(String.valueOf(rs.getLong(i)));
+            } else {
+                escribirTextoJSON(salida, texto(rs, i));
+            }
+        }
+        salida.write('}');
+    }
+
+    /** Escribe el texto como cadena JSON (entre comillas y escapado), o null. */
+    static void escribirTextoJSON(Writer salida, String valor) throws IOException {
+        if (valor == null) {
+            salida.write("null");
+            return;
+        }
+        salida.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"': salida.write("\\\""); break;
+                case '\\': salida.write("\\\\"); break;
+                case '\n': salida.write("\\n"); break;
+                case '\r': salida.write("\\r"); break;
+                case '\t': salida.write("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        salida.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        salida.write(c);
+                    }
+            }
+        }
+        salida.write('"');
+    }
+
+    // ------------------------------------------------------------------
+    //                       USO DESDE LA LNEA DE COMANDOS
+    // ------------------------------------------------------------------
+
+    /**
+     * Exporta sin interfaz grfica. El formato sale de la extensin del destino (.csv, .jsonl, .csv.gz, .jsonl.gz):
+     *   java mx.unison.ExportadorProductos destino [--nombre=..] [--departamento=..] [--precio-min=..] [--precio-max=..]
+     *        [--cantidad-min=..] [--cantidad-max=..] [--almacen=ID] [--id=..]
+     */
+    public static void main(String[] args) {
+        List<String> opciones = Arrays.asList("--nombre=", "--departamento=", "--precio-min=", "--precio-max=",
+                "--cantidad-min=", "--cantidad-max=", "--almacen=", "--id=");
+        if (args.length == 0) {
+            System.err.println("Uso: ExportadorProductos destino.(csv|jsonl)[.gz] " + String.join(".. ", opciones) + "..");
+            System.exit(2);
+        }
+        String[] filtros = new String[opciones.size()];
+        for (int i = 1; i < args.length; i++) {
+            int opcion = -1;
+            for (int j = 0; j < opciones.size() && opcion < 0; j++) {
+                if (args[i].startsWith(opciones.get(j))) {
+                    opcion = j;
+                }
+            }
+            if (opcion < 0) {
+                System.err.println("Argumento no reconocido: " + args[i]);
+                System.exit(2);
+            }
+            filtros[opcion] = args[i].substring(opciones.get(opcion).length());
+        }
+
+        DatabaseManager.initialize();
+        Path destino = Paths.get(args[0]);
+        ExportadorProductos exportador = paraArchivo(destino);
+        exportador.setAlAvanzar(filas -> System.out.println("  " + filas + " productos escritos..."));
+        try {
+            long filas = exportador.exportar(Arrays.asList(filtros), destino);
+            System.out.println("Exportacin terminada: " + filas + " productos en " + destino.toAbsolutePath());
+        } catch (Exception e) {
+            System.err.println("Error en la exportacin: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            DatabaseManager.cerrarPool();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package mx.unison;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Valores de los filtros de la pantalla de Productos, ya interpretados.
+ * Permite saber si un filtro nuevo solo RESTRINGE al anterior (un prefijo de nombre ms largo,
+ * un rango de precio ms angosto...) para filtrar en memoria el resultado ya cargado
+ * en lugar de volver a consultar la base de datos.
+ */
+public class FiltroProductos {
+
+    private final String nombre;
+    private final String departamento;
+    private final String precioMin;
+    private final String precioMax;
+    private final String cantidadMin;
+    private final String cantidadMax;
+    private final String idAlmacen;
+    private final String nombreAlmacen;
+    private final String id;
+
+    // Palabras del filtro de nombre, normalizadas igual que el ndice FTS5 (minsculas, sin acentos)
+    private final List<String> palabras;
+    // Lmites numricos interpretados; si alguno no es un nmero vlido no se filtra en memoria
+    private final Double precioMinNum, precioMaxNum;
+    private final Integer cantidadMinNum, cantidadMaxNum;
+    private final boolean numerosValidos;
+
+    /**
+     * Los valores vacos se tratan como "sin filtro". nombreAlmacen es el que muestra la tabla
+     * (para filtrar en memoria) e idAlmacen el que se usa en la consulta.
+     */
+    public FiltroProductos(String nombre, String departamento, String precioMin, String precioMax,
+                           String cantidadMin, String cantidadMax, String idAlmacen, String nombreAlmacen, String id) {
+        this.nombre = vacioANulo(nombre);
+        this.departamento = vacioANulo(departamento);
+        this.precioMin = vacioANulo(precioMin);
+        this.precioMax = vacioANulo(precioMax);
+        this.cantidadMin = vacioANulo(cantidadMin);
+        this.cantidadMax = vacioANulo(cantidadMax);
+        this.idAlmacen = vacioANulo(idAlmacen);
+        this.nombreAlmacen = this.idAlmacen == null ? null : nombreAlmacen;
+        this.id = canonizarId(vacioANulo(id));
+
+        this.palabras = normalizarPalabras(this.nombre);
+        Double pMin = null, pMax = null;
+        Integer cMin = null, cMax = null;
+        boolean validos = true;
+        try {
+            pMin = this.precioMin == null ? null : Double.valueOf(this.precioMin);
+            pMax = this.precioMax == null ? null : Double.valueOf(this.precioMax);
+            cMin = this.cantidadMin == null ? null : Integer.valueOf(this.cantidadMin);
+            cMax = this.cantidadMax == null ? null : Integer.valueOf(this.cantidadMax);
+        } catch (NumberFormatException e) {
+            validos = false;
+        }
+        this.precioMinNum = pMin;
+        this.precioMaxNum = pMax;
+        this.cantidadMinNum = cMin;
+        this.cantidadMaxNum = cMax;
+        this.numerosValidos = validos;
+    }
+
+    /**
+     * Lista posicional de 8 filtros que espera DatabaseManager.obtenerProductosFiltrados.
+     */
+    public List<String> aLista() {
+        return Arrays.asList(nombre, departamento, precioMin, precioMax, cantidadMin, cantidadMax, idAlmacen, id);
+    }
+
+    // ------------------------------------------------------------------
+    //                       FILTRADO INCREMENTAL
+    // ------------------------------------------------------------------
+
+    /**
+     * Indica si todo producto que cumple ESTE filtro tambin cumple el anterior,
+     * es decir, si el nuevo resultado es un subconjunto del que ya se tiene cargado.
+     */
+    public boolean esRestriccionDe(FiltroProductos anterior) {
+        if (anterior == null || !numerosValidos || !anterior.numerosValidos) {
+            return false;
+        }
+        // Cada palabra anterior debe seguir presente como prefijo de alguna palabra nueva ("mes" -> "mesa")
+        for (String palabraAnterior : anterior.palabras) {
+            boolean cubierta = false;
+            for (String palabra : palabras) {
+                if (palabra.startsWith(palabraAnterior)) {
+                    cubierta = true;
+                    break;
+                }
+            }
+            if (!cubierta) {
+                return false;
+            }
+        }
+        return mismoOSinFiltro(anterior.departamento, departamento)
+                && mismoOSinFiltro(anterior.idAlmacen, idAlmacen)
+                && mismoOSinFiltro(anterior.id, id)
+                && (anterior.precioMinNum == null || (precioMinNum != null && precioMinNum >= anterior.precioMinNum))
+                && (anterior.precioMaxNum == null || (precioMaxNum != null && precioMaxNum <= anterior.precioMaxNum))
+                && (anterior.cantidadMinNum == null || (cantidadMinNum != null && cantidadMinNum >= anterior.cantidadMinNum))
+                && (anterior.cantidadMaxNum == null || (cantidadMaxNum != null && cantidadMaxNum <= anterior.cantidadMaxNum));
+    }
+
+    /**
+     * Evala el filtro en memoria sobre un producto ya cargado, con la misma semntica que la consulta SQL.
+     */
+    public boolean coincide(Producto producto) {
+        if (id != null && !id.equals(producto.getId())) {
+            return false;
+        }
+        if (departamento != null && !departamento.equalsIgnoreCase(producto.getDepartamento())) {
+            return false;
+        }
+        if (nombreAlmacen != null && !nombreAlmacen.equalsIgnoreCase(producto.getAlmacen())) {
+            return false;
+        }
+        if (precioMinNum != null || precioMaxNum != null) {
+            double precio = producto.getPrecio();
+            if ((precioMinNum != null && precio < precioMinNum) || (precioMaxNum != null && precio > precioMaxNum)) {
+                return false;
+            }
+        }
+        if (cantidadMinNum != null || cantidadMaxNum != null) {
+            int cantidad = producto.getCantidad();
+            if ((cantidadMinNum != null && cantidad < cantidadMinNum) || (cantidadMaxNum != null && cantidad > cantidadMaxNum)) {
+                return false;
+            }
+        }
+        if (!palabras.isEmpty()) {
+            // Igual que FTS5 con prefijos: cada palabra buscada inicia alguna palabra del nombre
+            List<String> palabrasNombre = normalizarPalabras(producto.getNombre());
+            for (String palabra : palabras) {
+                boolean encontrada = false;
+                for (String palabraNombre : palabrasNombre) {
+                    if (palabraNombre.startsWith(palabra)) {
+                        encontrada = true;
+                        break;
+                    }
+                }
+                if (!encontrada) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------
+    //                       UTILIDADES
+    // ------------------------------------------------------------------
+
+    /**
+     * Separa el texto en palabras como el tokenizador unicode61 del ndice FTS5:
+     * letras y dgitos, en minsculas y sin acentos.
+     */
+    static List<String> normalizarPalabras(String texto) {
+        List<String> resultado = new ArrayList<>();
+        if (texto == null) {
+            return resultado;
+        }
+        // Solo se descomponen los acentos si hay caracteres fuera de ASCII (lo normal es que no haya)
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) > 127) {
+                texto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+                break;
+            }
+        }
+        StringBuilder palabra = new StringBuilder();
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                palabra.append(Character.toLowerCase(c));
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK && palabra.length() > 0) {
+                // Cualquier otro carcter (salvo los acentos ya separados) termina la palabra
+                resultado.add(palabra.toString());
+                palabra.setLength(0);
+            }
+        }
+        if (palabra.length() > 0) {
+            resultado.add(palabra.toString());
+        }
+        return resultado;
+    }
+
+    // El filtro anterior no restringa el campo, o el nuevo lo restringe al mismo valor
+    private static boolean mismoOSinFiltro(String anterior, String nuevo) {
+        return anterior == null || (nuevo != null && anterior.equalsIgnoreCase(nuevo));
+    }
+
+    // "05" y "5" encuentran el mismo producto en SQL (afinidad INTEGER); en memoria se comparan como texto
+    private static String canonizarId(String valor) {
+        try {
+            return valor == null ? null : Long.toString(Long.parseLong(valor));
+        } catch (NumberFormatException e) {
+            return valor;
+        }
+    }
+
+    private static String vacioANulo(String valor) {
+        return valor == null || valor.trim().isEmpty() ? null : valor.trim();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof FiltroProductos)) {
+            return false;
+        }
+        FiltroProductos otro = (FiltroProductos) o;
+        return aLista().equals(otro.aLista());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(aLista().toArray());
+    }
+}
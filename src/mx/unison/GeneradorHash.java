@@ -1,8 +1,21 @@
 package mx.unison;
+import java.util.Arrays;
 import org.mindrot.jbcrypt.BCrypt;
 
 public class GeneradorHash {
+
+    // Tiempo que debera tardar una verificacin (inicio de sesin) en el equipo donde se instala
+    private static final long OBJETIVO_MS_POR_DEFECTO = 250;
+    private static final int REPETICIONES = 5;
+
+    // Uso: GeneradorHash                       -> hashes de los usuarios iniciales
+    //      GeneradorHash --calibrar [ms]       -> costo de BCrypt recomendado para este equipo
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--calibrar")) {
+            calibrar(args.length > 1 ? Long.parseLong(args[1]) : OBJETIVO_MS_POR_DEFECTO);
+            return;
+        }
+
         // --- Usuario 1 ---
         String passU1 = "admin23"; // <--- CAMBIA ESTO por la clave real que usars
         String hashU1 = Seguridad.generarHash(passU1);
@@ -24,4 +37,39 @@ public class GeneradorHash {
         System.out.println("Hash a guardar: " + hashU3);
         System.out.println("----------------------------------------");
     }
+
+    // Mide una verificacin con cada costo (cada punto duplica el tiempo) y recomienda el mayor
+    // cuya mediana no pase del objetivo. Debe ejecutarse en el equipo donde se usar la aplicacin.
+    private static void calibrar(long objetivoMs) {
+        System.out.println("Calibrando BCrypt para " + objetivoMs + " ms por inicio de sesin...");
+        BCrypt.checkpw("calentamiento", Seguridad.generarHash("calentamiento", Seguridad.COSTO_MINIMO));
+
+        int recomendado = Seguridad.COSTO_MINIMO;
+        for (int costo = Seguridad.COSTO_MINIMO; costo <= Seguridad.COSTO_MAXIMO; costo++) {
+            long ms = medianaVerificacionMs(costo);
+            System.out.printf("  costo %2d: %d ms%n", costo, ms);
+            if (ms > objetivoMs) {
+                break;
+            }
+            recomendado = costo;
+        }
+
+        System.out.println("----------------------------------------");
+        System.out.println("Costo recomendado: " + recomendado + " (configurado: " + Seguridad.getCosto() + ")");
+        System.out.println("Agregar a inventario.properties:");
+        System.out.println(Configuracion.COSTO_BCRYPT + "=" + recomendado);
+        System.out.println("Cada contrasea se vuelve a guardar con el nuevo costo en su siguiente inicio de sesin.");
+    }
+
+    private static long medianaVerificacionMs(int costo) {
+        String hash = Seguridad.generarHash("calibracion", costo);
+        long[] tiempos = new long[REPETICIONES];
+        for (int i = 0; i < REPETICIONES; i++) {
+            long inicio = System.nanoTime();
+            BCrypt.checkpw("calibracion", hash);
+            tiempos[i] = (System.nanoTime() - inicio) / 1_000_000;
+        }
+        Arrays.sort(tiempos);
+        return tiempos[REPETICIONES / 2];
+    }
 }
@@ -0,0 +1,578 @@
+package mx.unison;
+
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Importacin masiva de productos desde un archivo CSV.
+ * El archivo se lee en flujo (nunca completo en memoria), cada fila se valida con las mismas reglas
+ * del formulario (ValidadorProducto) y las filas vlidas se insertan por lotes (addBatch/executeBatch)
+ * dentro de UNA sola transaccin: o se importa todo el archivo o nada.
+ * Las filas rechazadas se escriben, con el motivo, en un archivo "*.rechazos.csv" junto al original.
+ */
+public class ImportadorProductosCSV {
+
+    /** Campos del producto que se leen del archivo (todos son obligatorios). */
+    public static final String[] CAMPOS = {"nombre", "precio", "cantidad", "departamento", "almacen"};
+    private static final int NOMBRE = 0, PRECIO = 1, CANTIDAD = 2, DEPARTAMENTO = 3, ALMACEN = 4;
+
+    // Filas por executeBatch (y cada cuntas filas se reporta el avance)
+    private static final int TAMANO_LOTE = 1000;
+    private static final int TAMANO_BUFFER = 1 << 16;
+
+    // El id (TEXT, sin autoincremento) se toma de la secuencia 'productos' por bloques de TAMANO_LOTE
+    private static final String SQL_INSERTAR = "INSERT INTO productos (nombre, precio, cantidad, departamento, almacen, "
+            + "fecha_hora_creacion, fecha_hora_ultima_modificacion, ultimo_usuario_en_modificar, id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_INDEXAR_NUEVOS = "INSERT INTO productos_fts(rowid, nombre, departamento) "
+            + "SELECT rowid, nombre, departamento FROM productos WHERE rowid > ?";
+
+    /**
+     * Avance o resultado final de una importacin.
+     */
+    public static final class Resultado {
+        public final long filasLeidas;
+        /** Filas guardadas; en los avances es 0, porque nada queda guardado hasta el commit final. */
+        public final long filasInsertadas;
+        public final long filasRechazadas;
+        /** Fraccin del archivo ya leda (0 a 1). */
+        public final double fraccion;
+        /** Archivo con las filas rechazadas, o null si no hubo rechazos. */
+        public final Path archivoRechazos;
+        public final long milisegundos;
+
+        Resultado(long filasLeidas, long filasInsertadas, long filasRechazadas, double fraccion, Path archivoRechazos, long milisegundos) {
+            this.filasLeidas = filasLeidas;
+            this.filasInsertadas = filasInsertadas;
+            this.filasRechazadas = filasRechazadas;
+            this.fraccion = fraccion;
+            this.archivoRechazos = archivoRechazos;
+            this.milisegundos = milisegundos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d filas ledas, %d insertadas, %d rechazadas en %d ms", filasLeidas, filasInsertadas, filasRechazadas, milisegundos);
+        }
+    }
+
+    // --- Configuracin ---
+    private final Path archivo;
+    private Charset codificacion = StandardCharsets.UTF_8;
+    private char separador = ',';
+    private boolean conEncabezado = true;
+    // Mapeo de columnas: campo -> nombre del encabezado, o campo -> posicin (desde 0)
+    private final Map<String, String> encabezadoPorCampo = new HashMap<>();
+    private final Map<String, Integer> posicionPorCampo = new HashMap<>();
+    private Consumer<Resultado> alAvanzar;
+
+    public ImportadorProductosCSV(Path archivo) {
+        this.archivo = archivo;
+    }
+
+    public void setCodificacion(Charset codificacion) {
+        this.codificacion = codificacion;
+    }
+
+    public void setSeparador(char separador) {
+        this.separador = separador;
+    }
+
+    /** Indica si la primera fila del archivo es el encabezado (por defecto s). */
+    public void setConEncabezado(boolean conEncabezado) {
+        this.conEncabezado = conEncabezado;
+    }
+
+    /**
+     * Lee el campo de la columna con ese encabezado (sin importar maysculas ni acentos).
+     * Por defecto cada campo se busca en la columna que se llama igual ("nombre", "precio", ...).
+     */
+    public void mapearColumna(String campo, String encabezado) {
+        posicionPorCampo.remove(validarCampo(campo));
+        encabezadoPorCampo.put(campo, encabezado);
+    }
+
+    /** Lee el campo de la columna en esa posicin (desde 0); necesario si el archivo no tiene encabezado. */
+    public void mapearColumna(String campo, int posicion) {
+        encabezadoPorCampo.remove(validarCampo(campo));
+        posicionPorCampo.put(campo, posicion);
+    }
+
+    /** Recibe el avance cada TAMANO_LOTE filas (se llama desde el hilo que importa). */
+    public void setAlAvanzar(Consumer<Resultado> alAvanzar) {
+        this.alAvanzar = alAvanzar;
+    }
+
+    // ------------------------------------------------------------------
+    //                       IMPORTACIN
+    // ------------------------------------------------------------------
+
+    /**
+     * Importa el archivo completo. Si ocurre un error de base de datos o de lectura se deshace
+     * toda la transaccin y no queda ningn producto del archivo.
+     */
+    public Resultado importar() throws IOException, SQLException {
+        long inicio = System.nanoTime();
+
+        long tamanoArchivo = Math.max(1, Files.size(archivo));
+        long leidas = 0, insertadas = 0, rechazadas = 0;
+        EscritorRechazos rechazos = new EscritorRechazos(archivoRechazos());
+        boolean confirmada = false;
+
+        try (EntradaContada entrada = new EntradaContada(Files.newInputStream(archivo));
+             Reader lector = new InputStreamReader(entrada, codificacion);
+             Connection conn = DatabaseManager.getConnection()) {
+
+            LectorCSV csv = new LectorCSV(lector, separador);
+            List<String> campos = new ArrayList<>();
+            List<String> encabezado = null;
+            if (conEncabezado) {
+                if (!csv.leer(campos)) {
+                    return new Resultado(0, 0, 0, 1.0, null, 0);
+                }
+                encabezado = new ArrayList<>(campos);
+                rechazos.setEncabezado(encabezado);
+            }
+            int[] posiciones = resolverPosiciones(encabezado);
+
+            // Todas las filas del archivo comparten fecha y usuario de la importacin
+            long ahora = RelojAuditoria.ahora();
+            String usuario = SessionContext.getCurrentUserName();
+
+            boolean autoCommitAnterior = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement();
+                 PreparedStatement pstmt = conn.prepareStatement(SQL_INSERTAR)) {
+                // Indexar en productos_fts fila por fila (trigger) toma ms que la propia insercin:
+                // se quita el trigger y al final se indexan todas las filas nuevas con un solo INSERT.
+                // Al quitarlo, esta transaccin toma el candado de escritura, as que ningn otro
+                // insert puede ocurrir sin el trigger; si algo falla, el rollback lo restaura.
+                // Lo mismo con el trigger de los resmenes del tablero (ResumenInventario).
+                stmt.execute("DROP TRIGGER IF EXISTS productos_fts_ai");
+                stmt.execute("DROP TRIGGER IF EXISTS resumen_ai");
+                long ultimoRowidAnterior;
+                try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(rowid), 0) FROM productos")) {
+                    ultimoRowidAnterior = rs.next() ? rs.getLong(1) : 0;
+                }
+
+                int pendientes = 0;
+                long siguienteId = 0, finBloque = 0; // Ids reservados y an sin usar: [siguienteId, finBloque)
+                while (csv.leer(campos)) {
+                    if (campos.size() == 1 && campos.get(0).trim().isEmpty()) {
+                        continue; // Fila en blanco
+                    }
+                    leidas++;
+                    String motivo = prepararFila(campos, posiciones, pstmt);
+                    if (motivo != null) {
+                        rechazadas++;
+                        rechazos.escribir(campos, motivo);
+                        continue;
+                    }
+                    pstmt.setLong(6, ahora);
+                    pstmt.setLong(7, ahora);
+                    pstmt.setString(8, usuario);
+                    if (siguienteId == finBloque) {
+                        siguienteId = DatabaseManager.reservarIds(conn, "productos", TAMANO_LOTE);
+                        finBloque = siguienteId + TAMANO_LOTE;
+                    }
+                    pstmt.setString(9, String.valueOf(siguienteId++));
+                    pstmt.addBatch();
+
+                    if (++pendientes == TAMANO_LOTE) {
+                        pstmt.executeBatch();
+                        insertadas += pendientes;
+                        pendientes = 0;
+                        reportarAvance(new Resultado(leidas, 0, rechazadas,
+                                Math.min(1.0, (double) entrada.leidos / tamanoArchivo), null, 0));
+                    }
+                }
+                if (pendientes > 0) {
+                    pstmt.executeBatch();
+                    insertadas += pendientes;
+                }
+                if (finBloque > siguienteId) {
+                    // La transaccin tiene el candado de escritura desde el DROP TRIGGER: nadie ms reserv
+                    // despus de este bloque, as que los ids sobrantes se devuelven a la secuencia
+                    DatabaseManager.devolverIds(conn, "productos", (int) (finBloque - siguienteId));
+                }
+
+                try (PreparedStatement indexar = conn.prepareStatement(SQL_INDEXAR_NUEVOS)) {
+                    indexar.setLong(1, ultimoRowidAnterior);
+                    indexar.executeUpdate();
+                }
+                for (String sqlAcumular : ResumenInventario.SQL_ACUMULAR_NUEVOS) {
+                    try (PreparedStatement acumular = conn.prepareStatement(sqlAcumular)) {
+                        acumular.setLong(1, ultimoRowidAnterior);
+                        acumular.executeUpdate();
+                    }
+                }
+                // Un registro de alta por fila en la bitcora de cambios, tambin con una sola sentencia
+                BitacoraCambios.registrarProductosInsertados(conn, ultimoRowidAnterior, ahora, usuario);
+                stmt.execute(DatabaseManager.SQL_TRIGGER_FTS_INSERCION);
+                stmt.execute(ResumenInventario.SQL_TRIGGER_INSERCION);
+                conn.commit();
+                confirmada = true;
+            } catch (SQLException | IOException | RuntimeException e) {
+                conn.rollback();
+                System.err.println("ERROR: Importacin cancelada, no se guard ninguna fila: " + e.getMessage());
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommitAnterior);
+            }
+        } finally {
+            rechazos.close();
+            if (!confirmada) {
+                // Importacin revertida: no queda ninguna fila, as que tampoco el archivo de rechazos
+                rechazos.borrar();
+            }
+        }
+
+        if (insertadas > 0) {
+            // Cambio masivo: el ndice en memoria (si est activo) se recarga completo
+            IndiceProductosColumnar.invalidar();
+        }
+        Resultado resultado = new Resultado(leidas, insertadas, rechazadas, 1.0,
+                rechazos.huboRechazos() ? rechazos.ruta : null, (System.nanoTime() - inicio) / 1_000_000);
+        reportarAvance(resultado);
+        System.out.println("DEBUG: Importacin de " + archivo.getFileName() + ": " + resultado);
+        return resultado;
+    }
+
+    /**
+     * Valida la fila y, si es vlida, deja sus valores en las posiciones 1-5 de la sentencia.
+     * @return null si la fila es vlida, o el motivo del rechazo.
+     */
+    private String prepararFila(List<String> campos, int[] posiciones, PreparedStatement pstmt) throws SQLException {
+        String[] valores = new String[CAMPOS.length];
+        for (int i = 0; i < CAMPOS.length; i++) {
+            if (posiciones[i] >= campos.size()) {
+                return "La fila tiene " + campos.size() + " columnas; falta la columna de '" + CAMPOS[i] + "'.";
+            }
+            valores[i] = campos.get(posiciones[i]).trim();
+        }
+
+        String departamento = valores[DEPARTAMENTO].isEmpty() ? null : valores[DEPARTAMENTO];
+        String almacen = valores[ALMACEN].isEmpty() ? null : valores[ALMACEN];
+        String idAlmacen = AlmacenUtils.resolverIdAlmacen(almacen);
+
+        String errores = ValidadorProducto.validar(valores[NOMBRE], valores[PRECIO], valores[CANTIDAD], departamento, almacen);
+        if (almacen != null && idAlmacen == null) {
+            errores += "El Almacn '" + almacen + "' no existe.\n";
+        }
+        if (!errores.isEmpty()) {
+            return errores.trim().replace("\n", " ");
+        }
+
+        pstmt.setString(1, valores[NOMBRE]);
+        pstmt.setDouble(2, Double.parseDouble(valores[PRECIO]));
+        pstmt.setInt(3, Integer.parseInt(valores[CANTIDAD]));
+        pstmt.setString(4, ValidadorProducto.canonizarDepartamento(departamento));
+        pstmt.setString(5, idAlmacen);
+        return null;
+    }
+
+    /** Posicin en la fila de cada uno de los CAMPOS, segn el mapeo y el encabezado. */
+    private int[] resolverPosiciones(List<String> encabezado) {
+        int[] posiciones = new int[CAMPOS.length];
+        for (int i = 0; i < CAMPOS.length; i++) {
+            String campo = CAMPOS[i];
+            Integer posicion = posicionPorCampo.get(campo);
+            if (posicion == null) {
+                if (encabezado == null) {
+                    throw new IllegalArgumentException("Sin encabezado, la columna de '" + campo + "' debe indicarse por posicin.");
+                }
+                String buscado = normalizarEncabezado(encabezadoPorCampo.getOrDefault(campo, campo));
+                for (int j = 0; j < encabezado.size() && posicion == null; j++) {
+                    if (normalizarEncabezado(encabezado.get(j)).equals(buscado)) {
+                        posicion = j;
+                    }
+                }
+                if (posicion == null) {
+                    throw new IllegalArgumentException("El archivo no tiene la columna '" + encabezadoPorCampo.getOrDefault(campo, campo) + "'.");
+                }
+            }
+            posiciones[i] = posicion;
+        }
+        return posiciones;
+    }
+
+    private void reportarAvance(Resultado avance) {
+        if (alAvanzar != null) {
+            alAvanzar.accept(avance);
+        }
+    }
+
+    // "datos.csv" -> "datos.rechazos.csv", en la misma carpeta
+    private Path archivoRechazos() {
+        String nombre = archivo.getFileName().toString();
+        int punto = nombre.lastIndexOf('.');
+        return archivo.resolveSibling((punto > 0 ? nombre.substring(0, punto) : nombre) + ".rechazos.csv");
+    }
+
+    private static String normalizarEncabezado(String texto) {
+        String sinAcentos = Normalizer.normalize(texto.trim(), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return sinAcentos.toLowerCase();
+    }
+
+    private static String validarCampo(String campo) {
+        for (String valido : CAMPOS) {
+            if (valido.equals(campo)) {
+                return campo;
+            }
+        }
+        throw new IllegalArgumentException("Campo desconocido: " + campo);
+    }
+
+    // ------------------------------------------------------------------
+    //                       LECTURA Y ESCRITURA DE CSV
+    // ------------------------------------------------------------------
+
+    /**
+     * Lector de CSV (RFC 4180) en flujo: campos entre comillas con separadores, saltos de lnea
+     * y comillas dobles ("") dentro.
+     */
+    private static final class LectorCSV {
+        private final Reader lector;
+        private final char separador;
+        private final char[] buffer = new char[TAMANO_BUFFER];
+        private int posicion = 0, limite = 0;
+        private final StringBuilder campo = new StringBuilder();
+        private boolean inicio = true;
+
+        LectorCSV(Reader lector, char separador) {
+            this.lector = lector;
+            this.separador = separador;
+        }
+
+        private int siguiente() throws IOException {
+            if (posicion == limite) {
+                limite = lector.read(buffer, 0, buffer.length);
+                posicion = 0;
+                if (limite <= 0) {
+                    limite = 0;
+                    return -1;
+                }
+            }
+            return buffer[posicion++];
+        }
+
+        /** Lee el siguiente registro en 'campos'. Devuelve false al llegar al final del archivo. */
+        boolean leer(List<String> campos) throws IOException {
+            campos.clear();
+            int c = siguiente();
+            if (inicio) {
+                inicio = false;
+                if (c == '\uFEFF') {
+                    c = siguiente(); // Marca BOM de archivos guardados desde Excel
+                }
+            }
+            if (c < 0) {
+                return false;
+            }
+            campo.setLength(0);
+            boolean entreComillas = false;
+            while (true) {
+                if (entreComillas) {
+                    if (c < 0) {
+                        break; // Comillas sin cerrar al final del archivo: se toma lo ledo
+                    }
+                    if (c == '"') {
+                        c = siguiente();
+                        if (c != '"') {
+                            entreComillas = false;
+                            continue; // Se procesa el carcter que sigue a la comilla de cierre
+                        }
+                    }
+                    campo.append((char) c);
+                } else if (c == separador) {
+                    campos.add(campo.toString());
+                    campo.setLength(0);
+                } else if (c == '\n' || c < 0) {
+                    break;
+                } else if (c == '"' && campo.length() == 0) {
+                    entreComillas = true;
+                } else if (c != '\r') {
+                    campo.append((char) c);
+                }
+                c = siguiente();
+            }
+            campos.add(campo.toString());
+            return true;
+        }
+    }
+
+    /**
+     * Archivo de filas rechazadas: las columnas originales ms una columna "motivo".
+     * Solo se crea si hay al menos un rechazo.
+     */
+    private final class EscritorRechazos implements AutoCloseable {
+        final Path ruta;
+        private List<String> encabezado;
+        private Writer escritor;
+
+        EscritorRechazos(Path ruta) {
+            this.ruta = ruta;
+        }
+
+        void setEncabezado(List<String> encabezado) {
+            this.encabezado = encabezado;
+        }
+
+        boolean huboRechazos() {
+            return escritor != null;
+        }
+
+        void escribir(List<String> campos, String motivo) throws IOException {
+            if (escritor == null) {
+                escritor = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(ruta), codificacion), TAMANO_BUFFER);
+                if (encabezado != null) {
+                    escribirFila(encabezado, "motivo");
+                }
+            }
+            escribirFila(campos, motivo);
+        }
+
+        private void escribirFila(List<String> campos, String ultimo) throws IOException {
+            for (String valor : campos) {
+                escribirCampo(valor);
+                escritor.write(separador);
+            }
+            escribirCampo(ultimo);
+            escritor.write('\n');
+        }
+
+        private void escribirCampo(String valor) throws IOException {
+            boolean citar = valor.indexOf(separador) >= 0 || valor.indexOf('"') >= 0 || valor.indexOf('\n') >= 0 || valor.indexOf('\r') >= 0;
+            if (citar) {
+                escritor.write('"');
+                escritor.write(valor.replace("\"", "\"\""));
+                escritor.write('"');
+            } else {
+                escritor.write(valor);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (escritor != null) {
+                escritor.close();
+            }
+        }
+
+        void borrar() throws IOException {
+            if (escritor != null) {
+                Files.deleteIfExists(ruta);
+                escritor = null;
+            }
+        }
+    }
+
+    /** Cuenta los bytes ledos del archivo para calcular el avance. */
+    private static final class EntradaContada extends FilterInputStream {
+        volatile long leidos = 0;
+
+        EntradaContada(InputStream entrada) {
+            super(entrada);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                leidos++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int desde, int cantidad) throws IOException {
+            int n = super.read(b, desde, cantidad);
+            if (n > 0) {
+                leidos += n;
+            }
+            return n;
+        }
+    }
+
+    // ------------------------------------------------------------------
+    //                       USO DESDE LA LNEA DE COMANDOS
+    // ------------------------------------------------------------------
+
+    /**
+     * Importa sin interfaz grfica (p. ej. al dar de alta un almacn nuevo con miles de productos):
+     *   java mx.unison.ImportadorProductosCSV archivo.csv [opciones] [campo=encabezado | campo=#posicion ...]
+     * Opciones: --separador=; --codificacion=ISO-8859-1 --sin-encabezado --usuario=nombre
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Uso: ImportadorProductosCSV archivo.csv [--separador=,] [--codificacion=UTF-8] "
+                    + "[--sin-encabezado] [--usuario=nombre] [campo=encabezado | campo=#posicion ...]");
+            System.err.println("Campos: " + String.join(", ", CAMPOS));
+            System.exit(2);
+        }
+        ImportadorProductosCSV importador = new ImportadorProductosCSV(Paths.get(args[0]));
+        String usuario = "importacion_csv";
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--separador=")) {
+                String valor = arg.substring("--separador=".length());
+                importador.setSeparador("\\t".equals(valor) ? '\t' : valor.charAt(0));
+            } else if (arg.startsWith("--codificacion=")) {
+                importador.setCodificacion(Charset.forName(arg.substring("--codificacion=".length())));
+            } else if (arg.equals("--sin-encabezado")) {
+                importador.setConEncabezado(false);
+            } else if (arg.startsWith("--usuario=")) {
+                usuario = arg.substring("--usuario=".length());
+            } else if (arg.contains("=")) {
+                String campo = arg.substring(0, arg.indexOf('='));
+                String columna = arg.substring(arg.indexOf('=') + 1);
+                if (columna.startsWith("#")) {
+                    importador.mapearColumna(campo, Integer.parseInt(columna.substring(1)) - 1);
+                } else {
+                    importador.mapearColumna(campo, columna);
+                }
+            } else {
+                System.err.println("Argumento no reconocido: " + arg);
+                System.exit(2);
+            }
+        }
+
+        SessionContext.setCurrentUserName(usuario);
+        DatabaseManager.initialize();
+        importador.setAlAvanzar(avance ->
+                System.out.printf("  %3.0f%%  %d filas ledas%n", avance.fraccion * 100, avance.filasLeidas));
+        try {
+            Resultado resultado = importador.importar();
+            System.out.println("Importacin terminada: " + resultado);
+            if (resultado.archivoRechazos != null) {
+                System.out.println("Filas rechazadas en: " + resultado.archivoRechazos.toAbsolutePath());
+            }
+        } catch (Exception e) {
+            System.err.println("Error en la importacin: " + e.getMessage());
+            System.exit(1);
+        } finally {
+            DatabaseManager.cerrarPool();
+        }
+    }
+}
@@ -0,0 +1,1149 @@
+package mx.unison;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * ndice en memoria de la tabla productos, organizado por columnas en arreglos primitivos
+ * (ids, precios, cantidades, fechas en segundos desde la poca y cdigos de diccionario para
+ * departamento, almacn, nombre y usuario). Resuelve los 8 filtros de la pantalla de Productos recorriendo arreglos, sin SQL,
+ * y ocupa mucha menos memoria que una lista de objetos Producto.
+ *
+ * Es opcional: se activa con la clave "productos.indiceColumnar=true" (ver Configuracion).
+ * Se carga al iniciar en segundo plano; mientras no est listo, DatabaseManager usa SQL.
+ * Los mtodos de escritura de DatabaseManager lo mantienen al da despus de cada cambio.
+ *
+ * Devuelve exactamente lo mismo que las consultas SQL de DatabaseManager: solo productos cuyo
+ * almacn existe (el JOIN), el mismo orden (OrdenProductos: la columna elegida e id), y el nombre
+ * buscado por prefijos de palabra como el ndice FTS5.
+ */
+public class IndiceProductosColumnar {
+
+    private static final String SQL_PRODUCTOS = "SELECT id, nombre, precio, cantidad, departamento, almacen, " +
+            "fecha_hora_creacion, fecha_hora_ultima_modificacion, ultimo_usuario_en_modificar FROM productos";
+    private static final String SQL_ALMACENES = "SELECT id, nombre FROM almacenes";
+
+    // Nombres nuevos (agregados despus del ltimo ordenamiento del diccionario) antes de reordenarlo
+    private static final int MAX_NOMBRES_SIN_RANGO = 1024;
+
+    // Nmero vlido para SQLite (lo que la afinidad numrica convertira); Double.parseDouble acepta ms
+    private static final Pattern NUMERO = Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+
+    private static final ReentrantReadWriteLock CANDADO = new ReentrantReadWriteLock();
+
+    // null mientras no haya terminado la primera carga
+    private static volatile Columnas columnas;
+    private static volatile boolean activo = false;
+
+    // Escrituras aplicadas; si cambia durante una carga, la carga se repite para no perderlas
+    private static long contadorEscrituras = 0;
+
+    // ltimo resultado ordenado, para servir pginas de la misma consulta sin volver a filtrar
+    private static volatile ResultadoOrdenado ultimoResultado;
+
+    // Constructor privado para evitar instanciacin
+    private IndiceProductosColumnar() {}
+
+    // ------------------------------------------------------------------
+    //                       CARGA Y ESTADO
+    // ------------------------------------------------------------------
+
+    /**
+     * Si la configuracin lo pide, carga el ndice en un hilo de fondo.
+     */
+    public static void iniciar() {
+        if (!Configuracion.getBooleano(Configuracion.INDICE_COLUMNAR, false)) {
+            return;
+        }
+        activo = true;
+        cargarEnSegundoPlano();
+    }
+
+    /**
+     * Vuelve a cargar el ndice completo en segundo plano (tras cambios masivos hechos fuera de
+     * los mtodos que lo actualizan fila por fila). Mientras tanto se sigue usando la copia anterior.
+     */
+    public static void invalidar() {
+        if (activo) {
+            cargarEnSegundoPlano();
+        }
+    }
+
+    private static void cargarEnSegundoPlano() {
+        Thread hilo = new Thread(() -> {
+            try {
+                cargar();
+            } catch (SQLException e) {
+                System.err.println("ERROR: No se pudo cargar el ndice columnar de productos; se usar SQL. " + e.getMessage());
+            }
+        }, "indice-productos");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Lee la tabla completa y reemplaza el ndice. Si hubo escrituras mientras se lea, repite.
+     */
+    static void cargar() throws SQLException {
+        for (int intento = 1; intento <= 3; intento++) {
+            long escriturasAlIniciar;
+            CANDADO.readLock().lock();
+            try {
+                escriturasAlIniciar = contadorEscrituras;
+            } finally {
+                CANDADO.readLock().unlock();
+            }
+
+            long inicio = System.nanoTime();
+            Columnas nuevas = leerTabla();
+
+            CANDADO.writeLock().lock();
+            try {
+                if (contadorEscrituras == escriturasAlIniciar) {
+                    columnas = nuevas;
+                    ultimoResultado = null;
+                    System.out.println(String.format("DEBUG: ndice columnar de productos cargado: %d filas en %d ms (~%d KB).",
+                            nuevas.filasVivas, (System.nanoTime() - inicio) / 1_000_000, nuevas.bytesAproximados() / 1024));
+                    return;
+                }
+            } finally {
+                CANDADO.writeLock().unlock();
+            }
+        }
+        System.err.println("ADVERTENCIA: El ndice columnar no pudo cargarse por escrituras concurrentes; se reintentar al invalidarlo.");
+    }
+
+    private static Columnas leerTabla() throws SQLException {
+        Columnas c = new Columnas(1024);
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = crearSentencia(conn)) {
+            try (ResultSet rs = stmt.executeQuery(SQL_ALMACENES)) {
+                while (rs.next()) {
+                    c.ponerAlmacen(rs.getString(1), rs.getString(2));
+                }
+            }
+            // El id es TEXT: "ORDER BY id" dara 1, 10, 2...; las filas se guardan en orden numrico
+            try (ResultSet rs = stmt.executeQuery(SQL_PRODUCTOS + " ORDER BY CAST(id AS INTEGER)")) {
+                while (rs.next()) {
+                    long id = leerId(rs);
+                    if (c.filas > 0 && id <= c.ids[c.filas - 1]) {
+                        throw new SQLException("Hay id de productos repetidos como nmero (id " + id + ").");
+                    }
+                    c.insertarEn(c.filas);
+                    c.escribirFila(c.filas - 1, id, rs);
+                }
+            }
+        }
+        c.ordenarNombres();
+        return c;
+    }
+
+    private static Statement crearSentencia(Connection conn) throws SQLException {
+        if (conn == null) {
+            throw new SQLException("No hay conexin a la base de datos.");
+        }
+        return conn.createStatement();
+    }
+
+    private static long leerId(ResultSet rs) throws SQLException {
+        String texto = rs.getString(1);
+        try {
+            return Long.parseLong(texto);
+        } catch (NumberFormatException e) {
+            throw new SQLException("El ndice columnar requiere id numricos; id no vlido: " + texto);
+        }
+    }
+
+    /** Verdadero si est habilitado en la configuracin (aunque an se est cargando). */
+    public static boolean estaActivo() {
+        return activo;
+    }
+
+    /** Verdadero si ya puede responder consultas. */
+    public static boolean estaListo() {
+        return activo && columnas != null;
+    }
+
+    public static String getEstadisticas() {
+        Columnas c = columnas;
+        if (!activo) {
+            return "IndiceProductosColumnar desactivado";
+        }
+        if (c == null) {
+            return "IndiceProductosColumnar cargando...";
+        }
+        return String.format("IndiceProductosColumnar filas=%d nombres=%d palabras=%d departamentos=%d ~%d KB",
+                c.filasVivas, c.dNombres.tamano, c.dPalabras.tamano, c.dDepartamentos.tamano, c.bytesAproximados() / 1024);
+    }
+
+    // ------------------------------------------------------------------
+    //                       ACTUALIZACIN DESDE LAS ESCRITURAS
+    // ------------------------------------------------------------------
+
+    /**
+     * Relee de la base de datos el producto indicado (ya guardado) y lo inserta o actualiza en el ndice.
+     * Usa la conexin del llamador para ver su propio cambio aunque est dentro de una transaccin.
+     */
+    public static void refrescarProducto(Connection conn, String id) throws SQLException {
+        if (activo) {
+            refrescar(conn, SQL_PRODUCTOS + " WHERE id = ?", Collections.singletonList(id));
+        }
+    }
+
+    /**
+     * Igual que refrescarProducto para varios productos (operaciones en lote): se releen por bloques
+     * con una consulta "id IN (...)" en lugar de una consulta por producto.
+     */
+    public static void refrescarProductos(Connection conn, List<String> ids) throws SQLException {
+        if (!activo) {
+            return;
+        }
+        for (int desde = 0; desde < ids.size(); desde += DatabaseManager.IDS_POR_CONSULTA) {
+            List<String> bloque = ids.subList(desde, Math.min(ids.size(), desde + DatabaseManager.IDS_POR_CONSULTA));
+            refrescar(conn, SQL_PRODUCTOS + " WHERE id IN (" + DatabaseManager.marcadores(bloque.size()) + ")", bloque);
+        }
+    }
+
+    private static void refrescar(Connection conn, String sql, List<String> parametros) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < parametros.size(); i++) {
+                pstmt.setString(i + 1, parametros.get(i));
+            }
+            try (ResultSet rs = pstmt.executeQuery()) {
+                CANDADO.writeLock().lock();
+                try {
+                    contadorEscrituras++;
+                    Columnas c = columnas;
+                    while (rs.next()) {
+                        if (c == null) {
+                            continue; // An cargando: la carga detectar la escritura y volver a leer
+                        }
+                        long id = leerId(rs);
+                        int posicion = c.buscarId(id);
+                        if (posicion < 0) {
+                            posicion = -posicion - 1;
+                            c.insertarEn(posicion);
+                        }
+                        c.escribirFila(posicion, id, rs);
+                        c.version++;
+                    }
+                } finally {
+                    CANDADO.writeLock().unlock();
+                }
+            }
+        }
+    }
+
+    public static void eliminarProducto(String id) {
+        if (!activo) {
+            return;
+        }
+        CANDADO.writeLock().lock();
+        try {
+            contadorEscrituras++;
+            Columnas c = columnas;
+            Long numero = enteroSql(id);
+            if (c != null && numero != null) {
+                int posicion = c.buscarId(numero);
+                if (posicion >= 0 && c.estaViva(posicion)) {
+                    c.bitsVivas[posicion >>> 6] &= ~(1L << posicion);
+                    c.filasVivas--;
+                    c.version++;
+                }
+            }
+        } finally {
+            CANDADO.writeLock().unlock();
+        }
+    }
+
+    /** Registra un almacn nuevo o renombrado (sus productos vuelven a aparecer con el nombre nuevo). */
+    public static void ponerAlmacen(String id, String nombre) {
+        modificarAlmacen(id, nombre);
+    }
+
+    /** Quita un almacn: sus productos dejan de aparecer, como con el JOIN de las consultas SQL. */
+    public static void quitarAlmacen(String id) {
+        modificarAlmacen(id, null);
+    }
+
+    /**
+     * Refleja la cascada al eliminar un almacn: sus productos se eliminan (idDestino null)
+     * o pasan al almacn destino con la fecha y el usuario de la modificacin.
+     */
+    public static void moverProductosDeAlmacen(String idOrigen, String idDestino, long fecha, String usuario) {
+        if (!activo) {
+            return;
+        }
+        CANDADO.writeLock().lock();
+        try {
+            contadorEscrituras++;
+            Columnas c = columnas;
+            int origen = c == null ? -1 : c.dAlmacenes.buscar(canonizarNumero(idOrigen));
+            if (origen < 0) {
+                return;
+            }
+            int destino = idDestino == null ? -1 : c.dAlmacenes.codigo(canonizarNumero(idDestino));
+            int codigoUsuario = c.dUsuarios.codigo(usuario);
+            for (int i = 0; i < c.filas; i++) {
+                if (c.almacenes[i] != origen || !c.estaViva(i)) {
+                    continue;
+                }
+                if (destino < 0) {
+                    c.bitsVivas[i >>> 6] &= ~(1L << i);
+                    c.filasVivas--;
+                } else {
+                    c.almacenes[i] = destino;
+                    c.fechasModificacion[i] = fecha;
+                    c.usuarios[i] = codigoUsuario;
+                }
+            }
+            c.version++;
+        } finally {
+            CANDADO.writeLock().unlock();
+        }
+    }
+
+    private static void modificarAlmacen(String id, String nombre) {
+        if (!activo) {
+            return;
+        }
+        CANDADO.writeLock().lock();
+        try {
+            contadorEscrituras++;
+            Columnas c = columnas;
+            if (c != null) {
+                c.ponerAlmacen(id, nombre);
+                c.version++;
+            }
+        } finally {
+            CANDADO.writeLock().unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    //                       CONSULTAS
+    // ------------------------------------------------------------------
+
+    /**
+     * Cuenta los productos que cumplen los 8 filtros posicionales (mismos que obtenerProductosFiltrados).
+     */
+    public static int contar(List<String> filtros) {
+        CANDADO.readLock().lock();
+        try {
+            return contarBits(evaluar(columnas, filtros));
+        } finally {
+            CANDADO.readLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve todos los productos que cumplen los filtros, en el orden indicado.
+     */
+    public static List<Producto> filtrar(List<String> filtros, OrdenProductos orden) {
+        ResultadoOrdenado resultado = ordenado(filtros, orden);
+        return materializar(resultado, 0, resultado.filas.length);
+    }
+
+    /**
+     * Pgina de productos que sigue al ancla (valor, id), como DatabaseManager.obtenerPaginaProductos.
+     */
+    public static List<Producto> pagina(List<String> filtros, OrdenProductos orden, Object anclaValor, String anclaId, int limite) {
+        ResultadoOrdenado resultado = ordenado(filtros, orden);
+        int desde = 0;
+        if (anclaId != null) {
+            desde = resultado.primeraPosicionDespuesDe(anclaValor, anclaId);
+        }
+        return materializar(resultado, desde, Math.min(resultado.filas.length, desde + limite));
+    }
+
+    /**
+     * Ancla {valor, id} de la fila en la posicin indicada del resultado, o null si no existe.
+     */
+    public static Object[] anclaEnPosicion(List<String> filtros, OrdenProductos orden, int posicion) {
+        ResultadoOrdenado resultado = ordenado(filtros, orden);
+        if (posicion < 0 || posicion >= resultado.filas.length) {
+            return null;
+        }
+        CANDADO.readLock().lock();
+        try {
+            Columnas c = resultado.columnas;
+            int fila = resultado.filas[posicion];
+            return new Object[] { c.valorOrden(fila, orden.getColumna()), String.valueOf(c.ids[fila]) };
+        } finally {
+            CANDADO.readLock().unlock();
+        }
+    }
+
+    private static List<Producto> materializar(ResultadoOrdenado resultado, int desde, int hasta) {
+        List<Producto> productos = new ArrayList<>(Math.max(0, hasta - desde));
+        CANDADO.readLock().lock();
+        try {
+            Columnas c = resultado.columnas;
+            for (int i = desde; i < hasta; i++) {
+                productos.add(c.crearProducto(resultado.filas[i]));
+            }
+        } finally {
+            CANDADO.readLock().unlock();
+        }
+        return productos;
+    }
+
+    /**
+     * Filtra y ordena, reutilizando el ltimo resultado si es la misma consulta y el ndice no cambi.
+     */
+    private static ResultadoOrdenado ordenado(List<String> filtros, OrdenProductos orden) {
+        List<String> llave = filtros == null ? List.of() : new ArrayList<>(filtros);
+        ResultadoOrdenado anterior = ultimoResultado;
+        Columnas actuales = columnas;
+        if (anterior != null && anterior.columnas == actuales && anterior.version == actuales.version
+                && anterior.filtros.equals(llave) && anterior.orden.equals(orden)) {
+            return anterior;
+        }
+
+        // El diccionario de nombres se reordena (con el candado de escritura) solo si hubo muchos nombres nuevos
+        if (actuales.necesitaOrdenarNombres()) {
+            CANDADO.writeLock().lock();
+            try {
+                if (columnas.necesitaOrdenarNombres()) {
+                    columnas.ordenarNombres();
+                }
+            } finally {
+                CANDADO.writeLock().unlock();
+            }
+        }
+
+        CANDADO.readLock().lock();
+        try {
+            Columnas c = columnas;
+            int[] filas = c.ordenar(evaluar(c, filtros), orden.getColumna());
+            if (!orden.isAscendente()) {
+                // (valor, id) es un orden total: el descendente es exactamente el ascendente al revs
+                for (int i = 0, j = filas.length - 1; i < j; i++, j--) {
+                    int fila = filas[i];
+                    filas[i] = filas[j];
+                    filas[j] = fila;
+                }
+            }
+            ResultadoOrdenado resultado = new ResultadoOrdenado(c, c.version, llave, orden, filas);
+            ultimoResultado = resultado;
+            return resultado;
+        } finally {
+            CANDADO.readLock().unlock();
+        }
+    }
+
+    /**
+     * Aplica los filtros activos columna por columna sobre un mapa de bits de filas candidatas.
+     * Cada filtro arma la mscara de 64 filas a la vez y se salta los bloques que ya quedaron vacos.
+     */
+    private static long[] evaluar(Columnas c, List<String> filtros) {
+        int n = c.filas;
+        long[] bits = Arrays.copyOf(c.bitsVivas, (n + 63) >>> 6);
+
+        // JOIN con almacenes: solo productos cuyo almacn existe (se decide una vez por cdigo;
+        // los productos sin almacn, cdigo -1, tampoco pasan)
+        String[] nombresAlmacen = c.nombresAlmacenPorCodigo;
+        boolean[] almacenExiste = new boolean[c.dAlmacenes.tamano];
+        for (int codigo = 0; codigo < almacenExiste.length; codigo++) {
+            almacenExiste[codigo] = codigo < nombresAlmacen.length && nombresAlmacen[codigo] != null;
+        }
+        filtrarCodigos(bits, n, c.almacenes, almacenExiste);
+        if (filtros == null || filtros.size() < 8) {
+            return bits;
+        }
+
+        // 7: ID Producto (exacto): a lo ms una fila
+        String id = filtros.get(7);
+        if (id != null && !id.isEmpty()) {
+            Long numero = enteroSql(id);
+            int posicion = numero != null ? c.buscarId(numero) : -1;
+            boolean conservar = posicion >= 0 && (bits[posicion >>> 6] & (1L << posicion)) != 0;
+            Arrays.fill(bits, 0L);
+            if (conservar) {
+                bits[posicion >>> 6] |= 1L << posicion;
+            }
+        }
+
+        // 1: Departamento (= ? COLLATE NOCASE): se decide una vez por valor del diccionario
+        String departamento = filtros.get(1);
+        if (departamento != null) {
+            boolean[] aceptados = new boolean[c.dDepartamentos.tamano];
+            for (int codigo = 0; codigo < aceptados.length; codigo++) {
+                aceptados[codigo] = igualesNocase(c.dDepartamentos.valor(codigo), departamento);
+            }
+            filtrarCodigos(bits, n, c.departamentos, aceptados);
+        }
+
+        // 2-3: Precio; 4-5: Cantidad. Un valor no numrico se compara como texto en SQLite
+        // (cualquier nmero es menor que un texto): ">=" no acepta nada y "<=" acepta todo.
+        filtrarRango(bits, n, c.precios, null, filtros.get(2), true);
+        filtrarRango(bits, n, c.precios, null, filtros.get(3), false);
+        filtrarRango(bits, n, null, c.cantidades, filtros.get(4), true);
+        filtrarRango(bits, n, null, c.cantidades, filtros.get(5), false);
+
+        // 6: ID Almacn
+        String almacen = filtros.get(6);
+        if (almacen != null) {
+            boolean[] aceptados = new boolean[c.dAlmacenes.tamano];
+            int buscado = c.dAlmacenes.buscar(canonizarNumero(almacen));
+            if (buscado >= 0) {
+                aceptados[buscado] = true;
+            }
+            filtrarCodigos(bits, n, c.almacenes, aceptados);
+        }
+
+        // 0: Nombre, por prefijos de palabra (como FTS5). Va al final: solo revisa las filas que quedan.
+        if (DatabaseManager.construirConsultaTextoCompleto(filtros.get(0)) != null) {
+            for (String palabra : FiltroProductos.normalizarPalabras(filtros.get(0))) {
+                BitSet codigos = c.codigosConPrefijo(palabra);
+                for (int w = 0; w < bits.length; w++) {
+                    long palabraBits = bits[w];
+                    while (palabraBits != 0) {
+                        int i = (w << 6) + Long.numberOfTrailingZeros(palabraBits);
+                        palabraBits &= palabraBits - 1;
+                        if (!contieneAlguno(c.palabras[i], codigos)) {
+                            bits[w] &= ~(1L << i);
+                        }
+                    }
+                }
+            }
+        }
+        return bits;
+    }
+
+    /** Conserva solo las filas cuyo cdigo (de diccionario) est aceptado; -1 (NULL) nunca lo est. */
+    private static void filtrarCodigos(long[] bits, int n, int[] columna, boolean[] aceptados) {
+        for (int w = 0; w < bits.length; w++) {
+            if (bits[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            int fin = Math.min(64, n - base);
+            long mascara = 0;
+            for (int j = 0; j < fin; j++) {
+                int codigo = columna[base + j];
+                if (codigo >= 0 && aceptados[codigo]) {
+                    mascara |= 1L << j;
+                }
+            }
+            bits[w] &= mascara;
+        }
+    }
+
+    private static void filtrarRango(long[] bits, int n, double[] reales, int[] enteros, String valor, boolean minimo) {
+        if (valor == null) {
+            return;
+        }
+        Double limite = numeroSql(valor);
+        if (limite == null) {
+            if (minimo) {
+                Arrays.fill(bits, 0L);
+            }
+            return;
+        }
+        double l = limite;
+        for (int w = 0; w < bits.length; w++) {
+            if (bits[w] == 0) {
+                continue;
+            }
+            int base = w << 6;
+            int fin = Math.min(64, n - base);
+            long mascara = 0;
+            for (int j = 0; j < fin; j++) {
+                double v = reales != null ? reales[base + j] : enteros[base + j];
+                // NaN (precio NULL) no cumple ninguna comparacin, igual que en SQL
+                if (minimo ? v >= l : v <= l) {
+                    mascara |= 1L << j;
+                }
+            }
+            bits[w] &= mascara;
+        }
+    }
+
+    private static boolean contieneAlguno(int[] codigos, BitSet aceptados) {
+        for (int codigo : codigos) {
+            if (aceptados.get(codigo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int contarBits(long[] bits) {
+        int total = 0;
+        for (long palabra : bits) {
+            total += Long.bitCount(palabra);
+        }
+        return total;
+    }
+
+    // ------------------------------------------------------------------
+    //                       UTILIDADES DE COMPARACIN (SEMNTICA DE SQLITE)
+    // ------------------------------------------------------------------
+
+    /** Nmero como lo interpretara SQLite al aplicar afinidad numrica, o null si es texto. */
+    private static Double numeroSql(String valor) {
+        String texto = valor.trim();
+        return NUMERO.matcher(texto).matches() ? Double.valueOf(texto) : null;
+    }
+
+    /** Entero como lo interpretara SQLite, o null si no es un nmero entero. */
+    private static Long enteroSql(String valor) {
+        Double numero = valor == null ? null : numeroSql(valor);
+        if (numero == null || numero != Math.rint(numero) || Math.abs(numero) > Long.MAX_VALUE) {
+            return null;
+        }
+        return numero.longValue();
+    }
+
+    private static String canonizarNumero(String valor) {
+        Long entero = valor == null ? null : enteroSql(valor);
+        return entero != null ? Long.toString(entero) : valor;
+    }
+
+    // COLLATE NOCASE de SQLite solo iguala maysculas y minsculas ASCII
+    private static char minusculaAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    static int compararNocase(String a, String b) {
+        int n = Math.min(a.length(), b.length());
+        for (int i = 0; i < n; i++) {
+            int diferencia = minusculaAscii(a.charAt(i)) - minusculaAscii(b.charAt(i));
+            if (diferencia != 0) {
+                return diferencia;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    // Como compararNocase, con NULL antes que cualquier valor
+    static int compararNocaseNulos(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return compararNocase(a, b);
+    }
+
+    // Bits de un double que se ordenan como el nmero (NaN, que representa NULL, queda primero)
+    static long precioOrdenable(double precio) {
+        if (Double.isNaN(precio)) {
+            return Long.MIN_VALUE;
+        }
+        long bits = Double.doubleToLongBits(precio + 0.0); // -0.0 + 0.0 == 0.0
+        return bits < 0 ? bits ^ Long.MAX_VALUE : bits;
+    }
+
+    static boolean igualesNocase(String a, String b) {
+        return a != null && b != null && a.length() == b.length() && compararNocase(a, b) == 0;
+    }
+
+    // ------------------------------------------------------------------
+    //                       ESTRUCTURAS INTERNAS
+    // ------------------------------------------------------------------
+
+    /**
+     * Diccionario de cadenas: cada valor distinto se guarda una sola vez y las filas guardan su cdigo.
+     */
+    private static final class Diccionario {
+        private final Map<String, Integer> codigos = new HashMap<>();
+        String[] valores = new String[16];
+        int tamano = 0;
+
+        /** Cdigo del valor, agregndolo si es nuevo; -1 para null. */
+        int codigo(String valor) {
+            if (valor == null) {
+                return -1;
+            }
+            Integer codigo = codigos.get(valor);
+            if (codigo == null) {
+                if (tamano == valores.length) {
+                    valores = Arrays.copyOf(valores, tamano * 2);
+                }
+                codigo = tamano;
+                valores[tamano++] = valor;
+                codigos.put(valor, codigo);
+            }
+            return codigo;
+        }
+
+        /** Cdigo del valor sin agregarlo; -1 si no existe. */
+        int buscar(String valor) {
+            Integer codigo = valor == null ? null : codigos.get(valor);
+            return codigo == null ? -1 : codigo;
+        }
+
+        String valor(int codigo) {
+            return codigo < 0 ? null : valores[codigo];
+        }
+
+        long bytesAproximados() {
+            long bytes = (long) valores.length * 4 + (long) tamano * 48; // referencias + entradas del HashMap
+            for (int i = 0; i < tamano; i++) {
+                bytes += 40 + valores[i].length();
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Las columnas del ndice. Las filas se mantienen ordenadas por id; las eliminadas solo se
+     * apagan en bitsVivas (la siguiente carga completa las compacta).
+     */
+    private static final class Columnas {
+        int filas = 0;
+        int filasVivas = 0;
+        long version = 0;
+
+        long[] ids;
+        double[] precios;
+        int[] cantidades;
+        int[] departamentos;
+        int[] almacenes;
+        int[] nombres;
+        int[][] palabras;
+        long[] fechasCreacion;
+        long[] fechasModificacion;
+        int[] usuarios;
+        long[] bitsVivas;
+
+        final Diccionario dNombres = new Diccionario();
+        final Diccionario dPalabras = new Diccionario();
+        final Diccionario dDepartamentos = new Diccionario();
+        final Diccionario dAlmacenes = new Diccionario();
+        final Diccionario dUsuarios = new Diccionario();
+        String[] nombresAlmacenPorCodigo = new String[0];
+
+        // Rango de cada nombre del diccionario en orden NOCASE (nombres iguales sin importar
+        // maysculas comparten rango). Solo los primeros 'nombresConRango' cdigos lo tienen;
+        // los nombres agregados despus se ordenan con el comparador.
+        int[] rangoNombre = new int[0];
+        int nombresConRango = 0;
+
+        // Vista ordenada del diccionario de palabras para buscar prefijos por rango
+        String[] palabrasOrdenadas = new String[0];
+        int[] codigosOrdenados = new int[0];
+
+        Columnas(int capacidad) {
+            ids = new long[capacidad];
+            precios = new double[capacidad];
+            cantidades = new int[capacidad];
+            departamentos = new int[capacidad];
+            almacenes = new int[capacidad];
+            nombres = new int[capacidad];
+            palabras = new int[capacidad][];
+            fechasCreacion = new long[capacidad];
+            fechasModificacion = new long[capacidad];
+            usuarios = new int[capacidad];
+            bitsVivas = new long[(capacidad + 63) >>> 6];
+        }
+
+        /** Posicin del id (bsqueda binaria) o (-(punto de insercin) - 1). */
+        int buscarId(long id) {
+            return Arrays.binarySearch(ids, 0, filas, id);
+        }
+
+        boolean estaViva(int fila) {
+            return (bitsVivas[fila >>> 6] & (1L << fila)) != 0;
+        }
+
+        /** Abre un hueco en la posicin indicada (al final en la carga; en medio solo si llega un id menor). */
+        void insertarEn(int posicion) {
+            if (filas == ids.length) {
+                int capacidad = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacidad);
+                precios = Arrays.copyOf(precios, capacidad);
+                cantidades = Arrays.copyOf(cantidades, capacidad);
+                departamentos = Arrays.copyOf(departamentos, capacidad);
+                almacenes = Arrays.copyOf(almacenes, capacidad);
+                nombres = Arrays.copyOf(nombres, capacidad);
+                palabras = Arrays.copyOf(palabras, capacidad);
+                fechasCreacion = Arrays.copyOf(fechasCreacion, capacidad);
+                fechasModificacion = Arrays.copyOf(fechasModificacion, capacidad);
+                usuarios = Arrays.copyOf(usuarios, capacidad);
+                bitsVivas = Arrays.copyOf(bitsVivas, (capacidad + 63) >>> 6);
+            }
+            if (posicion < filas) {
+                int mover = filas - posicion;
+                System.arraycopy(ids, posicion, ids, posicion + 1, mover);
+                System.arraycopy(precios, posicion, precios, posicion + 1, mover);
+                System.arraycopy(cantidades, posicion, cantidades, posicion + 1, mover);
+                System.arraycopy(departamentos, posicion, departamentos, posicion + 1, mover);
+                System.arraycopy(almacenes, posicion, almacenes, posicion + 1, mover);
+                System.arraycopy(nombres, posicion, nombres, posicion + 1, mover);
+                System.arraycopy(palabras, posicion, palabras, posicion + 1, mover);
+                System.arraycopy(fechasCreacion, posicion, fechasCreacion, posicion + 1, mover);
+                System.arraycopy(fechasModificacion, posicion, fechasModificacion, posicion + 1, mover);
+                System.arraycopy(usuarios, posicion, usuarios, posicion + 1, mover);
+                // Desplazar los bits de filas vivas una posicin
+                for (int i = filas; i > posicion; i--) {
+                    if (estaViva(i - 1)) {
+                        bitsVivas[i >>> 6] |= 1L << i;
+                    } else {
+                        bitsVivas[i >>> 6] &= ~(1L << i);
+                    }
+                }
+            }
+            bitsVivas[posicion >>> 6] &= ~(1L << posicion);
+            filas++;
+        }
+
+        /**
+         * Escribe los valores de la fila actual del ResultSet (columnas de SQL_PRODUCTOS, por posicin)
+         * en la posicin indicada y la marca viva.
+         */
+        void escribirFila(int fila, long id, ResultSet rs) throws SQLException {
+            ids[fila] = id;
+            double precio = rs.getDouble(3);
+            precios[fila] = rs.wasNull() ? Double.NaN : precio;
+            cantidades[fila] = rs.getInt(4);
+            departamentos[fila] = dDepartamentos.codigo(rs.getString(5));
+            almacenes[fila] = dAlmacenes.codigo(canonizarNumero(rs.getString(6)));
+            String nombre = rs.getString(2);
+            nombres[fila] = dNombres.codigo(nombre == null ? "" : nombre);
+            List<String> palabrasNombre = FiltroProductos.normalizarPalabras(nombre);
+            int[] codigos = new int[palabrasNombre.size()];
+            for (int i = 0; i < codigos.length; i++) {
+                codigos[i] = dPalabras.codigo(palabrasNombre.get(i));
+            }
+            palabras[fila] = codigos;
+            fechasCreacion[fila] = RelojAuditoria.leer(rs, 7);
+            fechasModificacion[fila] = RelojAuditoria.leer(rs, 8);
+            usuarios[fila] = dUsuarios.codigo(rs.getString(9));
+            if (!estaViva(fila)) {
+                bitsVivas[fila >>> 6] |= 1L << fila;
+                filasVivas++;
+            }
+        }
+
+        void ponerAlmacen(String id, String nombre) {
+            int codigo = dAlmacenes.codigo(canonizarNumero(id));
+            if (codigo >= nombresAlmacenPorCodigo.length) {
+                nombresAlmacenPorCodigo = Arrays.copyOf(nombresAlmacenPorCodigo, Math.max(16, codigo * 2));
+            }
+            nombresAlmacenPorCodigo[codigo] = nombre;
+        }
+
+        Producto crearProducto(int fila) {
+            double precio = precios[fila];
+            return new Producto(
+                ids[fila],
+                dNombres.valor(nombres[fila]),
+                Double.isNaN(precio) ? 0.0 : precio,
+                cantidades[fila],
+                dDepartamentos.valor(departamentos[fila]),
+                nombresAlmacenPorCodigo[almacenes[fila]],
+                fechasCreacion[fila],
+                fechasModificacion[fila],
+                dUsuarios.valor(usuarios[fila])
+            );
+        }
+
+        /** Cdigos de todas las palabras del diccionario que empiezan con el prefijo. */
+        BitSet codigosConPrefijo(String prefijo) {
+            if (palabrasOrdenadas.length != dPalabras.tamano) {
+                // El diccionario creci: se reconstruye la vista ordenada (bajo el candado de lectura
+                // pueden entrar dos hilos; ambos calculan lo mismo)
+                synchronized (this) {
+                    if (palabrasOrdenadas.length != dPalabras.tamano) {
+                        Integer[] orden = new Integer[dPalabras.tamano];
+                        for (int i = 0; i < orden.length; i++) {
+                            orden[i] = i;
+                        }
+                        Arrays.sort(orden, (a, b) -> dPalabras.valor(a).compareTo(dPalabras.valor(b)));
+                        String[] ordenadas = new String[orden.length];
+                        int[] codigos = new int[orden.length];
+                        for (int i = 0; i < orden.length; i++) {
+                            codigos[i] = orden[i];
+                            ordenadas[i] = dPalabras.valor(orden[i]);
+                        }
+                        codigosOrdenados = codigos;
+                        palabrasOrdenadas = ordenadas;
+                    }
+                }
+            }
+            BitSet resultado = new BitSet(dPalabras.tamano);
+            String[] ordenadas = palabrasOrdenadas;
+            int[] codigos = codigosOrdenados;
+            int i = Arrays.binarySearch(ordenadas, prefijo);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            for (; i < ordenadas.length && ordenadas[i].startsWith(prefijo); i++) {
+                resultado.set(codigos[i]);
+            }
+            return resultado;
+        }
+
+        int compararFilas(int a, int b) {
+            int comparacion = compararNocase(dNombres.valor(nombres[a]), dNombres.valor(nombres[b]));
+            return comparacion != 0 ? comparacion : Long.compare(ids[a], ids[b]);
+        }
+
+        boolean necesitaOrdenarNombres() {
+            return dNombres.tamano - nombresConRango > MAX_NOMBRES_SIN_RANGO;
+        }
+
+        /** Ordena el diccionario de nombres (mucho menor que la tabla) y asigna el rango de cada uno. */
+        void ordenarNombres() {
+            int total = dNombres.tamano;
+            Integer[] orden = new Integer[total];
+            for (int i = 0; i < total; i++) {
+                orden[i] = i;
+            }
+            Arrays.sort(orden, (a, b) -> compararNocase(dNombres.valor(a), dNombres.valor(b)));
+            int[] rangos = new int[total];
+            int rangoActual = 0;
+            for (int i = 0; i < total; i++) {
+                if (i > 0 && compararNocase(dNombres.valor(orden[i - 1]), dNombres.valor(orden[i])) != 0) {
+                    rangoActual++;
+                }
+                rangos[orden[i]] = rangoActual;
+            }
+            rangoNombre = rangos;
+            nombresConRango = total;
+        }
+
+        /**
+         * Ordena las filas marcadas por (nombre NOCASE, id). Las filas se guardan en orden de id,
+         * as que la llave (rango del nombre << 32 | fila) se ordena como arreglo de primitivos.
+         * Las pocas filas con nombres nuevos (sin rango) se ordenan con el comparador y se mezclan.
+         */
+        int[] ordenar(long[] bits) {
+            int total = contarBits(bits);
+            long[] llaves = new long[total];
+            List<Integer> sinRango = new ArrayList<>();
+            int conRango = 0;
+            for (int w = 0; w < bits.length; w++) {
+                long palabra = bits[w];
+                while (palabra != 0) {
+                    int fila = (w << 6) + Long.numberOfTrailingZeros(palabra);
+                    palabra &= palabra - 1;
+                    int codigo = nombres[fila];
+                    if (codigo < nombresConRango) {
+                        llaves[conRango++] = ((long) rangoNombre[codigo] << 32) | fila;
+                    } else {
+                        sinRango.add(fila);
+                    }
+                }
+            }
+            Arrays.sort(llaves, 0, conRango);
+            sinRango.sort(this::compararFilas);
+
+            int[] resultado = new int[total];
+            int i = 0, j = 0, k = 0;
+            while (i < conRango || j < sinRango.size()) {
+                if (j >= sinRango.size() || (i < conRango && compararFilas((int) llaves[i], sinRango.get(j)) <= 0)) {
+                    resultado[k++] = (int) llaves[i++];
+                } else {
+                    resultado[k++] = sinRango.get(j++);
+                }
+            }
+            return resultado;
+        }
+
+        /**
+         * Ordena las filas marcadas por (columna, id) ascendente, con la semntica de SQLite (NULL primero,
+         * texto sin maysculas). Cada fila recibe el rango de su valor (valores iguales comparten rango) y la
+         * llave (rango << 32 | fila) se ordena como arreglo de primitivos; como las filas se guardan en orden
+         * de id, la fila desempata igual que el id.
+         */
+        int[] ordenar(long[] bits, OrdenProductos.Columna columna) {
+            if (columna == OrdenProductos.Columna.NOMBRE) {
+                return ordenar(bits);
+            }
+            int[] marcadas = new int[contarBits(bits)];
+            int k = 0;
+            for (int w = 0; w < bits.length; w++) {
+                long palabra = bits[w];
+                while (palabra != 0) {
+                    marcadas[k++] = (w << 6) + Long.numberOfTrailingZeros(palabra);
+                    palabra &= palabra - 1;
+                }
+            }
+            if (columna == OrdenProductos.Columna.ID) {
+                return marcadas; // Ya estn en orden de id
+            }
+
+            int[] rangoPorCodigo = null;
+            long[] distintos = null;
+            switch (columna) {
+                case DEPARTAMENTO: rangoPorCodigo = rangosNocase(dDepartamentos.valores, dDepartamentos.tamano); break;
+                case ALMACEN: rangoPorCodigo = rangosNocase(nombresAlmacenPorCodigo, nombresAlmacenPorCodigo.length); break;
+                case USUARIO: rangoPorCodigo = rangosNocase(dUsuarios.valores, dUsuarios.tamano); break;
+                default:
+                    // Precio, cantidad y fechas: el rango es la posicin del valor entre los valores distintos
+                    distintos = new long[marcadas.length];
+                    for (int i = 0; i < marcadas.length; i++) {
+                        distintos[i] = valorNumerico(marcadas[i], columna);
+                    }
+                    Arrays.sort(distintos);
+                    int n = 0;
+                    for (int i = 0; i < distintos.length; i++) {
+                        if (n == 0 || distintos[i] != distintos[n - 1]) {
+                            distintos[n++] = distintos[i];
+                        }
+                    }
+                    distintos = Arrays.copyOf(distintos, n);
+                    break;
+            }
+
+            long[] llaves = new long[marcadas.length];
+            for (int i = 0; i < marcadas.length; i++) {
+                int fila = marcadas[i];
+                int rango;
+                if (rangoPorCodigo != null) {
+                    int codigo = columna == OrdenProductos.Columna.DEPARTAMENTO ? departamentos[fila]
+                            : columna == OrdenProductos.Columna.ALMACEN ? almacenes[fila] : usuarios[fila];
+                    rango = codigo < 0 ? -1 : rangoPorCodigo[codigo]; // NULL antes que cualquier valor
+                } else {
+                    rango = Arrays.binarySearch(distintos, valorNumerico(fila, columna));
+                }
+                llaves[i] = ((long) rango << 32) | fila;
+            }
+            Arrays.sort(llaves);
+            for (int i = 0; i < llaves.length; i++) {
+                marcadas[i] = (int) llaves[i];
+            }
+            return marcadas;
+        }
+
+        /**
+         * Valor numrico de la fila que conserva el orden de SQLite: las fechas tal cual (SIN_FECHA es el menor),
+         * la cantidad tal cual y el precio como sus bits ordenables (NULL primero; 0.0 y -0.0 iguales).
+         */
+        long valorNumerico(int fila, OrdenProductos.Columna columna) {
+            switch (columna) {
+                case FECHA_CREACION: return fechasCreacion[fila];
+                case FECHA_MODIFICACION: return fechasModificacion[fila];
+                case CANTIDAD: return cantidades[fila];
+                default: return precioOrdenable(precios[fila]);
+            }
+        }
+
+        /** Rango de cada cdigo en orden NOCASE (valores iguales sin importar maysculas comparten rango). */
+        private int[] rangosNocase(String[] valores, int total) {
+            Integer[] orden = new Integer[total];
+            for (int i = 0; i < total; i++) {
+                orden[i] = i;
+            }
+            Arrays.sort(orden, (a, b) -> compararNocaseNulos(valores[a], valores[b]));
+            int[] rangos = new int[total];
+            int rangoActual = 0;
+            for (int i = 0; i < total; i++) {
+                if (i > 0 && compararNocaseNulos(valores[orden[i - 1]], valores[orden[i]]) != 0) {
+                    rangoActual++;
+                }
+                rangos[orden[i]] = rangoActual;
+            }
+            return rangos;
+        }
+
+        /**
+         * Valor de la columna de orden en la fila, del mismo tipo que devuelve el SQL (para el ancla).
+         */
+        Object valorOrden(int fila, OrdenProductos.Columna columna) {
+            switch (columna) {
+                case ID: return ids[fila];
+                case PRECIO: return Double.isNaN(precios[fila]) ? null : precios[fila];
+                case CANTIDAD: return cantidades[fila];
+                case DEPARTAMENTO: return dDepartamentos.valor(departamentos[fila]);
+                case ALMACEN: return nombresAlmacenPorCodigo[almacenes[fila]];
+                case FECHA_CREACION: return fechasCreacion[fila] == RelojAuditoria.SIN_FECHA ? null : fechasCreacion[fila];
+                case FECHA_MODIFICACION: return fechasModificacion[fila] == RelojAuditoria.SIN_FECHA ? null : fechasModificacion[fila];
+                case USUARIO: return dUsuarios.valor(usuarios[fila]);
+                default: return dNombres.valor(nombres[fila]);
+            }
+        }
+
+        /**
+         * Compara el valor de la columna de orden en la fila con el de un ancla (String, Number o null),
+         * como lo hara SQLite: NULL primero, nmeros como nmeros y texto sin maysculas.
+         */
+        int compararConAncla(int fila, OrdenProductos.Columna columna, Object ancla) {
+            Object valor = valorOrden(fila, columna);
+            if (valor == null || ancla == null) {
+                return valor == null ? (ancla == null ? 0 : -1) : 1;
+            }
+            if (valor instanceof String) {
+                return ancla instanceof String ? compararNocase((String) valor, (String) ancla) : 1; // Texto despus de nmeros
+            }
+            if (ancla instanceof String) {
+                Double numero = numeroSql((String) ancla);
+                return numero == null ? -1 : Double.compare(((Number) valor).doubleValue(), numero);
+            }
+            if (valor instanceof Double || ancla instanceof Double) {
+                return Double.compare(((Number) valor).doubleValue() + 0.0, ((Number) ancla).doubleValue() + 0.0);
+            }
+            return Long.compare(((Number) valor).longValue(), ((Number) ancla).longValue());
+        }
+
+        long bytesAproximados() {
+            long bytes = (long) ids.length * (8 + 8 + 4 + 4 + 4 + 4 + 4 + 8 + 8 + 4) + bitsVivas.length * 8L + rangoNombre.length * 4L;
+            for (int i = 0; i < filas; i++) {
+                bytes += 16 + (palabras[i] == null ? 0 : palabras[i].length * 4L);
+            }
+            return bytes + dNombres.bytesAproximados() + dPalabras.bytesAproximados()
+                    + dDepartamentos.bytesAproximados() + dAlmacenes.bytesAproximados() + dUsuarios.bytesAproximados();
+        }
+    }
+
+    /**
+     * Filas ordenadas que cumplen una combinacin de filtros, para una versin del ndice.
+     */
+    private static final class ResultadoOrdenado {
+        final Columnas columnas;
+        final long version;
+        final List<String> filtros;
+        final OrdenProductos orden;
+        final int[] filas;
+
+        ResultadoOrdenado(Columnas columnas, long version, List<String> filtros, OrdenProductos orden, int[] filas) {
+            this.columnas = columnas;
+            this.version = version;
+            this.filtros = filtros;
+            this.orden = orden;
+            this.filas = filas;
+        }
+
+        /** Primera posicin cuyo (valor, id) va despus del ancla en el orden del resultado (bsqueda binaria). */
+        int primeraPosicionDespuesDe(Object anclaValor, String anclaId) {
+            Long idAncla = enteroSql(anclaId);
+            int bajo = 0, alto = filas.length;
+            CANDADO.readLock().lock();
+            try {
+                while (bajo < alto) {
+                    int medio = (bajo + alto) >>> 1;
+                    int fila = filas[medio];
+                    int comparacion = columnas.compararConAncla(fila, orden.getColumna(), anclaValor);
+                    if (comparacion == 0) {
+                        comparacion = idAncla == null ? -1 : Long.compare(columnas.ids[fila], idAncla);
+                    }
+                    if (!orden.isAscendente()) {
+                        comparacion = -comparacion;
+                    }
+                    if (comparacion <= 0) {
+                        bajo = medio + 1;
+                    } else {
+                        alto = medio;
+                    }
+                }
+            } finally {
+                CANDADO.readLock().unlock();
+            }
+            return bajo;
+        }
+    }
+}
@@ -4,15 +4,96 @@ import javafx.fxml.FXML;
 import javafx.scene.layout.AnchorPane;
 import javafx.event.ActionEvent;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.scene.Node;
 import javafx.scene.Parent;
-import javafx.fxml.FXMLLoader;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
 
-public class InicioController {
+public class InicioController implements RegistroVistas.Reutilizable {
 
     // 1. INYECCIN DEL REA DE CONTENIDO (IMPORTANTE para navegacin interna)
     @FXML
     private AnchorPane contentArea; 
 
+    // 2. TABLERO (totales por almacn y departamento, ver ResumenInventario)
+    @FXML private Label lblTotales;
+    @FXML private TableView<ResumenInventario.Fila> tblResumenAlmacenes;
+    @FXML private TableView<ResumenInventario.Fila> tblResumenDepartamentos;
+    @FXML private ListView<String> lstRecientes;
+
+    // Contenido original del rea central (logo y botones), para restaurarlo al volver a Inicio
+    private List<Node> contenidoInicial;
+
+    @FXML
+    public void initialize() {
+        configurarTabla(tblResumenAlmacenes, "Almacn");
+        configurarTabla(tblResumenDepartamentos, "Departamento");
+        contenidoInicial = new ArrayList<>(contentArea.getChildren());
+    }
+
+    /**
+     * La vista se reutiliza (RegistroVistas): al volver a Inicio se quita la vista interna que se
+     * haya cargado en el rea central y se vuelve a leer el tablero.
+     */
+    @Override
+    public void prepararVista() {
+        contentArea.getChildren().setAll(contenidoInicial);
+        cargarResumen();
+    }
+
+    // --- TABLERO ---
+
+    /**
+     * Columnas de una tabla de resumen: nombre, productos, unidades, valor y stock bajo.
+     */
+    private void configurarTabla(TableView<ResumenInventario.Fila> tabla, String titulo) {
+        tabla.getColumns().add(columna(titulo, fila -> fila.nombre, 110));
+        tabla.getColumns().add(columna("Productos", fila -> fila.productos, 65));
+        tabla.getColumns().add(columna("Unidades", fila -> fila.unidades, 65));
+        tabla.getColumns().add(columna("Valor", ResumenInventario.Fila::getValorTexto, 90));
+        tabla.getColumns().add(columna("Stock bajo", fila -> fila.stockBajo, 60));
+        tabla.setPlaceholder(new Label("Sin datos"));
+    }
+
+    private static TableColumn<ResumenInventario.Fila, Object> columna(String titulo, Function<ResumenInventario.Fila, Object> valor, double ancho) {
+        TableColumn<ResumenInventario.Fila, Object> columna = new TableColumn<>(titulo);
+        columna.setCellValueFactory(cellData -> new ReadOnlyObjectWrapper<>(valor.apply(cellData.getValue())));
+        columna.setPrefWidth(ancho);
+        return columna;
+    }
+
+    /**
+     * Lee el tablero en segundo plano. Cuesta lo mismo sin importar cuntos productos haya
+     * (los totales ya estn calculados), as que se lee cada vez que se muestra Inicio.
+     */
+    private void cargarResumen() {
+        TareasBD.ejecutar(ResumenInventario::obtener, resumen -> {
+            ResumenInventario.Fila total = resumen.total;
+            lblTotales.setText(String.format("Productos: %,d    Unidades: %,d%nValor: %s    Stock bajo (\u2264 %d): %,d",
+                    total.productos, total.unidades, total.getValorTexto(), ResumenInventario.UMBRAL_STOCK_BAJO, total.stockBajo));
+            tblResumenAlmacenes.setItems(FXCollections.observableArrayList(resumen.porAlmacen));
+            tblResumenDepartamentos.setItems(FXCollections.observableArrayList(resumen.porDepartamento));
+
+            List<String> recientes = new ArrayList<>();
+            for (Producto producto : resumen.recientes) {
+                recientes.add(producto.getFechaModificacion() + "  " + producto.getNombre()
+                        + " (" + producto.getAlmacen() + ") - " + producto.getUltimoUsuario());
+            }
+            lstRecientes.setItems(FXCollections.observableArrayList(recientes));
+        }, error -> {
+            lblTotales.setText("No se pudo leer el resumen del inventario.");
+            System.err.println("Error al leer el resumen del inventario: " + error.getMessage());
+            error.printStackTrace();
+        });
+    }
+
     // --- MTODOS DE ACCIN PRINCIPAL ---
     
     // Botn "Inicio (Cerrar Sesin)"
@@ -44,10 +125,10 @@ public class InicioController {
 
     // --- MTODO DE NAVEGACIN INTERNA ---
     
-    // Mtodo genrico para cargar cualquier FXML en el 'contentArea'
+    // Mtodo genrico para cargar cualquier FXML en el 'contentArea' (la vista sale de RegistroVistas)
     private void loadContent(String fxmlFile) {
         try {
-            Parent content = FXMLLoader.load(getClass().getResource(fxmlFile));
+            Parent content = RegistroVistas.obtener(fxmlFile).getRaiz();
             
             // Limpiar el contenido anterior y establecer el nuevo
             contentArea.getChildren().setAll(content);
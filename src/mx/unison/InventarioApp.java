@@ -1,12 +1,13 @@
 package mx.unison;
 
 import javafx.application.Application;
-import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.layout.Pane;
 import javafx.stage.Stage;
 import javafx.stage.Modality;
 import java.io.IOException;
+import java.util.Arrays;
 
 public class InventarioApp extends Application {
 
@@ -21,12 +22,17 @@ public class InventarioApp extends Application {
     // si implementa la interfaz de actualizacin.
     private static Object inicioControllerInstance;
 
+    // Vistas que se precargan en segundo plano despus del inicio de sesin (ver RegistroVistas)
+    private static final String[] VISTAS_PRECARGADAS = {"Productos.fxml", "Almacenes.fxml", "ProductoForm.fxml", "AlmacenesForm.fxml"};
+
     @Override
     public void start(Stage stage) throws IOException {
+        MedicionArranque.marcar("start()");
         primaryStage = stage;
 
-        // 1. Inicializar la base de datos (clave para evitar errores de conexin/tablas)
-        DatabaseManager.initialize();
+        // 1. Base de datos y cachs en segundo plano (ver Arranque): el Login no las necesita para
+        //    mostrarse; el inicio de sesin espera a que el esquema est listo.
+        Arranque.iniciar();
 
         // 2. Carga inicial: FORZAMOS EL LOGIN como primera pantalla
         System.out.println("DEBUG: Cargando pantalla inicial: Login.fxml");
@@ -34,17 +40,32 @@ public class InventarioApp extends Application {
 
         // Mostrar la ventana principal una vez que la escena est configurada
         stage.show();
+        MedicionArranque.observar(stage);
     }
 
     /**
-     * Carga una nueva vista FXML en la ventana principal (primaryStage).
+     * Se ejecuta al cerrar la aplicacin: libera las conexiones del pool.
+     */
+    @Override
+    public void stop() {
+        DatabaseManager.cerrarPool();
+    }
+
+    /**
+     * Muestra una vista FXML en la ventana principal (primaryStage). La vista sale de RegistroVistas:
+     * el FXML se interpreta solo la primera vez.
      * @param fxml El nombre del archivo FXML (ej. "Inicio.fxml").
      */
     public static void mostrarVista(String fxml) throws IOException {
         try {
-            FXMLLoader loader = new FXMLLoader(InventarioApp.class.getResource(fxml));
-            Parent root = loader.load();
-            Object controller = loader.getController(); // Capturamos el controlador
+            RegistroVistas.Vista vista = RegistroVistas.obtener(fxml);
+            Parent root = vista.getRaiz();
+            Object controller = vista.getControlador(); // Capturamos el controlador
+
+            // Una vista reutilizada pudo quedar dentro de otra (contenido interno de Inicio)
+            if (root.getParent() instanceof Pane) {
+                ((Pane) root.getParent()).getChildren().remove(root);
+            }
             
             // Si el Stage ya se ha mostrado, podemos simplemente cambiar la raz de la escena.
             Scene scene = primaryStage.getScene();
@@ -62,6 +83,8 @@ public class InventarioApp extends Application {
             if (fxml.equals("Inicio.fxml")) {
                 inicioControllerInstance = controller;
                 primaryStage.setTitle("Sistema de Inventario - Dashboard (" + rolUsuario + ")");
+                // Ya hay sesin: las dems pantallas se preparan mientras el usuario ve el tablero
+                RegistroVistas.precargar(VISTAS_PRECARGADAS);
             } else if (fxml.equals("Login.fxml")) {
                 primaryStage.setTitle("Acceso al Sistema");
             }
@@ -101,14 +124,13 @@ public class InventarioApp extends Application {
      */
     public static void mostrarFormularioProducto(Producto producto) throws IOException {
 
-        FXMLLoader fxmlLoader = new FXMLLoader(InventarioApp.class.getResource("ProductoForm.fxml"));
-        Parent root = fxmlLoader.load();
+        RegistroVistas.Vista vista = RegistroVistas.obtener("ProductoForm.fxml");
 
         // CLAVE: Obtenemos el controlador y le pasamos el objeto Producto.
-        ProductoFormController controller = fxmlLoader.getController();
+        ProductoFormController controller = vista.getControlador();
         controller.setProductoParaEdicion(producto);
 
-        Stage stage = new Stage();
+        Stage stage = ventanaModal(vista);
         String titulo;
 
         if (producto == null) {
@@ -119,12 +141,6 @@ public class InventarioApp extends Application {
         }
 
         stage.setTitle(titulo);
-        stage.setScene(new Scene(root));
-
-        // Configurar la ventana como MODAL
-        stage.initOwner(primaryStage);
-        stage.initModality(Modality.WINDOW_MODAL);
-
         stage.showAndWait();
 
         // Nota: Aqu, la vista de Inventario (Inicio.fxml) necesitara actualizar la lista
@@ -138,15 +154,14 @@ public class InventarioApp extends Application {
      */
     public static void mostrarFormularioAlmacen(Almacen almacen) throws IOException {
         try {
-            FXMLLoader fxmlLoader = new FXMLLoader(InventarioApp.class.getResource("AlmacenesForm.fxml"));
-            Parent root = fxmlLoader.load();
+            RegistroVistas.Vista vista = RegistroVistas.obtener("AlmacenesForm.fxml");
 
             // Obtenemos el controlador del formulario de almacenes
-            AlmacenesFormController controller = fxmlLoader.getController();
+            AlmacenesFormController controller = vista.getControlador();
             // Le pasamos el objeto Almacen, que ser null si es para agregar
             controller.setAlmacen(almacen);
 
-            Stage stage = new Stage();
+            Stage stage = ventanaModal(vista);
             String titulo;
 
             if (almacen == null) {
@@ -157,12 +172,6 @@ public class InventarioApp extends Application {
             }
 
             stage.setTitle(titulo);
-            stage.setScene(new Scene(root));
-
-            // Configurar la ventana como MODAL, siempre sobre la principal
-            stage.initOwner(primaryStage);
-            stage.initModality(Modality.WINDOW_MODAL);
-
             stage.showAndWait();
             
         } catch (Exception e) {
@@ -171,7 +180,30 @@ public class InventarioApp extends Application {
         }
     }
 
-    public static void main(String[] args) {
+    /**
+     * Ventana modal de un formulario. Se crea la primera vez y se reutiliza con la vista: al cerrarse
+     * solo se oculta y su escena sigue siendo la del formulario.
+     */
+    private static Stage ventanaModal(RegistroVistas.Vista vista) {
+        Scene escena = vista.getEscena();
+        Stage stage = (Stage) escena.getWindow();
+        if (stage == null) {
+            stage = new Stage();
+            stage.setScene(escena);
+
+            // Configurar la ventana como MODAL, siempre sobre la principal
+            stage.initOwner(primaryStage);
+            stage.initModality(Modality.WINDOW_MODAL);
+        }
+        return stage;
+    }
+
+    public static void main(String[] args) throws Exception {
+        // Modo sin interfaz grfica: API HTTP/JSON para escneres y otros sistemas (ver ServidorApi)
+        if (Arrays.asList(args).contains(ServidorApi.OPCION)) {
+            ServidorApi.main(args);
+            return;
+        }
         launch(args);
     }
 }
\ No newline at end of file
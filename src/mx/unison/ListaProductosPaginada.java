@@ -0,0 +1,218 @@
+package mx.unison;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+/**
+ * Lista observable de solo lectura para la TableView de productos que NO carga todo el resultado.
+ * Conoce el total de filas (COUNT) pero solo mantiene en memoria unas cuantas pginas alrededor
+ * de lo que la tabla est mostrando. Las pginas se leen en segundo plano con paginacin por llave
+ * (ver DatabaseManager.obtenerPaginaProductos) y mientras llegan se muestra una fila marcador.
+ * El orden (OrdenProductos) lo resuelve la consulta: ordenar por otra columna es crear otra lista.
+ */
+public class ListaProductosPaginada extends ObservableListBase<Producto> {
+
+    // Fila que se muestra mientras su pgina se est leyendo
+    private static final Producto MARCADOR = new Producto(Producto.SIN_ID, "Cargando...", 0, 0, "", "",
+            RelojAuditoria.SIN_FECHA, RelojAuditoria.SIN_FECHA, "");
+
+    private final List<String> filtros;
+    private final OrdenProductos orden;
+    private final int total;
+    private final int tamanoPagina;
+    private final int maxPaginasEnMemoria;
+    private final Executor ejecutor;
+
+    // Pginas cargadas en orden de uso (LRU): la memoria queda acotada sin importar el total
+    private final LinkedHashMap<Integer, List<Producto>> paginas;
+    private final Set<Integer> paginasEnCarga = new HashSet<>();
+
+    // Ancla (valor de la columna de orden, id) con la que empieza cada pgina: la ltima fila de la
+    // pgina anterior. Dos referencias por pgina, no por fila; un id null indica que no se conoce.
+    private final Object[] anclaValor;
+    private final String[] anclaId;
+
+    private volatile boolean descartada = false;
+
+    // Una por cada lectura de pgina en curso (el ejecutor lee varias a la vez): descartar() las interrumpe todas
+    private final Set<ConsultaCancelable> consultasEnCurso = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param filtros Los 8 filtros posicionales de DatabaseManager.obtenerProductosFiltrados.
+     * @param orden Columna y direccin por las que se ordena la tabla.
+     * @param total Nmero de filas que cumplen los filtros (DatabaseManager.contarProductosFiltrados).
+     */
+    public ListaProductosPaginada(List<String> filtros, OrdenProductos orden, int total, int tamanoPagina, int maxPaginasEnMemoria, Executor ejecutor) {
+        this.filtros = filtros;
+        this.orden = orden;
+        this.total = total;
+        this.tamanoPagina = tamanoPagina;
+        this.maxPaginasEnMemoria = maxPaginasEnMemoria;
+        this.ejecutor = ejecutor;
+        int numeroPaginas = (total + tamanoPagina - 1) / tamanoPagina;
+        this.anclaValor = new Object[numeroPaginas];
+        this.anclaId = new String[numeroPaginas];
+        this.paginas = new LinkedHashMap<Integer, List<Producto>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Producto>> eldest) {
+                return size() > ListaProductosPaginada.this.maxPaginasEnMemoria;
+            }
+        };
+    }
+
+    public OrdenProductos getOrden() {
+        return orden;
+    }
+
+    /**
+     * Indica si el producto es la fila temporal que se muestra mientras su pgina carga.
+     */
+    public static boolean esMarcador(Producto producto) {
+        return producto == MARCADOR;
+    }
+
+    /**
+     * Deja de aplicar resultados pendientes (por ejemplo, cuando se aplican otros filtros)
+     * e interrumpe la lectura de pgina que est en curso.
+     */
+    public void descartar() {
+        descartada = true;
+        for (ConsultaCancelable consulta : consultasEnCurso) {
+            consulta.cancelar();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    //                       ACCESO DE LA TABLEVIEW
+    // ------------------------------------------------------------------
+
+    @Override
+    public Producto get(int index) {
+        if (index < 0 || index >= total) {
+            throw new IndexOutOfBoundsException("ndice " + index + " fuera de rango (total " + total + ")");
+        }
+        int numeroPagina = index / tamanoPagina;
+        List<Producto> pagina = paginas.get(numeroPagina);
+
+        // Precarga: al llegar a la segunda mitad de una pgina se pide la siguiente
+        if (index % tamanoPagina >= tamanoPagina / 2) {
+            solicitarPagina(numeroPagina + 1);
+        }
+        if (pagina == null) {
+            solicitarPagina(numeroPagina);
+            return MARCADOR;
+        }
+        int posicion = index % tamanoPagina;
+        return posicion < pagina.size() ? pagina.get(posicion) : MARCADOR;
+    }
+
+    @Override
+    public int size() {
+        return total;
+    }
+
+    // Solo se busca en las pginas cargadas: recorrer toda la lista forzara a leer todo el resultado
+    @Override
+    public int indexOf(Object o) {
+        for (Map.Entry<Integer, List<Producto>> entrada : paginas.entrySet()) {
+            int posicion = entrada.getValue().indexOf(o);
+            if (posicion >= 0) {
+                return entrada.getKey() * tamanoPagina + posicion;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    // ------------------------------------------------------------------
+    //                       CARGA DE PGINAS EN SEGUNDO PLANO
+    // ------------------------------------------------------------------
+
+    private void solicitarPagina(int numeroPagina) {
+        if (numeroPagina >= anclaId.length || paginas.containsKey(numeroPagina) || !paginasEnCarga.add(numeroPagina)) {
+            return;
+        }
+        Object valor = anclaValor[numeroPagina];
+        String id = anclaId[numeroPagina];
+
+        ejecutor.execute(() -> {
+            try {
+                List<Producto> pagina = leerPagina(numeroPagina, valor, id);
+                Platform.runLater(() -> aplicarPagina(numeroPagina, pagina));
+            } catch (SQLException e) {
+                if (!descartada) {
+                    System.err.println("Error al leer la pgina " + numeroPagina + " de productos: " + e.getMessage());
+                }
+                Platform.runLater(() -> paginasEnCarga.remove(numeroPagina));
+            }
+        });
+    }
+
+    /**
+     * Se ejecuta fuera del hilo de JavaFX. Si se desconoce el ancla de la pgina (el usuario salt
+     * con la barra de desplazamiento), se obtiene una sola vez con OFFSET y luego se busca por llave.
+     */
+    private List<Producto> leerPagina(int numeroPagina, Object valor, String id) throws SQLException {
+        ConsultaCancelable consulta = new ConsultaCancelable();
+        consultasEnCurso.add(consulta);
+        try {
+            // Se revisa despus de registrarla: un descartar() simultneo o la ve en el conjunto o ya marc la lista
+            if (descartada) {
+                return List.of();
+            }
+            if (numeroPagina > 0 && id == null) {
+                Object[] ancla = DatabaseManager.obtenerAnclaProductos(filtros, orden, numeroPagina * tamanoPagina - 1, consulta);
+                if (ancla == null) {
+                    return List.of();
+                }
+                valor = ancla[0];
+                id = (String) ancla[1];
+            }
+            return DatabaseManager.obtenerPaginaProductos(filtros, orden, valor, id, tamanoPagina, consulta);
+        } finally {
+            consultasEnCurso.remove(consulta);
+        }
+    }
+
+    /**
+     * Se ejecuta en el hilo de JavaFX: guarda la pgina y notifica a la tabla que esas filas cambiaron.
+     */
+    private void aplicarPagina(int numeroPagina, List<Producto> pagina) {
+        paginasEnCarga.remove(numeroPagina);
+        if (descartada || pagina.isEmpty()) {
+            return;
+        }
+        paginas.put(numeroPagina, pagina);
+
+        // La ltima fila de esta pgina es el ancla de la siguiente
+        if (numeroPagina + 1 < anclaId.length) {
+            Producto ultimo = pagina.get(pagina.size() - 1);
+            anclaValor[numeroPagina + 1] = orden.valorAncla(ultimo);
+            anclaId[numeroPagina + 1] = ultimo.getId();
+        }
+
+        int inicio = numeroPagina * tamanoPagina;
+        beginChange();
+        for (int i = 0; i < pagina.size() && inicio + i < total; i++) {
+            nextSet(inicio + i, MARCADOR);
+        }
+        endChange();
+    }
+}
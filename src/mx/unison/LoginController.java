@@ -4,30 +4,12 @@ import javafx.fxml.FXML;
 import javafx.scene.control.TextField;
 import javafx.scene.control.PasswordField;
 import javafx.event.ActionEvent;
-import java.sql.SQLException;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.io.IOException;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 
-public class LoginController {
+public class LoginController implements RegistroVistas.Reutilizable {
     
-    // CLASE INTERNA: Para devolver el hash y el rol de la BD
-    private class CredencialInfo {
-        String hashAlmacenado;
-        String rolUsuario;
-
-        public CredencialInfo(String hash, String rol) {
-            this.hashAlmacenado = hash;
-            this.rolUsuario = rol;
-        }
-    }
-
     // 1. Inyectar los componentes de la vista (deben coincidir con el fx:id)
     @FXML
     private TextField txtUsuario;
@@ -38,6 +20,16 @@ public class LoginController {
     @FXML
     private Button btnLogin; 
 
+    /**
+     * La vista se reutiliza (RegistroVistas): al volver despus de cerrar sesin no debe quedar
+     * la contrasea anterior en el campo.
+     */
+    @Override
+    public void prepararVista() {
+        txtPassword.clear();
+        btnLogin.setDisable(false);
+    }
+
     // 2. Mtodo de accin para el botn de Iniciar Sesin (debe coincidir con On Action)
     @FXML
     private void handleLogin(ActionEvent event) {
@@ -51,101 +43,38 @@ public class LoginController {
             return;
         }
 
-        // b) Aqu ir la lgica de conexin a la BD y verificacin
-        try {
-            // 3. LLAMAR A LA LGICA DE VERIFICACIN
-            CredencialInfo info = obtenerCredencialInfo(nombreUsuario, passwordPlana); 
-
-            if (info != null) {
-                
-                // ASIGNACIN CLAVE: Usamos SessionContext para guardar el nombre y el rol
-                SessionContext.setCurrentUserName(nombreUsuario); 
-                SessionContext.setCurrentUserRole(info.rolUsuario); 
-                
-                // Actualizamos la hora de inicio (Fix Issue 1 & 3)
-                actualizarUltimoInicio(nombreUsuario); 
-                
-                // Redirigir a la vista principal
-                mx.unison.InventarioApp.mostrarVista("Inicio.fxml"); 
-
-            } else {
-                mostrarAlertaError("Credenciales Incorrectas", "Usuario o contrasea incorrecta. Por favor, intente de nuevo.");
-            }
-            
-        } catch (SQLException e) {
-            System.err.println("Error de base de datos durante el login: " + e.getMessage());
-             mostrarAlertaError("Error de Base de Datos", "Ocurri un error al intentar iniciar sesin.");
-            
-        } catch (IOException e) { 
-            System.err.println("Error al cargar la vista de Inicio: " + e.getMessage());
-             mostrarAlertaError("Error de Sistema", "No se pudo cargar la ventana principal.");
-        }
-    }
-    
-    private CredencialInfo obtenerCredencialInfo(String usuario, String password) throws SQLException {
-        CredencialInfo info = obtenerHashYRolDeBD(usuario); 
-        
-        if (info != null) {
-            if (Seguridad.verificarPassword(password, info.hashAlmacenado)) {
-                return info; 
-            }
-        }
-        return null; 
-    }
-    
-    private CredencialInfo obtenerHashYRolDeBD(String usuario) throws SQLException {
-        CredencialInfo info = null;
-        
-        // SELECCIONAMOS 'password' Y 'rol'
-        String sql = "SELECT password, rol FROM usuarios WHERE LOWER(nombre) = LOWER(?)";
-        
-        try (Connection conn = DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, usuario); 
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    String hashAlmacenado = rs.getString("password");
-                    String rolUsuario = rs.getString("rol");
-                    info = new CredencialInfo(hashAlmacenado, rolUsuario);
-                }
+        // b) La verificacin (BCrypt, lenta a propsito) y los lmites de intentos estn en ServicioAutenticacion
+        btnLogin.setDisable(true);
+        TareasBD.entregarEnFX(ServicioAutenticacion.autenticar(nombreUsuario, passwordPlana), resultado -> {
+            btnLogin.setDisable(false);
+            switch (resultado.getEstado()) {
+                case ACEPTADO:
+                    // ASIGNACIN CLAVE: Usamos SessionContext para guardar el nombre y el rol
+                    // (el nombre como est guardado: "ADMIN " y "admin" son el mismo usuario en la auditora)
+                    SessionContext.setCurrentUserName(resultado.getUsuario()); 
+                    SessionContext.setCurrentUserRole(resultado.getRol()); 
+                    
+                    // Redirigir a la vista principal
+                    try {
+                        mx.unison.InventarioApp.mostrarVista("Inicio.fxml"); 
+                    } catch (IOException e) { 
+                        System.err.println("Error al cargar la vista de Inicio: " + e.getMessage());
+                        mostrarAlertaError("Error de Sistema", "No se pudo cargar la ventana principal.");
+                    }
+                    break;
+                case ESPERAR:
+                    mostrarAlertaError("Demasiados Intentos", "Espere " + resultado.getSegundosEspera()
+                            + " segundos antes de intentar de nuevo.");
+                    break;
+                default:
+                    mostrarAlertaError("Credenciales Incorrectas", "Usuario o contrasea incorrecta. Por favor, intente de nuevo.");
+                    break;
             }
-        }
-        
-        return info;
-    }
-    
-    /**
-     * Actualiza la fecha y hora de ltimo inicio de sesin para el usuario.
-     * Implementa la lgica de la zona horaria y bsqueda case-insensitive.
-     * @param nombreUsuario El nombre del usuario que ha iniciado sesin.
-     */
-    private void actualizarUltimoInicio(String nombreUsuario) throws SQLException {
-        
-        // --- Fix Issue 3: Usar Zona Horaria Local (Sonora/Arizona: GMT-7/MST) ---
-        ZoneId sonoranZone = ZoneId.of("America/Phoenix");
-        LocalDateTime now = LocalDateTime.now(sonoranZone);
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        String localizedNow = now.format(formatter);
-        
-        // --- Fix Issue 1: Usar LOWER() en la bsqueda para evitar problemas de maysculas/minsculas ---
-        String sql = "UPDATE usuarios SET fecha_hora_ultimo_inicio = ? WHERE LOWER(nombre) = LOWER(?)";
-
-        try (Connection conn = mx.unison.DatabaseManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, localizedNow); // Hora localizada
-            pstmt.setString(2, nombreUsuario); // Usuario que inici sesin
-            
-            int filasActualizadas = pstmt.executeUpdate(); 
-            
-            if (filasActualizadas > 0) {
-                System.out.println("DEBUG: Se actualiz la hora de ltimo inicio para el usuario: " + nombreUsuario + " (" + localizedNow + ")");
-            } else {
-                System.err.println("ADVERTENCIA: No se pudo actualizar la hora de ltimo inicio. Usuario '" + nombreUsuario + "' no encontrado.");
-            }
-        }
+        }, error -> {
+            btnLogin.setDisable(false);
+            System.err.println("Error de base de datos durante el login: " + error.getMessage());
+            mostrarAlertaError("Error de Base de Datos", "Ocurri un error al intentar iniciar sesin.");
+        });
     }
     
     private void mostrarAlertaError(String titulo, String contenido) {
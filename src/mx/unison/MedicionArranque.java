@@ -0,0 +1,165 @@
+package mx.unison;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+/**
+ * Tiempos de arranque medidos desde que inici el proceso de la JVM:
+ *   - primer cuadro: la primera vez que JavaFX procesa la escena del Login para dibujarla
+ *   - interactivo: Login visible y base de datos lista (el usuario ya puede iniciar sesin sin esperar)
+ * La aplicacin los escribe siempre como lneas DEBUG. Con -Dinventario.medirArranque=true adems
+ * imprime una lnea ARRANQUE y se cierra sola; as la usan este programa y el target cds-archive de build.xml.
+ *
+ * Como programa, arranca la aplicacin varias veces y reporta la mediana de cada tiempo:
+ *   java mx.unison.MedicionArranque [veces] [opciones de la JVM...]   (por defecto 5 veces)
+ * Si se dan opciones (p. ej. -XX:SharedArchiveFile=dist/inventario.jsa) se mide sin ellas y con ellas.
+ * Necesita una pantalla: la ventana se abre y se cierra en cada corrida.
+ */
+public final class MedicionArranque {
+
+    /** Propiedad del sistema que hace que la aplicacin reporte los tiempos y se cierre. */
+    public static final String PROPIEDAD = "inventario.medirArranque";
+    private static final String PREFIJO = "ARRANQUE ";
+    private static final long ESPERA_MAXIMA_S = 120;
+
+    // Inicio del proceso (si el sistema operativo no lo da, la carga de esta clase)
+    private static final long INICIO_MS = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli).orElse(System.currentTimeMillis());
+
+    // Solo en el hilo de JavaFX
+    private static long primerCuadroMs = -1;
+    private static long baseDeDatosMs = -1;
+
+    // Constructor privado para evitar instanciacin
+    private MedicionArranque() {}
+
+    /**
+     * Milisegundos desde el inicio del proceso, escritos en el registro con el nombre de la etapa.
+     */
+    static long marcar(String etapa) {
+        long ms = System.currentTimeMillis() - INICIO_MS;
+        System.out.println("DEBUG: Arranque: " + etapa + " a los " + ms + " ms.");
+        return ms;
+    }
+
+    /**
+     * Empieza a observar la ventana principal recin mostrada. Se llama en el hilo de JavaFX.
+     */
+    static void observar(Stage ventana) {
+        Scene escena = ventana.getScene();
+        // El primer pulso despus de show(): es el que dibuja la escena por primera vez
+        Runnable[] primerPulso = new Runnable[1];
+        primerPulso[0] = () -> {
+            escena.removePostLayoutPulseListener(primerPulso[0]);
+            primerCuadroMs = marcar("primer cuadro");
+            revisarInteractivo();
+        };
+        escena.addPostLayoutPulseListener(primerPulso[0]);
+
+        Arranque.alTerminar().thenRun(() -> Platform.runLater(() -> {
+            baseDeDatosMs = System.currentTimeMillis() - INICIO_MS;
+            revisarInteractivo();
+        }));
+    }
+
+    private static void revisarInteractivo() {
+        if (primerCuadroMs < 0 || baseDeDatosMs < 0) {
+            return;
+        }
+        long interactivoMs = marcar("interactivo");
+        if (Boolean.getBoolean(PROPIEDAD)) {
+            System.out.println(PREFIJO + primerCuadroMs + " " + interactivoMs);
+            Platform.exit();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    //                       PROGRAMA DE MEDICIN
+    // ------------------------------------------------------------------
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int veces = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        List<String> opciones = args.length > 1 ? Arrays.asList(args).subList(1, args.length) : Collections.emptyList();
+
+        medir("sin opciones", veces, Collections.emptyList());
+        if (!opciones.isEmpty()) {
+            medir(String.join(" ", opciones), veces, opciones);
+        }
+    }
+
+    private static void medir(String nombre, int veces, List<String> opciones) throws IOException, InterruptedException {
+        List<Long> primerCuadro = new ArrayList<>();
+        List<Long> interactivo = new ArrayList<>();
+        for (int i = 1; i <= veces; i++) {
+            long[] tiempos = ejecutarAplicacion(opciones);
+            if (tiempos == null) {
+                System.out.printf("  %s #%d: la aplicacin no report tiempos%n", nombre, i);
+                continue;
+            }
+            primerCuadro.add(tiempos[0]);
+            interactivo.add(tiempos[1]);
+            System.out.printf("  %s #%d: primer cuadro %d ms, interactivo %d ms%n", nombre, i, tiempos[0], tiempos[1]);
+        }
+        if (!primerCuadro.isEmpty()) {
+            System.out.printf("%s: mediana primer cuadro %d ms, interactivo %d ms (%d corridas)%n",
+                    nombre, mediana(primerCuadro), mediana(interactivo), primerCuadro.size());
+        }
+    }
+
+    // Misma JVM, mismas opciones y mismo classpath que este programa, ms las opciones a medir
+    private static long[] ejecutarAplicacion(List<String> opciones) throws IOException, InterruptedException {
+        List<String> comando = new ArrayList<>();
+        comando.add(ProcessHandle.current().info().command().orElse("java"));
+        comando.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        comando.addAll(opciones);
+        comando.add("-D" + PROPIEDAD + "=true");
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add(InventarioApp.class.getName());
+
+        Process proceso = new ProcessBuilder(comando).redirectErrorStream(true).start();
+        // Si la aplicacin no termina sola (p. ej. se qued en un dilogo), se cierra para no esperar por siempre
+        Thread vigilante = new Thread(() -> {
+            try {
+                if (!proceso.waitFor(ESPERA_MAXIMA_S, TimeUnit.SECONDS)) {
+                    proceso.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                proceso.destroyForcibly();
+            }
+        }, "vigilante-arranque");
+        vigilante.setDaemon(true);
+        vigilante.start();
+
+        long[] tiempos = null;
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(proceso.getInputStream(), StandardCharsets.UTF_8))) {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                if (linea.startsWith(PREFIJO)) {
+                    String[] partes = linea.substring(PREFIJO.length()).trim().split(" ");
+                    tiempos = new long[] {Long.parseLong(partes[0]), Long.parseLong(partes[1])};
+                }
+            }
+        }
+        proceso.waitFor();
+        return tiempos;
+    }
+
+    private static long mediana(List<Long> valores) {
+        List<Long> ordenados = new ArrayList<>(valores);
+        Collections.sort(ordenados);
+        return ordenados.get(ordenados.size() / 2);
+    }
+}
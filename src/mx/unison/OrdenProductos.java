@@ -0,0 +1,151 @@
+package mx.unison;
+
+/**
+ * Orden de la lista de productos: la columna por la que el usuario orden la tabla y la direccin.
+ * Se traduce a un ORDER BY (o al mismo orden en IndiceProductosColumnar) con el id como desempate,
+ * as cada fila tiene una posicin nica y la paginacin por llave puede continuar justo despus
+ * del ancla (valor, id) de la ltima fila mostrada, sin importar la columna.
+ * Es inmutable (se compara con equals para saber si el orden cambi).
+ */
+public final class OrdenProductos {
+
+    // El id es TEXT: se ordena y compara como nmero (1, 2, 10 y no 1, 10, 2), igual que en IndiceProductosColumnar
+    static final String ID_NUMERICO = "CAST(p.id AS INTEGER)";
+
+    /**
+     * Columnas por las que se puede ordenar. Todas, salvo el almacn, tienen su ndice en createTables(),
+     * as que SQLite recorre el ndice en el orden de la columna. El ndice entrega los empates en orden
+     * de rowid, no de id (el id es TEXT y no es el rowid): SQLite solo ordena el id dentro de cada grupo
+     * de valores iguales ("USE TEMP B-TREE FOR LAST TERM OF ORDER BY").
+     */
+    public enum Columna {
+        ID(ID_NUMERICO, false, false),
+        NOMBRE("p.nombre", true, false),
+        PRECIO("p.precio", false, false),
+        CANTIDAD("p.cantidad", false, false),
+        DEPARTAMENTO("p.departamento", true, false),
+        // Se muestra el nombre del almacn (viene del JOIN): SQLite lo ordena con un rbol temporal
+        ALMACEN("a.nombre", true, false),
+        FECHA_CREACION("p.fecha_hora_creacion", false, true),
+        FECHA_MODIFICACION("p.fecha_hora_ultima_modificacion", false, true),
+        USUARIO("p.ultimo_usuario_en_modificar", true, true);
+
+        final String expresion;
+        final boolean texto;    // Se compara sin maysculas (COLLATE NOCASE)
+        final boolean anulable; // Puede ser NULL en bases creadas con versiones anteriores
+
+        Columna(String expresion, boolean texto, boolean anulable) {
+            this.expresion = expresion;
+            this.texto = texto;
+            this.anulable = anulable;
+        }
+    }
+
+    /** El orden de siempre: nombre (sin maysculas) e id. */
+    public static final OrdenProductos POR_NOMBRE = new OrdenProductos(Columna.NOMBRE, true);
+
+    /** Nmero de rdenes distintos (columna y direccin), para memorizar el SQL de cada uno. */
+    static final int NUMERO_ORDENES = Columna.values().length * 2;
+
+    private final Columna columna;
+    private final boolean ascendente;
+
+    public OrdenProductos(Columna columna, boolean ascendente) {
+        this.columna = columna;
+        this.ascendente = ascendente;
+    }
+
+    public Columna getColumna() {
+        return columna;
+    }
+
+    public boolean isAscendente() {
+        return ascendente;
+    }
+
+    /** Nmero del orden entre 0 y NUMERO_ORDENES - 1. */
+    int codigo() {
+        return columna.ordinal() * 2 + (ascendente ? 0 : 1);
+    }
+
+    // ------------------------------------------------------------------
+    //                       SQL
+    // ------------------------------------------------------------------
+
+    /** Clusula ORDER BY: la columna y el id en la misma direccin (el ndice se recorre en un solo sentido). */
+    String sqlOrden() {
+        String direccion = ascendente ? " ASC" : " DESC";
+        if (columna == Columna.ID) {
+            return " ORDER BY " + ID_NUMERICO + direccion; // El id ya es nico: no necesita desempate
+        }
+        return " ORDER BY " + columna.expresion + (columna.texto ? " COLLATE NOCASE" : "") + direccion + ", " + ID_NUMERICO + direccion;
+    }
+
+    /**
+     * Predicado que deja solo las filas que van despus del ancla (valor, id).
+     * SQLite pone los NULL antes que cualquier valor, as que un ancla NULL necesita su propia variante.
+     * Parmetros: (valor, id), o solo (id) si el ancla es NULL; el id se pasa como nmero.
+     * @param anclaNula El valor del ancla es NULL.
+     */
+    String sqlDespuesDeAncla(boolean anclaNula) {
+        String expresion = columna.expresion;
+        if (anclaNula) {
+            return ascendente
+                    ? " AND ((" + expresion + " IS NULL AND " + ID_NUMERICO + " > ?) OR " + expresion + " IS NOT NULL)"
+                    : " AND " + expresion + " IS NULL AND " + ID_NUMERICO + " < ?";
+        }
+        if (columna == Columna.ID) {
+            // Valor e id del ancla son el mismo nmero: basta un rango simple, que SQLite busca en idx_productos_id_numerico
+            String operador = ascendente ? ">" : "<";
+            return " AND " + ID_NUMERICO + " " + operador + "= ? AND " + ID_NUMERICO + " " + operador + " ?";
+        }
+        // El COLLATE va del lado del parmetro para que SQLite lo resuelva como rango sobre el ndice
+        String tupla = "(" + expresion + ", " + ID_NUMERICO + ") " + (ascendente ? ">" : "<") + " (?" + (columna.texto ? " COLLATE NOCASE" : "") + ", ?)";
+        if (!ascendente && columna.anulable) {
+            // En orden descendente los NULL van al final: siguen despus de cualquier ancla con valor
+            return " AND (" + tupla + " OR " + expresion + " IS NULL)";
+        }
+        return " AND " + tupla;
+    }
+
+    /**
+     * Valor de la columna de orden de un producto, del tipo que se pasa como parmetro al SQL
+     * (String, Double, Integer o Long), o null si la columna es NULL.
+     */
+    Object valorAncla(Producto producto) {
+        switch (columna) {
+            case ID: return producto.getIdNumero();
+            case PRECIO: return producto.getPrecio();
+            case CANTIDAD: return producto.getCantidad();
+            case DEPARTAMENTO: return producto.getDepartamento();
+            case ALMACEN: return producto.getAlmacen();
+            case FECHA_CREACION: return fecha(producto.getFechaCreacionEpoch());
+            case FECHA_MODIFICACION: return fecha(producto.getFechaModificacionEpoch());
+            case USUARIO: return producto.getUltimoUsuario();
+            default: return producto.getNombre();
+        }
+    }
+
+    private static Long fecha(long epoch) {
+        return epoch == RelojAuditoria.SIN_FECHA ? null : epoch;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof OrdenProductos)) {
+            return false;
+        }
+        OrdenProductos otro = (OrdenProductos) o;
+        return columna == otro.columna && ascendente == otro.ascendente;
+    }
+
+    @Override
+    public int hashCode() {
+        return codigo();
+    }
+
+    @Override
+    public String toString() {
+        return columna + (ascendente ? " ASC" : " DESC");
+    }
+}
@@ -0,0 +1,315 @@
+package mx.unison;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool acotado de conexiones JDBC a SQLite.
+ * Cada conexin fsica se abre y configura (PRAGMAs) una sola vez y se reutiliza.
+ * Los llamadores reciben un proxy: al hacer close() la conexin regresa al pool
+ * en lugar de cerrarse, por lo que el patrn try-with-resources existente no cambia.
+ */
+public class PoolConexiones {
+
+    // PRAGMAs que se ejecutan una sola vez al abrir cada conexin fsica
+    private static final String[] PRAGMAS_INICIALES = {
+        "PRAGMA journal_mode=WAL",
+        "PRAGMA synchronous=NORMAL",
+        "PRAGMA cache_size=-16000",      // ~16 MB de cach de pginas por conexin
+        "PRAGMA mmap_size=268435456",    // 256 MB de lectura por memoria mapeada
+        "PRAGMA busy_timeout=5000",
+        "PRAGMA foreign_keys=ON",
+        "PRAGMA temp_store=MEMORY"
+    };
+
+    // Tiempo que una conexin puede estar inactiva antes de revalidarla al prestarla
+    private static final long MS_VALIDACION_INACTIVA = 30_000;
+
+    // Sentencias compiladas que conserva cada conexin fsica (ver CacheSentencias)
+    private static final int CAPACIDAD_CACHE_SENTENCIAS = 64;
+
+    private final String url;
+    private final int maxConexiones;
+    private final long msEsperaMaxima;
+
+    // Conexiones fsicas libres, listas para prestarse
+    private final BlockingQueue<ConexionFisica> libres;
+    private final AtomicInteger totalCreadas = new AtomicInteger();
+    private final AtomicInteger activas = new AtomicInteger();
+    private volatile boolean cerrado = false;
+
+    // --- Estadsticas ---
+    private final AtomicLong totalPrestamos = new AtomicLong();
+    private final AtomicLong nanosEsperaTotal = new AtomicLong();
+    private final AtomicLong nanosEsperaMaxima = new AtomicLong();
+    private final AtomicLong conexionesDescartadas = new AtomicLong();
+
+    public PoolConexiones(String url, int maxConexiones, long msEsperaMaxima) {
+        this.url = url;
+        this.maxConexiones = maxConexiones;
+        this.msEsperaMaxima = msEsperaMaxima;
+        this.libres = new ArrayBlockingQueue<>(maxConexiones);
+    }
+
+    // ------------------------------------------------------------------
+    //                       PRSTAMO Y DEVOLUCIN
+    // ------------------------------------------------------------------
+
+    /**
+     * Presta una conexin del pool. Si no hay libres y el pool no est lleno, abre una nueva;
+     * si est lleno, espera hasta msEsperaMaxima a que otra sea devuelta.
+     */
+    public Connection obtenerConexion() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("El pool de conexiones est cerrado: " + url);
+        }
+        long inicio = System.nanoTime();
+        ConexionFisica fisica = null;
+
+        while (fisica == null) {
+            fisica = libres.poll();
+            if (fisica == null && totalCreadas.get() < maxConexiones) {
+                if (totalCreadas.incrementAndGet() <= maxConexiones) {
+                    try {
+                        fisica = abrirConexion();
+                    } catch (SQLException e) {
+                        totalCreadas.decrementAndGet();
+                        throw e;
+                    }
+                } else {
+                    totalCreadas.decrementAndGet();
+                }
+            }
+            if (fisica == null) {
+                long restante = TimeUnit.MILLISECONDS.toNanos(msEsperaMaxima) - (System.nanoTime() - inicio);
+                if (restante <= 0) {
+                    // Transitoria: el llamador puede reintentar ms tarde (ServidorApi responde 503)
+                    throw new SQLTransientConnectionException("Tiempo de espera agotado (" + msEsperaMaxima + " ms) al obtener una conexin del pool.");
+                }
+                try {
+                    fisica = libres.poll(restante, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrumpido mientras se esperaba una conexin del pool.", e);
+                }
+            }
+            if (fisica != null && !esValida(fisica)) {
+                descartar(fisica);
+                fisica = null;
+            }
+        }
+
+        registrarEspera(System.nanoTime() - inicio);
+        activas.incrementAndGet();
+        return fisica.prestar();
+    }
+
+    /**
+     * Regresa la conexin fsica al pool, restaurando el estado que el llamador pudo haber cambiado.
+     */
+    private void devolver(ConexionFisica fisica) {
+        activas.decrementAndGet();
+        if (fisica.sentencias.fueInterrumpida()) {
+            // Una consulta cancelada puede dejar la conexin interrumpida: se reemplaza por una nueva
+            descartar(fisica);
+            return;
+        }
+        try {
+            if (!fisica.conexion.getAutoCommit()) {
+                fisica.conexion.rollback();
+                fisica.conexion.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("ADVERTENCIA: Conexin descartada al devolverla al pool: " + e.getMessage());
+            descartar(fisica);
+            return;
+        }
+        fisica.ultimoUso = System.currentTimeMillis();
+        if (cerrado || !libres.offer(fisica)) {
+            descartar(fisica);
+        }
+    }
+
+    private ConexionFisica abrirConexion() throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            for (String pragma : PRAGMAS_INICIALES) {
+                stmt.execute(pragma);
+            }
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        System.out.println("DEBUG: Nueva conexin fsica abierta en el pool (" + totalCreadas.get() + "/" + maxConexiones + ").");
+        return new ConexionFisica(conn);
+    }
+
+    private boolean esValida(ConexionFisica fisica) {
+        try {
+            if (fisica.conexion.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - fisica.ultimoUso > MS_VALIDACION_INACTIVA) {
+                return fisica.conexion.isValid(2);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void descartar(ConexionFisica fisica) {
+        totalCreadas.decrementAndGet();
+        conexionesDescartadas.incrementAndGet();
+        try {
+            fisica.sentencias.cerrarTodas();
+            fisica.conexion.close();
+        } catch (SQLException e) {
+            System.err.println("Error al cerrar la conexin descartada: " + e.getMessage());
+        }
+    }
+
+    private void registrarEspera(long nanos) {
+        totalPrestamos.incrementAndGet();
+        nanosEsperaTotal.addAndGet(nanos);
+        nanosEsperaMaxima.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Cierra todas las conexiones libres. Las que estn prestadas se cierran al devolverse.
+     */
+    public void cerrar() {
+        cerrado = true;
+        List<ConexionFisica> pendientes = new ArrayList<>();
+        libres.drainTo(pendientes);
+        for (ConexionFisica fisica : pendientes) {
+            totalCreadas.decrementAndGet();
+            try {
+                fisica.sentencias.cerrarTodas();
+                fisica.conexion.close();
+            } catch (SQLException e) {
+                System.err.println("Error al cerrar la conexin del pool: " + e.getMessage());
+            }
+        }
+        System.out.println("DEBUG: Pool de conexiones cerrado. " + getEstadisticas());
+    }
+
+    // ------------------------------------------------------------------
+    //                       ESTADSTICAS
+    // ------------------------------------------------------------------
+
+    public int getConexionesActivas() {
+        return activas.get();
+    }
+
+    public int getConexionesLibres() {
+        return libres.size();
+    }
+
+    public long getTotalPrestamos() {
+        return totalPrestamos.get();
+    }
+
+    /** Tiempo promedio de espera para obtener una conexin, en microsegundos. */
+    public double getEsperaPromedioMicros() {
+        long prestamos = totalPrestamos.get();
+        return prestamos == 0 ? 0.0 : nanosEsperaTotal.get() / 1_000.0 / prestamos;
+    }
+
+    /** Mayor tiempo de espera observado para obtener una conexin, en microsegundos. */
+    public double getEsperaMaximaMicros() {
+        return nanosEsperaMaxima.get() / 1_000.0;
+    }
+
+    public String getEstadisticas() {
+        return String.format("Pool[%s] activas=%d libres=%d creadas=%d/%d prestamos=%d esperaProm=%.1fus esperaMax=%.1fus descartadas=%d",
+                url, getConexionesActivas(), getConexionesLibres(), totalCreadas.get(), maxConexiones,
+                getTotalPrestamos(), getEsperaPromedioMicros(), getEsperaMaximaMicros(), conexionesDescartadas.get());
+    }
+
+    // ------------------------------------------------------------------
+    //                       CONEXIN FSICA Y PROXY
+    // ------------------------------------------------------------------
+
+    /**
+     * Conexin fsica abierta por el pool. Cada prstamo entrega un proxy nuevo
+     * para que un close() repetido sobre un prstamo anterior no afecte al siguiente.
+     */
+    private class ConexionFisica {
+        final Connection conexion;
+        final CacheSentencias sentencias;
+        volatile long ultimoUso = System.currentTimeMillis();
+
+        ConexionFisica(Connection conexion) {
+            this.conexion = conexion;
+            this.sentencias = new CacheSentencias(conexion, CAPACIDAD_CACHE_SENTENCIAS);
+        }
+
+        Connection prestar() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new Prestamo(this));
+        }
+    }
+
+    /**
+     * Manejador del proxy: intercepta close()/isClosed(), sirve prepareStatement(String)
+     * desde la cach de sentencias y delega todo lo dems a la conexin fsica.
+     */
+    private class Prestamo implements InvocationHandler {
+        private final ConexionFisica fisica;
+        private boolean devuelta = false;
+
+        Prestamo(ConexionFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!devuelta) {
+                        devuelta = true;
+                        devolver(fisica);
+                    }
+                    return null;
+                case "isClosed":
+                    return devuelta || fisica.conexion.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexionAgrupada[" + fisica.conexion + "]";
+                default:
+                    break;
+            }
+            if (devuelta) {
+                throw new SQLException("La conexin ya fue devuelta al pool.");
+            }
+            if ("prepareStatement".equals(method.getName()) && args.length == 1) {
+                return fisica.sentencias.preparar((String) args[0], (Connection) proxy);
+            }
+            try {
+                return method.invoke(fisica.conexion, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
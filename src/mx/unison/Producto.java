@@ -1,89 +1,174 @@
 package mx.unison;
 
-import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
 
+/**
+ * Clase modelo de un producto.
+ * Los valores se guardan en campos simples ya tipados (id, precio y cantidad numricos, fechas en segundos
+ * desde la poca): una lista de cientos de miles de productos ocupa una fraccin de lo que ocupaba con
+ * nueve StringProperty por fila, y ordenar por precio o cantidad ya no convierte texto en cada comparacin.
+ * Las propiedades de JavaFX solo se crean cuando una celda de la TableView las pide (filas visibles).
+ */
 public class Producto {
-    
-    // Usamos StringProperty para que JavaFX pueda observar y actualizar la TableView
-    private final StringProperty id;
-    private final StringProperty nombre;
-    private final StringProperty precio;
-    private final StringProperty cantidad;
-    private final StringProperty departamento;
-    private final StringProperty almacen; // Almacena el ID del almacn (FK) o el nombre legible
-    private final StringProperty fechaCreacion;
-    private final StringProperty fechaModificacion;
-    private final StringProperty ultimoUsuario;
 
-    public Producto(String id, String nombre, String precio, String cantidad, String departamento, String almacen, String fechaCreacion, String fechaModificacion, String ultimoUsuario) {
-        this.id = new SimpleStringProperty(id);
-        this.nombre = new SimpleStringProperty(nombre);
-        this.precio = new SimpleStringProperty(precio);
-        this.cantidad = new SimpleStringProperty(cantidad);
-        this.departamento = new SimpleStringProperty(departamento);
-        this.almacen = new SimpleStringProperty(almacen);
-        this.fechaCreacion = new SimpleStringProperty(fechaCreacion);
-        this.fechaModificacion = new SimpleStringProperty(fechaModificacion);
-        this.ultimoUsuario = new SimpleStringProperty(ultimoUsuario);
+    /** ID de un producto que todava no se guarda (la DB lo asigna). */
+    public static final long SIN_ID = -1;
+
+    private long id;
+    private String nombre;
+    private double precio;
+    private int cantidad;
+    private String departamento;
+    private String almacen; // Almacena el ID del almacn (FK) o el nombre legible
+    private long fechaCreacion;
+    private long fechaModificacion;
+    private String ultimoUsuario;
+
+    // Propiedades observables, creadas la primera vez que se piden
+    private Propiedades propiedades;
+
+    public Producto(long id, String nombre, double precio, int cantidad, String departamento, String almacen,
+                    long fechaCreacion, long fechaModificacion, String ultimoUsuario) {
+        this.id = id;
+        this.nombre = nombre;
+        this.precio = precio;
+        this.cantidad = cantidad;
+        this.departamento = departamento;
+        this.almacen = almacen;
+        this.fechaCreacion = fechaCreacion;
+        this.fechaModificacion = fechaModificacion;
+        this.ultimoUsuario = ultimoUsuario;
+    }
+
+    /**
+     * Copia los valores de otro producto (p. ej. reledo de la base de datos tras una operacin en lote).
+     * Si la fila ya tiene propiedades, la TableView la actualiza sin recargar la lista.
+     */
+    public void actualizarDesde(Producto otro) {
+        id = otro.id;
+        nombre = otro.nombre;
+        precio = otro.precio;
+        cantidad = otro.cantidad;
+        departamento = otro.departamento;
+        almacen = otro.almacen;
+        fechaCreacion = otro.fechaCreacion;
+        fechaModificacion = otro.fechaModificacion;
+        ultimoUsuario = otro.ultimoUsuario;
+        if (propiedades != null) {
+            propiedades.actualizar(this);
+        }
     }
 
-    // --- GETTERS (Estos son los que tu controlador busca) ---
+    // --- GETTERS ---
+    /** El ID como texto (como se usa en las consultas), o null si el producto an no se guarda. */
     public String getId() {
-        return id.get();
+        return id == SIN_ID ? null : Long.toString(id);
+    }
+    public long getIdNumero() {
+        return id;
     }
     public String getNombre() {
-        return nombre.get();
+        return nombre;
     }
-    // ... (Otros getters necesarios, aunque no causaron error explcito)
-    public String getPrecio() {
-        return precio.get();
+    public double getPrecio() {
+        return precio;
     }
-    public String getCantidad() {
-        return cantidad.get();
+    public int getCantidad() {
+        return cantidad;
     }
     public String getDepartamento() {
-        return departamento.get();
+        return departamento;
     }
     public String getAlmacen() {
-        return almacen.get();
+        return almacen;
     }
+    /** Fecha de creacin en la hora de Sonora ("yyyy-MM-dd HH:mm:ss"), o null si no se conoce. */
     public String getFechaCreacion() {
-        return fechaCreacion.get();
+        return RelojAuditoria.formatear(fechaCreacion);
     }
     public String getFechaModificacion() {
-        return fechaModificacion.get();
+        return RelojAuditoria.formatear(fechaModificacion);
+    }
+    /** Segundos desde la poca, o RelojAuditoria.SIN_FECHA. */
+    public long getFechaCreacionEpoch() {
+        return fechaCreacion;
+    }
+    public long getFechaModificacionEpoch() {
+        return fechaModificacion;
     }
     public String getUltimoUsuario() {
-        return ultimoUsuario.get();
+        return ultimoUsuario;
     }
 
     // --- PROPERTY GETTERS (Usados por TableColumn.setCellValueFactory) ---
-    public StringProperty idProperty() {
-        return id;
+    public ReadOnlyLongProperty idProperty() {
+        return propiedades().id.getReadOnlyProperty();
     }
-    public StringProperty nombreProperty() {
-        return nombre;
+    public ReadOnlyStringProperty nombreProperty() {
+        return propiedades().nombre.getReadOnlyProperty();
     }
-    public StringProperty precioProperty() {
-        return precio;
+    public ReadOnlyDoubleProperty precioProperty() {
+        return propiedades().precio.getReadOnlyProperty();
     }
-    public StringProperty cantidadProperty() {
-        return cantidad;
+    public ReadOnlyIntegerProperty cantidadProperty() {
+        return propiedades().cantidad.getReadOnlyProperty();
     }
-    public StringProperty departamentoProperty() {
-        return departamento;
+    public ReadOnlyStringProperty departamentoProperty() {
+        return propiedades().departamento.getReadOnlyProperty();
     }
-    public StringProperty almacenProperty() {
-        return almacen;
+    public ReadOnlyStringProperty almacenProperty() {
+        return propiedades().almacen.getReadOnlyProperty();
     }
-    public StringProperty fechaCreacionProperty() {
-        return fechaCreacion;
+    public ReadOnlyStringProperty fechaCreacionProperty() {
+        return propiedades().fechaCreacion.getReadOnlyProperty();
     }
-    public StringProperty fechaModificacionProperty() {
-        return fechaModificacion;
+    public ReadOnlyStringProperty fechaModificacionProperty() {
+        return propiedades().fechaModificacion.getReadOnlyProperty();
     }
-    public StringProperty ultimoUsuarioProperty() {
-        return ultimoUsuario;
+    public ReadOnlyStringProperty ultimoUsuarioProperty() {
+        return propiedades().ultimoUsuario.getReadOnlyProperty();
+    }
+
+    private Propiedades propiedades() {
+        if (propiedades == null) {
+            propiedades = new Propiedades(this);
+        }
+        return propiedades;
     }
-}
\ No newline at end of file
+
+    /** Las nueve propiedades de una fila; se crean juntas porque una fila visible muestra todas sus columnas. */
+    private static final class Propiedades {
+        final ReadOnlyLongWrapper id = new ReadOnlyLongWrapper();
+        final ReadOnlyStringWrapper nombre = new ReadOnlyStringWrapper();
+        final ReadOnlyDoubleWrapper precio = new ReadOnlyDoubleWrapper();
+        final ReadOnlyIntegerWrapper cantidad = new ReadOnlyIntegerWrapper();
+        final ReadOnlyStringWrapper departamento = new ReadOnlyStringWrapper();
+        final ReadOnlyStringWrapper almacen = new ReadOnlyStringWrapper();
+        final ReadOnlyStringWrapper fechaCreacion = new ReadOnlyStringWrapper();
+        final ReadOnlyStringWrapper fechaModificacion = new ReadOnlyStringWrapper();
+        final ReadOnlyStringWrapper ultimoUsuario = new ReadOnlyStringWrapper();
+
+        Propiedades(Producto p) {
+            actualizar(p);
+        }
+
+        void actualizar(Producto p) {
+            id.set(p.id);
+            nombre.set(p.nombre);
+            precio.set(p.precio);
+            cantidad.set(p.cantidad);
+            departamento.set(p.departamento);
+            almacen.set(p.almacen);
+            fechaCreacion.set(p.getFechaCreacion());
+            fechaModificacion.set(p.getFechaModificacion());
+            ultimoUsuario.set(p.ultimoUsuario);
+        }
+    }
+}
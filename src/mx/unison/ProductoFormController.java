@@ -4,11 +4,8 @@ import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.stage.Stage;
-import java.sql.SQLException;
-import java.util.Arrays;
-import java.util.List;
 
-public class ProductoFormController {
+public class ProductoFormController implements RegistroVistas.Reutilizable {
 
     // --- Inyecciones FXML ---
     @FXML private Label lblTitulo;
@@ -24,6 +21,7 @@ public class ProductoFormController {
     // --- Variables de Estado ---
     private Producto productoEnEdicion; // Ser null para "Agregar"
     private boolean esModificacion = false;
+    private boolean vistaPreparada = false; // La vista se reutiliza (RegistroVistas)
 
     // ------------------------------------------------------------------
     //      MTODOS DE INICIALIZACIN
@@ -38,31 +36,32 @@ public class ProductoFormController {
     }
     
     /**
-     * Carga los datos fijos (Departamentos) y de la utilidad (Almacenes)
+     * Carga los datos fijos (Departamentos). Los almacenes se asignan en prepararVista(), en el hilo de JavaFX.
      */
     private void cargarComboBoxes() {
         // Departamentos
-        List<String> departamentos = Arrays.asList("Materiales", "Mobiliario", "Impresion3D", "Computacin");
-        cmbDepartamento.setItems(FXCollections.observableArrayList(departamentos));
-        
-        
-        try {
-            // Intenta obtener los nombres de los almacenes desde la base de datos
-            // Nota: Aqu se asume que DatabaseManager.obtenerNombresAlmacenes() llama a AlmacenUtils.getNombresAlmacenes()
-            List<String> nombresAlmacenes = DatabaseManager.obtenerNombresAlmacenes();
-            cmbAlmacen.setItems(FXCollections.observableArrayList(nombresAlmacenes));
-            System.out.println("ComboBoxes de almacenes cargados con xito.");
+        cmbDepartamento.setItems(FXCollections.observableArrayList(ValidadorProducto.DEPARTAMENTOS));
+    }
 
-        } catch (SQLException e) {
-            // Captura la excepcin y la maneja
-            
-            // 1. Mostrar un mensaje de error en la interfaz grfica
-            mostrarAlertaError("Error de Carga de Datos", "No se pudo cargar la lista de almacenes.\nRevise la conexin a la base de datos.");
-            
-            // 2. Cargar una lista de error en el ComboBox y loguear el error para el desarrollador
-            System.err.println("ERROR de DB: No se pudieron cargar los almacenes. Detalles: " + e.getMessage());
-            cmbAlmacen.setItems(FXCollections.observableArrayList("ERROR al cargar datos"));
+    /**
+     * El formulario se reutiliza: antes de cada apertura se limpia lo que dej la anterior
+     * (campos, seleccin y el botn que se deshabilita al guardar).
+     */
+    @Override
+    public void prepararVista() {
+        if (!vistaPreparada) {
+            // Almacenes: la lista compartida de la cach (no consulta la base de datos y se actualiza sola)
+            cmbAlmacen.setItems(AlmacenUtils.getNombresObservables());
+            vistaPreparada = true;
         }
+        productoEnEdicion = null;
+        txtNombre.clear();
+        txtPrecio.clear();
+        txtCantidad.clear();
+        cmbDepartamento.setValue(null);
+        cmbAlmacen.setValue(null);
+        btnGuardar.setDisable(false);
+        txtNombre.requestFocus();
     }
 
     /**
@@ -81,15 +80,14 @@ public class ProductoFormController {
             // Llenar los campos con los datos del producto
             // txtID.setText(producto.getId()); // Eliminamos la referencia a txtID
             txtNombre.setText(producto.getNombre());
-            txtPrecio.setText(producto.getPrecio());
-            txtCantidad.setText(producto.getCantidad());
+            txtPrecio.setText(String.valueOf(producto.getPrecio()));
+            txtCantidad.setText(String.valueOf(producto.getCantidad()));
             
             // Seleccionar valores existentes en ComboBoxes
             cmbDepartamento.getSelectionModel().select(producto.getDepartamento());
             
-            // CLAVE: Convertir el ID del almacn (ej. "1") al Nombre (ej. "Hermosillo") para el ComboBox
-            String nombreAlmacen = AlmacenUtils.getNombreAlmacen(producto.getAlmacen());
-            cmbAlmacen.getSelectionModel().select(nombreAlmacen);
+            // Los productos cargados ya traen el nombre del almacn (ej. "Hermosillo"), no su ID
+            cmbAlmacen.setValue(producto.getAlmacen());
             
             // En modo modificacin, el ID no se puede cambiar (ya no es necesario, pero lo mantenemos para referencia)
             // txtID.setDisable(true); 
@@ -131,33 +129,39 @@ public class ProductoFormController {
         // 2. Obtener el ID existente (solo en modificacin) o null (en agregar)
         String idExistente = esModificacion ? productoEnEdicion.getId() : null;
 
-        try {
-            // 3. VALIDACIN DE UNICIDAD DEL ID ELIMINADA. La DB se encargar del auto-incremento.
-            
-            // 4. Construir el objeto Producto
-            Producto productoAGuardar = construirProducto(idExistente);
+        // 3. VALIDACIN DE UNICIDAD DEL ID ELIMINADA. La DB se encargar del auto-incremento.
+        
+        // 4. Construir el objeto Producto (en el hilo de JavaFX, lee los controles)
+        Producto productoAGuardar = construirProducto(idExistente);
 
-            // 5. LLAMADA A LA BASE DE DATOS
+        // 5. LLAMADA A LA BASE DE DATOS (en segundo plano; se evita un doble clic mientras tanto)
+        btnGuardar.setDisable(true);
+        TareasBD.ejecutar(() -> {
             if (esModificacion) {
                 DatabaseManager.actualizarProducto(productoAGuardar);
-                mostrarAlertaInfo("xito", "El producto ID " + idExistente + " ha sido **modificado** exitosamente.");
             } else {
                 // En modo AGREGAR, la DB genera el ID
                 DatabaseManager.agregarProducto(productoAGuardar);
+            }
+            return null;
+        }, sinResultado -> {
+            if (esModificacion) {
+                mostrarAlertaInfo("xito", "El producto ID " + idExistente + " ha sido **modificado** exitosamente.");
+            } else {
                 mostrarAlertaInfo("xito", "El nuevo producto ha sido **guardado** con xito.");
             }
-            
             // 6. Si todo fue bien, cerrar el formulario
             Stage stage = (Stage) btnGuardar.getScene().getWindow();
             stage.close();
-            
-        } catch (SQLException e) {
-            mostrarAlertaError("Error de Base de Datos", "Ocurri un error al guardar/actualizar el producto: " + e.getMessage());
-            e.printStackTrace();
-        } catch (Exception e) {
-             mostrarAlertaError("Error Inesperado", "Ocurri un error al procesar los datos: " + e.getMessage());
-             e.printStackTrace();
-        }
+        }, error -> {
+            btnGuardar.setDisable(false);
+            if (error instanceof java.sql.SQLException) {
+                mostrarAlertaError("Error de Base de Datos", "Ocurri un error al guardar/actualizar el producto: " + error.getMessage());
+            } else {
+                mostrarAlertaError("Error Inesperado", "Ocurri un error al procesar los datos: " + error.getMessage());
+            }
+            error.printStackTrace();
+        });
     }
 
     // ------------------------------------------------------------------
@@ -176,15 +180,15 @@ public class ProductoFormController {
         
         // Creamos un nuevo objeto Producto con los datos actuales del formulario
         return new Producto(
-            id, // Ser null si es Agregar, o el ID existente si es Modificar
+            id == null ? Producto.SIN_ID : Long.parseLong(id), // null si es Agregar, o el ID existente si es Modificar
             txtNombre.getText().trim(),
-            txtPrecio.getText().trim(),
-            txtCantidad.getText().trim(),
+            Double.parseDouble(txtPrecio.getText().trim()), // validarCampos() ya comprob que son nmeros
+            Integer.parseInt(txtCantidad.getText().trim()),
             cmbDepartamento.getSelectionModel().getSelectedItem(),
             idAlmacen, // Guardamos el ID del almacn (FK)
             // Los siguientes campos se inicializan vacos ya que se llenarn o actualizarn en la DB
-            "", // fechaCreacion
-            "", // fechaModificacion
+            RelojAuditoria.SIN_FECHA, // fechaCreacion
+            RelojAuditoria.SIN_FECHA, // fechaModificacion
             ""	// ultimoUsuario
         );
     }
@@ -194,42 +198,14 @@ public class ProductoFormController {
      * (El campo ID es excluido de esta validacin para el modo Agregar)
      */
     private boolean validarCampos() {
-        String errorMsg = "";
-        
         // ELIMINADA la validacin de ID para modo Agregar
-        
-        // Validacin de Nombre
-        if (txtNombre.getText().trim().isEmpty()) {
-            errorMsg += "El Nombre del producto es obligatorio.\n";
-        }
-        
-        // Validacin de ComboBoxes
-        if (cmbDepartamento.getSelectionModel().isEmpty()) {
-            errorMsg += "Debe seleccionar un Departamento.\n";
-        }
-        if (cmbAlmacen.getSelectionModel().isEmpty()) {
-            errorMsg += "Debe seleccionar un Almacn.\n";
-        }
-        
-        // Validacin Numrica de Precio
-        try {
-            double precio = Double.parseDouble(txtPrecio.getText().trim());
-            if (precio <= 0) {
-                 errorMsg += "El Precio debe ser un nmero positivo (mayor a 0).\n";
-            }
-        } catch (NumberFormatException e) {
-            errorMsg += "El Precio debe ser un valor numrico vlido.\n";
-        }
-        
-        // Validacin Numrica de Cantidad
-        try {
-            int cantidad = Integer.parseInt(txtCantidad.getText().trim());
-            if (cantidad < 0) {
-                 errorMsg += "La Cantidad no puede ser negativa.\n";
-            }
-        } catch (NumberFormatException e) {
-            errorMsg += "La Cantidad debe ser un nmero entero vlido.\n";
-        }
+        // Las reglas estn en ValidadorProducto (las mismas que usa la importacin de CSV)
+        String errorMsg = ValidadorProducto.validar(
+                txtNombre.getText(),
+                txtPrecio.getText(),
+                txtCantidad.getText(),
+                cmbDepartamento.getSelectionModel().getSelectedItem(),
+                cmbAlmacen.getSelectionModel().getSelectedItem());
 
         if (errorMsg.isEmpty()) {
             return true;
@@ -8,26 +8,39 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList; 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import javafx.event.ActionEvent;
+import javafx.animation.PauseTransition;
+import javafx.util.Duration;
+import javafx.application.Platform;
+import javafx.stage.FileChooser;
+import java.io.File;
 import java.util.Optional;
 import mx.unison.SessionContext;
 
-public class ProductosController {
+public class ProductosController implements RegistroVistas.Reutilizable {
 
     // --- 1. INYECCIN DE LA TABLA Y LAS 9 COLUMNAS ---
     @FXML private TableView<Producto> tblProductos;
 
-    @FXML private TableColumn<Producto, String> colID;
+    @FXML private TableColumn<Producto, Number> colID;
     @FXML private TableColumn<Producto, String> colNombre;
-    @FXML private TableColumn<Producto, String> colPrecio;
-    @FXML private TableColumn<Producto, String> colCantidad;
+    @FXML private TableColumn<Producto, Number> colPrecio;
+    @FXML private TableColumn<Producto, Number> colCantidad;
     @FXML private TableColumn<Producto, String> colDepartamento;
     @FXML private TableColumn<Producto, String> colAlmacen; 
     @FXML private TableColumn<Producto, String> colFechaCreacion;
     @FXML private TableColumn<Producto, String> colFechaModificacion;
     @FXML private TableColumn<Producto, String> colUltimoUsuario;
     
+    // Columna de OrdenProductos que corresponde a cada columna de la tabla (ver configurarColumnas)
+    private final Map<TableColumn<Producto, ?>, OrdenProductos.Columna> columnasOrden = new HashMap<>();
+    // Orden con el que se consulta la tabla (lo cambia un clic en el encabezado de una columna)
+    private OrdenProductos ordenSolicitado = OrdenProductos.POR_NOMBRE;
+    
     // --- 2. INYECCIN DE FILTROS ---
     @FXML private TextField txtFiltroNombre;
     @FXML private ComboBox<String> cmbDepartamentoFiltro;
@@ -40,101 +53,173 @@ public class ProductosController {
     @FXML private TextField txtCantidadMin;
     @FXML private TextField txtCantidadMax;
     @FXML private Button btnAplicarFiltros;
+    @FXML private Button btnExportar;
+    @FXML private ProgressIndicator indicadorCarga;
 
     // --- 3. INYECCIN DE BOTONES DE ACCIN Y BARRA INFERIOR ---
     @FXML private HBox bottomBar; 
     @FXML private Button btnAgregar;
     @FXML private Button btnModificar;
     @FXML private Button btnEliminar;
+    @FXML private Button btnImportar;
     @FXML private Button btnVolver; 
 
+    // --- 4. CARGA PAGINADA ---
+    // Si el resultado filtrado supera este nmero de filas, la tabla se llena con una
+    // ListaProductosPaginada (solo unas pginas en memoria) en lugar de la lista completa.
+    private static final int UMBRAL_CARGA_COMPLETA = 1000;
+    private static final int TAMANO_PAGINA = 200;
+    private static final int MAX_PAGINAS_EN_MEMORIA = 10;
+
+    // Consulta de filtros en curso; se cancela si el usuario aplica otros filtros antes de que termine
+    private ConsultaCancelable consultaEnCurso;
+
+    // --- 5. FILTRADO MIENTRAS SE ESCRIBE ---
+    // Espera tras la ltima tecla antes de filtrar, para no lanzar una consulta por cada carcter
+    private static final Duration ESPERA_FILTRADO = Duration.millis(250);
+    private final PauseTransition pausaFiltrado = new PauseTransition(ESPERA_FILTRADO);
+
+    // Filtro cuyo resultado est en la tabla. Si el siguiente filtro solo lo restringe
+    // y la lista est completa en memoria, se filtra localmente sin consultar la base de datos.
+    private FiltroProductos filtroMostrado;
+
+    // --- 6. REUTILIZACIN (RegistroVistas) ---
+    // La vista se crea una vez (puede ser en segundo plano) y prepararVista() la reinicia en cada uso
+    private boolean vistaPreparada = false;
+    private ContextMenu menuLote;
+
     // ------------------------------------------------------------------
     //              MTODOS DE INICIALIZACIN Y CONFIGURACIN
     // ------------------------------------------------------------------
 
+    /**
+     * Solo configura los controles de esta vista: puede ejecutarse en el hilo de precarga de
+     * RegistroVistas. Los datos, los permisos y las listas compartidas van en prepararVista().
+     */
     @FXML
     public void initialize() {
-        // 1. Configurar ComboBoxes
+        // 1. Configurar ComboBoxes (el de almacenes se llena en prepararVista)
         List<String> departamentos = Arrays.asList("TODOS", "Materiales", "Mobiliario", "Impresion3D", "Computacin");
         cmbDepartamentoFiltro.setItems(javafx.collections.FXCollections.observableArrayList(departamentos));
         cmbDepartamentoFiltro.getSelectionModel().selectFirst();
+
+        // Seleccin de varias filas; las operaciones en lote van en el men contextual de la tabla
+        tblProductos.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
         
-        try {
-            // ERROR SOLUCIONADO: Ahora DatabaseManager tiene obtenerNombresAlmacenes()
-            List<String> nombresAlmacenes = DatabaseManager.obtenerNombresAlmacenes(); 
-            nombresAlmacenes.add(0, "TODOS");
-            cmbAlmacenFiltro.setItems(javafx.collections.FXCollections.observableArrayList(nombresAlmacenes));
-            cmbAlmacenFiltro.getSelectionModel().selectFirst();
-        // CATCH CORREGIDO: Maneja la SQLException que lanza el mtodo de la DB
-        } catch (SQLException e) { 
-            mostrarAlertaError("Error de DB", "No se pudieron cargar los nombres de almacenes para el filtro.");
-            e.printStackTrace();
-        }
+        // 2. Conexin de las Columnas a las Propiedades del Modelo Producto Y COMPARADORES
+        configurarColumnas(); 
+        
+        // 3. Los datos iniciales se cargan en prepararVista()
         
+        // 4. Conexin del botn de filtros
+        btnAplicarFiltros.setOnAction(e -> handleAplicarFiltros());
+        
+        // 5. Filtrado mientras se escribe (con espera para agrupar las teclas)
+        pausaFiltrado.setOnFinished(e -> aplicarFiltros(false));
+        for (TextField campo : Arrays.asList(txtFiltroNombre, txtID, txtPrecioMin, txtPrecioMax, txtCantidadMin, txtCantidadMax)) {
+            campo.textProperty().addListener((obs, anterior, nuevo) -> pausaFiltrado.playFromStart());
+        }
+        cmbDepartamentoFiltro.valueProperty().addListener((obs, anterior, nuevo) -> pausaFiltrado.playFromStart());
+        cmbAlmacenFiltro.valueProperty().addListener((obs, anterior, nuevo) -> pausaFiltrado.playFromStart());
+    }
+
+    /**
+     * Deja la pantalla como recin abierta (se llama en el hilo de JavaFX cada vez que se muestra):
+     * permisos del rol actual, filtros vacos, orden por nombre y datos frescos.
+     */
+    @Override
+    public void prepararVista() {
+        if (!vistaPreparada) {
+            // "TODOS" y los nombres de almacenes (lista compartida de la cach, se actualiza sola)
+            cmbAlmacenFiltro.setItems(AlmacenUtils.getNombresParaFiltro());
+            // Indicador de carga visible mientras haya trabajo de base de datos en curso
+            indicadorCarga.visibleProperty().bind(TareasBD.ocupadoProperty());
+            vistaPreparada = true;
+        }
+
         // ----------------------------------------------------
-        // LGICA DE SEGURIDAD BASADA EN ROL 
+        // LGICA DE SEGURIDAD BASADA EN ROL (puede ser otra sesin que la ltima vez)
         // ----------------------------------------------------
-        
-        // Usamos la referencia completa a la clase InventarioApp para mayor robustez
         String rolActual = SessionContext.getCurrentUserRole();
         
         boolean tienePermisoCRUD = "Admin".equalsIgnoreCase(rolActual) || "Productos".equalsIgnoreCase(rolActual);
         
         bottomBar.setManaged(tienePermisoCRUD);
         bottomBar.setVisible(tienePermisoCRUD);
-        
-        // ----------------------------------------------------
-        
-        // 2. Conexin de las Columnas a las Propiedades del Modelo Producto Y COMPARADORES
-        configurarColumnas(); 
-        
-        // 3. Cargar datos iniciales sin filtros
-        cargarDatosProductos(null); 
-        
-        // 4. Conexin del botn de filtros
-        btnAplicarFiltros.setOnAction(e -> handleAplicarFiltros());
+        tblProductos.setContextMenu(tienePermisoCRUD ? menuLote() : null);
+
+        // Filtros, orden y seleccin del uso anterior
+        for (TextField campo : Arrays.asList(txtFiltroNombre, txtID, txtPrecioMin, txtPrecioMax, txtCantidadMin, txtCantidadMax)) {
+            campo.clear();
+        }
+        cmbDepartamentoFiltro.getSelectionModel().selectFirst();
+        cmbAlmacenFiltro.getSelectionModel().selectFirst();
+        ordenSolicitado = OrdenProductos.POR_NOMBRE; // Antes de limpiar el orden, para que no consulte
+        tblProductos.getSortOrder().clear();
+        tblProductos.getSelectionModel().clearSelection();
+        filtroMostrado = null;
+        pausaFiltrado.stop(); // Limpiar los campos no debe lanzar otra consulta
+
+        // Cargar datos sin filtros
+        cargarDatosProductos(null);
     }
     
     /**
      * Define la propiedad de la clase Producto que cada columna debe mostrar
-     * y establece comparadores numricos para las columnas de precio y cantidad.
+     * y la columna de OrdenProductos con la que se ordena cada una.
      */
     private void configurarColumnas() {
-        // Conexin de propiedades (Requiere que Producto.java est bien definido)
-        colID.setCellValueFactory(cellData -> cellData.getValue().idProperty());
+        // Conexin de propiedades (Requiere que Producto.java est bien definido).
+        // La fila "Cargando..." de la lista paginada deja vacas las columnas numricas.
+        colID.setCellValueFactory(cellData -> ListaProductosPaginada.esMarcador(cellData.getValue()) ? null : cellData.getValue().idProperty());
         colNombre.setCellValueFactory(cellData -> cellData.getValue().nombreProperty());
-        colPrecio.setCellValueFactory(cellData -> cellData.getValue().precioProperty());
-        colCantidad.setCellValueFactory(cellData -> cellData.getValue().cantidadProperty());
+        colPrecio.setCellValueFactory(cellData -> ListaProductosPaginada.esMarcador(cellData.getValue()) ? null : cellData.getValue().precioProperty());
+        colCantidad.setCellValueFactory(cellData -> ListaProductosPaginada.esMarcador(cellData.getValue()) ? null : cellData.getValue().cantidadProperty());
         colDepartamento.setCellValueFactory(cellData -> cellData.getValue().departamentoProperty());
         colAlmacen.setCellValueFactory(cellData -> cellData.getValue().almacenProperty()); 
         colFechaCreacion.setCellValueFactory(cellData -> cellData.getValue().fechaCreacionProperty());
         colFechaModificacion.setCellValueFactory(cellData -> cellData.getValue().fechaModificacionProperty());
         colUltimoUsuario.setCellValueFactory(cellData -> cellData.getValue().ultimoUsuarioProperty());
         
-        // Comparadores (la lgica es correcta)
-        colPrecio.setComparator((s1, s2) -> {
-            try {
-                return Double.compare(Double.parseDouble(s1), Double.parseDouble(s2));
-            } catch (NumberFormatException e) {
-                return s1.compareTo(s2); 
+        // Columna de la consulta con la que se ordena cada columna de la tabla
+        columnasOrden.put(colID, OrdenProductos.Columna.ID);
+        columnasOrden.put(colNombre, OrdenProductos.Columna.NOMBRE);
+        columnasOrden.put(colPrecio, OrdenProductos.Columna.PRECIO);
+        columnasOrden.put(colCantidad, OrdenProductos.Columna.CANTIDAD);
+        columnasOrden.put(colDepartamento, OrdenProductos.Columna.DEPARTAMENTO);
+        columnasOrden.put(colAlmacen, OrdenProductos.Columna.ALMACEN);
+        columnasOrden.put(colFechaCreacion, OrdenProductos.Columna.FECHA_CREACION);
+        columnasOrden.put(colFechaModificacion, OrdenProductos.Columna.FECHA_MODIFICACION);
+        columnasOrden.put(colUltimoUsuario, OrdenProductos.Columna.USUARIO);
+        
+        // Altura fija de fila: la tabla calcula el desplazamiento sin medir cada fila (necesario con listas grandes)
+        tblProductos.setFixedCellSize(24);
+        
+        // El orden no se resuelve en el cliente: un clic en el encabezado vuelve a consultar con
+        // ORDER BY sobre la columna (su ndice) y el id como desempate. As funciona igual con la
+        // lista paginada, que solo tiene en memoria unas cuantas pginas.
+        tblProductos.setSortPolicy(tabla -> {
+            OrdenProductos orden = ordenDeTabla(tabla.getSortOrder());
+            if (!orden.equals(ordenSolicitado)) {
+                ordenSolicitado = orden;
+                consultarProductos(filtroMostrado != null ? filtroMostrado : leerFiltros());
             }
+            return true;
         });
+    }
 
-        colCantidad.setComparator((s1, s2) -> {
-            try {
-                return Integer.compare(Integer.parseInt(s1), Integer.parseInt(s2));
-            } catch (NumberFormatException e) {
-                return s1.compareTo(s2);
-            }
-        });
-        
-        colID.setComparator((s1, s2) -> {
-            try {
-                return Integer.compare(Integer.parseInt(s1), Integer.parseInt(s2));
-            } catch (NumberFormatException e) {
-                return s1.compareTo(s2);
+    /**
+     * Orden de la primera columna por la que se ordena la tabla (las siguientes no se usan: el
+     * desempate siempre es el id); sin columnas, el orden por nombre.
+     */
+    private OrdenProductos ordenDeTabla(List<TableColumn<Producto, ?>> columnasTabla) {
+        for (TableColumn<Producto, ?> columna : columnasTabla) {
+            OrdenProductos.Columna columnaOrden = columnasOrden.get(columna);
+            if (columnaOrden != null) {
+                return new OrdenProductos(columnaOrden, columna.getSortType() != TableColumn.SortType.DESCENDING);
             }
-        });
+        }
+        return OrdenProductos.POR_NOMBRE;
     }
 
     /**
@@ -154,10 +239,48 @@ public class ProductosController {
     // ------------------------------------------------------------------
 
     /**
-     * Recoge los valores de los filtros y llama al DatabaseManager.
+     * Botn "Aplicar Filtros": siempre vuelve a consultar la base de datos (refresca los datos).
      */
     @FXML
     private void handleAplicarFiltros() {
+        aplicarFiltros(true);
+    }
+
+    /**
+     * Aplica los filtros actuales. Si el nuevo filtro solo restringe al que ya est en la tabla
+     * y esa lista est completa en memoria, se filtra localmente; si no, se consulta la base de datos.
+     * @param forzarConsulta Ignora el resultado cargado y consulta siempre.
+     */
+    private void aplicarFiltros(boolean forzarConsulta) {
+        pausaFiltrado.stop();
+        FiltroProductos filtro = leerFiltros();
+        ObservableList<Producto> actuales = tblProductos.getItems();
+        boolean listaCompleta = actuales != null && !(actuales instanceof ListaProductosPaginada);
+
+        if (!forzarConsulta && filtro.equals(filtroMostrado) && consultaEnCurso == null) {
+            return; // Nada cambi
+        }
+        if (!forzarConsulta && listaCompleta && filtro.esRestriccionDe(filtroMostrado)) {
+            // La consulta en curso (si hay) es de un filtro anterior: ya no sirve
+            cancelarConsultaEnCurso();
+            ObservableList<Producto> filtrados = javafx.collections.FXCollections.observableArrayList();
+            for (Producto producto : actuales) {
+                if (filtro.coincide(producto)) {
+                    filtrados.add(producto);
+                }
+            }
+            tblProductos.setItems(filtrados);
+            filtroMostrado = filtro;
+            System.out.println("DEBUG: Filtro aplicado en memoria (" + actuales.size() + " -> " + filtrados.size() + " productos).");
+            return;
+        }
+        consultarProductos(filtro);
+    }
+
+    /**
+     * Recoge los valores de los filtros de la pantalla.
+     */
+    private FiltroProductos leerFiltros() {
         String id = txtID.getText().trim(); 
         String nombre = txtFiltroNombre.getText().trim();
         String departamento = cmbDepartamentoFiltro.getSelectionModel().getSelectedItem();
@@ -168,35 +291,79 @@ public class ProductosController {
         String cantidadMin = txtCantidadMin.getText().trim();
         String cantidadMax = txtCantidadMax.getText().trim();
         
-        String idAlmacen = almacenNombre.equals("TODOS") ? null : AlmacenUtils.getIdAlmacen(almacenNombre);
+        String idAlmacen = almacenNombre == null || almacenNombre.equals(AlmacenUtils.OPCION_TODOS) ? null : AlmacenUtils.getIdAlmacen(almacenNombre);
 
-        List<String> filtros = Arrays.asList(
+        return new FiltroProductos(
             nombre,
-            departamento.equals("TODOS") ? null : departamento,
-            precioMin.isEmpty() ? null : precioMin,
-            precioMax.isEmpty() ? null : precioMax,
-            cantidadMin.isEmpty() ? null : cantidadMin,
-            cantidadMax.isEmpty() ? null : cantidadMax,
-            idAlmacen, 
-            id.isEmpty() ? null : id 
+            departamento == null || departamento.equals("TODOS") ? null : departamento,
+            precioMin,
+            precioMax,
+            cantidadMin,
+            cantidadMax,
+            idAlmacen,
+            almacenNombre,
+            id
         );
+    }
 
-        cargarDatosProductos(filtros);
+    private void cancelarConsultaEnCurso() {
+        if (consultaEnCurso != null) {
+            consultaEnCurso.cancelar();
+            consultaEnCurso = null;
+        }
     }
     
     /**
      * Carga los datos de la DB a la TableView usando el DatabaseManager.
+     * @param filtros Los 8 filtros posicionales, o null para mostrar todos los productos.
      */
     public void cargarDatosProductos(List<String> filtros) {
-        try {
-            ObservableList<Producto> productos = DatabaseManager.obtenerProductosFiltrados(filtros);
+        consultarProductos(filtros == null
+                ? new FiltroProductos(null, null, null, null, null, null, null, null, null)
+                : new FiltroProductos(filtros.get(0), filtros.get(1), filtros.get(2), filtros.get(3), filtros.get(4),
+                        filtros.get(5), filtros.get(6), AlmacenUtils.getNombreAlmacen(filtros.get(6)), filtros.get(7)));
+    }
+
+    /**
+     * La consulta corre en segundo plano; si haba otra en curso, se cancela y su resultado se ignora.
+     */
+    private void consultarProductos(FiltroProductos filtro) {
+        cancelarConsultaEnCurso();
+        ConsultaCancelable consulta = new ConsultaCancelable();
+        consultaEnCurso = consulta;
+        List<String> filtros = filtro.aLista();
+        OrdenProductos orden = ordenSolicitado;
+
+        TareasBD.<ObservableList<Producto>>ejecutar(() -> {
+            int total = DatabaseManager.contarProductosFiltrados(filtros, consulta);
+            if (total <= UMBRAL_CARGA_COMPLETA) {
+                return DatabaseManager.obtenerProductosFiltrados(filtros, orden, consulta);
+            }
+            return new ListaProductosPaginada(filtros, orden, total, TAMANO_PAGINA, MAX_PAGINAS_EN_MEMORIA, TareasBD.getEjecutor());
+        }, productos -> {
+            if (consulta.isCancelada()) {
+                // Lleg despus de una consulta ms reciente
+                if (productos instanceof ListaProductosPaginada) {
+                    ((ListaProductosPaginada) productos).descartar();
+                }
+                return;
+            }
+            // La lista paginada anterior deja de aplicar las pginas que an estn en camino
+            if (tblProductos.getItems() instanceof ListaProductosPaginada) {
+                ((ListaProductosPaginada) tblProductos.getItems()).descartar();
+            }
             tblProductos.setItems(productos);
-        } catch (SQLException e) {
-            // El error estaba en la lnea de 'e.printStackTrace()' si no se poda resolver 'e'
+            filtroMostrado = filtro;
+            consultaEnCurso = null;
+        }, error -> {
+            if (consulta.isCancelada()) {
+                return; // Interrumpida a propsito (SQLITE_INTERRUPT)
+            }
+            consultaEnCurso = null;
             System.err.println("Error al cargar productos desde la base de datos.");
-            e.printStackTrace();
-            mostrarAlertaError("Error de Conexin", "No se pudieron cargar los datos del inventario. " + e.getMessage());
-        }
+            error.printStackTrace();
+            mostrarAlertaError("Error de Conexin", "No se pudieron cargar los datos del inventario. " + error.getMessage());
+        });
     }
 
     // ------------------------------------------------------------------
@@ -224,7 +391,12 @@ private void handleModificarProducto() {
     // 1. Obtener el producto seleccionado
     Producto productoSeleccionado = tblProductos.getSelectionModel().getSelectedItem();
     
-    if (productoSeleccionado != null) {
+    if (productosSeleccionados().size() > 1) {
+        mostrarAlertaInfo("Varios Productos", "El formulario modifica un producto a la vez.\n"
+                + "Para mover, cambiar el departamento o ajustar la cantidad de varios productos use el men contextual (clic derecho) de la tabla.");
+        return;
+    }
+    if (productoSeleccionado != null && !ListaProductosPaginada.esMarcador(productoSeleccionado)) {
         try {
             // Llamada a InventarioApp.mostrarFormularioProducto (problema de referencia corregido)
             mx.unison.InventarioApp.mostrarFormularioProducto(productoSeleccionado);
@@ -244,43 +416,257 @@ private void handleModificarProducto() {
     }
 }
     
-    // Mtodo para ELIMINAR
+    // Mtodo para ELIMINAR (uno o varios productos seleccionados)
     @FXML
     private void handleEliminarProducto() {
-        Producto productoSeleccionado = tblProductos.getSelectionModel().getSelectedItem();
-        if (productoSeleccionado != null) {
-            try {
-                // 1. Pedir confirmacin
-                Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
-                confirm.setTitle("Confirmar Eliminacin");
-                // Los mtodos getNombre() y getId() deberan funcionar ahora si Producto.java es correcto.
-                confirm.setHeaderText("Eliminar Producto: " + productoSeleccionado.getNombre()); 
-                confirm.setContentText("Est seguro de que desea eliminar el producto con ID: " + productoSeleccionado.getId() + "? Esta accin no se puede deshacer.");
-
-                confirm.showAndWait().ifPresent(response -> {
-                    if (response == ButtonType.OK) {
-                        try {
-                            DatabaseManager.eliminarProducto(productoSeleccionado.getId());
-                            mostrarAlertaInfo("xito", "El producto fue eliminado correctamente.");
-                            // 3. Recargar datos
-                            cargarDatosProductos(null); 
-                        } catch (SQLException e) {
-                            mostrarAlertaError("Error de DB", "No se pudo eliminar el producto: " + e.getMessage());
-                            e.printStackTrace();
-                        }
-                    }
-                });
-            } catch (Exception e) {
-                 mostrarAlertaError("Error", "Ocurri un error inesperado al intentar eliminar: " + e.getMessage());
-            }
-        } else {
+        List<Producto> seleccion = productosSeleccionados();
+        if (seleccion.isEmpty()) {
             Alert alert = new Alert(Alert.AlertType.WARNING);
             alert.setTitle("Sin Seleccin");
             alert.setHeaderText(null);
-            alert.setContentText("Por favor, selecciona un producto de la tabla para eliminarlo.");
+            alert.setContentText("Por favor, selecciona uno o ms productos de la tabla para eliminarlos.");
             alert.showAndWait();
+            return;
+        }
+
+        // 1. Pedir confirmacin
+        Alert confirm = new Alert(Alert.AlertType.CONFIRMATION);
+        confirm.setTitle("Confirmar Eliminacin");
+        if (seleccion.size() == 1) {
+            confirm.setHeaderText("Eliminar Producto: " + seleccion.get(0).getNombre());
+            confirm.setContentText("Est seguro de que desea eliminar el producto con ID: " + seleccion.get(0).getId() + "? Esta accin no se puede deshacer.");
+        } else {
+            confirm.setHeaderText("Eliminar " + seleccion.size() + " productos");
+            confirm.setContentText("Est seguro de que desea eliminar los " + seleccion.size() + " productos seleccionados? Esta accin no se puede deshacer.");
+        }
+
+        confirm.showAndWait().ifPresent(response -> {
+            if (response == ButtonType.OK) {
+                List<String> ids = idsDe(seleccion);
+                btnEliminar.setDisable(true);
+                // 2. Todos en una transaccin: se eliminan todos o ninguno
+                TareasBD.ejecutar(() -> DatabaseManager.eliminarProductos(ids), eliminados -> {
+                    btnEliminar.setDisable(false);
+                    // 3. Quitar solo esas filas de la tabla (la lista paginada no admite quitar filas: se vuelve a consultar)
+                    ObservableList<Producto> items = tblProductos.getItems();
+                    if (items instanceof ListaProductosPaginada || filtroMostrado == null) {
+                        cargarDatosProductos(filtroMostrado == null ? null : filtroMostrado.aLista());
+                    } else {
+                        items.removeAll(new HashSet<>(seleccion));
+                    }
+                    mostrarAlertaInfo("xito", eliminados == 1 ? "El producto fue eliminado correctamente."
+                            : "Se eliminaron " + eliminados + " productos correctamente.");
+                }, error -> {
+                    btnEliminar.setDisable(false);
+                    mostrarAlertaError("Error de DB", "No se elimin ningn producto: " + error.getMessage());
+                    error.printStackTrace();
+                });
+            }
+        });
+    }
+
+    // ------------------------------------------------------------------
+    //              OPERACIONES EN LOTE (VARIOS PRODUCTOS)
+    // ------------------------------------------------------------------
+
+    /**
+     * Men contextual de la tabla con las operaciones sobre todos los productos seleccionados.
+     * Se crea la primera vez que se necesita.
+     */
+    private ContextMenu menuLote() {
+        if (menuLote != null) {
+            return menuLote;
+        }
+        MenuItem mover = new MenuItem("Mover a otro almacn...");
+        mover.setOnAction(e -> handleMoverSeleccionados());
+        MenuItem departamento = new MenuItem("Cambiar departamento...");
+        departamento.setOnAction(e -> handleCambiarDepartamentoSeleccionados());
+        MenuItem cantidad = new MenuItem("Ajustar cantidad...");
+        cantidad.setOnAction(e -> handleAjustarCantidadSeleccionados());
+        MenuItem eliminar = new MenuItem("Eliminar seleccionados");
+        eliminar.setOnAction(e -> handleEliminarProducto());
+        menuLote = new ContextMenu(mover, departamento, cantidad, new SeparatorMenuItem(), eliminar);
+        return menuLote;
+    }
+
+    private void handleMoverSeleccionados() {
+        List<Producto> seleccion = productosSeleccionados();
+        List<String> almacenes = AlmacenUtils.getNombresAlmacenes();
+        if (seleccion.isEmpty() || almacenes.isEmpty()) {
+            return;
+        }
+        ChoiceDialog<String> dialogo = new ChoiceDialog<>(almacenes.get(0), almacenes);
+        dialogo.setTitle("Mover Productos");
+        dialogo.setHeaderText("Mover " + seleccion.size() + " producto(s) al almacn:");
+        dialogo.showAndWait().ifPresent(nombreAlmacen -> {
+            String idAlmacen = AlmacenUtils.getIdAlmacen(nombreAlmacen);
+            List<String> ids = idsDe(seleccion);
+            ejecutarEnLote("Productos movidos a " + nombreAlmacen, seleccion,
+                    () -> DatabaseManager.moverProductosAAlmacen(ids, idAlmacen));
+        });
+    }
+
+    private void handleCambiarDepartamentoSeleccionados() {
+        List<Producto> seleccion = productosSeleccionados();
+        if (seleccion.isEmpty()) {
+            return;
+        }
+        ChoiceDialog<String> dialogo = new ChoiceDialog<>(ValidadorProducto.DEPARTAMENTOS.get(0), ValidadorProducto.DEPARTAMENTOS);
+        dialogo.setTitle("Cambiar Departamento");
+        dialogo.setHeaderText("Departamento para " + seleccion.size() + " producto(s):");
+        dialogo.showAndWait().ifPresent(departamento -> {
+            List<String> ids = idsDe(seleccion);
+            ejecutarEnLote("Departamento cambiado a " + departamento, seleccion,
+                    () -> DatabaseManager.cambiarDepartamentoProductos(ids, departamento));
+        });
+    }
+
+    private void handleAjustarCantidadSeleccionados() {
+        List<Producto> seleccion = productosSeleccionados();
+        if (seleccion.isEmpty()) {
+            return;
+        }
+        TextInputDialog dialogo = new TextInputDialog("0");
+        dialogo.setTitle("Ajustar Cantidad");
+        dialogo.setHeaderText("Sumar a la cantidad de " + seleccion.size() + " producto(s)\n(use un nmero negativo para restar):");
+        dialogo.showAndWait().ifPresent(texto -> {
+            int diferencia;
+            try {
+                diferencia = Integer.parseInt(texto.trim());
+            } catch (NumberFormatException e) {
+                mostrarAlertaError("Errores de Validacin", "La diferencia debe ser un nmero entero vlido.");
+                return;
+            }
+            List<String> ids = idsDe(seleccion);
+            ejecutarEnLote("Cantidad ajustada en " + diferencia, seleccion,
+                    () -> DatabaseManager.ajustarCantidadProductos(ids, diferencia));
+        });
+    }
+
+    /**
+     * Ejecuta la operacin en lote en segundo plano y actualiza solo las filas afectadas de la tabla.
+     */
+    private void ejecutarEnLote(String descripcion, List<Producto> seleccion, TareasBD.OperacionBD<List<Producto>> operacion) {
+        TareasBD.ejecutar(operacion, actualizados -> {
+            aplicarCambiosEnVista(seleccion, actualizados);
+            mostrarAlertaInfo("xito", descripcion + ": " + actualizados.size() + " producto(s).");
+        }, error -> {
+            mostrarAlertaError("Error de DB", "No se modific ningn producto: " + error.getMessage());
+            error.printStackTrace();
+        });
+    }
+
+    /**
+     * Copia los valores reledos a los productos de la tabla (la fila se repinta sola) y quita de la
+     * lista los que ya no cumplen el filtro mostrado, sin volver a consultar la tabla completa.
+     */
+    private void aplicarCambiosEnVista(List<Producto> seleccion, List<Producto> actualizados) {
+        Map<String, Producto> porId = new HashMap<>();
+        for (Producto producto : actualizados) {
+            porId.put(producto.getId(), producto);
+        }
+        List<Producto> yaNoCoinciden = new ArrayList<>();
+        for (Producto producto : seleccion) {
+            Producto nuevo = porId.get(producto.getId());
+            if (nuevo != null) {
+                producto.actualizarDesde(nuevo);
+            }
+            if (filtroMostrado != null && !filtroMostrado.coincide(producto)) {
+                yaNoCoinciden.add(producto);
+            }
+        }
+        // En la lista paginada las filas no se pueden quitar; desaparecen al aplicar filtros de nuevo
+        ObservableList<Producto> items = tblProductos.getItems();
+        if (!yaNoCoinciden.isEmpty() && !(items instanceof ListaProductosPaginada)) {
+            items.removeAll(new HashSet<>(yaNoCoinciden));
+        }
+    }
+
+    /** Productos seleccionados en la tabla (sin las filas "Cargando..." de la lista paginada). */
+    private List<Producto> productosSeleccionados() {
+        List<Producto> seleccion = new ArrayList<>();
+        for (Producto producto : tblProductos.getSelectionModel().getSelectedItems()) {
+            if (producto != null && !ListaProductosPaginada.esMarcador(producto)) {
+                seleccion.add(producto);
+            }
         }
+        return seleccion;
     }
+
+    private static List<String> idsDe(List<Producto> productos) {
+        List<String> ids = new ArrayList<>(productos.size());
+        for (Producto producto : productos) {
+            ids.add(producto.getId());
+        }
+        return ids;
+    }
+
+    // Mtodo para IMPORTAR productos desde un archivo CSV
+    @FXML
+    private void handleImportarCSV() {
+        FileChooser selector = new FileChooser();
+        selector.setTitle("Importar productos desde CSV");
+        selector.getExtensionFilters().add(new FileChooser.ExtensionFilter("Archivos CSV", "*.csv"));
+        File archivo = selector.showOpenDialog(tblProductos.getScene().getWindow());
+        if (archivo == null) {
+            return;
+        }
+
+        ImportadorProductosCSV importador = new ImportadorProductosCSV(archivo.toPath());
+        // El avance llega desde el hilo que importa; el indicador deja de girar y muestra el porcentaje
+        importador.setAlAvanzar(avance -> Platform.runLater(() -> indicadorCarga.setProgress(avance.fraccion)));
+
+        btnImportar.setDisable(true);
+        TareasBD.ejecutar(importador::importar, resultado -> {
+            btnImportar.setDisable(false);
+            indicadorCarga.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+            String mensaje = "Filas ledas: " + resultado.filasLeidas
+                    + "\nProductos importados: " + resultado.filasInsertadas
+                    + "\nFilas rechazadas: " + resultado.filasRechazadas;
+            if (resultado.archivoRechazos != null) {
+                mensaje += "\n\nLas filas rechazadas y el motivo se guardaron en:\n" + resultado.archivoRechazos.toAbsolutePath();
+            }
+            mostrarAlertaInfo("Importacin terminada", mensaje);
+            cargarDatosProductos(null);
+        }, error -> {
+            btnImportar.setDisable(false);
+            indicadorCarga.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
+            mostrarAlertaError("Error de Importacin", "No se import ningn producto: " + error.getMessage());
+            error.printStackTrace();
+        });
+    }
+
+    // Mtodo para EXPORTAR los productos que cumplen los filtros actuales (disponible para todos los roles)
+    @FXML
+    private void handleExportar() {
+        FileChooser selector = new FileChooser();
+        selector.setTitle("Exportar productos");
+        selector.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV", "*.csv"),
+                new FileChooser.ExtensionFilter("CSV comprimido", "*.csv.gz"),
+                new FileChooser.ExtensionFilter("JSON Lines", "*.jsonl"),
+                new FileChooser.ExtensionFilter("JSON Lines comprimido", "*.jsonl.gz"));
+        selector.setInitialFileName("productos.csv");
+        File archivo = selector.showSaveDialog(tblProductos.getScene().getWindow());
+        if (archivo == null) {
+            return;
+        }
+
+        // Se exporta con los filtros de la pantalla, directo de la base de datos (no la lista de la tabla)
+        List<String> filtros = leerFiltros().aLista();
+        ExportadorProductos exportador = ExportadorProductos.paraArchivo(archivo.toPath());
+
+        btnExportar.setDisable(true);
+        TareasBD.ejecutar(() -> exportador.exportar(filtros, archivo.toPath()), filas -> {
+            btnExportar.setDisable(false);
+            mostrarAlertaInfo("Exportacin terminada", "Se exportaron " + filas + " productos a:\n" + archivo.getAbsolutePath());
+        }, error -> {
+            btnExportar.setDisable(false);
+            mostrarAlertaError("Error de Exportacin", "No se pudo exportar: " + error.getMessage());
+            error.printStackTrace();
+        });
+    }
+
     /** Muestra una alerta de error (utilidad) */
     private void mostrarAlertaError(String titulo, String contenido) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
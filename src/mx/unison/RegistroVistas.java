@@ -0,0 +1,152 @@
+package mx.unison;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+
+/**
+ * Cach de vistas FXML: cada archivo se interpreta una sola vez y despus se reutilizan el mismo
+ * rbol de nodos y el mismo controlador en cada navegacin. Antes cada clic creaba un FXMLLoader
+ * nuevo (XML, reflexin, nodos, imgenes) y eso costaba cientos de milisegundos en equipos lentos.
+ *
+ * Despus del inicio de sesin, precargar() carga las vistas ms usadas en un hilo de fondo. Construir
+ * nodos fuera del hilo de JavaFX est permitido mientras no estn en una escena visible, as que el
+ * initialize() de esos controladores solo configura sus propios controles; lo que depende del hilo de
+ * JavaFX o del uso anterior (filtros, datos, permisos del rol) va en Reutilizable.prepararVista(), que se
+ * llama en el hilo de JavaFX cada vez que la vista se muestra, incluida la primera.
+ */
+public final class RegistroVistas {
+
+    /**
+     * Controlador de una vista reutilizable.
+     */
+    public interface Reutilizable {
+        /**
+         * Deja la vista como recin abierta: limpia el estado del uso anterior y vuelve a cargar sus datos.
+         * Se llama en el hilo de JavaFX antes de cada vez que se muestra.
+         */
+        void prepararVista();
+    }
+
+    /**
+     * Una vista cargada: la raz del rbol de nodos, su controlador y, si se muestra en su propia
+     * ventana (formularios), la escena que la contiene.
+     */
+    public static final class Vista {
+        private final String fxml;
+        private final Parent raiz;
+        private final Object controlador;
+        private Scene escena; // Solo en el hilo de JavaFX
+
+        private Vista(String fxml, Parent raiz, Object controlador) {
+            this.fxml = fxml;
+            this.raiz = raiz;
+            this.controlador = controlador;
+        }
+
+        public Parent getRaiz() {
+            return raiz;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <T> T getControlador() {
+            return (T) controlador;
+        }
+
+        /**
+         * Escena propia de la vista (para mostrarla en otra ventana). Un nodo solo puede ser raz de
+         * una escena, as que se crea una vez y se reutiliza junto con la vista.
+         */
+        public Scene getEscena() {
+            if (escena == null) {
+                escena = new Scene(raiz);
+            }
+            return escena;
+        }
+
+        @Override
+        public String toString() {
+            return fxml;
+        }
+    }
+
+    // Vista por archivo FXML; el futuro permite que el hilo de JavaFX espere una precarga en curso
+    private static final ConcurrentHashMap<String, CompletableFuture<Vista>> VISTAS = new ConcurrentHashMap<>();
+
+    // Constructor privado para evitar instanciacin
+    private RegistroVistas() {}
+
+    /**
+     * Devuelve la vista lista para mostrarse: la carga si es la primera vez (o espera a que termine su
+     * precarga) y llama a prepararVista() de su controlador. Debe llamarse en el hilo de JavaFX.
+     * @param fxml El nombre del archivo FXML (ej. "Productos.fxml").
+     */
+    public static Vista obtener(String fxml) throws IOException {
+        long inicio = System.nanoTime();
+        CompletableFuture<Vista> nueva = new CompletableFuture<>();
+        CompletableFuture<Vista> existente = VISTAS.putIfAbsent(fxml, nueva);
+
+        Vista vista;
+        if (existente == null) {
+            vista = cargarEn(nueva, fxml, "hilo de JavaFX");
+        } else {
+            try {
+                vista = existente.join();
+            } catch (CompletionException e) {
+                // Fall la precarga: se intenta de nuevo aqu para mostrar el error real
+                VISTAS.remove(fxml, existente);
+                return obtener(fxml);
+            }
+        }
+
+        if (vista.controlador instanceof Reutilizable) {
+            ((Reutilizable) vista.controlador).prepararVista();
+        }
+        System.out.printf("DEBUG: Vista %s lista en %.1f ms (%s).%n", fxml, (System.nanoTime() - inicio) / 1e6,
+                existente == null ? "interpretada ahora" : "de la cach");
+        return vista;
+    }
+
+    /**
+     * Carga en un hilo de fondo las vistas indicadas que todava no estn cargadas, una tras otra.
+     * Si el usuario abre una de ellas antes de que termine, obtener() espera esa misma carga.
+     */
+    public static void precargar(String... archivos) {
+        Thread hilo = new Thread(() -> {
+            for (String fxml : archivos) {
+                CompletableFuture<Vista> nueva = new CompletableFuture<>();
+                if (VISTAS.putIfAbsent(fxml, nueva) != null) {
+                    continue; // Ya cargada o cargndose
+                }
+                try {
+                    cargarEn(nueva, fxml, "precarga");
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("ADVERTENCIA: No se pudo precargar la vista " + fxml + ": " + e.getMessage());
+                }
+            }
+        }, "precarga-vistas");
+        hilo.setDaemon(true);
+        hilo.setPriority(Thread.MIN_PRIORITY); // Que no compita con el hilo de JavaFX
+        hilo.start();
+    }
+
+    // Interpreta el FXML y completa el futuro (con la vista o con el error)
+    private static Vista cargarEn(CompletableFuture<Vista> futuro, String fxml, String origen) throws IOException {
+        long inicio = System.nanoTime();
+        try {
+            FXMLLoader loader = new FXMLLoader(RegistroVistas.class.getResource(fxml));
+            Parent raiz = loader.load();
+            Vista vista = new Vista(fxml, raiz, loader.getController());
+            futuro.complete(vista);
+            System.out.printf("DEBUG: Vista %s interpretada en %.1f ms (%s).%n", fxml, (System.nanoTime() - inicio) / 1e6, origen);
+            return vista;
+        } catch (IOException | RuntimeException e) {
+            futuro.completeExceptionally(e);
+            throw e;
+        }
+    }
+}
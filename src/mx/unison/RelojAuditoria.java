@@ -0,0 +1,78 @@
+package mx.unison;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Reloj de los campos de auditora (fecha de creacin, ltima modificacin, ltimo inicio de sesin).
+ * En la base de datos las fechas se guardan como segundos desde la poca (INTEGER, UTC):
+ * ocupan menos, se comparan como nmeros y los ndices sirven para buscar por rango.
+ * En pantalla se muestran en la hora de Sonora/Arizona (America/Phoenix, GMT-7 todo el ao).
+ * La zona y el formato se crean una sola vez (son inmutables y seguros entre hilos).
+ */
+public class RelojAuditoria {
+
+    public static final ZoneId ZONA = ZoneId.of("America/Phoenix");
+    /** Fecha desconocida (NULL en la base de datos). */
+    public static final long SIN_FECHA = Long.MIN_VALUE;
+    // Formato estndar que la aplicacin siempre ha mostrado
+    public static final DateTimeFormatter FORMATO = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZONA);
+
+    // Constructor privado para evitar instanciacin
+    private RelojAuditoria() {}
+
+    /** Instante actual en segundos desde la poca, para guardar en la base de datos. */
+    public static long ahora() {
+        return Instant.now().getEpochSecond();
+    }
+
+    /** Instante actual ya formateado en la hora de Sonora. */
+    public static String ahoraTexto() {
+        return formatear(ahora());
+    }
+
+    /** Formatea segundos desde la poca en la hora de Sonora ("yyyy-MM-dd HH:mm:ss"); null para SIN_FECHA. */
+    public static String formatear(long epoch) {
+        return epoch == SIN_FECHA ? null : FORMATO.format(Instant.ofEpochSecond(epoch));
+    }
+
+    /**
+     * Lee una columna de fecha (INTEGER): segundos desde la poca, o SIN_FECHA si la columna es NULL.
+     */
+    public static long leer(ResultSet rs, int columna) throws SQLException {
+        long epoch = rs.getLong(columna);
+        return rs.wasNull() ? SIN_FECHA : epoch;
+    }
+
+    public static long leer(ResultSet rs, String columna) throws SQLException {
+        return leer(rs, rs.findColumn(columna));
+    }
+
+    /** Lee una columna de fecha y la formatea; null si la columna es NULL. */
+    public static String formatear(ResultSet rs, int columna) throws SQLException {
+        return formatear(leer(rs, columna));
+    }
+
+    /** Convierte una fecha y hora de Sonora a segundos desde la poca (para los filtros por rango). */
+    public static long aEpoch(LocalDateTime fechaHora) {
+        return fechaHora.atZone(ZONA).toEpochSecond();
+    }
+
+    /** Interpreta un texto "yyyy-MM-dd HH:mm:ss" en la hora de Sonora. */
+    public static long aEpoch(String texto) {
+        return aEpoch(LocalDateTime.parse(texto, FORMATO));
+    }
+
+    /**
+     * Segundos que hay que SUMAR a una hora de Sonora para obtener UTC (25200).
+     * Arizona no usa horario de verano, as que es el mismo para cualquier fecha;
+     * la migracin lo usa para convertir en SQL las fechas antiguas guardadas como texto.
+     */
+    static int desfaseSegundos() {
+        return -ZONA.getRules().getOffset(Instant.now()).getTotalSeconds();
+    }
+}
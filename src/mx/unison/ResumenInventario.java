@@ -0,0 +1,224 @@
+package mx.unison;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Totales del inventario para el tablero de Inicio: productos, unidades, valor (precio * cantidad)
+ * y productos con stock bajo, por almacn y por departamento.
+ *
+ * No se calculan con GROUP BY al abrir la pantalla. Las tablas resumen_almacen y resumen_departamento
+ * se mantienen al da con triggers sobre 'productos' (igual que productos_fts), as que cualquier
+ * escritura (formulario, operaciones en lote, eliminacin en cascada, importacin) las actualiza dentro
+ * de su misma transaccin. Leer el tablero cuesta lo mismo con cien productos que con un milln:
+ * una fila por almacn y por departamento, ms los ltimos modificados por ndice.
+ */
+public class ResumenInventario {
+
+    /** Un producto tiene stock bajo si su cantidad es menor o igual a este nmero. */
+    public static final int UMBRAL_STOCK_BAJO = 5;
+    /** Productos modificados recientemente que muestra el tablero. */
+    public static final int RECIENTES = 10;
+
+    // Llave de cada resumen para una fila de productos (alias p, new u old)
+    private static final String LLAVE_ALMACEN = "IFNULL(%s.almacen, '')";
+    private static final String LLAVE_DEPARTAMENTO = "IFNULL(%s.departamento, '')";
+
+    // Suma de una fila (o grupo) a las columnas del resumen cuando la llave ya existe
+    private static final String SUMAR_EXCLUDED = "productos = productos + excluded.productos, "
+            + "unidades = unidades + excluded.unidades, "
+            + "valor_centavos = valor_centavos + excluded.valor_centavos, "
+            + "stock_bajo = stock_bajo + excluded.stock_bajo";
+
+    // Trigger de insercin. La importacin masiva lo quita durante su transaccin y al final
+    // acumula todas las filas nuevas con SQL_ACUMULAR_NUEVOS (ver ImportadorProductosCSV).
+    static final String SQL_TRIGGER_INSERCION = "CREATE TRIGGER IF NOT EXISTS resumen_ai AFTER INSERT ON productos BEGIN "
+            + sumarFila("resumen_almacen", "almacen", LLAVE_ALMACEN, "new")
+            + sumarFila("resumen_departamento", "departamento", LLAVE_DEPARTAMENTO, "new")
+            + "END";
+
+    /** Acumula en ambos resmenes las filas de productos con rowid mayor que el parmetro. */
+    static final String[] SQL_ACUMULAR_NUEVOS = {
+        sumarGrupos("resumen_almacen", "almacen", LLAVE_ALMACEN, "WHERE p.rowid > ?"),
+        sumarGrupos("resumen_departamento", "departamento", LLAVE_DEPARTAMENTO, "WHERE p.rowid > ?")
+    };
+
+    // Constructor privado para evitar instanciacin
+    private ResumenInventario() {}
+
+    // ------------------------------------------------------------------
+    //                       TABLAS Y TRIGGERS
+    // ------------------------------------------------------------------
+
+    /**
+     * Crea las tablas de resumen y los triggers que las mantienen. Si las tablas no existan,
+     * se llenan una sola vez con GROUP BY sobre los productos actuales.
+     * Se llama desde createTables() de DatabaseManager, despus de crear productos_fts.
+     */
+    static void crear(Statement stmt) throws SQLException {
+        boolean existia;
+        try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'resumen_almacen'")) {
+            existia = rs.next();
+        }
+
+        // El valor se guarda en centavos (entero): sumar y restar en cada trigger no acumula error de redondeo
+        stmt.execute("CREATE TABLE IF NOT EXISTS resumen_almacen ("
+                + "almacen TEXT PRIMARY KEY, " // ID del almacn, como productos.almacen
+                + "productos INTEGER NOT NULL DEFAULT 0, unidades INTEGER NOT NULL DEFAULT 0, "
+                + "valor_centavos INTEGER NOT NULL DEFAULT 0, stock_bajo INTEGER NOT NULL DEFAULT 0)");
+        stmt.execute("CREATE TABLE IF NOT EXISTS resumen_departamento ("
+                + "departamento TEXT COLLATE NOCASE PRIMARY KEY, " // Igual que el filtro de departamento
+                + "productos INTEGER NOT NULL DEFAULT 0, unidades INTEGER NOT NULL DEFAULT 0, "
+                + "valor_centavos INTEGER NOT NULL DEFAULT 0, stock_bajo INTEGER NOT NULL DEFAULT 0)");
+
+        stmt.execute(SQL_TRIGGER_INSERCION);
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS resumen_ad AFTER DELETE ON productos BEGIN "
+                + restarFila("resumen_almacen", "almacen", LLAVE_ALMACEN, "old")
+                + restarFila("resumen_departamento", "departamento", LLAVE_DEPARTAMENTO, "old")
+                + "END");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS resumen_au AFTER UPDATE OF precio, cantidad, departamento, almacen ON productos BEGIN "
+                + restarFila("resumen_almacen", "almacen", LLAVE_ALMACEN, "old")
+                + restarFila("resumen_departamento", "departamento", LLAVE_DEPARTAMENTO, "old")
+                + sumarFila("resumen_almacen", "almacen", LLAVE_ALMACEN, "new")
+                + sumarFila("resumen_departamento", "departamento", LLAVE_DEPARTAMENTO, "new")
+                + "END");
+
+        if (!existia) {
+            stmt.execute(sumarGrupos("resumen_almacen", "almacen", LLAVE_ALMACEN, ""));
+            stmt.execute(sumarGrupos("resumen_departamento", "departamento", LLAVE_DEPARTAMENTO, ""));
+            System.out.println("DEBUG: Resmenes del inventario calculados.");
+        }
+    }
+
+    // Columnas del resumen para una fila de productos: 1 producto, sus unidades, su valor y si tiene stock bajo
+    private static String valoresFila(String fila) {
+        return "1, " + fila + ".cantidad, " + valorCentavos(fila) + ", " + fila + ".cantidad <= " + UMBRAL_STOCK_BAJO;
+    }
+
+    private static String valorCentavos(String fila) {
+        return "CAST(ROUND(" + fila + ".precio * 100) AS INTEGER) * " + fila + ".cantidad";
+    }
+
+    private static String sumarFila(String tabla, String columna, String llave, String fila) {
+        return "INSERT INTO " + tabla + " (" + columna + ", productos, unidades, valor_centavos, stock_bajo) "
+                + "VALUES (" + String.format(llave, fila) + ", " + valoresFila(fila) + ") "
+                + "ON CONFLICT(" + columna + ") DO UPDATE SET " + SUMAR_EXCLUDED + "; ";
+    }
+
+    private static String restarFila(String tabla, String columna, String llave, String fila) {
+        return "UPDATE " + tabla + " SET productos = productos - 1, "
+                + "unidades = unidades - " + fila + ".cantidad, "
+                + "valor_centavos = valor_centavos - " + valorCentavos(fila) + ", "
+                + "stock_bajo = stock_bajo - (" + fila + ".cantidad <= " + UMBRAL_STOCK_BAJO + ") "
+                + "WHERE " + columna + " = " + String.format(llave, fila) + "; ";
+    }
+
+    // Suma por grupos (carga inicial o filas importadas); la llave se agrupa con la misma intercalacin que la tabla
+    private static String sumarGrupos(String tabla, String columna, String llave, String where) {
+        String expresion = String.format(llave, "p");
+        return "INSERT INTO " + tabla + " (" + columna + ", productos, unidades, valor_centavos, stock_bajo) "
+                + "SELECT " + expresion + ", COUNT(*), SUM(p.cantidad), SUM(" + valorCentavos("p") + "), "
+                + "SUM(p.cantidad <= " + UMBRAL_STOCK_BAJO + ") FROM productos p " + where
+                + " GROUP BY " + expresion + (columna.equals("departamento") ? " COLLATE NOCASE" : "")
+                + " ON CONFLICT(" + columna + ") DO UPDATE SET " + SUMAR_EXCLUDED;
+    }
+
+    // ------------------------------------------------------------------
+    //                       LECTURA DEL TABLERO
+    // ------------------------------------------------------------------
+
+    /**
+     * Totales de un almacn, un departamento o de todo el inventario.
+     */
+    public static final class Fila {
+        public final String nombre;
+        public final long productos;
+        public final long unidades;
+        public final long valorCentavos;
+        public final long stockBajo;
+
+        Fila(String nombre, long productos, long unidades, long valorCentavos, long stockBajo) {
+            this.nombre = nombre;
+            this.productos = productos;
+            this.unidades = unidades;
+            this.valorCentavos = valorCentavos;
+            this.stockBajo = stockBajo;
+        }
+
+        /** Valor en pesos con separador de miles ("$12,345.60"). */
+        public String getValorTexto() {
+            return String.format("$%,.2f", valorCentavos / 100.0);
+        }
+    }
+
+    /**
+     * Lo que muestra el tablero de Inicio.
+     */
+    public static final class Resumen {
+        public final Fila total;
+        public final List<Fila> porAlmacen;
+        public final List<Fila> porDepartamento;
+        /** Los productos modificados ms recientemente, del ms nuevo al ms antiguo. */
+        public final List<Producto> recientes;
+
+        Resumen(Fila total, List<Fila> porAlmacen, List<Fila> porDepartamento, List<Producto> recientes) {
+            this.total = total;
+            this.porAlmacen = Collections.unmodifiableList(porAlmacen);
+            this.porDepartamento = Collections.unmodifiableList(porDepartamento);
+            this.recientes = Collections.unmodifiableList(recientes);
+        }
+    }
+
+    /**
+     * Lee el tablero: una fila por almacn (los que existen, como en la pantalla de Productos),
+     * una por departamento con productos, el total y los ltimos productos modificados.
+     * Ninguna consulta recorre la tabla de productos.
+     */
+    public static Resumen obtener() throws SQLException {
+        List<Fila> porAlmacen = new ArrayList<>();
+        List<Fila> porDepartamento = new ArrayList<>();
+        long productos = 0, unidades = 0, valor = 0, stockBajo = 0;
+
+        try (Connection conn = DatabaseManager.getConnection()) {
+            String sqlAlmacenes = "SELECT a.nombre, IFNULL(r.productos, 0), IFNULL(r.unidades, 0), "
+                    + "IFNULL(r.valor_centavos, 0), IFNULL(r.stock_bajo, 0) "
+                    + "FROM almacenes a LEFT JOIN resumen_almacen r ON r.almacen = a.id "
+                    + "ORDER BY a.nombre COLLATE NOCASE";
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlAlmacenes);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    porAlmacen.add(leerFila(rs));
+                }
+            }
+
+            String sqlDepartamentos = "SELECT departamento, productos, unidades, valor_centavos, stock_bajo "
+                    + "FROM resumen_departamento WHERE productos > 0 ORDER BY departamento";
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlDepartamentos);
+                 ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Fila fila = leerFila(rs);
+                    porDepartamento.add(fila);
+                    // Cada producto tiene exactamente un departamento: el total es la suma de estas filas
+                    productos += fila.productos;
+                    unidades += fila.unidades;
+                    valor += fila.valorCentavos;
+                    stockBajo += fila.stockBajo;
+                }
+            }
+        }
+
+        // Recorrido hacia atrs de idx_productos_fecha_mod que se detiene en RECIENTES filas
+        List<Producto> recientes = DatabaseManager.obtenerProductosModificados(Long.MIN_VALUE, Long.MAX_VALUE, null, RECIENTES);
+        return new Resumen(new Fila("Total", productos, unidades, valor, stockBajo), porAlmacen, porDepartamento, recientes);
+    }
+
+    private static Fila leerFila(ResultSet rs) throws SQLException {
+        return new Fila(rs.getString(1), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getLong(5));
+    }
+}
@@ -4,10 +4,21 @@ import org.mindrot.jbcrypt.BCrypt;
 
 public class Seguridad {
 
+    // Costo de BCrypt cuando no se configura (el que usaba gensalt() sin argumentos)
+    public static final int COSTO_POR_DEFECTO = 10;
+    // Lmites que acepta jBCrypt
+    public static final int COSTO_MINIMO = 4;
+    public static final int COSTO_MAXIMO = 30;
+
     // 1. Generar Hash: Se usa una sola vez para guardar la contrasea en la BD.
     public static String generarHash(String password) {
+        return generarHash(password, getCosto());
+    }
+
+    // Igual, con un costo explcito (cada punto duplica el tiempo de clculo)
+    public static String generarHash(String password, int costo) {
         // gensalt() genera una "sal" aleatoria para mayor seguridad.
-        return BCrypt.hashpw(password, BCrypt.gensalt());
+        return BCrypt.hashpw(password, BCrypt.gensalt(costo));
     }
 
     // 2. Verificar Contrasea (para el login):
@@ -15,4 +26,22 @@ public class Seguridad {
     public static boolean verificarPassword(String passwordTextoPlano, String hashGuardado) {
         return BCrypt.checkpw(passwordTextoPlano, hashGuardado);
     }
-}
\ No newline at end of file
+
+    // 3. Costo configurado (Configuracion.COSTO_BCRYPT); se calibra con GeneradorHash --calibrar.
+    public static int getCosto() {
+        int costo = Configuracion.getEntero(Configuracion.COSTO_BCRYPT, COSTO_POR_DEFECTO);
+        return Math.max(COSTO_MINIMO, Math.min(COSTO_MAXIMO, costo));
+    }
+
+    // 4. Costo con el que se gener un hash ("$2a$10$..." -> 10), o -1 si no tiene ese formato.
+    public static int costoDe(String hash) {
+        if (hash == null || hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$' || hash.charAt(6) != '$') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(hash.substring(4, 6));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
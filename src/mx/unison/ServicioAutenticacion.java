@@ -0,0 +1,390 @@
+package mx.unison;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * nico camino para iniciar sesin (lo usa LoginController). Cada intento pasa por tres pasos:
+ *   1. Lmites: un usuario con varios fallos seguidos debe esperar (el tiempo se duplica con cada fallo)
+ *      y, para todas las cuentas juntas, solo se admiten unas cuantas verificaciones por segundo.
+ *      Un intento limitado se responde de inmediato, sin consultar la base ni calcular BCrypt.
+ *   2. BCrypt: se calcula en un pool propio de pocos hilos con una cola corta. Un ataque de fuerza
+ *      bruta puede ocupar como mucho esos hilos, nunca todos los ncleos ni los hilos de TareasBD.
+ *   3. Si la contrasea es correcta y su hash se gener con un costo distinto al configurado
+ *      (Configuracion.COSTO_BCRYPT), se vuelve a generar con el costo actual y se guarda.
+ * Los lmites viven en memoria: se reinician al cerrar la aplicacin.
+ */
+public final class ServicioAutenticacion {
+
+    /**
+     * Resultado de un intento de inicio de sesin.
+     */
+    public static final class Resultado {
+        public enum Estado { ACEPTADO, RECHAZADO, ESPERAR }
+
+        private final Estado estado;
+        private final String usuario;
+        private final String rol;
+        private final long segundosEspera;
+
+        private Resultado(Estado estado, String usuario, String rol, long segundosEspera) {
+            this.estado = estado;
+            this.usuario = usuario;
+            this.rol = rol;
+            this.segundosEspera = segundosEspera;
+        }
+
+        public Estado getEstado() {
+            return estado;
+        }
+
+        /** Nombre del usuario tal como est guardado (no como se tecle); solo si el intento fue aceptado. */
+        public String getUsuario() {
+            return usuario;
+        }
+
+        /** Rol del usuario; solo si el intento fue aceptado. */
+        public String getRol() {
+            return rol;
+        }
+
+        /** Segundos que faltan para poder intentar de nuevo; solo si el estado es ESPERAR. */
+        public long getSegundosEspera() {
+            return segundosEspera;
+        }
+    }
+
+    // Usuario encontrado en la base de datos
+    private static final class Credencial {
+        final String nombre; // Tal como est guardado
+        final String hash;
+        final String rol;
+
+        Credencial(String nombre, String hash, String rol) {
+            this.nombre = nombre;
+            this.hash = hash;
+            this.rol = rol;
+        }
+    }
+
+    // Contrasea verificada; nuevoHash no es null si hay que guardar el hash con el costo actual
+    private static final class Verificacion {
+        final Credencial credencial;
+        final String nuevoHash;
+
+        Verificacion(Credencial credencial, String nuevoHash) {
+            this.credencial = credencial;
+            this.nuevoHash = nuevoHash;
+        }
+    }
+
+    // Fallos recientes de un usuario. Solo se modifica dentro de INTENTOS.compute()
+    private static final class Intentos {
+        int fallos;
+        long ultimoFalloNs;
+        long esperarHastaNs;
+        boolean enCurso; // Un solo intento a la vez por usuario
+    }
+
+    // --- Pool de BCrypt ---
+    // Cada verificacin ocupa un ncleo durante todo el costo del hash: pocos hilos y una cola corta
+    private static final int HILOS = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int CAPACIDAD_COLA = 8;
+    private static final AtomicInteger CONTADOR_HILOS = new AtomicInteger();
+    private static final ThreadPoolExecutor BCRYPT = new ThreadPoolExecutor(HILOS, HILOS, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(CAPACIDAD_COLA), r -> {
+                Thread hilo = new Thread(r, "bcrypt-" + CONTADOR_HILOS.incrementAndGet());
+                hilo.setDaemon(true);
+                return hilo;
+            });
+
+    // --- Lmite por usuario ---
+    private static final int FALLOS_SIN_ESPERA = 3;
+    private static final long ESPERA_BASE_S = 5;
+    private static final long ESPERA_MAXIMA_S = 300;
+    // Los fallos se olvidan despus de este tiempo sin fallar
+    private static final long OLVIDO_NS = TimeUnit.MINUTES.toNanos(15);
+    // Nombres vigilados a la vez (un ataque puede probar nombres inventados)
+    private static final int MAXIMO_VIGILADOS = 1000;
+    private static final ConcurrentHashMap<String, Intentos> INTENTOS = new ConcurrentHashMap<>();
+
+    // --- Lmite global (cubeta de fichas: rfagas cortas permitidas, promedio limitado) ---
+    private static final double VERIFICACIONES_POR_SEGUNDO = 4;
+    private static final double RAFAGA = 8;
+    private static final Object CUBETA = new Object();
+    private static double fichas = RAFAGA;
+    private static long ultimaRecargaNs = System.nanoTime();
+
+    // Hash de una contrasea cualquiera: un usuario inexistente tarda lo mismo que uno existente
+    private static volatile String hashFicticio;
+
+    // --- Contadores ---
+    private static final AtomicLong ACEPTADOS = new AtomicLong();
+    private static final AtomicLong RECHAZADOS = new AtomicLong();
+    private static final AtomicLong LIMITADOS_USUARIO = new AtomicLong();
+    private static final AtomicLong LIMITADOS_GLOBAL = new AtomicLong();
+    private static final AtomicLong SATURADOS = new AtomicLong();
+    private static final AtomicLong REHECHOS = new AtomicLong();
+
+    // Constructor privado para evitar instanciacin
+    private ServicioAutenticacion() {}
+
+    /**
+     * Verifica usuario y contrasea en segundo plano; el futuro se completa en un hilo de fondo
+     * (usar TareasBD.entregarEnFX para recibirlo en la interfaz). Si el intento es vlido, tambin
+     * actualiza la fecha de ltimo inicio de sesin.
+     */
+    public static CompletableFuture<Resultado> autenticar(String usuario, String password) {
+        // El mismo nombre (sin espacios) se limita y se busca: " Admin" no esquiva el lmite de "admin"
+        String nombre = usuario.trim();
+        String clave = nombre.toLowerCase();
+
+        long espera = reservarUsuario(clave);
+        if (espera > 0) {
+            LIMITADOS_USUARIO.incrementAndGet();
+            return CompletableFuture.completedFuture(new Resultado(Resultado.Estado.ESPERAR, null, null, espera));
+        }
+        espera = tomarFicha();
+        if (espera > 0) {
+            terminarIntento(clave, null);
+            LIMITADOS_GLOBAL.incrementAndGet();
+            return CompletableFuture.completedFuture(new Resultado(Resultado.Estado.ESPERAR, null, null, espera));
+        }
+
+        return enEjecutor(TareasBD.getEjecutor(), () -> {
+                    // La base de datos se prepara en segundo plano desde que abri la aplicacin (ver Arranque)
+                    Arranque.esperarBaseDeDatos();
+                    return buscarCredencial(nombre);
+                })
+                .thenCompose(credencial -> enEjecutor(BCRYPT, () -> verificar(credencial, password)))
+                .thenCompose(verificacion -> enEjecutor(TareasBD.getEjecutor(), () -> registrar(verificacion)))
+                .handle((resultado, error) -> {
+                    Throwable causa = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (causa instanceof RejectedExecutionException) {
+                        // Pool de BCrypt lleno: se pide esperar en lugar de acumular trabajo
+                        SATURADOS.incrementAndGet();
+                        resultado = new Resultado(Resultado.Estado.ESPERAR, null, null, 1);
+                        causa = null;
+                    }
+                    terminarIntento(clave, resultado);
+                    if (causa != null) {
+                        throw new CompletionException(causa);
+                    }
+                    return resultado;
+                });
+    }
+
+    /** Intentos aceptados, rechazados, limitados (por usuario y global), saturados y hashes rehechos. */
+    public static String getEstadisticas() {
+        return String.format("Autenticacin: aceptados=%d rechazados=%d limitadosUsuario=%d limitadosGlobal=%d "
+                + "saturados=%d rehechos=%d vigilados=%d costo=%d hilos=%d",
+                ACEPTADOS.get(), RECHAZADOS.get(), LIMITADOS_USUARIO.get(), LIMITADOS_GLOBAL.get(),
+                SATURADOS.get(), REHECHOS.get(), INTENTOS.size(), Seguridad.getCosto(), HILOS);
+    }
+
+    // ------------------------------------------------------------------
+    //                       PASOS DEL INTENTO
+    // ------------------------------------------------------------------
+
+    private static Credencial buscarCredencial(String usuario) throws SQLException {
+        String sql = "SELECT nombre, password, rol FROM usuarios WHERE LOWER(nombre) = LOWER(?)";
+        try (Connection conn = DatabaseManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, usuario);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return new Credencial(rs.getString("nombre"), rs.getString("password"), rs.getString("rol"));
+                }
+            }
+        }
+        return null;
+    }
+
+    // En el pool de BCrypt. Devuelve null si el usuario no existe o la contrasea no coincide
+    private static Verificacion verificar(Credencial credencial, String password) {
+        if (credencial == null) {
+            Seguridad.verificarPassword(password, getHashFicticio());
+            return null;
+        }
+        boolean valida;
+        try {
+            valida = Seguridad.verificarPassword(password, credencial.hash);
+        } catch (IllegalArgumentException e) {
+            System.err.println("ADVERTENCIA: El hash guardado del usuario '" + credencial.nombre + "' no es vlido.");
+            valida = false;
+        }
+        if (!valida) {
+            return null;
+        }
+        int costo = Seguridad.getCosto();
+        String nuevoHash = Seguridad.costoDe(credencial.hash) != costo ? Seguridad.generarHash(password, costo) : null;
+        return new Verificacion(credencial, nuevoHash);
+    }
+
+    // En un hilo de TareasBD: fecha de ltimo inicio y, si hace falta, el hash con el costo actual
+    private static Resultado registrar(Verificacion verificacion) throws SQLException {
+        if (verificacion == null) {
+            return new Resultado(Resultado.Estado.RECHAZADO, null, null, 0);
+        }
+        Credencial credencial = verificacion.credencial;
+        try (Connection conn = DatabaseManager.getConnection()) {
+            actualizarUltimoInicio(conn, credencial.nombre);
+            if (verificacion.nuevoHash != null) {
+                guardarHash(conn, credencial, verificacion.nuevoHash);
+            }
+        }
+        return new Resultado(Resultado.Estado.ACEPTADO, credencial.nombre, credencial.rol, 0);
+    }
+
+    private static void actualizarUltimoInicio(Connection conn, String nombreUsuario) throws SQLException {
+        // Zona horaria local (Sonora/Arizona: GMT-7/MST)
+        String localizedNow = RelojAuditoria.ahoraTexto();
+        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE usuarios SET fecha_hora_ultimo_inicio = ? WHERE nombre = ?")) {
+            pstmt.setString(1, localizedNow);
+            pstmt.setString(2, nombreUsuario);
+            if (pstmt.executeUpdate() > 0) {
+                System.out.println("DEBUG: Se actualiz la hora de ltimo inicio para el usuario: " + nombreUsuario + " (" + localizedNow + ")");
+            } else {
+                System.err.println("ADVERTENCIA: No se pudo actualizar la hora de ltimo inicio. Usuario '" + nombreUsuario + "' no encontrado.");
+            }
+        }
+    }
+
+    // Solo si el hash no cambi desde que se ley. Un error aqu no impide iniciar sesin:
+    // el siguiente inicio lo vuelve a intentar
+    private static void guardarHash(Connection conn, Credencial credencial, String nuevoHash) {
+        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE usuarios SET password = ? WHERE nombre = ? AND password = ?")) {
+            pstmt.setString(1, nuevoHash);
+            pstmt.setString(2, credencial.nombre);
+            pstmt.setString(3, credencial.hash);
+            if (pstmt.executeUpdate() > 0) {
+                REHECHOS.incrementAndGet();
+                System.out.println("DEBUG: Hash de '" + credencial.nombre + "' rehecho con costo "
+                        + Seguridad.costoDe(nuevoHash) + " (antes " + Seguridad.costoDe(credencial.hash) + ").");
+            }
+        } catch (SQLException e) {
+            System.err.println("ADVERTENCIA: No se pudo guardar el nuevo hash de '" + credencial.nombre + "': " + e.getMessage());
+        }
+    }
+
+    private static String getHashFicticio() {
+        String hash = hashFicticio;
+        if (hash == null || Seguridad.costoDe(hash) != Seguridad.getCosto()) {
+            hash = Seguridad.generarHash("usuario-inexistente");
+            hashFicticio = hash;
+        }
+        return hash;
+    }
+
+    // Como TareasBD.ejecutar, sin pasar al hilo de JavaFX. Si el ejecutor est lleno, el futuro
+    // falla con RejectedExecutionException
+    private static <T> CompletableFuture<T> enEjecutor(Executor ejecutor, TareasBD.OperacionBD<T> operacion) {
+        CompletableFuture<T> futuro = new CompletableFuture<>();
+        try {
+            ejecutor.execute(() -> {
+                try {
+                    futuro.complete(operacion.ejecutar());
+                } catch (Exception e) {
+                    futuro.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            futuro.completeExceptionally(e);
+        }
+        return futuro;
+    }
+
+    // ------------------------------------------------------------------
+    //                       LMITES
+    // ------------------------------------------------------------------
+
+    // Marca al usuario con un intento en curso; si debe esperar, devuelve los segundos (> 0)
+    private static long reservarUsuario(String clave) {
+        if (INTENTOS.size() > MAXIMO_VIGILADOS) {
+            olvidarAntiguos();
+        }
+        long ahora = System.nanoTime();
+        long[] espera = {0};
+        INTENTOS.compute(clave, (k, intentos) -> {
+            if (intentos == null) {
+                intentos = new Intentos();
+                intentos.esperarHastaNs = ahora;
+            } else if (intentos.fallos > 0 && ahora - intentos.ultimoFalloNs > OLVIDO_NS) {
+                intentos.fallos = 0;
+            }
+            if (intentos.enCurso) {
+                espera[0] = 1;
+            } else if (intentos.fallos >= FALLOS_SIN_ESPERA && intentos.esperarHastaNs - ahora > 0) {
+                espera[0] = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(intentos.esperarHastaNs - ahora + 999_999_999));
+            } else {
+                intentos.enCurso = true;
+            }
+            return intentos;
+        });
+        return espera[0];
+    }
+
+    // Libera al usuario y cuenta el resultado (null: el intento no lleg a verificarse)
+    private static void terminarIntento(String clave, Resultado resultado) {
+        Resultado.Estado estado = resultado == null ? null : resultado.estado;
+        if (estado == Resultado.Estado.ACEPTADO) {
+            ACEPTADOS.incrementAndGet();
+        } else if (estado == Resultado.Estado.RECHAZADO) {
+            RECHAZADOS.incrementAndGet();
+        }
+        long ahora = System.nanoTime();
+        INTENTOS.computeIfPresent(clave, (k, intentos) -> {
+            intentos.enCurso = false;
+            if (estado == Resultado.Estado.ACEPTADO) {
+                return null; // Se olvidan sus fallos
+            }
+            if (estado == Resultado.Estado.RECHAZADO) {
+                intentos.fallos++;
+                intentos.ultimoFalloNs = ahora;
+                if (intentos.fallos >= FALLOS_SIN_ESPERA) {
+                    int duplicaciones = Math.min(intentos.fallos - FALLOS_SIN_ESPERA, 16);
+                    long segundos = Math.min(ESPERA_BASE_S << duplicaciones, ESPERA_MAXIMA_S);
+                    intentos.esperarHastaNs = ahora + TimeUnit.SECONDS.toNanos(segundos);
+                    System.out.println("DEBUG: Usuario '" + k + "' con " + intentos.fallos + " fallos seguidos: espera de " + segundos + " s.");
+                }
+            }
+            return intentos.fallos == 0 ? null : intentos;
+        });
+    }
+
+    // Toma una ficha de la cubeta global; si no hay, devuelve los segundos hasta la siguiente (> 0)
+    private static long tomarFicha() {
+        synchronized (CUBETA) {
+            long ahora = System.nanoTime();
+            fichas = Math.min(RAFAGA, fichas + (ahora - ultimaRecargaNs) / 1e9 * VERIFICACIONES_POR_SEGUNDO);
+            ultimaRecargaNs = ahora;
+            if (fichas >= 1) {
+                fichas--;
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil((1 - fichas) / VERIFICACIONES_POR_SEGUNDO));
+        }
+    }
+
+    // Quita los usuarios sin intento en curso cuyos fallos ya se olvidaron o cuya espera ya pas
+    private static void olvidarAntiguos() {
+        long ahora = System.nanoTime();
+        for (String clave : INTENTOS.keySet()) {
+            INTENTOS.computeIfPresent(clave, (k, intentos) -> !intentos.enCurso
+                    && (ahora - intentos.ultimoFalloNs > OLVIDO_NS || intentos.esperarHastaNs - ahora <= 0) ? null : intentos);
+        }
+    }
+}
@@ -0,0 +1,645 @@
+package mx.unison;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Modo servidor sin interfaz grfica: API HTTP/JSON sobre DatabaseManager para escneres y otros
+ * sistemas internos. Se inicia con "java mx.unison.InventarioApp --servidor".
+ *
+ *   GET    /api/productos?nombre=&departamento=&precioMin=&precioMax=&cantidadMin=&cantidadMax=&almacen=&id=
+ *            Los mismos 8 filtros que la pantalla de Productos (almacen: nombre o ID). El arreglo JSON se
+ *            escribe en flujo directo del ResultSet, comprimido si el cliente acepta gzip: la memoria
+ *            usada no depende del nmero de productos.
+ *   GET    /api/productos/{id}
+ *   POST   /api/productos          {"nombre": .., "precio": .., "cantidad": .., "departamento": .., "almacen": ..}
+ *   PUT    /api/productos/{id}     (mismo cuerpo; se validan igual que en el formulario)
+ *   DELETE /api/productos/{id}
+ *   GET    /api/almacenes          [{"id": .., "nombre": ..}] de la cach de AlmacenUtils
+ *   GET    /api/estado             contadores del servidor, del pool y de la cach de almacenes
+ *
+ * Cada solicitud corre en su propio hilo virtual: miles de solicitudes esperando una de las conexiones
+ * del pool cuestan unos cuantos KB cada una, no un hilo del sistema. SQLite sigue admitiendo un solo
+ * escritor; si una solicitud no consigue conexin a tiempo se responde 503 con Retry-After.
+ *
+ * Opciones (Configuracion): servidor.puerto (8080), servidor.direccion (127.0.0.1), servidor.token
+ * (se exige "Authorization: Bearer <token>"; obligatorio para escuchar fuera de localhost) y
+ * servidor.usuario ("API", el usuario que queda en la auditora de los cambios).
+ */
+public final class ServidorApi {
+
+    /** Argumento de InventarioApp que inicia el servidor en lugar de la interfaz grfica. */
+    public static final String OPCION = "--servidor";
+
+    private static final String RUTA_PRODUCTOS = "/api/productos";
+    private static final String RUTA_ALMACENES = "/api/almacenes";
+    private static final String RUTA_ESTADO = "/api/estado";
+    private static final String TIPO_JSON = "application/json; charset=utf-8";
+
+    // Conexiones pendientes de aceptar y solicitudes atendidas a la vez; ms all se responde 503
+    private static final int BACKLOG = 4096;
+    private static final int MAX_EN_CURSO = 10_000;
+    // Tamao mximo del cuerpo de un POST/PUT (un producto ocupa unos cientos de bytes)
+    private static final int MAX_CUERPO = 64 * 1024;
+    // Filas que el driver lee por viaje y buffer de escritura de las respuestas en flujo
+    private static final int TAMANO_FETCH = 1000;
+    private static final int TAMANO_BUFFER = 1 << 15;
+    // La aplicacin de escritorio puede cambiar los almacenes en el mismo archivo: la cach se vence cada tanto
+    private static final long SEGUNDOS_CADUCIDAD_ALMACENES = 5;
+    // SQLITE_BUSY: otro proceso tiene el candado de escritura ms all de busy_timeout
+    private static final int SQLITE_BUSY = 5;
+
+    private static final Pattern ID_PRODUCTO = Pattern.compile("\\d{1,18}");
+    // Filtros aceptados en /api/productos, en el orden posicional de obtenerProductosFiltrados
+    private static final List<String> PARAMETROS_FILTRO = Arrays.asList(
+            "nombre", "departamento", "precioMin", "precioMax", "cantidadMin", "cantidadMax", "almacen", "id");
+
+    private static final Semaphore EN_CURSO = new Semaphore(MAX_EN_CURSO);
+    private static volatile String token;
+
+    // --- Contadores ---
+    private static final LongAdder SOLICITUDES = new LongAdder();
+    private static final LongAdder PRODUCTOS_ENVIADOS = new LongAdder();
+    private static final AtomicLong RECHAZADAS = new AtomicLong();
+    private static final AtomicLong ERRORES = new AtomicLong();
+
+    /**
+     * Error de la solicitud (no del servidor): se responde con el cdigo y el mensaje indicados.
+     */
+    private static final class SolicitudInvalida extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int codigo;
+
+        SolicitudInvalida(int codigo, String mensaje) {
+            super(mensaje);
+            this.codigo = codigo;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Manejador {
+        void atender(HttpExchange ex) throws Exception;
+    }
+
+    // Constructor privado para evitar instanciacin
+    private ServidorApi() {}
+
+    public static void main(String[] args) throws IOException, SQLException {
+        // Antes del primer hilo virtual: una consulta a SQLite (cdigo nativo) ocupa su hilo portador
+        // mientras dura, as que debe haber ms portadores que conexiones en el pool
+        if (System.getProperty("jdk.virtualThreadScheduler.parallelism") == null) {
+            int portadores = Math.max(Runtime.getRuntime().availableProcessors(), DatabaseManager.MAX_CONEXIONES_POOL + 2);
+            System.setProperty("jdk.virtualThreadScheduler.parallelism", String.valueOf(portadores));
+        }
+
+        int puerto = Configuracion.getEntero(Configuracion.SERVIDOR_PUERTO, 8080);
+        String direccion = Configuracion.getTexto(Configuracion.SERVIDOR_DIRECCION, "127.0.0.1");
+        token = Configuracion.getTexto(Configuracion.SERVIDOR_TOKEN, null);
+        if (token == null && !InetAddress.getByName(direccion).isLoopbackAddress()) {
+            System.err.println("ERROR: Para escuchar en " + direccion + " hay que definir " + Configuracion.SERVIDOR_TOKEN + ".");
+            System.exit(2);
+        }
+
+        // Sin interfaz no hay Login que espere: si la base de datos no se puede preparar, no se inicia
+        DatabaseManager.inicializarEsquema();
+        SessionContext.setCurrentUserName(Configuracion.getTexto(Configuracion.SERVIDOR_USUARIO, "API"));
+
+        ScheduledExecutorService caducidad = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "caducidad-almacenes");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        caducidad.scheduleWithFixedDelay(AlmacenUtils::invalidar, SEGUNDOS_CADUCIDAD_ALMACENES,
+                SEGUNDOS_CADUCIDAD_ALMACENES, TimeUnit.SECONDS);
+
+        HttpServer servidor = HttpServer.create(new InetSocketAddress(direccion, puerto), BACKLOG);
+        servidor.setExecutor(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("api-", 0).factory()));
+        servidor.createContext(RUTA_PRODUCTOS, protegido(ServidorApi::productos));
+        servidor.createContext(RUTA_ALMACENES, protegido(ServidorApi::almacenes));
+        servidor.createContext(RUTA_ESTADO, protegido(ServidorApi::estado));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            servidor.stop(1);
+            System.out.println("DEBUG: " + getEstadisticas());
+            DatabaseManager.cerrarPool();
+        }, "cierre-servidor"));
+        servidor.start();
+        System.out.println("DEBUG: Servidor API escuchando en http://" + direccion + ":" + puerto + "/api/"
+                + (token == null ? " (sin token)" : " (con token)") + ", usuario de auditora: " + SessionContext.getCurrentUserName());
+    }
+
+    /** Solicitudes recibidas, en curso, rechazadas por exceso (503), errores del servidor y productos enviados. */
+    public static String getEstadisticas() {
+        return String.format("Servidor API: solicitudes=%d enCurso=%d rechazadas=%d errores=%d productosEnviados=%d",
+                SOLICITUDES.sum(), MAX_EN_CURSO - EN_CURSO.availablePermits(), RECHAZADAS.get(), ERRORES.get(),
+                PRODUCTOS_ENVIADOS.sum());
+    }
+
+    // ------------------------------------------------------------------
+    //                       PRODUCTOS
+    // ------------------------------------------------------------------
+
+    private static void productos(HttpExchange ex) throws Exception {
+        String resto = ex.getRequestURI().getPath().substring(RUTA_PRODUCTOS.length());
+        String id = resto.isEmpty() || resto.equals("/") ? null : resto.substring(1);
+        if (id != null && !ID_PRODUCTO.matcher(id).matches()) {
+            throw new SolicitudInvalida(404, "No existe el recurso " + ex.getRequestURI().getPath());
+        }
+
+        switch (ex.getRequestMethod()) {
+            case "GET":
+                if (id == null) {
+                    listarProductos(ex);
+                } else {
+                    enviarProducto(ex, 200, id);
+                }
+                break;
+            case "POST":
+                if (id != null) {
+                    throw metodoNoPermitido(ex, "GET, PUT, DELETE");
+                }
+                String nuevoId = DatabaseManager.agregarProducto(leerProducto(ex, Producto.SIN_ID));
+                if (nuevoId == null) {
+                    // La fila ya est guardada: un 404 sobre ".../null" hara que el cliente reintentara y la duplicara
+                    throw new SQLException("La base de datos no devolvi el ID del producto nuevo.");
+                }
+                ex.getResponseHeaders().set("Location", RUTA_PRODUCTOS + "/" + nuevoId);
+                enviarProducto(ex, 201, nuevoId);
+                break;
+            case "PUT":
+                if (id == null) {
+                    throw metodoNoPermitido(ex, "GET, POST");
+                }
+                exigirProducto(id);
+                DatabaseManager.actualizarProducto(leerProducto(ex, Long.parseLong(id)));
+                enviarProducto(ex, 200, id);
+                break;
+            case "DELETE":
+                if (id == null) {
+                    throw metodoNoPermitido(ex, "GET, POST");
+                }
+                exigirProducto(id);
+                DatabaseManager.eliminarProducto(id);
+                ex.sendResponseHeaders(204, -1);
+                break;
+            default:
+                throw metodoNoPermitido(ex, id == null ? "GET, POST" : "GET, PUT, DELETE");
+        }
+    }
+
+    // Arreglo JSON escrito fila por fila mientras se recorre el ResultSet
+    private static void listarProductos(HttpExchange ex) throws Exception {
+        List<String> filtros = leerFiltros(ex.getRequestURI().getRawQuery());
+        String codificacion = ex.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = codificacion != null && codificacion.contains("gzip");
+
+        Writer salida = new BufferedWriter(new OutputStreamWriter(new CuerpoDiferido(ex, gzip), StandardCharsets.UTF_8), TAMANO_BUFFER);
+        salida.write('[');
+        boolean[] primera = {true};
+        long filas = DatabaseManager.recorrerProductosFiltrados(filtros, TAMANO_FETCH, null, rs -> {
+            if (!primera[0]) {
+                salida.write(",\n");
+            }
+            primera[0] = false;
+            ExportadorProductos.escribirObjetoJSON(salida, rs);
+        });
+        salida.write("]\n");
+        // Solo si todo sali bien: si la consulta falla antes de llenar el buffer, an se puede responder con un error
+        salida.close();
+        PRODUCTOS_ENVIADOS.add(filas);
+    }
+
+    private static void enviarProducto(HttpExchange ex, int codigo, String id) throws Exception {
+        StringWriter json = new StringWriter();
+        long filas = DatabaseManager.recorrerProductosFiltrados(filtroPorId(id), 1, null,
+                rs -> ExportadorProductos.escribirObjetoJSON(json, rs));
+        if (filas == 0) {
+            throw new SolicitudInvalida(404, "No existe el producto " + id);
+        }
+        PRODUCTOS_ENVIADOS.increment();
+        enviarJSON(ex, codigo, json.toString());
+    }
+
+    private static void exigirProducto(String id) throws SQLException, SolicitudInvalida {
+        if (!DatabaseManager.productoIdExiste(id)) {
+            throw new SolicitudInvalida(404, "No existe el producto " + id);
+        }
+    }
+
+    // Mismas reglas que el formulario y la importacin (ValidadorProducto); el almacn puede ser nombre o ID
+    private static Producto leerProducto(HttpExchange ex, long id) throws IOException, SolicitudInvalida {
+        Map<String, String> campos = new LectorJSON(leerCuerpo(ex)).objetoPlano();
+        String departamento = campos.get("departamento");
+        String almacen = campos.get("almacen");
+        String idAlmacen = AlmacenUtils.resolverIdAlmacen(almacen);
+
+        String errores = ValidadorProducto.validar(campos.get("nombre"), campos.get("precio"), campos.get("cantidad"), departamento, almacen);
+        if (almacen != null && idAlmacen == null) {
+            errores += "El Almacn '" + almacen + "' no existe.\n";
+        }
+        if (!errores.isEmpty()) {
+            throw new SolicitudInvalida(422, errores.trim());
+        }
+        return new Producto(id, campos.get("nombre").trim(), Double.parseDouble(campos.get("precio").trim()),
+                Integer.parseInt(campos.get("cantidad").trim()), ValidadorProducto.canonizarDepartamento(departamento),
+                idAlmacen, RelojAuditoria.SIN_FECHA, RelojAuditoria.SIN_FECHA, "");
+    }
+
+    // Los 8 filtros posicionales (null = sin filtro); los valores numricos se validan aqu
+    private static List<String> leerFiltros(String consulta) throws SolicitudInvalida {
+        String[] filtros = new String[PARAMETROS_FILTRO.size()];
+        for (Map.Entry<String, String> parametro : leerParametros(consulta).entrySet()) {
+            int posicion = PARAMETROS_FILTRO.indexOf(parametro.getKey());
+            if (posicion < 0) {
+                throw new SolicitudInvalida(400, "Parmetro desconocido '" + parametro.getKey() + "'. Filtros vlidos: " + PARAMETROS_FILTRO);
+            }
+            String valor = parametro.getValue().trim();
+            if (valor.isEmpty()) {
+                continue;
+            }
+            try {
+                switch (posicion) {
+                    case 2: case 3:
+                        Double.parseDouble(valor);
+                        break;
+                    case 4: case 5:
+                        Integer.parseInt(valor);
+                        break;
+                    case 6:
+                        String idAlmacen = AlmacenUtils.resolverIdAlmacen(valor);
+                        if (idAlmacen == null) {
+                            throw new SolicitudInvalida(400, "El Almacn '" + valor + "' no existe.");
+                        }
+                        valor = idAlmacen;
+                        break;
+                    case 7:
+                        if (!ID_PRODUCTO.matcher(valor).matches()) {
+                            throw new NumberFormatException(valor);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                throw new SolicitudInvalida(400, "El filtro '" + parametro.getKey() + "' debe ser numrico: " + valor);
+            }
+            filtros[posicion] = valor;
+        }
+        return Arrays.asList(filtros);
+    }
+
+    private static List<String> filtroPorId(String id) {
+        String[] filtros = new String[PARAMETROS_FILTRO.size()];
+        filtros[7] = id;
+        return Arrays.asList(filtros);
+    }
+
+    // ------------------------------------------------------------------
+    //                       ALMACENES Y ESTADO
+    // ------------------------------------------------------------------
+
+    private static void almacenes(HttpExchange ex) throws Exception {
+        if (!ex.getRequestMethod().equals("GET")) {
+            throw metodoNoPermitido(ex, "GET");
+        }
+        List<String[]> almacenes = new ArrayList<>();
+        AlmacenUtils.recorrerAlmacenes((id, nombre) -> almacenes.add(new String[] {id, nombre}));
+
+        StringWriter json = new StringWriter();
+        json.write('[');
+        for (int i = 0; i < almacenes.size(); i++) {
+            json.write(i == 0 ? "{\"id\":" : ",\n{\"id\":");
+            ExportadorProductos.escribirTextoJSON(json, almacenes.get(i)[0]);
+            json.write(",\"nombre\":");
+            ExportadorProductos.escribirTextoJSON(json, almacenes.get(i)[1]);
+            json.write('}');
+        }
+        json.write("]\n");
+        enviarJSON(ex, 200, json.toString());
+    }
+
+    private static void estado(HttpExchange ex) throws Exception {
+        if (!ex.getRequestMethod().equals("GET")) {
+            throw metodoNoPermitido(ex, "GET");
+        }
+        StringWriter json = new StringWriter();
+        json.write("{\"servidor\":");
+        ExportadorProductos.escribirTextoJSON(json, getEstadisticas());
+        json.write(",\"pool\":");
+        ExportadorProductos.escribirTextoJSON(json, DatabaseManager.getEstadisticasPool());
+        json.write(",\"almacenes\":");
+        ExportadorProductos.escribirTextoJSON(json, DatabaseManager.getEstadisticasAlmacenes());
+        json.write("}\n");
+        enviarJSON(ex, 200, json.toString());
+    }
+
+    // ------------------------------------------------------------------
+    //                       SOLICITUDES Y RESPUESTAS
+    // ------------------------------------------------------------------
+
+    // Lmite de solicitudes en curso, token y conversin de errores en respuestas JSON
+    private static HttpHandler protegido(Manejador manejador) {
+        return ex -> {
+            SOLICITUDES.increment();
+            if (!EN_CURSO.tryAcquire()) {
+                RECHAZADAS.incrementAndGet();
+                ex.getResponseHeaders().set("Retry-After", "1");
+                enviarError(ex, 503, "Servidor ocupado, intente de nuevo.");
+                ex.close();
+                return;
+            }
+            try {
+                if (autorizado(ex)) {
+                    manejador.atender(ex);
+                } else {
+                    ex.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                    enviarError(ex, 401, "Falta el token o no es vlido.");
+                }
+            } catch (SolicitudInvalida e) {
+                enviarError(ex, e.codigo, e.getMessage());
+            } catch (SQLException e) {
+                if (e instanceof SQLTransientException || (e.getErrorCode() & 0xff) == SQLITE_BUSY) {
+                    RECHAZADAS.incrementAndGet();
+                    ex.getResponseHeaders().set("Retry-After", "1");
+                    enviarError(ex, 503, "Base de datos ocupada, intente de nuevo.");
+                } else {
+                    ERRORES.incrementAndGet();
+                    System.err.println("Error de base de datos en " + ex.getRequestMethod() + " " + ex.getRequestURI() + ": " + e.getMessage());
+                    enviarError(ex, 500, "Error de base de datos.");
+                }
+            } catch (IOException e) {
+                // Normalmente el cliente cerr la conexin a media respuesta: no hay a quin responder
+            } catch (Exception e) {
+                ERRORES.incrementAndGet();
+                System.err.println("Error en " + ex.getRequestMethod() + " " + ex.getRequestURI() + ": " + e);
+                enviarError(ex, 500, "Error interno.");
+            } finally {
+                EN_CURSO.release();
+                ex.close();
+            }
+        };
+    }
+
+    private static boolean autorizado(HttpExchange ex) {
+        String esperado = token;
+        if (esperado == null) {
+            return true;
+        }
+        String recibido = ex.getRequestHeaders().getFirst("Authorization");
+        // Comparacin en tiempo constante: no revela cuntos caracteres coinciden
+        return recibido != null && MessageDigest.isEqual(("Bearer " + esperado).getBytes(StandardCharsets.UTF_8),
+                recibido.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static SolicitudInvalida metodoNoPermitido(HttpExchange ex, String permitidos) {
+        ex.getResponseHeaders().set("Allow", permitidos);
+        return new SolicitudInvalida(405, "Mtodo " + ex.getRequestMethod() + " no permitido; use " + permitidos + ".");
+    }
+
+    private static void enviarJSON(HttpExchange ex, int codigo, String json) throws IOException {
+        byte[] cuerpo = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", TIPO_JSON);
+        ex.sendResponseHeaders(codigo, cuerpo.length);
+        try (OutputStream salida = ex.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    // Si los encabezados ya se enviaron (respuesta en flujo a medias), ya no se puede cambiar el cdigo
+    private static void enviarError(HttpExchange ex, int codigo, String mensaje) {
+        if (ex.getResponseCode() != -1) {
+            return;
+        }
+        try {
+            StringWriter json = new StringWriter();
+            json.write("{\"error\":");
+            ExportadorProductos.escribirTextoJSON(json, mensaje);
+            json.write("}\n");
+            ex.getResponseHeaders().remove("Content-Encoding");
+            enviarJSON(ex, codigo, json.toString());
+        } catch (IOException e) {
+            // El cliente ya no est
+        }
+    }
+
+    private static String leerCuerpo(HttpExchange ex) throws IOException, SolicitudInvalida {
+        try (InputStream entrada = ex.getRequestBody()) {
+            byte[] cuerpo = entrada.readNBytes(MAX_CUERPO + 1);
+            if (cuerpo.length > MAX_CUERPO) {
+                throw new SolicitudInvalida(413, "El cuerpo excede " + MAX_CUERPO / 1024 + " KB.");
+            }
+            return new String(cuerpo, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> leerParametros(String consulta) throws SolicitudInvalida {
+        Map<String, String> parametros = new HashMap<>();
+        if (consulta == null || consulta.isEmpty()) {
+            return parametros;
+        }
+        try {
+            for (String par : consulta.split("&")) {
+                int igual = par.indexOf('=');
+                String clave = URLDecoder.decode(igual < 0 ? par : par.substring(0, igual), StandardCharsets.UTF_8);
+                String valor = igual < 0 ? "" : URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8);
+                if (!clave.isEmpty()) {
+                    parametros.put(clave, valor);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new SolicitudInvalida(400, "Consulta mal codificada: " + e.getMessage());
+        }
+        return parametros;
+    }
+
+    /**
+     * Cuerpo de una respuesta en flujo: enva los encabezados (200, por partes) con la primera escritura
+     * real. As, si la consulta falla antes de que se llene el buffer, todava se responde con un error.
+     */
+    private static final class CuerpoDiferido extends OutputStream {
+        private final HttpExchange ex;
+        private final boolean gzip;
+        private OutputStream destino;
+
+        CuerpoDiferido(HttpExchange ex, boolean gzip) {
+            this.ex = ex;
+            this.gzip = gzip;
+        }
+
+        private OutputStream destino() throws IOException {
+            if (destino == null) {
+                ex.getResponseHeaders().set("Content-Type", TIPO_JSON);
+                if (gzip) {
+                    ex.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                ex.sendResponseHeaders(200, 0); // Longitud desconocida
+                destino = gzip ? new GZIPOutputStream(ex.getResponseBody(), TAMANO_BUFFER) : ex.getResponseBody();
+            }
+            return destino;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            destino().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int desde, int cantidad) throws IOException {
+            destino().write(b, desde, cantidad);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (destino != null) {
+                destino.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            destino().close();
+        }
+    }
+
+    /**
+     * Lector de un objeto JSON plano ({"clave": valor, ...}). Los valores (texto, nmero, true, false
+     * o null) se devuelven como texto; los objetos y arreglos anidados no se admiten.
+     */
+    private static final class LectorJSON {
+        private final String texto;
+        private int posicion;
+
+        LectorJSON(String texto) {
+            this.texto = texto;
+        }
+
+        Map<String, String> objetoPlano() throws SolicitudInvalida {
+            Map<String, String> campos = new HashMap<>();
+            esperar('{');
+            if (!consumir('}')) {
+                do {
+                    String clave = cadena();
+                    esperar(':');
+                    campos.put(clave, valor());
+                } while (consumir(','));
+                esperar('}');
+            }
+            espacios();
+            if (posicion < texto.length()) {
+                throw error("contenido despus del objeto");
+            }
+            return campos;
+        }
+
+        private String valor() throws SolicitudInvalida {
+            espacios();
+            if (posicion < texto.length() && texto.charAt(posicion) == '"') {
+                return cadena();
+            }
+            int inicio = posicion;
+            while (posicion < texto.length() && "+-.0123456789eEaflnrstu".indexOf(texto.charAt(posicion)) >= 0) {
+                posicion++;
+            }
+            String literal = texto.substring(inicio, posicion);
+            if (literal.isEmpty()) {
+                throw error("se esperaba un valor simple (texto, nmero, true, false o null)");
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String cadena() throws SolicitudInvalida {
+            esperar('"');
+            StringBuilder valor = new StringBuilder();
+            while (posicion < texto.length()) {
+                char c = texto.charAt(posicion++);
+                if (c == '"') {
+                    return valor.toString();
+                }
+                if (c != '\\') {
+                    valor.append(c);
+                    continue;
+                }
+                if (posicion >= texto.length()) {
+                    break;
+                }
+                char escape = texto.charAt(posicion++);
+                switch (escape) {
+                    case '"': case '\\': case '/': valor.append(escape); break;
+                    case 'b': valor.append('\b'); break;
+                    case 'f': valor.append('\f'); break;
+                    case 'n': valor.append('\n'); break;
+                    case 'r': valor.append('\r'); break;
+                    case 't': valor.append('\t'); break;
+                    case 'u':
+                        if (posicion + 4 > texto.length()) {
+                            throw error("escape \\u incompleto");
+                        }
+                        try {
+                            valor.append((char) Integer.parseInt(texto.substring(posicion, posicion + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("escape \\u invlido");
+                        }
+                        posicion += 4;
+                        break;
+                    default:
+                        throw error("escape invlido");
+                }
+            }
+            throw error("texto sin cerrar");
+        }
+
+        private void esperar(char c) throws SolicitudInvalida {
+            if (!consumir(c)) {
+                throw error("se esperaba '" + c + "'");
+            }
+        }
+
+        private boolean consumir(char c) {
+            espacios();
+            if (posicion < texto.length() && texto.charAt(posicion) == c) {
+                posicion++;
+                return true;
+            }
+            return false;
+        }
+
+        private void espacios() {
+            while (posicion < texto.length() && Character.isWhitespace(texto.charAt(posicion))) {
+                posicion++;
+            }
+        }
+
+        private SolicitudInvalida error(String motivo) {
+            return new SolicitudInvalida(400, "JSON invlido en la posicin " + posicion + ": " + motivo);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package mx.unison;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+
+/**
+ * Ejecuta el trabajo de base de datos fuera del hilo de JavaFX para que la interfaz no se congele.
+ * Los resultados (o errores) se entregan de vuelta en el hilo de JavaFX.
+ * Tambin expone una propiedad "ocupado" para mostrar un indicador de carga en las pantallas.
+ */
+public class TareasBD {
+
+    /**
+     * Operacin de base de datos que puede lanzar excepciones (SQLException, etc.).
+     */
+    @FunctionalInterface
+    public interface OperacionBD<T> {
+        T ejecutar() throws Exception;
+    }
+
+    // Pocos hilos: SQLite solo admite un escritor y el pool de conexiones es pequeo
+    private static final int HILOS = 3;
+    private static final AtomicInteger CONTADOR_HILOS = new AtomicInteger();
+    private static final ExecutorService EJECUTOR = Executors.newFixedThreadPool(HILOS, r -> {
+        Thread hilo = new Thread(r, "bd-tarea-" + CONTADOR_HILOS.incrementAndGet());
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    // Nmero de tareas en curso; solo se modifica en el hilo de JavaFX
+    private static int tareasEnCurso = 0;
+    private static final ReadOnlyBooleanWrapper OCUPADO = new ReadOnlyBooleanWrapper(false);
+
+    // Constructor privado para evitar instanciacin
+    private TareasBD() {}
+
+    /**
+     * Ejecuta la operacin en segundo plano y entrega el resultado en el hilo de JavaFX.
+     * @param alTerminar Recibe el resultado (hilo de JavaFX).
+     * @param alFallar Recibe la causa real del error, sin envolver (hilo de JavaFX).
+     */
+    public static <T> CompletableFuture<T> ejecutar(OperacionBD<T> operacion, Consumer<T> alTerminar, Consumer<Throwable> alFallar) {
+        CompletableFuture<T> futuro = CompletableFuture.supplyAsync(() -> {
+            try {
+                return operacion.ejecutar();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, EJECUTOR);
+        return entregarEnFX(futuro, alTerminar, alFallar);
+    }
+
+    /**
+     * Igual que ejecutar(), para trabajo que ya corre en otro ejecutor (p. ej. ServicioAutenticacion):
+     * cuenta como tarea en curso y entrega el resultado o el error en el hilo de JavaFX.
+     */
+    public static <T> CompletableFuture<T> entregarEnFX(CompletableFuture<T> futuro, Consumer<T> alTerminar, Consumer<Throwable> alFallar) {
+        enHiloFX(() -> cambiarTareasEnCurso(+1));
+
+        futuro.whenComplete((resultado, error) -> enHiloFX(() -> {
+            cambiarTareasEnCurso(-1);
+            if (error == null) {
+                alTerminar.accept(resultado);
+            } else {
+                alFallar.accept(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        }));
+        return futuro;
+    }
+
+    /**
+     * Ejecutor compartido para trabajo de fondo que maneja sus propios resultados (p. ej. pginas de la tabla).
+     */
+    public static Executor getEjecutor() {
+        return EJECUTOR;
+    }
+
+    /**
+     * Verdadero mientras haya al menos una tarea de base de datos en curso.
+     */
+    public static ReadOnlyBooleanProperty ocupadoProperty() {
+        return OCUPADO.getReadOnlyProperty();
+    }
+
+    private static void cambiarTareasEnCurso(int delta) {
+        tareasEnCurso += delta;
+        OCUPADO.set(tareasEnCurso > 0);
+    }
+
+    private static void enHiloFX(Runnable accion) {
+        if (Platform.isFxApplicationThread()) {
+            accion.run();
+        } else {
+            Platform.runLater(accion);
+        }
+    }
+}
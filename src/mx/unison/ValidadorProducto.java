@@ -0,0 +1,86 @@
+package mx.unison;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reglas de validacin de un producto, compartidas por el formulario (ProductoFormController)
+ * y la importacin masiva (ImportadorProductosCSV) para que ambos acepten exactamente lo mismo.
+ */
+public class ValidadorProducto {
+
+    /** Departamentos vlidos (los mismos que ofrece el formulario). */
+    public static final List<String> DEPARTAMENTOS = Collections.unmodifiableList(
+            Arrays.asList("Materiales", "Mobiliario", "Impresion3D", "Computacin"));
+
+    // Constructor privado para evitar instanciacin
+    private ValidadorProducto() {}
+
+    /**
+     * Valida los datos de un producto tal como se capturaron (texto).
+     * @param departamento El departamento elegido, o null si no se eligi ninguno.
+     * @param almacen El almacn elegido, o null si no se eligi ninguno.
+     * @return Los mensajes de error (uno por lnea), o una cadena vaca si todo es vlido.
+     */
+    public static String validar(String nombre, String precio, String cantidad, String departamento, String almacen) {
+        StringBuilder errorMsg = new StringBuilder();
+
+        // Validacin de Nombre
+        if (nombre == null || nombre.trim().isEmpty()) {
+            errorMsg.append("El Nombre del producto es obligatorio.\n");
+        }
+
+        // Validacin de Departamento y Almacn
+        if (departamento == null) {
+            errorMsg.append("Debe seleccionar un Departamento.\n");
+        } else if (canonizarDepartamento(departamento) == null) {
+            errorMsg.append("El Departamento '").append(departamento).append("' no es vlido.\n");
+        }
+        if (almacen == null) {
+            errorMsg.append("Debe seleccionar un Almacn.\n");
+        }
+
+        // Validacin Numrica de Precio
+        try {
+            double valorPrecio = Double.parseDouble(precio == null ? "" : precio.trim());
+            if (!Double.isFinite(valorPrecio)) {
+                // Double.parseDouble acepta "NaN", "Infinity" y desbordes como "1e999"
+                errorMsg.append("El Precio debe ser un valor numrico vlido.\n");
+            } else if (valorPrecio <= 0) {
+                errorMsg.append("El Precio debe ser un nmero positivo (mayor a 0).\n");
+            }
+        } catch (NumberFormatException e) {
+            errorMsg.append("El Precio debe ser un valor numrico vlido.\n");
+        }
+
+        // Validacin Numrica de Cantidad
+        try {
+            int valorCantidad = Integer.parseInt(cantidad == null ? "" : cantidad.trim());
+            if (valorCantidad < 0) {
+                errorMsg.append("La Cantidad no puede ser negativa.\n");
+            }
+        } catch (NumberFormatException e) {
+            errorMsg.append("La Cantidad debe ser un nmero entero vlido.\n");
+        }
+
+        return errorMsg.toString();
+    }
+
+    /**
+     * Devuelve el departamento con la escritura oficial ("mobiliario" -> "Mobiliario"),
+     * o null si no es uno de los departamentos vlidos.
+     */
+    public static String canonizarDepartamento(String departamento) {
+        if (departamento == null) {
+            return null;
+        }
+        String buscado = departamento.trim();
+        for (String valido : DEPARTAMENTOS) {
+            if (valido.equalsIgnoreCase(buscado)) {
+                return valido;
+            }
+        }
+        return null;
+    }
+}
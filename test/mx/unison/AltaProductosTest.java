@@ -0,0 +1,104 @@
+package mx.unison;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Da de alta productos en una base creada desde cero por DatabaseManager (llave TEXT, sin autoincremento)
+ * y verifica que reciben un ID propio y que se pueden volver a leer.
+ */
+public class AltaProductosTest {
+
+    private static final List<String> SIN_FILTROS = Arrays.asList(null, null, null, null, null, null, null, null);
+
+    private static File archivo;
+
+    @BeforeClass
+    public static void crearBaseTemporal() throws Exception {
+        // Debe fijarse antes de que DatabaseManager abra su pool (JUnit corre cada clase en su propia JVM)
+        archivo = File.createTempFile("alta_productos", ".db");
+        System.setProperty(Configuracion.BASE_DATOS, archivo.getAbsolutePath());
+        DatabaseManager.inicializarEsquema();
+    }
+
+    @AfterClass
+    public static void borrarBaseTemporal() {
+        DatabaseManager.cerrarPool();
+        archivo.delete();
+    }
+
+    @Test
+    public void cadaAltaRecibeIdYSeVuelveALeer() throws Exception {
+        int antes = DatabaseManager.obtenerProductosFiltrados(SIN_FILTROS).size();
+        String primero = DatabaseManager.agregarProducto(nuevoProducto("Silla plegable"));
+        String segundo = DatabaseManager.agregarProducto(nuevoProducto("Mesa plegable"));
+        assertNotNull(primero);
+        assertNotNull(segundo);
+        assertNotEquals(primero, segundo);
+
+        List<Producto> productos = DatabaseManager.obtenerProductosFiltrados(
+                Arrays.asList("silla", null, null, null, null, null, null, null));
+        assertEquals(1, productos.size());
+        assertEquals(primero, productos.get(0).getId());
+        assertEquals("Silla plegable", productos.get(0).getNombre());
+        assertEquals(antes + 2, DatabaseManager.obtenerProductosFiltrados(SIN_FILTROS).size());
+
+        // El alta qued en la bitcora con el mismo ID
+        List<BitacoraCambios.Cambio> historial = BitacoraCambios.obtenerHistorial(BitacoraCambios.Entidad.PRODUCTO, primero, 10);
+        assertEquals(1, historial.size());
+        assertEquals(BitacoraCambios.Operacion.INSERCION, historial.get(0).operacion);
+
+        // El ndice columnar tambin los carga (requiere id numricos)
+        IndiceProductosColumnar.cargar();
+    }
+
+    @Test
+    public void laImportacionAsignaIdsSinHuecos() throws Exception {
+        Path csv = Files.createTempFile("importar", ".csv");
+        try {
+            Files.writeString(csv, "nombre,precio,cantidad,departamento,almacen\n"
+                    + "Filamento PLA,350,10,Materiales,Hermosillo\n"
+                    + "Filamento ABS,NaN,10,Materiales,Hermosillo\n"
+                    + "Boquilla 0.4,45.5,30,Impresion3D,Caborca\n");
+            ImportadorProductosCSV.Resultado resultado = new ImportadorProductosCSV(csv).importar();
+            assertEquals(2, resultado.filasInsertadas);
+            if (resultado.archivoRechazos != null) {
+                Files.deleteIfExists(resultado.archivoRechazos);
+            }
+        } finally {
+            Files.deleteIfExists(csv);
+        }
+
+        assertEquals(0, consultar("SELECT COUNT(*) FROM productos WHERE id IS NULL"));
+        assertEquals(1, DatabaseManager.obtenerProductosFiltrados(Arrays.asList("boquilla", null, null, null, null, null, null, null)).size());
+        // Los ids sobrantes del bloque reservado se devolvieron: la siguiente alta sigue al ms alto
+        long maximo = consultar("SELECT MAX(CAST(id AS INTEGER)) FROM productos");
+        assertEquals(String.valueOf(maximo + 1), DatabaseManager.agregarProducto(nuevoProducto("Cama caliente")));
+    }
+
+    private static long consultar(String sql) throws Exception {
+        try (Connection conn = DatabaseManager.getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static Producto nuevoProducto(String nombre) {
+        return new Producto(Producto.SIN_ID, nombre, 150.0, 4, "Mobiliario", "1",
+                RelojAuditoria.SIN_FECHA, RelojAuditoria.SIN_FECHA, null);
+    }
+}
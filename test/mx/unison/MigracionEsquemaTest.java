@@ -0,0 +1,151 @@
+package mx.unison;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Verifica la migracin de una base de la versin 0 (fechas de auditora como TEXT) a la versin actual:
+ * las fechas se convierten, cada columna conserva su nulabilidad y las fechas que no se pueden
+ * interpretar quedan NULL donde la columna lo admite.
+ */
+public class MigracionEsquemaTest {
+
+    // Esquema de la versin 0, tal como lo creaba createTables() (fechas NOT NULL)
+    private static final String ALMACENES_V0 = "CREATE TABLE almacenes (id TEXT PRIMARY KEY, nombre TEXT NOT NULL UNIQUE,"
+            + "fecha_hora_creacion TEXT NOT NULL DEFAULT '1900-01-01 00:00:00',"
+            + "fecha_hora_ultima_modificacion TEXT NOT NULL DEFAULT '1900-01-01 00:00:00',"
+            + "ultimo_usuario_en_modificar TEXT DEFAULT 'system')";
+    private static final String PRODUCTOS_V0 = "CREATE TABLE productos (id TEXT PRIMARY KEY, nombre TEXT NOT NULL, precio REAL NOT NULL,"
+            + "cantidad INTEGER NOT NULL, departamento TEXT NOT NULL, almacen TEXT,"
+            + "fecha_hora_creacion TEXT NOT NULL, fecha_hora_ultima_modificacion TEXT NOT NULL,"
+            + "ultimo_usuario_en_modificar TEXT)";
+
+    // Como el InventarioBD.db que se distribuye: fechas agregadas despus con ALTER TABLE, sin NOT NULL
+    private static final String ALMACENES_V0_ANULABLE = "CREATE TABLE almacenes (id INTEGER PRIMARY KEY, nombre TEXT NOT NULL,"
+            + " fecha_hora_creacion TEXT, fecha_hora_ultima_modificacion TEXT, ultimo_usuario_en_modificar TEXT)";
+    private static final String PRODUCTOS_V0_ANULABLE = "CREATE TABLE \"productos\" (\"id\" INTEGER NOT NULL, \"nombre\" TEXT NOT NULL,"
+            + " \"precio\" REAL NOT NULL, \"cantidad\" INTEGER NOT NULL, \"departamento\" TEXT NOT NULL, almacen INTEGER,"
+            + " fecha_hora_creacion TEXT, fecha_hora_ultima_modificacion TEXT, ultimo_usuario_en_modificar TEXT, PRIMARY KEY(\"id\"))";
+
+    private File archivo;
+    private Connection conn;
+
+    @Before
+    public void crearBase() throws Exception {
+        archivo = File.createTempFile("migracion", ".db");
+        conn = DriverManager.getConnection("jdbc:sqlite:" + archivo.getAbsolutePath());
+    }
+
+    @After
+    public void borrarBase() throws SQLException {
+        conn.close();
+        archivo.delete();
+    }
+
+    @Test
+    public void migraFechasDeColumnasObligatorias() throws SQLException {
+        ejecutar(ALMACENES_V0, PRODUCTOS_V0,
+                "INSERT INTO almacenes (id, nombre) VALUES ('1', 'Hermosillo')",
+                "INSERT INTO productos VALUES ('1', 'Silla', 10.0, 3, 'Mobiliario', '1', '2025-12-02 03:20:52', '2025-12-03 00:05:24', 'admin')");
+
+        DatabaseManager.crearTablas(conn);
+
+        assertEquals(1L, consultar("PRAGMA user_version"));
+        assertEquals(RelojAuditoria.aEpoch("2025-12-02 03:20:52"), consultar("SELECT fecha_hora_creacion FROM productos WHERE id = '1'"));
+        assertEquals(RelojAuditoria.aEpoch("2025-12-03 00:05:24"), consultar("SELECT fecha_hora_ultima_modificacion FROM productos WHERE id = '1'"));
+        assertEquals(RelojAuditoria.aEpoch("1900-01-01 00:00:00"), consultar("SELECT fecha_hora_creacion FROM almacenes WHERE id = '1'"));
+        // Siguen siendo NOT NULL, declaradas como en createTables() (el DEFAULT de texto pasa a DEFAULT 0)
+        verificarColumnas("almacenes", true, "0");
+        verificarColumnas("productos", true, "0");
+        assertEquals(1L, consultar("SELECT COUNT(*) FROM productos_fts WHERE productos_fts MATCH 'silla'"));
+    }
+
+    @Test
+    public void fechaInvalidaEnColumnaObligatoriaDetieneLaMigracionSinTocarLaBase() throws SQLException {
+        ejecutar(ALMACENES_V0, PRODUCTOS_V0,
+                "INSERT INTO almacenes (id, nombre) VALUES ('1', 'Hermosillo')",
+                "INSERT INTO productos VALUES ('2', 'Mesa', 20.0, 1, 'Mobiliario', '1', 'N/A', '2025-12-03 00:05:24', 'admin')");
+
+        try {
+            DatabaseManager.crearTablas(conn);
+            fail("La migracin deba detenerse por la fecha 'N/A'");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("fecha_hora_creacion") && e.getMessage().contains("id 2"));
+        }
+        assertEquals(0L, consultar("PRAGMA user_version"));
+        assertEquals("N/A", consultarTexto("SELECT fecha_hora_creacion FROM productos WHERE id = '2'"));
+    }
+
+    @Test
+    public void fechaInvalidaONulaEnColumnaAnulableQuedaNull() throws SQLException {
+        ejecutar(ALMACENES_V0_ANULABLE, PRODUCTOS_V0_ANULABLE,
+                "INSERT INTO almacenes (id, nombre) VALUES (1, 'Hermosillo')",
+                "INSERT INTO productos VALUES (1, 'Silla', 10.0, 3, 'Mobiliario', 1, '2025-12-02 03:20:52', NULL, 'admin')",
+                "INSERT INTO productos VALUES (2, 'Mesa', 20.0, 1, 'Mobiliario', 1, 'N/A', '', 'admin')");
+
+        DatabaseManager.crearTablas(conn);
+
+        assertEquals(1L, consultar("PRAGMA user_version"));
+        assertEquals(RelojAuditoria.aEpoch("2025-12-02 03:20:52"), consultar("SELECT fecha_hora_creacion FROM productos WHERE id = 1"));
+        assertNull(consultarTexto("SELECT fecha_hora_ultima_modificacion FROM productos WHERE id = 1"));
+        assertNull(consultarTexto("SELECT fecha_hora_creacion FROM productos WHERE id = 2"));
+        assertNull(consultarTexto("SELECT fecha_hora_ultima_modificacion FROM productos WHERE id = 2"));
+        assertNull(consultarTexto("SELECT fecha_hora_creacion FROM almacenes WHERE id = 1"));
+        // Siguen admitiendo NULL (sin DEFAULT, como estaban)
+        verificarColumnas("almacenes", false, null);
+        verificarColumnas("productos", false, null);
+        assertEquals(2L, consultar("SELECT COUNT(*) FROM productos_fts"));
+    }
+
+    /** Las dos fechas de la tabla son INTEGER, con la nulabilidad y el DEFAULT indicados. */
+    private void verificarColumnas(String tabla, boolean notNull, String porDefecto) throws SQLException {
+        int fechas = 0;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + tabla + ")")) {
+            while (rs.next()) {
+                if (rs.getString("name").startsWith("fecha_hora_")) {
+                    fechas++;
+                    assertEquals("INTEGER", rs.getString("type"));
+                    assertEquals(tabla + "." + rs.getString("name"), notNull ? 1 : 0, rs.getInt("notnull"));
+                    assertEquals(porDefecto, rs.getString("dflt_value"));
+                }
+            }
+        }
+        assertEquals(2, fechas);
+    }
+
+    private void ejecutar(String... sentencias) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            for (String sql : sentencias) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    private long consultar(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private String consultarTexto(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package mx.unison;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifica con EXPLAIN QUERY PLAN que cada filtro de la pantalla de Productos, usado solo,
+ * busca (SEARCH) en el ndice que createTables() crea para su columna en lugar de recorrer la tabla.
+ */
+public class PlanConsultasProductosTest {
+
+    // ndice esperado para cada filtro, en el mismo orden que DatabaseManager.PREDICADOS_PRODUCTOS
+    private static final String[] INDICE_POR_FILTRO = {
+        "productos_fts VIRTUAL TABLE INDEX",                   // 0: Nombre (FTS5)
+        "USING INDEX idx_productos_departamento",              // 1: Departamento
+        "USING INDEX idx_productos_precio",                    // 2: precioMin
+        "USING INDEX idx_productos_precio",                    // 3: precioMax
+        "USING INDEX idx_productos_cantidad",                  // 4: cantidadMin
+        "USING INDEX idx_productos_cantidad",                  // 5: cantidadMax
+        "USING INDEX idx_productos_almacen",                   // 6: ID Almacn
+        "USING INDEX sqlite_autoindex_productos_1"             // 7: ID Producto
+    };
+
+    private File archivo;
+    private Connection conn;
+
+    @Before
+    public void crearBaseTemporal() throws Exception {
+        archivo = File.createTempFile("plan_productos", ".db");
+        conn = DriverManager.getConnection("jdbc:sqlite:" + archivo.getAbsolutePath());
+        DatabaseManager.crearTablas(conn);
+    }
+
+    @After
+    public void borrarBaseTemporal() throws SQLException {
+        conn.close();
+        archivo.delete();
+    }
+
+    @Test
+    public void cadaFiltroBuscaEnSuIndice() throws SQLException {
+        assertEquals(DatabaseManager.PREDICADOS_PRODUCTOS.length, INDICE_POR_FILTRO.length);
+        for (int i = 0; i < INDICE_POR_FILTRO.length; i++) {
+            String plan = planDe(DatabaseManager.sqlProductos(DatabaseManager.SQL_LISTA, 1 << i), i == 0 ? "\"caja\"*" : "1");
+            if (i == 0) {
+                // El nombre se resuelve en productos_fts y cada coincidencia se lee por rowid
+                assertTrue("Filtro 0 sin FTS:\n" + plan, plan.contains(INDICE_POR_FILTRO[i]));
+                assertTrue("Filtro 0 sin bsqueda por rowid:\n" + plan, plan.contains("SEARCH p USING INTEGER PRIMARY KEY"));
+            } else {
+                assertTrue("Filtro " + i + " no usa su ndice:\n" + plan, plan.contains("SEARCH p " + INDICE_POR_FILTRO[i]));
+            }
+        }
+    }
+
+    /**
+     * Devuelve el detalle de EXPLAIN QUERY PLAN (una lnea por paso) con el nico parmetro enlazado.
+     */
+    private String planDe(String sql, String parametro) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql)) {
+            pstmt.setString(1, parametro);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString("detail")).append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+}
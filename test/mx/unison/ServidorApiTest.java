@@ -0,0 +1,68 @@
+package mx.unison;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Levanta el modo servidor sobre una base temporal y verifica que un producto dado de alta por POST
+ * se puede leer en la direccin que devuelve el encabezado Location.
+ */
+public class ServidorApiTest {
+
+    private static final HttpClient CLIENTE = HttpClient.newHttpClient();
+
+    private static File archivo;
+    private static String base;
+
+    @BeforeClass
+    public static void iniciarServidor() throws Exception {
+        // Debe fijarse antes de que DatabaseManager abra su pool (JUnit corre cada clase en su propia JVM)
+        archivo = File.createTempFile("servidor_api", ".db");
+        int puerto;
+        try (ServerSocket libre = new ServerSocket(0)) {
+            puerto = libre.getLocalPort();
+        }
+        System.setProperty(Configuracion.BASE_DATOS, archivo.getAbsolutePath());
+        System.setProperty(Configuracion.SERVIDOR_PUERTO, String.valueOf(puerto));
+        System.setProperty(Configuracion.SERVIDOR_DIRECCION, "127.0.0.1");
+        base = "http://127.0.0.1:" + puerto;
+
+        ServidorApi.main(new String[0]);
+    }
+
+    @AfterClass
+    public static void borrarBaseTemporal() {
+        DatabaseManager.cerrarPool();
+        archivo.delete();
+    }
+
+    @Test
+    public void elProductoCreadoSeLeeEnSuLocation() throws Exception {
+        String cuerpo = "{\"nombre\":\"Lmpara de escritorio\",\"precio\":\"320.5\",\"cantidad\":\"7\","
+                + "\"departamento\":\"" + ValidadorProducto.DEPARTAMENTOS.get(0) + "\",\"almacen\":\"Hermosillo\"}";
+        HttpResponse<String> alta = CLIENTE.send(HttpRequest.newBuilder(URI.create(base + "/api/productos"))
+                .header("Content-Type", "application/json; charset=utf-8")
+                .POST(HttpRequest.BodyPublishers.ofString(cuerpo)).build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(alta.body(), 201, alta.statusCode());
+
+        String location = alta.headers().firstValue("Location").orElse(null);
+        assertNotNull(location);
+        assertTrue(location, location.matches("/api/productos/\\d+"));
+
+        HttpResponse<String> lectura = CLIENTE.send(HttpRequest.newBuilder(URI.create(base + location)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals(lectura.body(), 200, lectura.statusCode());
+        assertEquals(alta.body(), lectura.body());
+        assertTrue(lectura.body(), lectura.body().contains("\"nombre\":\"Lmpara de escritorio\""));
+    }
+}